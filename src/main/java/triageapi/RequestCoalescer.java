@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import org.apache.hc.core5.concurrent.Cancellable;
+import triageapi.network.CancellationToken;
+import triageapi.network.CircuitOpenException;
+import triageapi.network.TriageStatusException;
+
+/**
+ * This class ensures that concurrent identical requests share a single
+ * in-flight request. The first caller for a given key performs the request,
+ * while callers that arrive before it completes wait for, and receive, the
+ * same result (or exception). Once the request completes, the key is
+ * released, meaning that later callers perform a new request. As such,
+ * results are never cached beyond the duration of the request.<br>
+ * <br>
+ * Each caller observes its own <code>CancellationToken</code>. A waiting
+ * caller whose token is cancelled stops waiting, whereas the request continues
+ * for the other callers. If the token of the caller that performs the request
+ * is cancelled, the waiting callers do not fail, but one of them performs the
+ * request instead. As identical requests belong to the same operation, they
+ * share its deadline, meaning a waiting caller never waits longer than its own
+ * request could have taken.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+final class RequestCoalescer {
+
+    /**
+     * A request whose result can be shared
+     *
+     * @param <T> the type of the result
+     */
+    interface Request<T> {
+
+        /**
+         * Performs the request
+         *
+         * @return the result of the request
+         * @throws IOException if the request fails
+         */
+        T execute() throws IOException;
+    }
+
+    /**
+     * The result of a request that was abandoned, as the caller that
+     * performed it was cancelled, in which case a waiting caller performs the
+     * request instead
+     */
+    private static final Object ABANDONED = new Object();
+
+    /**
+     * The requests that are in-flight, per key
+     */
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight;
+
+    /**
+     * Creates a coalescer without in-flight requests
+     */
+    RequestCoalescer() {
+        this.inFlight = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Performs the given request, or waits for the in-flight request with the
+     * same key to complete
+     *
+     * @param <T> the type of the result
+     * @param key the key that identifies identical requests, such as the URL
+     * @param request the request to perform if none is in-flight
+     * @return the result of the request, which is shared with all concurrent
+     * callers
+     * @throws IOException if the request fails, or if the thread is
+     * interrupted or its token is cancelled while waiting
+     */
+    @SuppressWarnings("unchecked")
+    <T> T execute(String key, Request<T> request) throws IOException {
+        while (true) {
+            CompletableFuture<Object> created = new CompletableFuture<>();
+            CompletableFuture<Object> existing = inFlight.putIfAbsent(key, created);
+            if (existing == null) {
+                return perform(key, created, request);
+            }
+            Object result = await(existing);
+            if (result != ABANDONED) {
+                return (T) result;
+            }
+            //The caller that performed the request was cancelled, whereas this caller was not, so it performs the request instead
+        }
+    }
+
+    /**
+     * Performs the given request, and shares its result with the callers
+     * that wait for it. The key is released before the result is shared, so
+     * a waiting caller that has to perform the request itself is never
+     * handed the same completed request again.
+     *
+     * @param <T> the type of the result
+     * @param key the key of the request
+     * @param created the shared result of the request
+     * @param request the request to perform
+     * @return the result of the request
+     * @throws IOException if the request fails
+     */
+    private <T> T perform(String key, CompletableFuture<Object> created, Request<T> request) throws IOException {
+        try {
+            T result = request.execute();
+            inFlight.remove(key, created);
+            created.complete(result);
+            return result;
+        } catch (IOException | RuntimeException | Error ex) {
+            inFlight.remove(key, created);
+            if (ex instanceof InterruptedIOException && isCancelled()) {
+                //The failure only applies to this caller, so the waiting callers are not failed
+                created.complete(ABANDONED);
+            } else {
+                created.completeExceptionally(ex);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Checks if the calling thread is interrupted, or if its token is
+     * cancelled
+     *
+     * @return true if the calling thread stopped, false if not
+     */
+    private static boolean isCancelled() {
+        CancellationToken token = CancellationToken.current();
+        return Thread.currentThread().isInterrupted() || (token != null && token.isCancelled());
+    }
+
+    /**
+     * Waits for the given in-flight request to complete, or until the
+     * calling thread is interrupted or its token is cancelled
+     *
+     * @param future the in-flight request
+     * @return the result of the request, or <code>ABANDONED</code> if the
+     * caller that performed it was cancelled
+     * @throws IOException if the request failed, or if the thread is
+     * interrupted or its token is cancelled while waiting
+     */
+    private Object await(CompletableFuture<Object> future) throws IOException {
+        //Wake up the caller if its token is cancelled
+        CancellationToken token = CancellationToken.current();
+        CompletableFuture<Object> cancelled = new CompletableFuture<>();
+        Cancellable wakeUp = () -> cancelled.complete(null);
+        if (token != null) {
+            token.register(wakeUp);
+        }
+
+        try {
+            try {
+                CompletableFuture.anyOf(future, cancelled).get();
+            } catch (ExecutionException ex) {
+                //The failure of the request is obtained from the request itself
+            }
+            if (future.isDone() == false) {
+                throw new InterruptedIOException("The request was cancelled while it was waiting for an identical in-flight request");
+            }
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an identical in-flight request");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw copy((IOException) cause);
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            if (token != null) {
+                token.unregister(wakeUp);
+            }
+        }
+    }
+
+    /**
+     * Copies the given shared exception for a waiting caller, so the stack
+     * trace of that caller is kept. The copy is of the same type and has the
+     * same details, allowing callers to handle it as if they performed the
+     * request themselves, while the shared exception is chained as its cause.
+     * Exceptions of other types are rethrown as-is, as their details cannot
+     * be copied.
+     *
+     * @param shared the exception of the in-flight request
+     * @return the exception to throw in the waiting caller
+     */
+    private IOException copy(IOException shared) {
+        IOException copy;
+        if (shared.getClass() == TriageStatusException.class) {
+            TriageStatusException status = (TriageStatusException) shared;
+            copy = new TriageStatusException(status.getUrl(), status.getStatusCode());
+        } else if (shared.getClass() == CircuitOpenException.class) {
+            CircuitOpenException open = (CircuitOpenException) shared;
+            copy = new CircuitOpenException(open.getUrl(), open.getGroup(), open.getRetryAfter());
+        } else if (shared.getClass() == InterruptedIOException.class) {
+            InterruptedIOException interrupted = new InterruptedIOException(shared.getMessage());
+            interrupted.bytesTransferred = ((InterruptedIOException) shared).bytesTransferred;
+            copy = interrupted;
+        } else if (shared.getClass() == IOException.class) {
+            copy = new IOException(shared.getMessage());
+        } else {
+            return shared;
+        }
+        copy.initCause(shared);
+        return copy;
+    }
+}
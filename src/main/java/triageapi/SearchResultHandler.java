@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi;
+
+import java.io.IOException;
+import triageapi.model.SearchResultEntry;
+
+/**
+ * This interface is implemented to handle the results of a search over a
+ * period of time one by one, while the next pages are still to be requested.
+ * As each result is handled before the next page is requested, a handler that
+ * blocks slows down the search, rather than the results piling up in memory.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public interface SearchResultHandler {
+
+    /**
+     * Handles a single search result
+     *
+     * @param entry the search result
+     * @throws IOException if the search result cannot be handled, which ends
+     * the search
+     */
+    void handle(SearchResultEntry entry) throws IOException;
+}
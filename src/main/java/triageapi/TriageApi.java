@@ -16,6 +16,7 @@
  */
 package triageapi;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -23,20 +24,22 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.apache.hc.client5.http.entity.mime.MultipartEntityBuilder;
 import triageapi.json.JsonParser;
+import triageapi.json.KernelEventListener;
+import triageapi.metrics.TriageMetrics;
+import triageapi.model.KernelEventType;
 import triageapi.model.Dump;
 import triageapi.model.FileUploadResult;
 import triageapi.model.Sample;
@@ -45,8 +48,16 @@ import triageapi.model.SearchResultEntry;
 import triageapi.model.Signature;
 import triageapi.model.StaticReport;
 import triageapi.model.TargetDesc;
+import triageapi.model.TaskSummary;
 import triageapi.model.TriageReport;
+import triageapi.network.KeyPoolTransport;
+import triageapi.network.RequestPriority;
+import triageapi.network.ResumableDownloader;
 import triageapi.network.TriageConnector;
+import triageapi.network.TriageOperation;
+import triageapi.network.TriageRequestListener;
+import triageapi.network.TriageTimeouts;
+import triageapi.network.TriageTransport;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import triageapi.model.SampleEvents;
@@ -85,18 +96,28 @@ import triageapi.model.TriageOverview;
  *
  * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
  */
-public class TriageApi {
+public class TriageApi implements Closeable {
 
     /**
      * The base URL, which is either the public or private cloud of Triage
      */
     private final String apiBase;
 
+    /**
+     * The URL of the list of supported families
+     */
+    private final String familiesUrl;
+
+    /**
+     * The default URL of the list of supported families
+     */
+    private static final String DEFAULT_FAMILIES_URL = "https://hatching.dev/family.json";
+
     /**
      * The connector module, which handles the HTTP requests with Triage's
      * servers
      */
-    private final TriageConnector connector;
+    private final TriageTransport connector;
 
     /**
      * The JSON parser, which returns objects to the user, instead of plain JSON
@@ -109,6 +130,39 @@ public class TriageApi {
      */
     private String allFamilies;
 
+    /**
+     * The maximum amount of samples for which the kernel monitor log name is
+     * cached
+     */
+    private static final int KERNEL_LOG_NAME_CACHE_SIZE = 10000;
+
+    /**
+     * A cache of the kernel monitor log name (either <em>onemon.json</em> or
+     * <em>stahp.json</em>) per sample ID, avoiding the retrieval of the static
+     * report every time a kernel monitor log is requested. The cache is filled
+     * whenever the platform of a sample is encountered in a report or an
+     * overview, and the least recently used samples are evicted first.
+     */
+    private final Map<String, String> kernelLogNames;
+
+    /**
+     * The coalescer that lets concurrent identical requests share a single
+     * in-flight request
+     */
+    private final RequestCoalescer coalescer;
+
+    /**
+     * The downloader that writes large resources into files, and resumes
+     * failed downloads
+     */
+    private final ResumableDownloader downloader;
+
+    /**
+     * True if concurrent identical requests are coalesced, false if each call
+     * performs its own request
+     */
+    private volatile boolean requestCoalescing;
+
     /**
      * Create an instance of the TriageApi class that uses a given API key to
      * connect to Triage's endpoints. One can use a private cloud account or a
@@ -119,28 +173,219 @@ public class TriageApi {
      * {@link triageapi.model.TriageEnvironment} enum.
      */
     public TriageApi(String key, TriageEnvironment environment) {
-        //Sets the base of URL, which differs between the public and private cloud
+        //The connector needs the API key, as it is needed in a header in each request
+        this(new TriageConnector(key), environment);
+    }
+
+    /**
+     * Create an instance of the TriageApi class that spreads its requests over
+     * the given API keys, as is described in
+     * {@link triageapi.network.KeyPoolTransport}. The pool of keys can be
+     * configured via <code>getTransport</code>.
+     *
+     * @param keys the API keys to use when connecting with Triage's service
+     * @param environment the environment to use, any of the enum values in the
+     * {@link triageapi.model.TriageEnvironment} enum.
+     */
+    public TriageApi(List<String> keys, TriageEnvironment environment) {
+        this(new KeyPoolTransport(keys), environment);
+    }
+
+    /**
+     * Create an instance of the TriageApi class that sends its requests via
+     * the given transport to the endpoints of the given environment. The
+     * transport is responsible for the authentication of the requests.
+     *
+     * @param transport the transport to send the requests with
+     * @param environment the environment to use, any of the enum values in the
+     * {@link triageapi.model.TriageEnvironment} enum.
+     */
+    public TriageApi(TriageTransport transport, TriageEnvironment environment) {
+        this(transport, getApiBase(environment));
+    }
+
+    /**
+     * Create an instance of the TriageApi class that sends its requests via
+     * the given transport to the given base URL, such as a local test server.
+     * The list of supported families is
+     * obtained from its default location.
+     *
+     * @param transport the transport to send the requests with
+     * @param apiBase the base URL of the API, such as
+     * <em>https://api.tria.ge/v0/</em>
+     */
+    public TriageApi(TriageTransport transport, String apiBase) {
+        this(transport, apiBase, DEFAULT_FAMILIES_URL);
+    }
+
+    /**
+     * Create an instance of the TriageApi class that sends its requests via
+     * the given transport to the given base URL, and which obtains the list of
+     * supported families from the given URL
+     *
+     * @param transport the transport to send the requests with
+     * @param apiBase the base URL of the API, such as
+     * <em>https://api.tria.ge/v0/</em>
+     * @param familiesUrl the URL of the list of supported families
+     */
+    public TriageApi(TriageTransport transport, String apiBase, String familiesUrl) {
+        //The base URL has to end with a forward slash, as the endpoints are appended to it
+        this.apiBase = apiBase.endsWith("/") ? apiBase : apiBase + "/";
+        this.familiesUrl = familiesUrl;
+        this.connector = transport;
+        //The parser only has to be initialised once, which is why it is done in the constructor
+        this.parser = new JsonParser();
+        //The kernel log names are cached per sample, with a bounded size
+        this.kernelLogNames = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > KERNEL_LOG_NAME_CACHE_SIZE;
+            }
+        });
+        //Concurrent identical requests are only coalesced once enabled
+        this.coalescer = new RequestCoalescer();
+        this.requestCoalescing = false;
+        this.downloader = new ResumableDownloader(transport);
+    }
+
+    /**
+     * Gets the base URL of the API of the given environment
+     *
+     * @param environment the environment to get the base URL of
+     * @return the base URL of the given environment
+     */
+    private static String getApiBase(TriageEnvironment environment) {
+        //The base of URL differs between the public and private cloud
         switch (environment) {
             case PUBLIC:
-                this.apiBase = "https://api.tria.ge/v0/";
-                break;
+                return "https://api.tria.ge/v0/";
             case PRIVATE:
-                this.apiBase = "https://private.tria.ge/api/v0/";
-                break;
+                return "https://private.tria.ge/api/v0/";
             case RECORDED_FUTURE:
-                this.apiBase = "https://sandbox.recordedfuture.com/api/v0/";
-                break;
+                return "https://sandbox.recordedfuture.com/api/v0/";
             case RECORDED_FUTURE_US:
-                this.apiBase = "https://us-sandbox.recordedfuture.com/api/v0";
-                break;
+                return "https://us-sandbox.recordedfuture.com/api/v0";
             default:
-                this.apiBase = "https://api.tria.ge/v0/";
+                return "https://api.tria.ge/v0/";
         }
+    }
 
-        //The connector needs the API key, as it is needed in a header in each request
-        this.connector = new TriageConnector(key);
-        //The parser only has to be initialised once, which is why it is done in the constructor
-        this.parser = new JsonParser();
+    /**
+     * Gets the transport via which this instance sends its requests, which can
+     * be used to configure it, such as the keys of a
+     * <code>KeyPoolTransport</code>
+     *
+     * @return the transport of this instance
+     */
+    public TriageTransport getTransport() {
+        return connector;
+    }
+
+    /**
+     * Gets the request metrics of this instance, grouped per endpoint template
+     * (such as <em>samples/{id}/{task}/report_triage.json</em>). The metrics
+     * can be read in-process, or can be exported in the Prometheus text
+     * format.
+     *
+     * @return the request metrics of this instance
+     */
+    public TriageMetrics getMetrics() {
+        return connector.getMetrics();
+    }
+
+    /**
+     * Sets the timeouts of the given kind of operation, which apply to all
+     * requests that start afterwards. By default, metadata requests may take
+     * up to 2 minutes, downloads up to an hour, and event streams up to 30
+     * minutes. Individual calls can be cancelled with a
+     * {@link triageapi.network.CancellationToken}.
+     *
+     * @param operation the kind of operation
+     * @param timeouts the timeouts of the operation
+     */
+    public void setTimeouts(TriageOperation operation, TriageTimeouts timeouts) {
+        connector.setTimeouts(operation, timeouts);
+    }
+
+    /**
+     * Gets the downloader that is used to download samples, network captures,
+     * and dumped sections into files. It can be used to configure the amount
+     * of attempts, and whether large resources are downloaded as several
+     * ranges at once.
+     *
+     * @return the downloader of this instance
+     */
+    public ResumableDownloader getDownloader() {
+        return downloader;
+    }
+
+    /**
+     * Adds a listener that observes every request that is made with this
+     * instance, such as to attach tracing spans or to measure the time that is
+     * spent waiting for a connection separately from the server's response
+     * time
+     *
+     * @param listener the listener to add
+     */
+    public void addRequestListener(TriageRequestListener listener) {
+        connector.addRequestListener(listener);
+    }
+
+    /**
+     * Removes the given request listener, if it was added
+     *
+     * @param listener the listener to remove
+     */
+    public void removeRequestListener(TriageRequestListener listener) {
+        connector.removeRequestListener(listener);
+    }
+
+    /**
+     * Closes the transport of this instance, which releases its connections.
+     * Requests that are made afterwards fail. Note that a transport that was
+     * passed to the constructor is closed as well.
+     *
+     * @throws IOException if the transport cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        connector.close();
+    }
+
+    /**
+     * Enables or disables the coalescing of concurrent identical requests.
+     * It is disabled by default. When enabled, concurrent calls to
+     * <code>getTriageReport</code>, <code>getTriageOverview</code>,
+     * <code>getStaticReport</code>, and <code>getSample</code> for the same
+     * sample (and task) share a single in-flight request. All callers then
+     * receive the same parsed object, which should therefore not be modified.
+     * Each caller observes its own cancellation token: a waiting caller that
+     * is cancelled stops waiting, and if the caller that performs the request
+     * is cancelled, a waiting caller performs it instead. Results are not
+     * cached after the request completes.
+     *
+     * @param requestCoalescing true to coalesce concurrent identical requests,
+     * false to perform a request for each call
+     */
+    public void setRequestCoalescing(boolean requestCoalescing) {
+        this.requestCoalescing = requestCoalescing;
+    }
+
+    /**
+     * Performs the given request, or shares the result of the in-flight
+     * request for the same URL if request coalescing is enabled
+     *
+     * @param <T> the type of the result
+     * @param url the URL of the request, which identifies identical requests
+     * @param request the request to perform
+     * @return the result of the request
+     * @throws IOException if the request fails
+     */
+    private <T> T coalesce(String url, RequestCoalescer.Request<T> request) throws IOException {
+        if (requestCoalescing == false) {
+            return request.execute();
+        }
+        return coalescer.execute(url, request);
     }
 
     /**
@@ -186,33 +431,6 @@ public class TriageApi {
         }
     }
 
-    /**
-     * A private function that ets the yyyy-mm-dd hh:mm format string from the
-     * given input
-     *
-     * @param input the input to scan
-     * @return the found date time format if found, or an empty string if no
-     * match is found
-     */
-    private String formatDateTimeString(String input) {
-        Pattern pattern = Pattern.compile("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}");
-        Matcher matcher = pattern.matcher(input);
-
-        String match = null;
-
-        while (matcher.find()) {
-            match = matcher.group(0);
-            break;
-        }
-
-        if (match != null) {
-            return match + "Z";
-        } else {
-            return "";
-        }
-
-    }
-
     /**
      * A private function that returns a boxed byte array, based on the given
      * native byte array. A boxed array is required because native types cannot
@@ -246,8 +464,13 @@ public class TriageApi {
      * @throws IOException if the HTTP request fails
      */
     public TriageReport getTriageReport(String sampleId, String taskId) throws IOException {
-        String json = new String(connector.get(getUrl("samples/" + sampleId + "/" + taskId + "/report_triage.json")));
-        return parser.parseTriageReport(json, taskId);
+        String url = getUrl("samples/" + sampleId + "/" + taskId + "/report_triage.json");
+        return coalesce(url, () -> {
+            //The report is parsed while it is being received
+            TriageReport report = connector.get(url, (input) -> parser.parseTriageReport(input, taskId));
+            cacheKernelLogName(sampleId, report.getAnalysis().getPlatform());
+            return report;
+        });
     }
 
     /**
@@ -261,8 +484,7 @@ public class TriageApi {
      */
     public StaticReport getStaticReport(String sampleId) throws IOException {
         String url = getUrl("samples/" + sampleId + "/reports/static");
-        String json = new String(connector.get(url));
-        return parser.parseStaticReport(json);
+        return coalesce(url, () -> connector.get(url, parser::parseStaticReport));
     }
 
     /**
@@ -276,8 +498,47 @@ public class TriageApi {
      */
     public Sample getSample(String sampleId) throws IOException {
         String url = getUrl("samples/" + sampleId);
-        String json = new String(connector.get(url));
-        return parser.parseSample(json);
+        return coalesce(url, () -> connector.get(url, parser::parseSample));
+    }
+
+    /**
+     * Downloads the raw malware sample from Triage, based on the given sample
+     * ID, directly into the given file. The sample is written while it is
+     * being received, meaning it is never kept in memory as a whole. A failed
+     * download is resumed from the last received byte. Any existing file at
+     * the given location is overwritten once the download is complete.
+     *
+     * @param sampleId the sample ID that Triage gave it when the file was
+     * uploaded
+     * @param destination the file to write the sample to
+     * @return the size of the sample in bytes
+     * @throws IOException if the HTTP request fails, or if the file cannot be
+     * written
+     */
+    public long downloadSample(String sampleId, File destination) throws IOException {
+        String url = getUrl("samples/" + sampleId + "/sample");
+        return downloader.download(url, destination);
+    }
+
+    /**
+     * Downloads the raw malware sample from Triage, based on the given
+     * TargetDesc, directly into the given file. The size of the downloaded
+     * sample is checked against the size in the TargetDesc, and large samples
+     * can be downloaded as several ranges at once, as is described in
+     * {@link #getDownloader()}.
+     *
+     * @param targetDesc the TargetDesc that contains the ID and size of the
+     * sample that should be downloaded
+     * @param destination the file to write the sample to
+     * @return the size of the sample in bytes
+     * @throws IOException if the HTTP request fails, if the size of the
+     * sample does not match the TargetDesc, or if the file cannot be written
+     */
+    public long downloadSample(TargetDesc targetDesc, File destination) throws IOException {
+        String url = getUrl("samples/" + targetDesc.getId() + "/sample");
+        //A size of zero means that the size is not part of the TargetDesc
+        long expectedSize = targetDesc.getSize() > 0 ? targetDesc.getSize() : -1;
+        return downloader.download(url, destination, expectedSize);
     }
 
     /**
@@ -673,7 +934,11 @@ public class TriageApi {
      * wait until the sample is complete. Please refer to
      * <code>getSampleEvents</code> and
      * <code>awaitSampleAnalysisCompletion</code> for functions that wait until
-     * the sample analysis has finished.
+     * the sample analysis has finished.<br>
+     * <br>
+     * Each sample is requested one after the other. To keep track of the
+     * statuses of a large amount of samples over time, please refer to
+     * {@link triageapi.status.SampleStatusTracker}.
      *
      * @param sampleIds the sample IDs to check
      * @param suppressExceptions true to ignore exceptions, false to throw any
@@ -682,16 +947,20 @@ public class TriageApi {
      * of each key is that status of that sample on the moment it was requested
      * @throws IOException if the HTTP request fails
      */
+    @SuppressWarnings("try")
     public Map<String, String> getSampleStatuses(List<String> sampleIds, boolean suppressExceptions) throws IOException {
         Map<String, String> mapping = new HashMap<>();
 
-        for (String sampleId : sampleIds) {
-            try {
-                String status = getSampleStatus(sampleId);
-                mapping.put(sampleId, status);
-            } catch (IOException ex) {
-                if (suppressExceptions == false) {
-                    throw ex;
+        //The statuses are requested in bulk, which yields to interactive requests if the requests are scheduled
+        try (RequestPriority.Scope scope = RequestPriority.BULK.enter()) {
+            for (String sampleId : sampleIds) {
+                try {
+                    String status = getSampleStatus(sampleId);
+                    mapping.put(sampleId, status);
+                } catch (IOException ex) {
+                    if (suppressExceptions == false) {
+                        throw ex;
+                    }
                 }
             }
         }
@@ -754,8 +1023,11 @@ public class TriageApi {
     /**
      * The kernel monitor output as a string (which is the raw format) based on
      * the given sample ID and task ID. This function determines the platform
-     * based on the tags that are included in the static analysis report, and
-     * will subsequently fetch the matching kernel monitoring output.
+     * based on the platform that was encountered in a previously fetched
+     * report or overview of the same sample. If the platform is not known yet,
+     * it is determined based on the tags that are included in the static
+     * analysis report. The matching kernel monitoring output is fetched
+     * afterwards.
      *
      * @param sampleId the sample ID that Triage gave it when the file was
      * uploaded
@@ -766,23 +1038,195 @@ public class TriageApi {
      * @throws IOException if the HTTP request fails
      */
     public String getKernelMonitorOutput(String sampleId, String taskId) throws IOException {
+        String url = getUrl("samples/" + sampleId + "/" + taskId + "/logs/" + getKernelLogName(sampleId));
+        String json = new String(connector.get(url));
+        return json;
+    }
+
+    /**
+     * Reads the kernel monitor output of the given sample ID and task ID line
+     * by line, and passes each event that matches the given types to the
+     * listener while the output is being received. As such, the memory usage
+     * does not depend on the size of the output. The platform is determined in
+     * the same way as <code>getKernelMonitorOutput</code> does.
+     *
+     * @param sampleId the sample ID that Triage gave it when the file was
+     * uploaded
+     * @param taskId the task ID within the sample, this is often
+     * <em>behavioral1</em> and <em>behavioral2</em> in the default profile
+     * @param types the event types to pass to the listener, or null to pass
+     * all events
+     * @param listener the listener that receives the events
+     * @return the amount of events that were passed to the listener
+     * @throws IOException if the HTTP request fails
+     */
+    public long streamKernelMonitorOutput(String sampleId, String taskId, Set<KernelEventType> types, KernelEventListener listener) throws IOException {
+        return streamKernelLog(sampleId, taskId, getKernelLogName(sampleId), types, listener);
+    }
+
+    /**
+     * Reads the Windows kernel monitor output of the given sample ID and task
+     * ID line by line, and passes each event that matches the given types to
+     * the listener while the output is being received.
+     *
+     * @param sampleId the sample ID that Triage gave it when the file was
+     * uploaded
+     * @param taskId the task ID within the sample, this is often
+     * <em>behavioral1</em> and <em>behavioral2</em> in the default profile
+     * @param types the event types to pass to the listener, or null to pass
+     * all events
+     * @param listener the listener that receives the events
+     * @return the amount of events that were passed to the listener
+     * @throws IOException if the HTTP request fails
+     */
+    public long streamOneMonLog(String sampleId, String taskId, Set<KernelEventType> types, KernelEventListener listener) throws IOException {
+        return streamKernelLog(sampleId, taskId, "onemon.json", types, listener);
+    }
+
+    /**
+     * Reads the Linux kernel monitor output of the given sample ID and task ID
+     * line by line, and passes each event that matches the given types to the
+     * listener while the output is being received.
+     *
+     * @param sampleId the sample ID that Triage gave it when the file was
+     * uploaded
+     * @param taskId the task ID within the sample, this is often
+     * <em>behavioral1</em> and <em>behavioral2</em> in the default profile
+     * @param types the event types to pass to the listener, or null to pass
+     * all events
+     * @param listener the listener that receives the events
+     * @return the amount of events that were passed to the listener
+     * @throws IOException if the HTTP request fails
+     */
+    public long streamStahpLog(String sampleId, String taskId, Set<KernelEventType> types, KernelEventListener listener) throws IOException {
+        return streamKernelLog(sampleId, taskId, "stahp.json", types, listener);
+    }
+
+    /**
+     * A private function that streams the given kernel monitor log to the
+     * given listener
+     *
+     * @param sampleId the sample's ID
+     * @param taskId the task's ID
+     * @param logName the name of the log, either <em>onemon.json</em> or
+     * <em>stahp.json</em>
+     * @param types the event types to pass to the listener, or null to pass
+     * all events
+     * @param listener the listener that receives the events
+     * @return the amount of events that were passed to the listener
+     * @throws IOException if the HTTP request fails
+     */
+    private long streamKernelLog(String sampleId, String taskId, String logName, Set<KernelEventType> types, KernelEventListener listener) throws IOException {
+        String url = getUrl("samples/" + sampleId + "/" + taskId + "/logs/" + logName);
+        return connector.get(url, (input) -> parser.parseKernelLog(input, types, listener));
+    }
+
+    /**
+     * The kernel monitor output as a string (which is the raw format) based on
+     * the given report. The platform is taken from the report's analysis,
+     * meaning only a single request is made.
+     *
+     * @param report the report of the task to get the kernel monitor output of
+     * @return the raw kernel monitor output of Triage's dynamic analysis, given
+     * as string
+     * @throws IOException if the HTTP request fails
+     */
+    public String getKernelMonitorOutput(TriageReport report) throws IOException {
+        String sampleId = report.getSample().getId();
+        cacheKernelLogName(sampleId, report.getAnalysis().getPlatform());
+        return getKernelMonitorOutput(sampleId, report.getTaskId());
+    }
+
+    /**
+     * Reads the kernel monitor output of the given report line by line, and
+     * passes each event that matches the given types to the listener while the
+     * output is being received. The platform is taken from the report's
+     * analysis, meaning only a single request is made.
+     *
+     * @param report the report of the task to get the kernel monitor output of
+     * @param types the event types to pass to the listener, or null to pass
+     * all events
+     * @param listener the listener that receives the events
+     * @return the amount of events that were passed to the listener
+     * @throws IOException if the HTTP request fails
+     */
+    public long streamKernelMonitorOutput(TriageReport report, Set<KernelEventType> types, KernelEventListener listener) throws IOException {
+        String sampleId = report.getSample().getId();
+        cacheKernelLogName(sampleId, report.getAnalysis().getPlatform());
+        return streamKernelMonitorOutput(sampleId, report.getTaskId(), types, listener);
+    }
+
+    /**
+     * A private function that determines the name of the kernel monitor log of
+     * the given sample. The cached name is used if it is present. If not, the
+     * name is based on the tags that are included in the static analysis
+     * report, after which it is cached.
+     *
+     * @param sampleId the sample's ID
+     * @return <em>onemon.json</em> for Windows samples, or <em>stahp.json</em>
+     * for Linux samples
+     * @throws IOException if the HTTP request fails, or if the platform is not
+     * supported
+     */
+    private String getKernelLogName(String sampleId) throws IOException {
+        String logName = kernelLogNames.get(sampleId);
+        if (logName != null) {
+            return logName;
+        }
+
         StaticReport staticReport = getStaticReport(sampleId);
-        String platform = "";
         for (String tag : staticReport.getFiles()[0].getTags()) {
-            platform += tag.toLowerCase() + ";";
+            logName = toKernelLogName(tag);
+            if (logName != null) {
+                kernelLogNames.put(sampleId, logName);
+                return logName;
+            }
         }
+        throw new IOException("Unable to find a supported platform for this sample!");
+    }
 
-        if (platform.contains("windows")) {
-            return getOneMonLog(sampleId, taskId);
-        } else if (platform.contains("linux")) {
-            return getStahpLog(sampleId, taskId);
+    /**
+     * A private function that caches the kernel monitor log name of the given
+     * sample, if the given platform is supported
+     *
+     * @param sampleId the sample's ID
+     * @param platform the platform of one of the sample's tasks
+     */
+    private void cacheKernelLogName(String sampleId, String platform) {
+        String logName = toKernelLogName(platform);
+        if (logName != null && sampleId != null && sampleId.isEmpty() == false) {
+            kernelLogNames.put(sampleId, logName);
         }
-        throw new IOException("Unable to find a supported platform for this sample!");
+    }
+
+    /**
+     * A private function that converts a platform (such as
+     * <em>windows10-2004_x64</em> or <em>ubuntu-18.04-amd64</em>) or a
+     * platform tag (such as <em>windows</em> or <em>linux</em>) into the
+     * name of the matching kernel monitor log
+     *
+     * @param platform the platform to convert
+     * @return <em>onemon.json</em> for Windows, <em>stahp.json</em> for Linux,
+     * or null if the platform is not supported
+     */
+    private String toKernelLogName(String platform) {
+        if (platform == null) {
+            return null;
+        }
+        String lowerPlatform = platform.toLowerCase();
+        if (lowerPlatform.contains("windows")) {
+            return "onemon.json";
+        } else if (lowerPlatform.contains("linux") || lowerPlatform.contains("ubuntu") || lowerPlatform.contains("debian") || lowerPlatform.contains("centos")) {
+            return "stahp.json";
+        }
+        return null;
     }
 
     /**
      * The Windows kernel monitor output as a string (which is the raw format)
-     * based on the given sample ID and task ID.
+     * based on the given sample ID and task ID. The complete output is kept in
+     * memory, to read large outputs event by event, please refer to
+     * <code>streamOneMonLog</code>.
      *
      * @param sampleId the sample ID that Triage gave it when the file was
      * uploaded
@@ -800,7 +1244,9 @@ public class TriageApi {
 
     /**
      * The Linux kernel monitor output as a string (which is the raw format)
-     * based on the given sample ID and task ID.
+     * based on the given sample ID and task ID. The complete output is kept in
+     * memory, to read large outputs event by event, please refer to
+     * <code>streamStahpLog</code>.
      *
      * @param sampleId the sample ID that Triage gave it when the file was
      * uploaded
@@ -848,6 +1294,50 @@ public class TriageApi {
         return connector.get(url);
     }
 
+    /**
+     * Downloads the raw Pcap file based on the given sample ID and task ID
+     * directly into the given file. The capture is written while it is being
+     * received, meaning it is never kept in memory as a whole. A failed
+     * download is resumed from the last received byte, as is described in
+     * {@link #getDownloader()}. The flows within the capture can be indexed
+     * with {@link triageapi.pcap.PcapFlowIndexer}.
+     *
+     * @param sampleId the sample ID that Triage gave it when the file was
+     * uploaded
+     * @param taskId the task ID within the sample, this is often
+     * <em>behavioral1</em> and <em>behavioral2</em> in the default profile
+     * @param destination the file to write the capture to
+     * @return the size of the capture in bytes
+     * @throws IOException if the HTTP request fails, or if the file cannot be
+     * written
+     */
+    public long getPcap(String sampleId, String taskId, File destination) throws IOException {
+        String url = getUrl("samples/" + sampleId + "/" + taskId + "/dump.pcap");
+        return downloader.download(url, destination);
+    }
+
+    /**
+     * Downloads the raw PcapNg file based on the given sample ID and task ID
+     * directly into the given file. The capture is written while it is being
+     * received, meaning it is never kept in memory as a whole. A failed
+     * download is resumed from the last received byte, as is described in
+     * {@link #getDownloader()}. The flows within the capture can be indexed
+     * with {@link triageapi.pcap.PcapFlowIndexer}.
+     *
+     * @param sampleId the sample ID that Triage gave it when the file was
+     * uploaded
+     * @param taskId the task ID within the sample, this is often
+     * <em>behavioral1</em> and <em>behavioral2</em> in the default profile
+     * @param destination the file to write the capture to
+     * @return the size of the capture in bytes
+     * @throws IOException if the HTTP request fails, or if the file cannot be
+     * written
+     */
+    public long getPcapNg(String sampleId, String taskId, File destination) throws IOException {
+        String url = getUrl("samples/" + sampleId + "/" + taskId + "/dump.pcapng");
+        return downloader.download(url, destination);
+    }
+
     /**
      * Provides the given URL to the Triage sandbox.
      *
@@ -926,7 +1416,7 @@ public class TriageApi {
      * @throws IOException if the HTTP request fails
      */
     public List<String> getSupportedFamilies() throws IOException {
-        String url = "https://hatching.dev/family.json";
+        String url = familiesUrl;
         JSONObject json = new JSONObject(new String(connector.get(url)));
         JSONArray jsonArray = json.optJSONArray("all");
         return parser.parseList(jsonArray);
@@ -940,7 +1430,7 @@ public class TriageApi {
      * @throws IOException if the HTTP request fails
      */
     public List<String> getSupportedFamillyExtractors() throws IOException {
-        String url = "https://hatching.dev/family.json";
+        String url = familiesUrl;
         JSONObject json = new JSONObject(new String(connector.get(url)));
         JSONArray jsonArray = json.optJSONArray("extractor");
         return parser.parseList(jsonArray);
@@ -954,7 +1444,7 @@ public class TriageApi {
      * @throws IOException if the HTTP request fails
      */
     public List<String> getSupportedRansomwareFamilies() throws IOException {
-        String url = "https://hatching.dev/family.json";
+        String url = familiesUrl;
         JSONObject json = new JSONObject(new String(connector.get(url)));
         JSONArray jsonArray = json.optJSONArray("ransomware");
         return parser.parseList(jsonArray);
@@ -980,8 +1470,7 @@ public class TriageApi {
      */
     public SearchResult search(String query) throws IOException {
         String url = getUrl("search?query=" + encode(query));
-        String json = new String(connector.get(url));
-        return parser.parseSearchResult(json);
+        return connector.get(url, parser::parseSearchResult);
     }
 
     /**
@@ -1012,8 +1501,7 @@ public class TriageApi {
             limit = 200;
         }
         String url = getUrl("search?query=" + encode(query) + "&limit=" + limit);
-        String json = new String(connector.get(url));
-        return parser.parseSearchResult(json);
+        return connector.get(url, parser::parseSearchResult);
     }
 
     /**
@@ -1040,8 +1528,7 @@ public class TriageApi {
      */
     public SearchResult search(String query, String offset) throws IOException {
         String url = getUrl("search?query=" + encode(query) + "&offset=" + offset);
-        String json = new String(connector.get(url));
-        return parser.parseSearchResult(json);
+        return connector.get(url, parser::parseSearchResult);
     }
 
     /**
@@ -1075,8 +1562,7 @@ public class TriageApi {
             limit = 200;
         }
         String url = getUrl("search?query=" + encode(query) + "&offset=" + encode(offset) + "&limit=" + limit);
-        String json = new String(connector.get(url));
-        return parser.parseSearchResult(json);
+        return connector.get(url, parser::parseSearchResult);
     }
 
     /**
@@ -1113,51 +1599,89 @@ public class TriageApi {
      * later than the system's current date
      */
     public List<SearchResultEntry> search(String query, LocalDateTime earliest, LocalDateTime latest) throws IOException {
-        earliest = setToUtc(earliest);
-        latest = setToUtc(latest);
-
         List<SearchResultEntry> searchResults = new ArrayList<>();
+        search(query, earliest, latest, searchResults::add);
+        return searchResults;
+    }
 
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm'Z'");
+    /**
+     * Searches for the given query in the given cloud (either public or
+     * private), and passes each sample that matches the given query, and that
+     * was completed on Triage between the two given moments, to the given
+     * handler. The results of a page are handled before the next page is
+     * requested, meaning that the results are not kept in memory, and that a
+     * slow handler slows down the search. The pages are requested with the
+     * bulk priority, whereas the handler runs with the priority of the
+     * caller.<br>
+     * <br>
+     * The moments are interpreted as is described in
+     * {@link #search(java.lang.String, java.time.LocalDateTime, java.time.LocalDateTime)}.
+     *
+     * @param query the query to search for
+     * @param earliest the earliest moment in time from when samples should be
+     * included, if they match the given query
+     * @param latest the latest moment in time from when samples should be
+     * included, if they match the given query
+     * @param handler the handler of each search result
+     * @throws IOException if the HTTP request fails, if the handler fails, or
+     * if the earliest date is later than the system's current date
+     */
+    @SuppressWarnings("try")
+    public void search(String query, LocalDateTime earliest, LocalDateTime latest, SearchResultHandler handler) throws IOException {
+        //The bounds are compared as milliseconds since the epoch, which is time zone independent
+        long earliestMillis = earliest.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long latestMillis = latest.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
 
-        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm'Z'");
 
-        if (earliest.isAfter(now)) {
+        if (earliestMillis > System.currentTimeMillis()) {
             throw new IOException("The earliest date is later than the current system time");
         }
 
-        String nextOffset = latest.format(formatter);;
+        String nextOffset = setToUtc(latest).format(formatter);
         SearchResult result = null;
 
         while (true) {
-            result = search(query, nextOffset, 200);
+            //The pages are requested in bulk, which yields to interactive requests if the requests are scheduled
+            try (RequestPriority.Scope scope = RequestPriority.BULK.enter()) {
+                result = search(query, nextOffset, 200);
+            }
             nextOffset = result.getNextOffset();
 
             if (result.isEmpty() || result.getSearchResults().isEmpty()) {
                 break;
             }
 
+            long firstSampleCompletion = Long.MIN_VALUE;
+            long lastSampleCompletion = Long.MIN_VALUE;
+
             for (SearchResultEntry searchResult : result.getSearchResults()) {
-                if (searchResult == null || searchResult.isEmpty() || searchResult.getCompleted().isBlank()) {
+                if (searchResult == null || searchResult.isEmpty()) {
+                    continue;
+                }
+                long sampleDate = searchResult.getCompletedEpochMillis();
+                if (sampleDate == Long.MIN_VALUE) {
                     continue;
                 }
-                LocalDateTime sampleDate = LocalDateTime.parse(formatDateTimeString(searchResult.getCompleted()), formatter);
-                sampleDate = setToUtc(sampleDate);
-                if (sampleDate.isAfter(earliest) && sampleDate.isBefore(latest)) {
-                    searchResults.add(searchResult);
+                if (firstSampleCompletion == Long.MIN_VALUE) {
+                    firstSampleCompletion = sampleDate;
                 }
-            }
+                lastSampleCompletion = sampleDate;
 
-            LocalDateTime firstSampleCompletion = LocalDateTime.parse(formatDateTimeString(result.getSearchResults().get(0).getCompleted()), formatter);
-            firstSampleCompletion = setToUtc(firstSampleCompletion);
-            LocalDateTime lastSampleCompletion = LocalDateTime.parse(formatDateTimeString(result.getSearchResults().get(result.getSearchResults().size() - 1).getCompleted()), formatter);
-            lastSampleCompletion = setToUtc(lastSampleCompletion);
+                if (sampleDate > earliestMillis && sampleDate < latestMillis) {
+                    handler.handle(searchResult);
+                }
+            }
 
-            if (firstSampleCompletion.isBefore(earliest) || firstSampleCompletion.isAfter(latest) || lastSampleCompletion.isBefore(earliest) || lastSampleCompletion.isAfter(latest)) {
+            //Stop once the page leaves the requested window, or if there are no more pages
+            if (nextOffset == null || nextOffset.isEmpty()) {
+                break;
+            }
+            if (firstSampleCompletion != Long.MIN_VALUE
+                    && (firstSampleCompletion < earliestMillis || firstSampleCompletion > latestMillis || lastSampleCompletion < earliestMillis || lastSampleCompletion > latestMillis)) {
                 break;
             }
         }
-        return searchResults;
     }
 
     /**
@@ -1396,7 +1920,30 @@ public class TriageApi {
     }
 
     /**
-     * Gets all dumped sections for the given report
+     * Downloads a dumped section, based on a given sample ID, task ID, and the
+     * name of the dumped file, directly into the given file. The section is
+     * written while it is being received, meaning it is never kept in memory as
+     * a whole. A failed download is resumed from the last received byte. Any
+     * existing file at the given location is overwritten once the download is
+     * complete.
+     *
+     * @param sampleId the sample's ID
+     * @param taskId the task's ID
+     * @param dumpName the name of the dumped file, as present in Dump.getName()
+     * @param destination the file to write the section to
+     * @return the size of the downloaded section in bytes
+     * @throws IOException if the HTTP request fails, or if the file cannot be
+     * written
+     */
+    public long getDumpedSection(String sampleId, String taskId, String dumpName, File destination) throws IOException {
+        String url = getUrl("samples/" + sampleId + "/" + taskId + "/" + dumpName);
+        return downloader.download(url, destination);
+    }
+
+    /**
+     * Gets all dumped sections for the given report. Note that all sections are
+     * kept in memory. To store the sections on disk instead, please refer to
+     * {@link triageapi.export.DumpExporter}.
      *
      * @param report the report to download all dumped sections from
      * @return a mapping where the key is the dumped section's name (as present
@@ -1450,8 +1997,14 @@ public class TriageApi {
      * @throws IOException if the HTTP request fails
      */
     public TriageOverview getTriageOverview(String sampleId) throws IOException {
-        String json = new String(connector.get(getUrl("samples/" + sampleId + "/overview.json")));
-        TriageOverview triageOverview = parser.parseTriageOverview(json);
-        return triageOverview;
+        String url = getUrl("samples/" + sampleId + "/overview.json");
+        return coalesce(url, () -> {
+            //The overview is parsed while it is being received
+            TriageOverview triageOverview = connector.get(url, parser::parseTriageOverview);
+            for (TaskSummary task : triageOverview.getTasks()) {
+                cacheKernelLogName(sampleId, task.getPlatform());
+            }
+            return triageOverview;
+        });
     }
 }
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import triageapi.TriageApi;
+import triageapi.model.Dump;
+import triageapi.model.TriageReport;
+
+/**
+ * This class exports the dumped sections of one or more Triage reports to
+ * disk. Unlike <code>TriageApi.getDumpedSections</code>, the sections are
+ * downloaded in parallel and are written directly to disk, meaning they are
+ * never kept in memory as a whole.<br>
+ * <br>
+ * Each report is exported into its own directory, which is structured as
+ * <code>[directory]/[sample ID]/[task ID]/</code>. Each dumped section is
+ * stored under its name, as present in <code>Dump.getName()</code>. Sections
+ * that are already present are not downloaded again, which allows an
+ * interrupted export to be resumed. Sections are first downloaded into a file
+ * with the <em>.part</em> extension, which is only renamed once the download
+ * is complete. A section that was partially downloaded is resumed from its
+ * last received byte.<br>
+ * <br>
+ * Once all sections of a report have been processed, a
+ * <code>manifest.json</code> file is written to the report's directory, which
+ * contains the metadata of each dumped section, together with its file name,
+ * size, and export status.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class DumpExporter {
+
+    /**
+     * The name of the manifest file in each report's directory
+     */
+    public static final String MANIFEST_NAME = "manifest.json";
+
+    /**
+     * The API instance that is used to download the dumped sections
+     */
+    private final TriageApi api;
+
+    /**
+     * The maximum amount of sections that are downloaded at the same time
+     */
+    private final int concurrency;
+
+    /**
+     * Creates an exporter that uses the given API instance to download dumped
+     * sections
+     *
+     * @param api the API instance to download the sections with
+     * @param concurrency the maximum amount of sections that are downloaded at
+     * the same time, with a minimum of 1
+     */
+    public DumpExporter(TriageApi api, int concurrency) {
+        this.api = api;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Exports all dumped sections of the given report into the given
+     * directory. One or more sections might be missing from the returned
+     * mapping if exceptions are suppressed. Failed sections are listed in the
+     * manifest either way.
+     *
+     * @param report the report to export the dumped sections from
+     * @param directory the directory to create the report's directory in
+     * @param suppressExceptions true to ignore exceptions, false to throw the
+     * first encountered exception once all sections have been processed
+     * @return a mapping where the key is the dumped section's name (as present
+     * in <code>Dump.getName()</code>), and the value is the file that contains
+     * the section
+     * @throws IOException if the HTTP request fails, or if the section or the
+     * manifest cannot be written
+     */
+    public Map<String, File> export(TriageReport report, File directory, boolean suppressExceptions) throws IOException {
+        List<TriageReport> reports = new ArrayList<>();
+        reports.add(report);
+        return export(reports, directory, suppressExceptions).get(report);
+    }
+
+    /**
+     * Exports all dumped sections of the given reports into the given
+     * directory. The sections of all reports share the same concurrency limit.
+     * One or more sections might be missing from the returned mapping if
+     * exceptions are suppressed. Failed sections are listed in the manifest
+     * either way.
+     *
+     * @param reports the reports to export the dumped sections from
+     * @param directory the directory to create the reports' directories in
+     * @param suppressExceptions true to ignore exceptions, false to throw the
+     * first encountered exception once all sections have been processed
+     * @return a mapping with the given reports as keys, where each value is a
+     * mapping of the section names and the files that contain them
+     * @throws IOException if any of the HTTP requests fail, or if a section or
+     * a manifest cannot be written
+     */
+    public Map<TriageReport, Map<String, File>> export(List<TriageReport> reports, File directory, boolean suppressExceptions) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        Map<TriageReport, Map<Dump, Future<ExportedSection>>> pending = new LinkedHashMap<>();
+
+        try {
+            //Submit all sections of all reports, so they share the same thread pool
+            for (TriageReport report : reports) {
+                File taskDirectory = getTaskDirectory(report, directory);
+                Map<Dump, Future<ExportedSection>> futures = new LinkedHashMap<>();
+                for (Dump dump : report.getDumped()) {
+                    futures.put(dump, executor.submit(() -> exportSection(report, dump, taskDirectory)));
+                }
+                pending.put(report, futures);
+            }
+
+            IOException firstException = null;
+            Map<TriageReport, Map<String, File>> mapping = new HashMap<>();
+
+            //Collect the results and write the manifest per report
+            for (Map.Entry<TriageReport, Map<Dump, Future<ExportedSection>>> entry : pending.entrySet()) {
+                TriageReport report = entry.getKey();
+                File taskDirectory = getTaskDirectory(report, directory);
+                Map<String, File> files = new HashMap<>();
+                JSONArray manifestEntries = new JSONArray();
+
+                for (Map.Entry<Dump, Future<ExportedSection>> section : entry.getValue().entrySet()) {
+                    Dump dump = section.getKey();
+                    ExportedSection exported;
+                    try {
+                        exported = section.getValue().get();
+                    } catch (ExecutionException ex) {
+                        IOException cause = ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+                        if (firstException == null) {
+                            firstException = cause;
+                        }
+                        exported = new ExportedSection(null, -1, "failed", cause.getMessage());
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("The export of the dumped sections was interrupted!", ex);
+                    }
+
+                    if (exported.file != null) {
+                        files.put(dump.getName(), exported.file);
+                    }
+                    manifestEntries.put(getManifestEntry(dump, exported));
+                }
+
+                writeManifest(report, taskDirectory, manifestEntries);
+                mapping.put(report, files);
+            }
+
+            if (firstException != null && suppressExceptions == false) {
+                throw firstException;
+            }
+            return mapping;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the directory in which the sections of the given report are stored
+     *
+     * @param report the report to get the directory for
+     * @param directory the base directory of the export
+     * @return the directory of the given report's task
+     */
+    private File getTaskDirectory(TriageReport report, File directory) {
+        return new File(new File(directory, report.getSample().getId()), report.getTaskId());
+    }
+
+    /**
+     * Downloads a single dumped section into the given directory, unless it is
+     * already present
+     *
+     * @param report the report the section belongs to
+     * @param dump the section to download
+     * @param taskDirectory the directory of the report's task
+     * @return the exported section
+     * @throws IOException if the HTTP request fails, if the section's name
+     * refers to a location outside of the task directory, or if the section
+     * cannot be written
+     */
+    private ExportedSection exportSection(TriageReport report, Dump dump, File taskDirectory) throws IOException {
+        Path base = taskDirectory.toPath().toAbsolutePath().normalize();
+        Path target = base.resolve(dump.getName()).normalize();
+        if (target.startsWith(base) == false || target.equals(base)) {
+            throw new IOException("The name of the dumped section \"" + dump.getName() + "\" refers to a location outside of the task directory!");
+        }
+
+        //Skip sections that were exported before
+        if (Files.isRegularFile(target)) {
+            return new ExportedSection(target.toFile(), Files.size(target), "skipped", "");
+        }
+
+        Files.createDirectories(target.getParent());
+        //The section is written into a partial file, which is resumed if an earlier export was interrupted
+        long size = api.getDumpedSection(report.getSample().getId(), report.getTaskId(), dump.getName(), target.toFile());
+        return new ExportedSection(target.toFile(), size, "downloaded", "");
+    }
+
+    /**
+     * Creates the manifest entry for the given section
+     *
+     * @param dump the section's metadata
+     * @param exported the result of the section's export
+     * @return the manifest entry
+     */
+    private JSONObject getManifestEntry(Dump dump, ExportedSection exported) {
+        JSONObject entry = new JSONObject();
+        entry.put("name", dump.getName());
+        entry.put("kind", dump.getKind());
+        entry.put("path", dump.getPath());
+        entry.put("at", dump.getAt());
+        entry.put("pid", dump.getPid());
+        entry.put("procid", dump.getProcId());
+        entry.put("addr", dump.getAddr());
+        entry.put("length", dump.getLength());
+        entry.put("file", exported.file == null ? "" : exported.file.getAbsolutePath());
+        entry.put("size", exported.size);
+        entry.put("status", exported.status);
+        entry.put("error", exported.error);
+        return entry;
+    }
+
+    /**
+     * Writes the manifest of the given report into the task directory
+     *
+     * @param report the report the manifest belongs to
+     * @param taskDirectory the directory of the report's task
+     * @param entries the manifest entries of all sections of the report
+     * @throws IOException if the manifest cannot be written
+     */
+    private void writeManifest(TriageReport report, File taskDirectory, JSONArray entries) throws IOException {
+        JSONObject manifest = new JSONObject();
+        manifest.put("sample", report.getSample().getId());
+        manifest.put("task", report.getTaskId());
+        manifest.put("dumped", entries);
+
+        Files.createDirectories(taskDirectory.toPath());
+        Files.write(new File(taskDirectory, MANIFEST_NAME).toPath(), manifest.toString(4).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The result of the export of a single dumped section
+     */
+    private static class ExportedSection {
+
+        /**
+         * The file that contains the section, or null if the export failed
+         */
+        private final File file;
+
+        /**
+         * The size of the section in bytes, or -1 if the export failed
+         */
+        private final long size;
+
+        /**
+         * The status of the export, which is either <em>downloaded</em>,
+         * <em>skipped</em>, or <em>failed</em>
+         */
+        private final String status;
+
+        /**
+         * The error message if the export failed, or an empty string otherwise
+         */
+        private final String error;
+
+        /**
+         * Creates the result of an export
+         *
+         * @param file the file that contains the section
+         * @param size the size of the section in bytes
+         * @param status the status of the export
+         * @param error the error message, if any
+         */
+        private ExportedSection(File file, long size, String status, String error) {
+            this.file = file;
+            this.size = size;
+            this.status = status;
+            this.error = error == null ? "" : error;
+        }
+    }
+}
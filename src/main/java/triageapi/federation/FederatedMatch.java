@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.federation;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ArrayList;
+import triageapi.model.TriageEnvironment;
+
+/**
+ * This class contains a single deduplicated value of a federated query, along
+ * with the environments in which it was found. The value of each environment
+ * is kept, as the environments may describe the same sample differently, such
+ * as with a different score or different tags.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ * @param <T> the type of the value
+ */
+public class FederatedMatch<T> {
+
+    /**
+     * The key by which the values were deduplicated
+     */
+    private final String key;
+
+    /**
+     * The value of each environment in which it was found, in the order of
+     * the environments
+     */
+    private final Map<TriageEnvironment, T> values;
+
+    /**
+     * Creates a match with the given deduplication key
+     *
+     * @param key the key by which the values are deduplicated
+     */
+    FederatedMatch(String key) {
+        this.key = key;
+        this.values = new EnumMap<>(TriageEnvironment.class);
+    }
+
+    /**
+     * Adds the value that was found in the given environment
+     *
+     * @param environment the environment in which the value was found
+     * @param value the value
+     */
+    void add(TriageEnvironment environment, T value) {
+        values.putIfAbsent(environment, value);
+    }
+
+    /**
+     * Gets the key by which the values were deduplicated, which is the SHA-256
+     * hash of the sample if it is known. Otherwise, the key consists of the
+     * environment and the sample ID, separated by a colon, such as
+     * <em>PUBLIC:240101-abcdef1234</em>, as sample IDs are only unique within
+     * a single environment.
+     *
+     * @return the deduplication key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Gets the value of the first environment in which it was found
+     *
+     * @return the value
+     */
+    public T getValue() {
+        return values.values().iterator().next();
+    }
+
+    /**
+     * Gets the value of the given environment
+     *
+     * @param environment the environment to get the value of
+     * @return the value, or null if it was not found in the given environment
+     */
+    public T getValue(TriageEnvironment environment) {
+        return values.get(environment);
+    }
+
+    /**
+     * Gets the environments in which the value was found
+     *
+     * @return the environments
+     */
+    public List<TriageEnvironment> getEnvironments() {
+        return Collections.unmodifiableList(new ArrayList<>(values.keySet()));
+    }
+}
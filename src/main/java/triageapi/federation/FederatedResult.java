@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.federation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import triageapi.model.TriageEnvironment;
+
+/**
+ * This class contains the merged result of a federated query. The values of
+ * all environments that responded in time are deduplicated into matches. The
+ * environments that failed, or that did not respond in time, are listed along
+ * with their failure, in which case the result is partial.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ * @param <T> the type of the values
+ */
+public class FederatedResult<T> {
+
+    /**
+     * The matches, keyed by their deduplication key, in the order in which
+     * they were found
+     */
+    private final Map<String, FederatedMatch<T>> matches;
+
+    /**
+     * The failure of each environment that did not respond successfully
+     */
+    private final Map<TriageEnvironment, IOException> failures;
+
+    /**
+     * Creates an empty result
+     */
+    FederatedResult() {
+        this.matches = new LinkedHashMap<>();
+        this.failures = new EnumMap<>(TriageEnvironment.class);
+    }
+
+    /**
+     * Adds a value that was found in the given environment, which is merged
+     * into the match with the same key, if there is one
+     *
+     * @param environment the environment in which the value was found
+     * @param key the deduplication key of the value
+     * @param value the value
+     */
+    void add(TriageEnvironment environment, String key, T value) {
+        matches.computeIfAbsent(key, FederatedMatch::new).add(environment, value);
+    }
+
+    /**
+     * Adds the failure of the given environment
+     *
+     * @param environment the environment that failed
+     * @param failure the cause of the failure
+     */
+    void addFailure(TriageEnvironment environment, IOException failure) {
+        failures.put(environment, failure);
+    }
+
+    /**
+     * Gets the deduplicated matches of all environments that responded in
+     * time
+     *
+     * @return the matches, in the order in which they were found
+     */
+    public List<FederatedMatch<T>> getMatches() {
+        return Collections.unmodifiableList(new ArrayList<>(matches.values()));
+    }
+
+    /**
+     * Gets the deduplicated values of all environments that responded in
+     * time, where each value is taken from the first environment in which it
+     * was found
+     *
+     * @return the values
+     */
+    public List<T> getValues() {
+        List<T> values = new ArrayList<>();
+        for (FederatedMatch<T> match : matches.values()) {
+            values.add(match.getValue());
+        }
+        return values;
+    }
+
+    /**
+     * Gets the failure of each environment that failed or did not respond in
+     * time. An environment that did not respond in time failed with an
+     * <code>InterruptedIOException</code>.
+     *
+     * @return the failures, keyed by their environment
+     */
+    public Map<TriageEnvironment, IOException> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Checks if the result is partial, as at least one environment failed or
+     * did not respond in time
+     *
+     * @return true if the result is partial, false if all environments
+     * responded
+     */
+    public boolean isPartial() {
+        return failures.isEmpty() == false;
+    }
+}
@@ -0,0 +1,449 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.federation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import triageapi.TriageApi;
+import triageapi.model.OverviewSample;
+import triageapi.model.Sample;
+import triageapi.model.SearchResultEntry;
+import triageapi.model.TriageEnvironment;
+import triageapi.model.TriageOverview;
+import triageapi.network.CancellationToken;
+import triageapi.network.RequestPriority;
+import triageapi.network.TriageStatusException;
+
+/**
+ * This class queries several Triage environments at once, such as the public
+ * and the private cloud, for the same indicator. Each query is sent to all
+ * environments concurrently, and the responses are merged into a single
+ * <code>FederatedResult</code>, in which samples that were found in more than
+ * one environment are deduplicated by their SHA-256 hash if it is known.
+ * Sample IDs are assigned by each environment independently, so the same ID
+ * may refer to different samples in different environments. Values without a
+ * known hash are therefore never merged across environments, and are keyed by
+ * their environment and sample ID instead.<br>
+ * <br>
+ * An environment that does not respond within the timeout is cancelled, and
+ * the result contains the responses of the other environments, along with the
+ * failure of the slow environment. A sample that does not exist in an
+ * environment is not a failure. Only if all environments fail, the query
+ * fails.<br>
+ * <br>
+ * The priority scope and cancellation token of the calling thread apply to
+ * the requests to each environment.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class FederatedTriageApi implements Closeable {
+
+    /**
+     * The status code of a sample that does not exist in an environment
+     */
+    private static final int NOT_FOUND = 404;
+
+    /**
+     * The interval in which the cancellation token of the caller is checked
+     * while waiting for the environments, in milliseconds
+     */
+    private static final long CANCELLATION_INTERVAL = 50;
+
+    /**
+     * The threads that query the environments, which are daemons, as they
+     * only exist for the duration of a query
+     */
+    private static final ExecutorService QUERIES = Executors.newCachedThreadPool((runnable) -> {
+        Thread thread = new Thread(runnable, "triage-federation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The instance of each environment, in the order in which they are merged
+     */
+    private final Map<TriageEnvironment, TriageApi> apis;
+
+    /**
+     * The time an environment has to respond, in milliseconds
+     */
+    private volatile long timeout;
+
+    /**
+     * Creates a federated client that queries the given environments, and
+     * which waits up to 10 seconds for each query
+     *
+     * @param apis the instance of each environment to query
+     */
+    public FederatedTriageApi(Map<TriageEnvironment, TriageApi> apis) {
+        if (apis.isEmpty()) {
+            throw new IllegalArgumentException("At least one environment is required!");
+        }
+        this.apis = new LinkedHashMap<>(apis);
+        this.timeout = TimeUnit.SECONDS.toMillis(10);
+    }
+
+    /**
+     * Sets the time the environments have to respond to a query, after which
+     * the query returns the responses of the environments that did respond
+     *
+     * @param timeout the time the environments have to respond
+     * @param unit the unit of the timeout
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        this.timeout = unit.toMillis(timeout);
+    }
+
+    /**
+     * Gets the environments that are queried
+     *
+     * @return the environments
+     */
+    public List<TriageEnvironment> getEnvironments() {
+        return new ArrayList<>(apis.keySet());
+    }
+
+    /**
+     * Closes the instance of each environment, which releases their
+     * connections. If closing an instance fails, the remaining instances are
+     * still closed, after which the first failure is thrown.
+     *
+     * @throws IOException if an instance cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (TriageApi api : apis.values()) {
+            try {
+                api.close();
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Searches all environments for the given query, and merges the first
+     * page of results of each environment. As search results do not contain
+     * the hash of a sample, they are only deduplicated within the same
+     * environment, by their environment and sample ID.
+     *
+     * @param query the query to search for, such as <em>sha256:...</em>
+     * @return the merged search results
+     * @throws IOException if all environments failed
+     * @throws InterruptedIOException if the calling thread is interrupted, or
+     * if its cancellation token is cancelled
+     */
+    public FederatedResult<SearchResultEntry> search(String query) throws IOException {
+        return query((api) -> api.search(query).getSearchResults(), this::mergeSearchResults);
+    }
+
+    /**
+     * Searches all environments for the given query, and merges the given
+     * amount of results of each environment. As search results do not contain
+     * the hash of a sample, they are only deduplicated within the same
+     * environment, by their environment and sample ID.
+     *
+     * @param query the query to search for, such as <em>sha256:...</em>
+     * @param limit the maximum amount of results per environment
+     * @return the merged search results
+     * @throws IOException if all environments failed
+     * @throws InterruptedIOException if the calling thread is interrupted, or
+     * if its cancellation token is cancelled
+     */
+    public FederatedResult<SearchResultEntry> search(String query, int limit) throws IOException {
+        return query((api) -> api.search(query, limit).getSearchResults(), this::mergeSearchResults);
+    }
+
+    /**
+     * Gets the sample object with the given ID from all environments in which
+     * it exists. As a sample object does not contain the hash of the sample,
+     * and the same ID may refer to a different sample in each environment, the
+     * sample objects are not merged across environments.
+     *
+     * @param sampleId the ID of the sample
+     * @return the sample objects, keyed by their environment and sample ID
+     * @throws IOException if all environments failed
+     * @throws InterruptedIOException if the calling thread is interrupted, or
+     * if its cancellation token is cancelled
+     */
+    public FederatedResult<Sample> getSample(String sampleId) throws IOException {
+        return query((api) -> getIfPresent(() -> api.getSample(sampleId)), (environment, sample, result) -> {
+            if (sample != null) {
+                result.add(environment, getScopedKey(environment, sample.getId()), sample);
+            }
+        });
+    }
+
+    /**
+     * Gets the overview of the sample with the given ID from all environments
+     * in which it exists
+     *
+     * @param sampleId the ID of the sample
+     * @return the overviews, deduplicated by the SHA-256 hash of the sample,
+     * or keyed by their environment and sample ID if the hash is unknown
+     * @throws IOException if all environments failed
+     * @throws InterruptedIOException if the calling thread is interrupted, or
+     * if its cancellation token is cancelled
+     */
+    public FederatedResult<TriageOverview> getTriageOverview(String sampleId) throws IOException {
+        return query((api) -> getIfPresent(() -> api.getTriageOverview(sampleId)), (environment, overview, result) -> {
+            if (overview != null) {
+                OverviewSample sample = overview.getSample();
+                String hash = sample == null ? null : sample.getSha256();
+                result.add(environment, hash == null || hash.isEmpty() ? getScopedKey(environment, sampleId) : hash, overview);
+            }
+        });
+    }
+
+    /**
+     * Merges the search results of an environment, deduplicated by their
+     * environment and sample ID
+     *
+     * @param environment the environment that responded
+     * @param entries the search results of the environment
+     * @param result the result to merge the search results into
+     */
+    private void mergeSearchResults(TriageEnvironment environment, List<SearchResultEntry> entries, FederatedResult<SearchResultEntry> result) {
+        for (SearchResultEntry entry : entries) {
+            result.add(environment, getScopedKey(environment, entry.getId()), entry);
+        }
+    }
+
+    /**
+     * Gets the deduplication key of a value of which the hash is unknown. As
+     * sample IDs are only unique within a single environment, the key contains
+     * both the environment and the sample ID, which ensures that such values
+     * are never merged across environments.
+     *
+     * @param environment the environment in which the value was found
+     * @param sampleId the ID of the sample
+     * @return the deduplication key
+     */
+    private static String getScopedKey(TriageEnvironment environment, String sampleId) {
+        return environment.name() + ":" + sampleId;
+    }
+
+    /**
+     * A query that is sent to a single environment
+     *
+     * @param <R> the type of the response
+     */
+    private interface Query<R> {
+
+        /**
+         * Sends the query to the given environment
+         *
+         * @param api the instance of the environment
+         * @return the response of the environment
+         * @throws IOException if the query fails
+         */
+        R send(TriageApi api) throws IOException;
+    }
+
+    /**
+     * Merges the response of a single environment into the federated result
+     *
+     * @param <R> the type of the response
+     * @param <T> the type of the values in the result
+     */
+    private interface Merger<R, T> {
+
+        /**
+         * Merges the given response into the given result
+         *
+         * @param environment the environment that responded
+         * @param response the response of the environment
+         * @param result the result to merge the response into
+         */
+        void merge(TriageEnvironment environment, R response, FederatedResult<T> result);
+    }
+
+    /**
+     * A lookup of a single sample, which fails if the sample does not exist
+     *
+     * @param <R> the type of the response
+     */
+    private interface Lookup<R> {
+
+        /**
+         * Looks up the sample
+         *
+         * @return the response
+         * @throws IOException if the lookup fails
+         */
+        R get() throws IOException;
+    }
+
+    /**
+     * Performs the given lookup, and returns null if the sample does not
+     * exist in the environment
+     *
+     * @param <R> the type of the response
+     * @param lookup the lookup to perform
+     * @return the response, or null if the sample does not exist
+     * @throws IOException if the lookup fails for any other reason
+     */
+    private static <R> R getIfPresent(Lookup<R> lookup) throws IOException {
+        try {
+            return lookup.get();
+        } catch (TriageStatusException ex) {
+            if (ex.getStatusCode() == NOT_FOUND) {
+                return null;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Sends the given query to all environments at once, waits until they
+     * respond or until the timeout passes, and merges the responses in the
+     * order of the environments
+     *
+     * @param <R> the type of the response of a single environment
+     * @param <T> the type of the values in the result
+     * @param query the query to send
+     * @param merger the merger of the responses
+     * @return the merged result
+     * @throws IOException if all environments failed
+     * @throws InterruptedIOException if the calling thread is interrupted, or
+     * if its cancellation token is cancelled
+     */
+    @SuppressWarnings("try")
+    private <R, T> FederatedResult<T> query(Query<R> query, Merger<R, T> merger) throws IOException {
+        //The scopes of the caller apply to the requests of each environment
+        RequestPriority priority = RequestPriority.current();
+        CancellationToken caller = CancellationToken.current();
+
+        Map<TriageEnvironment, CancellationToken> tokens = new LinkedHashMap<>();
+        Map<TriageEnvironment, Future<R>> futures = new LinkedHashMap<>();
+        for (Map.Entry<TriageEnvironment, TriageApi> entry : apis.entrySet()) {
+            CancellationToken token = new CancellationToken();
+            tokens.put(entry.getKey(), token);
+            futures.put(entry.getKey(), QUERIES.submit(() -> {
+                try (CancellationToken.Scope scope = token.enter();
+                        RequestPriority.Scope priorityScope = priority == null ? null : priority.enter()) {
+                    return query.send(entry.getValue());
+                }
+            }));
+        }
+
+        FederatedResult<T> result = new FederatedResult<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            for (Map.Entry<TriageEnvironment, Future<R>> entry : futures.entrySet()) {
+                TriageEnvironment environment = entry.getKey();
+                try {
+                    R response = await(entry.getValue(), deadline, caller);
+                    merger.merge(environment, response, result);
+                } catch (TimeoutException ex) {
+                    //The slow environment is left out of the result
+                    tokens.get(environment).cancel();
+                    entry.getValue().cancel(true);
+                    result.addFailure(environment, new InterruptedIOException("The " + environment + " environment did not respond within " + timeout + " milliseconds"));
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    result.addFailure(environment, cause instanceof IOException ? (IOException) cause : new IOException(cause));
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancel(tokens, futures);
+            throw new InterruptedIOException("Interrupted while waiting for the environments to respond");
+        } catch (InterruptedIOException ex) {
+            cancel(tokens, futures);
+            throw ex;
+        }
+
+        if (result.getFailures().size() == apis.size()) {
+            IOException failure = new IOException("None of the environments responded successfully");
+            for (IOException cause : result.getFailures().values()) {
+                failure.addSuppressed(cause);
+            }
+            throw failure;
+        }
+        return result;
+    }
+
+    /**
+     * Waits until the given future completes, the deadline passes, or the
+     * token of the caller is cancelled
+     *
+     * @param <R> the type of the response
+     * @param future the future to wait for
+     * @param deadline the deadline, as measured with
+     * <code>System.nanoTime()</code>
+     * @param caller the cancellation token of the caller, or null if there is
+     * none
+     * @return the response
+     * @throws InterruptedException if the calling thread is interrupted
+     * @throws ExecutionException if the query failed
+     * @throws TimeoutException if the deadline passed
+     * @throws InterruptedIOException if the token of the caller was cancelled
+     */
+    private static <R> R await(Future<R> future, long deadline, CancellationToken caller) throws InterruptedException, ExecutionException, TimeoutException, InterruptedIOException {
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (caller == null) {
+                return future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            } else if (caller.isCancelled()) {
+                throw new InterruptedIOException("The federated query was cancelled");
+            }
+            try {
+                return future.get(Math.max(0, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(CANCELLATION_INTERVAL))), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException ex) {
+                if (deadline - System.nanoTime() <= 0) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels the queries to all environments
+     *
+     * @param <R> the type of the response
+     * @param tokens the cancellation token of each environment
+     * @param futures the query of each environment
+     */
+    private static <R> void cancel(Map<TriageEnvironment, CancellationToken> tokens, Map<TriageEnvironment, Future<R>> futures) {
+        for (CancellationToken token : tokens.values()) {
+            token.cancel();
+        }
+        for (Future<R> future : futures.values()) {
+            future.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.jfr;
+
+/**
+ * Creates the recordings of the <code>TriageFlightRecorder</code>, either as
+ * JDK Flight Recorder events, or as recordings without effect
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+interface EventFactory {
+
+    /**
+     * Creates the recording of a conversion, and starts its timing
+     *
+     * @return the started recording
+     */
+    ParseRecording beginParse();
+
+    /**
+     * Creates the recording of a request, of which the timing is not started
+     * yet
+     *
+     * @return the recording
+     */
+    RequestRecording newRequest();
+}
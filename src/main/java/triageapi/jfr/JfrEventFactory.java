@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.jfr;
+
+/**
+ * Creates the recordings as JDK Flight Recorder events. This class is only
+ * loaded once it is known that the runtime provides JDK Flight Recorder, as
+ * loading it otherwise fails.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+class JfrEventFactory implements EventFactory {
+
+    /**
+     * Creates the recording of a conversion as a
+     * <code>TriageParseEvent</code>, and starts its timing
+     *
+     * @return the started recording
+     */
+    @Override
+    public ParseRecording beginParse() {
+        TriageParseEvent event = new TriageParseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Creates the recording of a request as a
+     * <code>TriageRequestEvent</code>
+     *
+     * @return the recording
+     */
+    @Override
+    public RequestRecording newRequest() {
+        return new TriageRequestEvent();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.jfr;
+
+/**
+ * The recording of a single conversion of a response into objects, which is
+ * obtained from <code>TriageFlightRecorder.beginParse</code> right before the
+ * conversion starts. This interface does not depend on JDK Flight Recorder,
+ * meaning it can be used on runtimes that do not provide it, in which case
+ * the recording has no effect.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public interface ParseRecording {
+
+    /**
+     * Ends the recording, and commits it if it is enabled and exceeds the
+     * configured threshold of the active recording. The values are only used
+     * if the recording is committed.
+     *
+     * @param parser the name of the parser that was used
+     * @param inputSize the size of the parsed input, in characters for a
+     * string or in bytes for a stream
+     * @param objectsProduced the amount of top-level objects that were produced
+     */
+    void complete(String parser, long inputSize, long objectsProduced);
+}
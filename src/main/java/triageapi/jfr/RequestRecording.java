@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.jfr;
+
+/**
+ * The recording of a single request, which is obtained from
+ * <code>TriageFlightRecorder.newRequest</code>. This interface does not depend
+ * on JDK Flight Recorder, meaning it can be used on runtimes that do not
+ * provide it, in which case the recording is never enabled.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public interface RequestRecording {
+
+    /**
+     * Checks if the recording is enabled, in which case the request has to be
+     * observed to provide the values of the recording
+     *
+     * @return true if the recording is enabled, false if not
+     */
+    boolean isEnabled();
+
+    /**
+     * Starts the timing of the recording
+     */
+    void begin();
+
+    /**
+     * Ends the recording, and commits it if it exceeds the configured
+     * threshold of the active recording. The values are only used if the
+     * recording is committed.
+     *
+     * @param method the method of the request
+     * @param endpoint the endpoint template of the request
+     * @param statusCode the status code of the response, or 0 if no response
+     * was received
+     * @param bytesSent the size of the request body
+     * @param bytesReceived the size of the response body as it was received
+     * over the wire
+     * @param bytesDecoded the size of the response body after decompression
+     * @param connectTime the time spent on obtaining a connection, in
+     * nanoseconds
+     * @param waitTime the time spent on waiting for the response headers, in
+     * nanoseconds
+     * @param transferTime the time spent on the response body, in nanoseconds
+     * @param failed true if the request failed, false if not
+     */
+    void complete(String method, String endpoint, int statusCode, long bytesSent, long bytesReceived, long bytesDecoded, long connectTime, long waitTime, long transferTime, boolean failed);
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.jfr;
+
+/**
+ * This class provides the recordings of the requests and conversions of this
+ * library. If the runtime provides JDK Flight Recorder, which is the case as
+ * of Java 11 and as of Java 8u262 on HotSpot, the recordings are emitted as a
+ * <code>TriageRequestEvent</code> and a <code>TriageParseEvent</code>
+ * respectively. Otherwise, the recordings have no effect, as the event classes
+ * cannot be loaded on such a runtime.<br>
+ * <br>
+ * The availability of JDK Flight Recorder is determined once, when this class
+ * is loaded. The classes that use the recordings only depend on the
+ * <code>RequestRecording</code> and <code>ParseRecording</code> interfaces,
+ * which do not depend on JDK Flight Recorder.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public final class TriageFlightRecorder {
+
+    /**
+     * The factory of the recordings, which depends on the availability of JDK
+     * Flight Recorder
+     */
+    private static final EventFactory FACTORY = createFactory();
+
+    /**
+     * The factory of which the recordings have no effect
+     */
+    private static final class DisabledFactory implements EventFactory, ParseRecording, RequestRecording {
+
+        @Override
+        public ParseRecording beginParse() {
+            return this;
+        }
+
+        @Override
+        public RequestRecording newRequest() {
+            return this;
+        }
+
+        @Override
+        public void complete(String parser, long inputSize, long objectsProduced) {
+            //Nothing is recorded without JDK Flight Recorder
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void begin() {
+            //Nothing is recorded without JDK Flight Recorder
+        }
+
+        @Override
+        public void complete(String method, String endpoint, int statusCode, long bytesSent, long bytesReceived, long bytesDecoded, long connectTime, long waitTime, long transferTime, boolean failed) {
+            //Nothing is recorded without JDK Flight Recorder
+        }
+    }
+
+    /**
+     * This class only provides static functions
+     */
+    private TriageFlightRecorder() {
+    }
+
+    /**
+     * Creates the factory of the recordings. The factory of the JDK Flight
+     * Recorder events is loaded by name, so that this class never refers to
+     * the event classes if JDK Flight Recorder is not available.
+     *
+     * @return the factory of the JDK Flight Recorder events if it is
+     * available, or a factory of which the recordings have no effect if not
+     */
+    private static EventFactory createFactory() {
+        ClassLoader loader = TriageFlightRecorder.class.getClassLoader();
+        try {
+            Class.forName("jdk.jfr.Event", false, loader);
+            return (EventFactory) Class.forName("triageapi.jfr.JfrEventFactory", true, loader).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return new DisabledFactory();
+        }
+    }
+
+    /**
+     * Checks if the recordings are emitted as JDK Flight Recorder events
+     *
+     * @return true if JDK Flight Recorder is available, false if not
+     */
+    public static boolean isAvailable() {
+        return FACTORY instanceof DisabledFactory == false;
+    }
+
+    /**
+     * Creates the recording of a conversion, and starts its timing
+     *
+     * @return the started recording
+     */
+    public static ParseRecording beginParse() {
+        return FACTORY.beginParse();
+    }
+
+    /**
+     * Creates the recording of a request, of which the timing is started with
+     * <code>begin</code> once it is known to be enabled
+     *
+     * @return the recording
+     */
+    public static RequestRecording newRequest() {
+        return FACTORY.newRequest();
+    }
+}
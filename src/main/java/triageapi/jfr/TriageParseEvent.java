@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event that is emitted every time the
+ * <code>JsonParser</code> converts a response into objects. The duration of
+ * the event spans the parsing of the input.<br>
+ * <br>
+ * When no recording is active, or when this event is disabled in the
+ * recording's settings, the event is not committed and its fields are not
+ * computed. The event is created via <code>TriageFlightRecorder</code>, which
+ * only loads this class if the runtime provides JDK Flight Recorder.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+@Name("triageapi.Parse")
+@Label("Triage Parse")
+@Category({"Triage API", "Parsing"})
+@Description("The conversion of a Triage API response into objects")
+@StackTrace(false)
+public class TriageParseEvent extends jdk.jfr.Event implements ParseRecording {
+
+    @Label("Parser")
+    public String parser;
+
+    @Label("Input Length")
+    @Description("The size of the parsed input in characters, or in bytes if the input is a stream")
+    public long inputSize;
+
+    @Label("Objects Produced")
+    @Description("The amount of top-level objects that were produced")
+    public long objectsProduced;
+
+    /**
+     * Ends the event, and commits it if it is enabled and exceeds the
+     * configured threshold of the active recording. The values are only set
+     * on the event if it is committed.
+     *
+     * @param parser the name of the parser that was used
+     * @param inputSize the size of the parsed input, in characters for a
+     * string or in bytes for a stream
+     * @param objectsProduced the amount of top-level objects that were produced
+     */
+    @Override
+    public void complete(String parser, long inputSize, long objectsProduced) {
+        end();
+        if (shouldCommit()) {
+            this.parser = parser;
+            this.inputSize = inputSize;
+            this.objectsProduced = objectsProduced;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A JDK Flight Recorder event that is emitted for every request that is sent
+ * by the <code>TriageConnector</code>. The duration of the event spans the
+ * whole request, which is split into the time that was spent on obtaining a
+ * connection, the time that was spent waiting for the response headers, and
+ * the time that was spent on transferring the response body.<br>
+ * <br>
+ * When no recording is active, or when this event is disabled in the
+ * recording's settings, the event is not committed and its fields are not
+ * computed. Note that JDK Flight Recorder is available as of Java 11, and as
+ * of Java 8u262. The event is created via <code>TriageFlightRecorder</code>,
+ * which only loads this class if the runtime provides JDK Flight Recorder.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+@Name("triageapi.Request")
+@Label("Triage Request")
+@Category({"Triage API", "Network"})
+@Description("A HTTP request to the Triage API")
+@StackTrace(false)
+public class TriageRequestEvent extends jdk.jfr.Event implements RequestRecording {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Endpoint")
+    @Description("The endpoint template, such as samples/{id}/overview.json")
+    public String endpoint;
+
+    @Label("Status Code")
+    @Description("The status code of the response, or 0 if no response was received")
+    public int statusCode;
+
+    @Label("Bytes Sent")
+    @DataAmount
+    public long bytesSent;
+
+    @Label("Bytes Received")
+    @Description("The size of the response body as it was received over the wire")
+    @DataAmount
+    public long bytesReceived;
+
+    @Label("Bytes Decoded")
+    @Description("The size of the response body after decompression")
+    @DataAmount
+    public long bytesDecoded;
+
+    @Label("Connect Time")
+    @Description("The time spent on obtaining a (pooled) connection, including the TLS handshake")
+    @Timespan(Timespan.NANOSECONDS)
+    public long connectTime;
+
+    @Label("Wait Time")
+    @Description("The time spent on sending the request and waiting for the response headers")
+    @Timespan(Timespan.NANOSECONDS)
+    public long waitTime;
+
+    @Label("Transfer Time")
+    @Description("The time spent on receiving and consuming the response body")
+    @Timespan(Timespan.NANOSECONDS)
+    public long transferTime;
+
+    @Label("Failed")
+    public boolean failed;
+
+    /**
+     * Ends the event, and commits it if it exceeds the configured threshold
+     * of the active recording. The values are only set on the event if it is
+     * committed.
+     *
+     * @param method the method of the request
+     * @param endpoint the endpoint template of the request
+     * @param statusCode the status code of the response, or 0 if no response
+     * was received
+     * @param bytesSent the size of the request body
+     * @param bytesReceived the size of the response body as it was received
+     * over the wire
+     * @param bytesDecoded the size of the response body after decompression
+     * @param connectTime the time spent on obtaining a connection, in
+     * nanoseconds
+     * @param waitTime the time spent on waiting for the response headers, in
+     * nanoseconds
+     * @param transferTime the time spent on the response body, in nanoseconds
+     * @param failed true if the request failed, false if not
+     */
+    @Override
+    public void complete(String method, String endpoint, int statusCode, long bytesSent, long bytesReceived, long bytesDecoded, long connectTime, long waitTime, long transferTime, boolean failed) {
+        end();
+        if (shouldCommit()) {
+            this.method = method;
+            this.endpoint = endpoint;
+            this.statusCode = statusCode;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+            this.bytesDecoded = bytesDecoded;
+            this.connectTime = connectTime;
+            this.waitTime = waitTime;
+            this.transferTime = transferTime;
+            this.failed = failed;
+            commit();
+        }
+    }
+}
@@ -19,12 +19,18 @@ package triageapi.json;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import triageapi.model.Config;
 import triageapi.model.Credentials;
 import triageapi.model.Dropper;
@@ -53,6 +59,28 @@ import triageapi.model.TargetDesc;
  */
 public abstract class GenericParser {
 
+    /**
+     * Reads a JSON object from the given stream, which is decoded as UTF-8.
+     * The object is read while the stream is being received, meaning that the
+     * raw JSON is never kept in memory as a whole.
+     *
+     * @param input the stream to read the JSON object from
+     * @return the JSON object
+     * @throws IOException if the stream cannot be read
+     * @throws JSONException if the stream does not contain a valid JSON object
+     */
+    protected static JSONObject readObject(InputStream input) throws IOException {
+        try {
+            return new JSONObject(new JSONTokener(new InputStreamReader(input, StandardCharsets.UTF_8)));
+        } catch (JSONException ex) {
+            //The tokener wraps the exceptions of the stream
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
     /**
      * Converts a given JSONArray object into a String array with all values
      *
@@ -16,15 +16,22 @@
  */
 package triageapi.json;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Set;
 import triageapi.model.FileUploadResult;
+import triageapi.model.KernelEventType;
 import triageapi.model.Sample;
 import triageapi.model.SearchResult;
 import triageapi.model.StaticReport;
 import triageapi.model.TriageReport;
 import org.json.JSONArray;
+import triageapi.jfr.ParseRecording;
+import triageapi.jfr.TriageFlightRecorder;
 import triageapi.model.SampleEvents;
 import triageapi.model.TriageOverview;
+import triageapi.network.CountingInputStream;
 
 /**
  * This class serves as a wrapper class for the more specific parsers. As such,
@@ -33,7 +40,11 @@ import triageapi.model.TriageOverview;
  *
  * By keeping the specifics of the parsers in different classes, the code
  * remains clean. Especially when using the GenericParser for functions that are
- * used in multiple parsers.
+ * used in multiple parsers.<br>
+ * <br>
+ * Each conversion is emitted as a <code>TriageParseEvent</code> when a JDK
+ * Flight Recorder recording is active, and the runtime provides JDK Flight
+ * Recorder.
  *
  * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
  */
@@ -79,6 +90,11 @@ public class JsonParser {
      */
     private TriageOverviewParser triageOverviewParser;
 
+    /**
+     * The parser to convert kernel monitor output into kernel event objects
+     */
+    private KernelLogParser kernelLogParser;
+
     /**
      * Creates an instance of this parser, which instantiates all required
      * embedded parsers.
@@ -92,6 +108,7 @@ public class JsonParser {
         searchResultParser = new SearchResultParser();
         sampleEventParser = new SampleEventParser();
         triageOverviewParser = new TriageOverviewParser();
+        kernelLogParser = new KernelLogParser();
     }
 
     /**
@@ -105,7 +122,10 @@ public class JsonParser {
      * @return the Java object to work with the sample events
      */
     public SampleEvents parseSampleEvents(String json) {
-        return sampleEventParser.parse(json);
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        SampleEvents result = sampleEventParser.parse(json);
+        recording.complete("SampleEventParser", lengthOf(json), 1);
+        return result;
     }
 
     /**
@@ -119,7 +139,27 @@ public class JsonParser {
      * @return the object based on the given JSON value
      */
     public StaticReport parseStaticReport(String json) {
-        return staticReportParser.parse(json);
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        StaticReport result = staticReportParser.parse(json);
+        recording.complete("StaticReportParser", lengthOf(json), 1);
+        return result;
+    }
+
+    /**
+     * Reads the JSON value from the given stream, and converts it into an
+     * object while the stream is being read. The conversion is equal to the
+     * conversion of the JSON value in string form. The stream is not closed.
+     *
+     * @param input the stream that contains the JSON value
+     * @return the object based on the given JSON value
+     * @throws IOException if the stream cannot be read
+     */
+    public StaticReport parseStaticReport(InputStream input) throws IOException {
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        CountingInputStream counted = new CountingInputStream(input);
+        StaticReport result = staticReportParser.parse(counted);
+        recording.complete("StaticReportParser", counted.getCount(), 1);
+        return result;
     }
 
     /**
@@ -134,7 +174,28 @@ public class JsonParser {
      * @return the object based on the given JSON value
      */
     public TriageReport parseTriageReport(String json, String taskId) {
-        return triageReportParser.parse(json, taskId);
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        TriageReport result = triageReportParser.parse(json, taskId);
+        recording.complete("TriageReportParser", lengthOf(json), 1);
+        return result;
+    }
+
+    /**
+     * Reads the JSON value from the given stream, and converts it into an
+     * object while the stream is being read. The conversion is equal to the
+     * conversion of the JSON value in string form. The stream is not closed.
+     *
+     * @param input the stream that contains the JSON value
+     * @param taskId the id of the task
+     * @return the object based on the given JSON value
+     * @throws IOException if the stream cannot be read
+     */
+    public TriageReport parseTriageReport(InputStream input, String taskId) throws IOException {
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        CountingInputStream counted = new CountingInputStream(input);
+        TriageReport result = triageReportParser.parse(counted, taskId);
+        recording.complete("TriageReportParser", counted.getCount(), 1);
+        return result;
     }
 
     /**
@@ -148,7 +209,10 @@ public class JsonParser {
      * @return the object based on the given JSON value
      */
     public List<Sample> parseSamples(String json) {
-        return sampleParser.parseBulk(json);
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        List<Sample> result = sampleParser.parseBulk(json);
+        recording.complete("SampleParser", lengthOf(json), result.size());
+        return result;
     }
 
     /**
@@ -162,7 +226,27 @@ public class JsonParser {
      * @return the object based on the given JSON value
      */
     public Sample parseSample(String json) {
-        return sampleParser.parse(json);
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        Sample result = sampleParser.parse(json);
+        recording.complete("SampleParser", lengthOf(json), 1);
+        return result;
+    }
+
+    /**
+     * Reads the JSON value from the given stream, and converts it into an
+     * object while the stream is being read. The conversion is equal to the
+     * conversion of the JSON value in string form. The stream is not closed.
+     *
+     * @param input the stream that contains the JSON value
+     * @return the object based on the given JSON value
+     * @throws IOException if the stream cannot be read
+     */
+    public Sample parseSample(InputStream input) throws IOException {
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        CountingInputStream counted = new CountingInputStream(input);
+        Sample result = sampleParser.parse(counted);
+        recording.complete("SampleParser", counted.getCount(), 1);
+        return result;
     }
 
     /**
@@ -176,7 +260,10 @@ public class JsonParser {
      * @return the object based on the given JSON value
      */
     public FileUploadResult parseFileUpload(String json) {
-        return fileUploadResultParser.parseFileUploadResult(json);
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        FileUploadResult result = fileUploadResultParser.parseFileUploadResult(json);
+        recording.complete("FileUploadResultParser", lengthOf(json), 1);
+        return result;
     }
 
     /**
@@ -186,7 +273,10 @@ public class JsonParser {
      * @return the list of strings
      */
     public List<String> parseList(JSONArray jsonArray) {
-        return listParser.parse(jsonArray);
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        List<String> result = listParser.parse(jsonArray);
+        recording.complete("ListParser", jsonArray == null ? 0 : jsonArray.length(), result.size());
+        return result;
     }
 
     /**
@@ -196,7 +286,27 @@ public class JsonParser {
      * @return the SearchResult object
      */
     public SearchResult parseSearchResult(String json) {
-        return searchResultParser.parse(json);
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        SearchResult result = searchResultParser.parse(json);
+        recording.complete("SearchResultParser", lengthOf(json), result.getSearchResults().size());
+        return result;
+    }
+
+    /**
+     * Reads the JSON value from the given stream, and converts it into an
+     * object while the stream is being read. The conversion is equal to the
+     * conversion of the JSON value in string form. The stream is not closed.
+     *
+     * @param input the stream that contains the JSON value
+     * @return the object based on the given JSON value
+     * @throws IOException if the stream cannot be read
+     */
+    public SearchResult parseSearchResult(InputStream input) throws IOException {
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        CountingInputStream counted = new CountingInputStream(input);
+        SearchResult result = searchResultParser.parse(counted);
+        recording.complete("SearchResultParser", counted.getCount(), result.getSearchResults().size());
+        return result;
     }
 
     /**
@@ -206,6 +316,56 @@ public class JsonParser {
      * @return the TriageOverview object
      */
     public TriageOverview parseTriageOverview(String json) {
-        return triageOverviewParser.parse(json);
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        TriageOverview result = triageOverviewParser.parse(json);
+        recording.complete("TriageOverviewParser", lengthOf(json), 1);
+        return result;
+    }
+
+    /**
+     * Reads the JSON value from the given stream, and converts it into an
+     * object while the stream is being read. The conversion is equal to the
+     * conversion of the JSON value in string form. The stream is not closed.
+     *
+     * @param input the stream that contains the JSON value
+     * @return the object based on the given JSON value
+     * @throws IOException if the stream cannot be read
+     */
+    public TriageOverview parseTriageOverview(InputStream input) throws IOException {
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        CountingInputStream counted = new CountingInputStream(input);
+        TriageOverview result = triageOverviewParser.parse(counted);
+        recording.complete("TriageOverviewParser", counted.getCount(), 1);
+        return result;
+    }
+
+    /**
+     * Reads the newline delimited kernel monitor output from the given stream,
+     * and passes each event that matches the given types to the listener while
+     * the stream is being read
+     *
+     * @param input the stream that contains the kernel monitor output
+     * @param types the event types to pass to the listener, or null to pass
+     * all events
+     * @param listener the listener to pass the events to
+     * @return the amount of events that were passed to the listener
+     * @throws IOException if the stream cannot be read
+     */
+    public long parseKernelLog(InputStream input, Set<KernelEventType> types, KernelEventListener listener) throws IOException {
+        ParseRecording recording = TriageFlightRecorder.beginParse();
+        CountingInputStream counted = new CountingInputStream(input);
+        long result = kernelLogParser.parse(counted, types, listener);
+        recording.complete("KernelLogParser", counted.getCount(), result);
+        return result;
+    }
+
+    /**
+     * Gets the length of the given input
+     *
+     * @param json the input to get the length of
+     * @return the length of the input, or 0 if it is null
+     */
+    private static long lengthOf(String json) {
+        return json == null ? 0 : json.length();
     }
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.json;
+
+import triageapi.model.KernelEvent;
+
+/**
+ * A listener that receives the events of a kernel monitor log while the log is
+ * being read
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+@FunctionalInterface
+public interface KernelEventListener {
+
+    /**
+     * Called once for every event in the log that matches the requested event
+     * types, in the order in which they occur in the log
+     *
+     * @param event the event that was read, which is an instance of the
+     * subclass of <code>KernelEvent</code> that matches its category
+     */
+    void onEvent(KernelEvent event);
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.json;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import triageapi.model.KernelEvent;
+import triageapi.model.KernelEventType;
+import triageapi.model.KernelFileEvent;
+import triageapi.model.KernelNetworkEvent;
+import triageapi.model.KernelProcessEvent;
+import triageapi.model.KernelRegistryEvent;
+
+/**
+ * This parser reads the newline delimited kernel monitor output (either
+ * <em>onemon.json</em> or <em>stahp.json</em>) of a task line by line. Only a
+ * single line is kept in memory at any given time, meaning the memory usage
+ * does not depend on the size of the log.<br>
+ * <br>
+ * The kind of each line is determined prior to parsing the line, meaning lines
+ * that do not match the requested event types are skipped without being
+ * parsed.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class KernelLogParser extends GenericParser {
+
+    /**
+     * The key of the kind field in each line
+     */
+    private static final String KIND_KEY = "\"kind\"";
+
+    /**
+     * Reads all events from the given stream, and passes those that match the
+     * given event types to the listener. The stream is not closed.
+     *
+     * @param input the stream that contains the kernel monitor output
+     * @param types the event types to pass to the listener, or null to pass
+     * all events
+     * @param listener the listener to pass the events to
+     * @return the amount of events that were passed to the listener
+     * @throws IOException if the stream cannot be read
+     */
+    public long parse(InputStream input, Set<KernelEventType> types, KernelEventListener listener) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        long count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            //Skip unwanted lines before parsing them
+            String kind = findKind(line);
+            if (kind != null && types != null && types.contains(KernelEventType.fromKind(kind)) == false) {
+                continue;
+            }
+
+            KernelEvent event = parseLine(line);
+            if (event.isEmpty() || (types != null && types.contains(event.getType()) == false)) {
+                continue;
+            }
+            listener.onEvent(event);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Parses a single line of the kernel monitor output. Events of the
+     * process, file, registry, and network categories are returned as a
+     * <code>KernelProcessEvent</code>, <code>KernelFileEvent</code>,
+     * <code>KernelRegistryEvent</code>, and <code>KernelNetworkEvent</code>
+     * respectively, whereas other events are returned as a
+     * <code>KernelEvent</code>.
+     *
+     * @param line the line to parse
+     * @return the parsed event, or an empty event if the line is not valid
+     * JSON
+     */
+    public KernelEvent parseLine(String line) {
+        JSONObject json;
+        try {
+            json = new JSONObject(line);
+        } catch (JSONException ex) {
+            return new KernelEvent();
+        }
+
+        String kind = json.optString("kind");
+        //The event specific fields are either nested, or part of the line itself
+        JSONObject event = json.optJSONObject("event");
+        if (event == null) {
+            event = json;
+        }
+
+        long time = event.optLong("time", json.optLong("time", -1));
+        int pid = event.optInt("pid", event.optInt("procid", -1));
+
+        KernelEventType type = KernelEventType.fromKind(kind);
+        switch (type) {
+            case PROCESS:
+                return new KernelProcessEvent(kind, time, pid, line, event.optInt("procid", -1), event.optInt("ppid", -1), event.optInt("procid_parent", -1), event.optString("image"), getCommandLine(event));
+            case FILE:
+                return new KernelFileEvent(kind, time, pid, line, event.optString("path"), event.optString("new_path"), event.optString("op"));
+            case REGISTRY:
+                return new KernelRegistryEvent(kind, time, pid, line, event.optString("key"), event.optString("value"), event.optString("data"), event.optString("op"));
+            case NETWORK:
+                return new KernelNetworkEvent(kind, time, pid, line, event.optString("proto"), event.optString("src"), event.optString("dst"), event.optString("domain"));
+            default:
+                return new KernelEvent(kind, type, time, pid, line);
+        }
+    }
+
+    /**
+     * Gets the command line of a process event, which is a string in the
+     * output of Windows tasks, and an array of arguments in the output of
+     * Linux tasks
+     *
+     * @param event the fields of the process event
+     * @return the command line, where the arguments are separated by a space
+     * if they are given as an array
+     */
+    private String getCommandLine(JSONObject event) {
+        JSONArray arguments = event.optJSONArray("cmd");
+        if (arguments == null) {
+            return event.optString("cmd");
+        }
+        return String.join(" ", optStringArray(arguments));
+    }
+
+    /**
+     * Finds the value of the top-level kind field in the given line, without
+     * parsing the line. This assumes that the first occurrence of the kind key
+     * is the top-level field, which is the case for Triage's kernel monitor
+     * output.
+     *
+     * @param line the line to scan
+     * @return the kind, or null if it cannot be found
+     */
+    private String findKind(String line) {
+        int index = line.indexOf(KIND_KEY);
+        if (index == -1) {
+            return null;
+        }
+        int start = line.indexOf('"', index + KIND_KEY.length());
+        if (start == -1) {
+            return null;
+        }
+        int end = line.indexOf('"', start + 1);
+        if (end == -1) {
+            return null;
+        }
+        return line.substring(start + 1, end);
+    }
+}
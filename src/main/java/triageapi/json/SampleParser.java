@@ -16,6 +16,8 @@
  */
 package triageapi.json;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import org.json.JSONArray;
@@ -74,6 +76,19 @@ public class SampleParser {
         return getSample(json);
     }
 
+    /**
+     * Reads the JSON value from the given stream, and converts it into an
+     * object, in the same way as the parsing of a JSON value in string form.
+     * The stream is read while it is being received, and is not closed.
+     *
+     * @param input the stream that contains the JSON value
+     * @return the object based on the given JSON value
+     * @throws IOException if the stream cannot be read
+     */
+    public Sample parse(InputStream input) throws IOException {
+        return getSample(GenericParser.readObject(input));
+    }
+
     private Sample getSample(JSONObject json) {
         if (json == null) {
             return new Sample();
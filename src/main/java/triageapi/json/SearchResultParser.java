@@ -16,6 +16,8 @@
  */
 package triageapi.json;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import triageapi.model.SearchResult;
@@ -30,7 +32,22 @@ import org.json.JSONObject;
 public class SearchResultParser extends GenericParser {
 
     public SearchResult parse(String json) {
-        JSONObject jsonObject = new JSONObject(json);
+        return parse(new JSONObject(json));
+    }
+
+    /**
+     * Reads the search result from the given stream, which is read while it
+     * is being received, and is not closed
+     *
+     * @param input the stream that contains the search result
+     * @return the search result
+     * @throws IOException if the stream cannot be read
+     */
+    public SearchResult parse(InputStream input) throws IOException {
+        return parse(readObject(input));
+    }
+
+    private SearchResult parse(JSONObject jsonObject) {
         String nextOffset = jsonObject.optString("next");
         List<SearchResultEntry> searchResults = parseEntries(jsonObject.optJSONArray("data"));
         return new SearchResult(searchResults, nextOffset);
@@ -59,7 +76,11 @@ public class SearchResultParser extends GenericParser {
             }
             }
             
-            results.add(new SearchResultEntry(id, tasks, kind, filename, isPrivate, submitted, completed));
+            //Decode the timestamps once, so they can be compared without being parsed again
+            long submittedEpochMillis = TimestampDecoder.decode(submitted);
+            long completedEpochMillis = TimestampDecoder.decode(completed);
+
+            results.add(new SearchResultEntry(id, tasks, kind, filename, isPrivate, submitted, completed, submittedEpochMillis, completedEpochMillis));
         }
         return results;
     }
@@ -26,6 +26,8 @@ import triageapi.model.TriageFile;
 import triageapi.model.SampleWrapper;
 import triageapi.model.StaticReport;
 import org.json.JSONArray;
+import java.io.IOException;
+import java.io.InputStream;
 import org.json.JSONObject;
 import triageapi.model.StaticAnalysis;
 import triageapi.model.StaticSignature;
@@ -54,8 +56,29 @@ public class StaticReportParser extends GenericParser {
         if (rawJson == null) {
             return new StaticReport();
         }
-        JSONObject json = new JSONObject(rawJson);
+        return parse(new JSONObject(rawJson));
+    }
+
+    /**
+     * Reads the JSON value from the given stream, and converts it into an
+     * object, in the same way as the parsing of a JSON value in string form.
+     * The stream is read while it is being received, and is not closed.
+     *
+     * @param input the stream that contains the JSON value
+     * @return the object based on the given JSON value
+     * @throws IOException if the stream cannot be read
+     */
+    public StaticReport parse(InputStream input) throws IOException {
+        return parse(readObject(input));
+    }
 
+    /**
+     * Converts the given JSON object into an object
+     *
+     * @param json the JSON object to convert
+     * @return the object based on the given JSON object
+     */
+    private StaticReport parse(JSONObject json) {
         String version = json.optString("version");
         SampleWrapper sampleWrapper = getSampleWrapper(json.optJSONObject("sample"));
         String target = sampleWrapper.getTarget();
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.json;
+
+/**
+ * This class decodes the ISO-8601 timestamps that Triage uses in fields such
+ * as <code>submitted</code> and <code>completed</code> (for example
+ * <em>2021-03-04T05:06:07.123456Z</em>) into milliseconds since the epoch. The
+ * timestamp is decoded directly from the characters of the given string,
+ * without the use of regular expressions or intermediate objects, as it is
+ * called for every entry of every search result page.<br>
+ * <br>
+ * The supported format is <em>yyyy-MM-ddTHH:mm</em>, optionally followed by
+ * seconds, a fraction of a second (of any precision, of which only the
+ * milliseconds are used), and a zone designator (<em>Z</em> or
+ * <em>+HH:mm</em>). Timestamps without a zone designator are interpreted as
+ * UTC, as Triage solely uses the UTC time zone. A space is accepted instead of
+ * the <em>T</em> separator.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public final class TimestampDecoder {
+
+    /**
+     * The value that is returned if a timestamp cannot be decoded
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    /**
+     * This class only contains static functions
+     */
+    private TimestampDecoder() {
+    }
+
+    /**
+     * Decodes the given timestamp into milliseconds since the epoch
+     *
+     * @param timestamp the timestamp to decode
+     * @return the milliseconds since the epoch, or <code>INVALID</code> if the
+     * given timestamp is null, empty, or malformed
+     */
+    public static long decode(String timestamp) {
+        if (timestamp == null || timestamp.length() < 16) {
+            return INVALID;
+        }
+
+        int year = digits(timestamp, 0, 4);
+        int month = digits(timestamp, 5, 2);
+        int day = digits(timestamp, 8, 2);
+        int hour = digits(timestamp, 11, 2);
+        int minute = digits(timestamp, 14, 2);
+        char separator = timestamp.charAt(10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-' || (separator != 'T' && separator != 't' && separator != ' ') || timestamp.charAt(13) != ':') {
+            return INVALID;
+        }
+
+        int index = 16;
+        int length = timestamp.length();
+        int second = 0;
+        int millisecond = 0;
+
+        //Optional seconds and fraction
+        if (index < length && timestamp.charAt(index) == ':') {
+            second = digits(timestamp, index + 1, 2);
+            if (second < 0 || second > 60) {
+                return INVALID;
+            }
+            index += 3;
+            if (index < length && (timestamp.charAt(index) == '.' || timestamp.charAt(index) == ',')) {
+                index++;
+                int fractionDigits = 0;
+                while (index < length) {
+                    int digit = timestamp.charAt(index) - '0';
+                    if (digit < 0 || digit > 9) {
+                        break;
+                    }
+                    if (fractionDigits < 3) {
+                        millisecond = millisecond * 10 + digit;
+                    }
+                    fractionDigits++;
+                    index++;
+                }
+                if (fractionDigits == 0) {
+                    return INVALID;
+                }
+                for (int i = fractionDigits; i < 3; i++) {
+                    millisecond *= 10;
+                }
+            }
+        }
+
+        //Optional zone designator
+        int offsetSeconds = 0;
+        if (index < length) {
+            char zone = timestamp.charAt(index);
+            if (zone == 'Z' || zone == 'z') {
+                index++;
+            } else if (zone == '+' || zone == '-') {
+                int offsetHours = digits(timestamp, index + 1, 2);
+                int offsetMinutes = 0;
+                index += 3;
+                if (index < length && timestamp.charAt(index) == ':') {
+                    index++;
+                }
+                if (index + 2 <= length) {
+                    offsetMinutes = digits(timestamp, index, 2);
+                    index += 2;
+                }
+                if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) {
+                    return INVALID;
+                }
+                offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (zone == '-' ? -1 : 1);
+            }
+            if (index != length) {
+                return INVALID;
+            }
+        }
+
+        long epochDay = toEpochDay(year, month, day);
+        long epochSecond = epochDay * 86400 + hour * 3600 + minute * 60 + second - offsetSeconds;
+        return epochSecond * 1000 + millisecond;
+    }
+
+    /**
+     * Parses the given amount of decimal digits at the given index
+     *
+     * @param input the string to read from
+     * @param index the index of the first digit
+     * @param count the amount of digits
+     * @return the parsed value, or -1 if the range is out of bounds or
+     * contains a character that is not a digit
+     */
+    private static int digits(String input, int index, int count) {
+        if (index < 0 || index + count > input.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = index; i < index + count; i++) {
+            int digit = input.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Converts the given date in the proleptic Gregorian calendar into the
+     * amount of days since 1970-01-01
+     *
+     * @param year the year
+     * @param month the month, from 1 to 12
+     * @param day the day of the month, from 1 to 31
+     * @return the amount of days since the epoch
+     */
+    private static long toEpochDay(int year, int month, int day) {
+        long adjustedYear = month <= 2 ? year - 1 : year;
+        long era = (adjustedYear >= 0 ? adjustedYear : adjustedYear - 399) / 400;
+        long yearOfEra = adjustedYear - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -18,6 +18,8 @@ package triageapi.json;
 
 import java.util.Set;
 import org.json.JSONArray;
+import java.io.IOException;
+import java.io.InputStream;
 import org.json.JSONObject;
 import triageapi.model.Credentials;
 import triageapi.model.Extract;
@@ -54,8 +56,29 @@ public class TriageOverviewParser extends GenericParser {
         if (rawJson == null) {
             return new TriageOverview();
         }
-        JSONObject json = new JSONObject(rawJson);
+        return parse(new JSONObject(rawJson));
+    }
+
+    /**
+     * Reads the JSON value from the given stream, and converts it into an
+     * object, in the same way as the parsing of a JSON value in string form.
+     * The stream is read while it is being received, and is not closed.
+     *
+     * @param input the stream that contains the JSON value
+     * @return the object based on the given JSON value
+     * @throws IOException if the stream cannot be read
+     */
+    public TriageOverview parse(InputStream input) throws IOException {
+        return parse(readObject(input));
+    }
 
+    /**
+     * Converts the given JSON object into an object
+     *
+     * @param json the JSON object to convert
+     * @return the object based on the given JSON object
+     */
+    private TriageOverview parse(JSONObject json) {
         String version = json.optString("version");
         OverviewSample sample = getOverviewSample(json.optJSONObject("sample"));
         TaskSummary[] tasks = optTaskSummaryArray(json.optJSONObject("tasks"));
@@ -24,6 +24,8 @@ import triageapi.model.ReportTaskFailure;
 import triageapi.model.Signature;
 import triageapi.model.TargetDesc;
 import triageapi.model.TriageReport;
+import java.io.IOException;
+import java.io.InputStream;
 import org.json.JSONObject;
 
 /**
@@ -49,8 +51,31 @@ public class TriageReportParser extends GenericParser {
         if (rawJson == null) {
             return new TriageReport();
         }
-        JSONObject json = new JSONObject(rawJson);
+        return parse(new JSONObject(rawJson), taskId);
+    }
+
+    /**
+     * Reads the JSON value from the given stream, and converts it into an
+     * object, in the same way as the parsing of a JSON value in string form.
+     * The stream is read while it is being received, and is not closed.
+     *
+     * @param input the stream that contains the JSON value
+     * @param taskId the ID of the task
+     * @return the object based on the given JSON value
+     * @throws IOException if the stream cannot be read
+     */
+    public TriageReport parse(InputStream input, String taskId) throws IOException {
+        return parse(readObject(input), taskId);
+    }
 
+    /**
+     * Converts the given JSON object into an object
+     *
+     * @param json the JSON object to convert
+     * @param taskId the ID of the task
+     * @return the object based on the given JSON object
+     */
+    private TriageReport parse(JSONObject json, String taskId) {
         String version = json.optString("version");
         TargetDesc sample = getTargetDesc(json.optJSONObject("sample"));
         TargetDesc task = getTargetDesc(json.optJSONObject("task"));
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of a single endpoint template, such as
+ * <em>samples/{id}/overview.json</em>. All counters can be updated from
+ * multiple threads at the same time.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class EndpointMetrics {
+
+    /**
+     * The status code that is used for failures without a HTTP response, such
+     * as connection failures and timeouts
+     */
+    public static final int NO_RESPONSE = 0;
+
+    /**
+     * The endpoint template these metrics belong to
+     */
+    private final String endpoint;
+
+    /**
+     * The amount of requests, including failed requests
+     */
+    private final LongAdder requests;
+
+    /**
+     * The amount of failed requests per status code
+     */
+    private final ConcurrentMap<Integer, LongAdder> errors;
+
+    /**
+     * The amount of bytes that were received, as they were sent over the wire
+     */
+    private final LongAdder bytesReceived;
+
+    /**
+     * The amount of bytes that were received, after the decompression of
+     * compressed responses
+     */
+    private final LongAdder bytesDecoded;
+
+    /**
+     * The amount of bytes that were sent
+     */
+    private final LongAdder bytesSent;
+
+    /**
+     * The latency of all requests, from the moment the request was started
+     * until the response was consumed
+     */
+    private final LatencyHistogram latency;
+
+    /**
+     * Creates empty metrics for the given endpoint template
+     *
+     * @param endpoint the endpoint template
+     */
+    public EndpointMetrics(String endpoint) {
+        this.endpoint = endpoint;
+        this.requests = new LongAdder();
+        this.errors = new ConcurrentHashMap<>();
+        this.bytesReceived = new LongAdder();
+        this.bytesDecoded = new LongAdder();
+        this.bytesSent = new LongAdder();
+        this.latency = new LatencyHistogram();
+    }
+
+    /**
+     * Records a completed request
+     *
+     * @param statusCode the status code of the response, or
+     * <code>NO_RESPONSE</code> if no response was received
+     * @param failed true if the request failed
+     * @param sent the amount of bytes that were sent
+     * @param received the amount of bytes that were received, which were not
+     * compressed
+     * @param nanoseconds the duration of the request in nanoseconds
+     */
+    public void record(int statusCode, boolean failed, long sent, long received, long nanoseconds) {
+        record(statusCode, failed, sent, received, received, nanoseconds);
+    }
+
+    /**
+     * Records a completed request, of which the response may have been
+     * compressed
+     *
+     * @param statusCode the status code of the response, or
+     * <code>NO_RESPONSE</code> if no response was received
+     * @param failed true if the request failed
+     * @param sent the amount of bytes that were sent
+     * @param received the amount of bytes that were received over the wire
+     * @param decoded the amount of bytes that were received, after
+     * decompression
+     * @param nanoseconds the duration of the request in nanoseconds
+     */
+    public void record(int statusCode, boolean failed, long sent, long received, long decoded, long nanoseconds) {
+        requests.increment();
+        if (failed) {
+            errors.computeIfAbsent(statusCode, (key) -> new LongAdder()).increment();
+        }
+        bytesSent.add(Math.max(0, sent));
+        bytesReceived.add(Math.max(0, received));
+        bytesDecoded.add(Math.max(0, decoded));
+        latency.record(nanoseconds);
+    }
+
+    /**
+     * Gets the endpoint template these metrics belong to
+     *
+     * @return the endpoint template
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Gets the amount of requests, including failed requests
+     *
+     * @return the amount of requests
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Gets the amount of failed requests
+     *
+     * @return the amount of failed requests
+     */
+    public long getErrorCount() {
+        long total = 0;
+        for (LongAdder adder : errors.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Gets the amount of failed requests per status code, where
+     * <code>NO_RESPONSE</code> is used for failures without a response
+     *
+     * @return a sorted mapping of status codes and the amount of failures
+     */
+    public Map<Integer, Long> getErrorCounts() {
+        Map<Integer, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : errors.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().sum());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Gets the amount of bytes that were received over the wire
+     *
+     * @return the amount of bytes
+     */
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    /**
+     * Gets the amount of bytes that were received, after the decompression of
+     * compressed responses. The difference with the amount of received bytes
+     * is the amount of bytes that was saved by compression.
+     *
+     * @return the amount of bytes
+     */
+    public long getBytesDecoded() {
+        return bytesDecoded.sum();
+    }
+
+    /**
+     * Gets the amount of bytes that were sent
+     *
+     * @return the amount of bytes
+     */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /**
+     * Gets the latency histogram of this endpoint
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
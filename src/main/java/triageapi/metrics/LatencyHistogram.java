@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free latency histogram with fixed buckets. The bucket boundaries
+ * follow a 1-2.5-5 series from half a millisecond up to ten minutes, which
+ * covers both quick metadata calls and long downloads. Percentiles are
+ * estimated by interpolating within the bucket that contains the requested
+ * rank.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class LatencyHistogram {
+
+    /**
+     * The upper bounds (inclusive) of the buckets in milliseconds. The last
+     * bucket has no upper bound.
+     */
+    private static final double[] BOUNDS = {
+        0.5, 1, 2.5, 5, 10, 25, 50, 100, 250, 500,
+        1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 600000
+    };
+
+    /**
+     * The amount of recorded values per bucket, where the last bucket contains
+     * all values above the highest bound
+     */
+    private final AtomicLongArray buckets;
+
+    /**
+     * The total amount of recorded values
+     */
+    private final LongAdder count;
+
+    /**
+     * The sum of all recorded values in nanoseconds
+     */
+    private final LongAdder sum;
+
+    /**
+     * The highest recorded value in nanoseconds
+     */
+    private final AtomicLong max;
+
+    /**
+     * Creates an empty histogram
+     */
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BOUNDS.length + 1);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records a single latency
+     *
+     * @param nanoseconds the latency in nanoseconds
+     */
+    public void record(long nanoseconds) {
+        if (nanoseconds < 0) {
+            nanoseconds = 0;
+        }
+        double milliseconds = nanoseconds / 1_000_000.0;
+        int index = 0;
+        while (index < BOUNDS.length && milliseconds > BOUNDS[index]) {
+            index++;
+        }
+        buckets.incrementAndGet(index);
+        count.increment();
+        sum.add(nanoseconds);
+        max.accumulateAndGet(nanoseconds, Math::max);
+    }
+
+    /**
+     * Gets the amount of recorded values
+     *
+     * @return the amount of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the sum of all recorded values
+     *
+     * @return the sum in milliseconds
+     */
+    public double getSum() {
+        return sum.sum() / 1_000_000.0;
+    }
+
+    /**
+     * Gets the mean of all recorded values
+     *
+     * @return the mean in milliseconds, or 0 if no values have been recorded
+     */
+    public double getMean() {
+        long total = count.sum();
+        return total == 0 ? 0 : getSum() / total;
+    }
+
+    /**
+     * Gets the highest recorded value
+     *
+     * @return the highest value in milliseconds
+     */
+    public double getMax() {
+        return max.get() / 1_000_000.0;
+    }
+
+    /**
+     * Estimates the given percentile of the recorded values
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the estimated value in milliseconds, or 0 if no values have been
+     * recorded
+     */
+    public double getPercentile(double percentile) {
+        return getPercentile(getBucketCounts(), getMax(), percentile);
+    }
+
+    /**
+     * Estimates the given percentile of the given bucket counts, by
+     * interpolating within the bucket that contains the requested rank
+     *
+     * @param snapshot the amount of values per bucket
+     * @param max the highest value in milliseconds, which bounds the estimate
+     * @param percentile the percentile, between 0 and 100
+     * @return the estimated value in milliseconds, or 0 if the buckets are
+     * empty
+     */
+    static double getPercentile(long[] snapshot, double max, double percentile) {
+        long total = 0;
+        for (long bucket : snapshot) {
+            total += bucket;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        double rank = Math.max(0, Math.min(100, percentile)) / 100.0 * total;
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            if (snapshot[i] == 0) {
+                continue;
+            }
+            if (seen + snapshot[i] >= rank) {
+                double lower = i == 0 ? 0 : BOUNDS[i - 1];
+                double upper = i < BOUNDS.length ? BOUNDS[i] : Math.max(lower, max);
+                double fraction = (rank - seen) / snapshot[i];
+                return Math.min(lower + (upper - lower) * fraction, max);
+            }
+            seen += snapshot[i];
+        }
+        return max;
+    }
+
+    /**
+     * Gets the upper bounds of the buckets, excluding the last bucket which
+     * has no upper bound
+     *
+     * @return a copy of the bounds in milliseconds
+     */
+    public static double[] getBounds() {
+        return BOUNDS.clone();
+    }
+
+    /**
+     * Gets the amount of recorded values per bucket. The last value is the
+     * amount of values above the highest bound.
+     *
+     * @return a snapshot of the bucket counts
+     */
+    public long[] getBucketCounts() {
+        long[] snapshot = new long[buckets.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = buckets.get(i);
+        }
+        return snapshot;
+    }
+}
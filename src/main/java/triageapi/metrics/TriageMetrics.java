@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.metrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class contains the request metrics of a connector, grouped per endpoint
+ * template (such as <em>samples/{id}/{task}/report_triage.json</em>). For each
+ * endpoint, the amount of requests, the amount of errors per status code, the
+ * amount of sent and received bytes (both over the wire and after
+ * decompression), and a latency histogram are kept.<br>
+ * <br>
+ * The metrics can be read in-process via <code>getEndpoints</code>, or can be
+ * exported in the Prometheus text format via <code>toPrometheus</code>. The
+ * throughput of an endpoint can be derived from its counters and
+ * <code>getStartTime</code>.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class TriageMetrics {
+
+    /**
+     * The prefix of all exported metric names
+     */
+    private static final String PREFIX = "triage_";
+
+    /**
+     * The metrics per endpoint template
+     */
+    private final ConcurrentMap<String, EndpointMetrics> endpoints;
+
+    /**
+     * The moment (in milliseconds since the epoch) the metrics were created or
+     * last reset
+     */
+    private volatile long startTime;
+
+    /**
+     * Creates an empty set of metrics
+     */
+    public TriageMetrics() {
+        this.endpoints = new ConcurrentHashMap<>();
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the metrics of the given endpoint template, which are created if
+     * they do not exist yet
+     *
+     * @param endpoint the endpoint template
+     * @return the metrics of the endpoint
+     */
+    public EndpointMetrics getEndpoint(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, EndpointMetrics::new);
+    }
+
+    /**
+     * Gets the metrics of all endpoints that have been requested so far
+     *
+     * @return a sorted mapping of endpoint templates and their metrics
+     */
+    public Map<String, EndpointMetrics> getEndpoints() {
+        return new TreeMap<>(endpoints);
+    }
+
+    /**
+     * Gets the moment the metrics were created or last reset
+     *
+     * @return the moment in milliseconds since the epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Removes all metrics
+     */
+    public void reset() {
+        endpoints.clear();
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Exports all metrics in the Prometheus text format
+     *
+     * @return the exported metrics
+     */
+    public String toPrometheus() {
+        StringWriter writer = new StringWriter();
+        try {
+            writePrometheus(writer);
+        } catch (IOException ex) {
+            //A StringWriter does not throw exceptions
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text format to the given writer.
+     * The writer is not closed.
+     *
+     * @param writer the writer to write the metrics to
+     * @throws IOException if the metrics cannot be written
+     */
+    public void writePrometheus(Writer writer) throws IOException {
+        Map<String, EndpointMetrics> snapshot = getEndpoints();
+
+        writeHeader(writer, "requests_total", "counter", "The amount of requests per endpoint, including failed requests");
+        for (EndpointMetrics metrics : snapshot.values()) {
+            writeSample(writer, "requests_total", label(metrics), metrics.getRequestCount());
+        }
+
+        writeHeader(writer, "request_errors_total", "counter", "The amount of failed requests per endpoint and status code, where 0 means no response was received");
+        for (EndpointMetrics metrics : snapshot.values()) {
+            for (Map.Entry<Integer, Long> error : metrics.getErrorCounts().entrySet()) {
+                writeSample(writer, "request_errors_total", label(metrics) + ",status=\"" + error.getKey() + "\"", error.getValue());
+            }
+        }
+
+        writeHeader(writer, "bytes_received_total", "counter", "The amount of bytes received over the wire per endpoint");
+        for (EndpointMetrics metrics : snapshot.values()) {
+            writeSample(writer, "bytes_received_total", label(metrics), metrics.getBytesReceived());
+        }
+
+        writeHeader(writer, "bytes_decoded_total", "counter", "The amount of bytes received after decompression per endpoint");
+        for (EndpointMetrics metrics : snapshot.values()) {
+            writeSample(writer, "bytes_decoded_total", label(metrics), metrics.getBytesDecoded());
+        }
+
+        writeHeader(writer, "bytes_sent_total", "counter", "The amount of bytes sent per endpoint");
+        for (EndpointMetrics metrics : snapshot.values()) {
+            writeSample(writer, "bytes_sent_total", label(metrics), metrics.getBytesSent());
+        }
+
+        writeHeader(writer, "request_duration_seconds", "histogram", "The duration of requests per endpoint");
+        double[] bounds = LatencyHistogram.getBounds();
+        for (EndpointMetrics metrics : snapshot.values()) {
+            LatencyHistogram latency = metrics.getLatency();
+            long[] buckets = latency.getBucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+                String bound = i < bounds.length ? format(bounds[i] / 1000.0) : "+Inf";
+                writeSample(writer, "request_duration_seconds_bucket", label(metrics) + ",le=\"" + bound + "\"", cumulative);
+            }
+            writer.write(PREFIX + "request_duration_seconds_sum{" + label(metrics) + "} " + format(latency.getSum() / 1000.0) + "\n");
+            writeSample(writer, "request_duration_seconds_count", label(metrics), cumulative);
+        }
+    }
+
+    /**
+     * Writes the help and type lines of a metric
+     *
+     * @param writer the writer to write to
+     * @param name the name of the metric, without the prefix
+     * @param type the Prometheus type of the metric
+     * @param help the description of the metric
+     * @throws IOException if the lines cannot be written
+     */
+    private void writeHeader(Writer writer, String name, String type, String help) throws IOException {
+        writer.write("# HELP " + PREFIX + name + " " + help + "\n");
+        writer.write("# TYPE " + PREFIX + name + " " + type + "\n");
+    }
+
+    /**
+     * Writes a single sample line
+     *
+     * @param writer the writer to write to
+     * @param name the name of the sample, without the prefix
+     * @param labels the labels of the sample
+     * @param value the value of the sample
+     * @throws IOException if the line cannot be written
+     */
+    private void writeSample(Writer writer, String name, String labels, long value) throws IOException {
+        writer.write(PREFIX + name + "{" + labels + "} " + value + "\n");
+    }
+
+    /**
+     * Creates the endpoint label of the given metrics
+     *
+     * @param metrics the metrics to create the label for
+     * @return the endpoint label
+     */
+    private String label(EndpointMetrics metrics) {
+        String value = metrics.getEndpoint().replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return "endpoint=\"" + value + "\"";
+    }
+
+    /**
+     * Formats a floating point value for the Prometheus text format
+     *
+     * @param value the value to format
+     * @return the formatted value
+     */
+    private String format(double value) {
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A latency histogram that only covers recent values. Values are recorded in
+ * the histogram of the current window, which replaces the histogram of the
+ * previous window once the window duration passed. The statistics cover both
+ * the current and the previous window, meaning they are based on the values
+ * of the last one to two window durations. As such, the statistics follow
+ * changes in the latency, rather than averaging them out over the lifetime of
+ * the histogram.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class WindowedLatencyHistogram {
+
+    /**
+     * The duration of a single window in nanoseconds
+     */
+    private final long window;
+
+    /**
+     * The histogram of the current window
+     */
+    private volatile LatencyHistogram current;
+
+    /**
+     * The histogram of the previous window
+     */
+    private volatile LatencyHistogram previous;
+
+    /**
+     * The moment the current window started, as measured with
+     * <code>System.nanoTime()</code>
+     */
+    private volatile long currentStart;
+
+    /**
+     * Creates an empty histogram with the given window duration
+     *
+     * @param window the duration of a single window, which has to be larger
+     * than 0
+     * @param unit the unit of the duration
+     */
+    public WindowedLatencyHistogram(long window, TimeUnit unit) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("The window duration has to be larger than 0!");
+        }
+        this.window = unit.toNanos(window);
+        this.current = new LatencyHistogram();
+        this.previous = new LatencyHistogram();
+        this.currentStart = System.nanoTime();
+    }
+
+    /**
+     * Records a single latency in the current window
+     *
+     * @param nanoseconds the latency in nanoseconds
+     */
+    public void record(long nanoseconds) {
+        rotate();
+        current.record(nanoseconds);
+    }
+
+    /**
+     * Gets the amount of values that were recorded in the current and the
+     * previous window
+     *
+     * @return the amount of recent values
+     */
+    public long getCount() {
+        rotate();
+        return current.getCount() + previous.getCount();
+    }
+
+    /**
+     * Estimates the given percentile of the values that were recorded in the
+     * current and the previous window
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the estimated value in milliseconds, or 0 if no recent values
+     * have been recorded
+     */
+    public double getPercentile(double percentile) {
+        rotate();
+        LatencyHistogram recent = current;
+        LatencyHistogram older = previous;
+        long[] snapshot = recent.getBucketCounts();
+        long[] olderSnapshot = older.getBucketCounts();
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] += olderSnapshot[i];
+        }
+        return LatencyHistogram.getPercentile(snapshot, Math.max(recent.getMax(), older.getMax()), percentile);
+    }
+
+    /**
+     * Starts a new window if the duration of the current window passed
+     */
+    private void rotate() {
+        long now = System.nanoTime();
+        if (now - currentStart < window) {
+            return;
+        }
+        synchronized (this) {
+            long elapsed = now - currentStart;
+            if (elapsed < window) {
+                return;
+            }
+            //If more than two windows passed without any values, the previous window is empty as well
+            previous = elapsed < 2 * window ? current : new LatencyHistogram();
+            current = new LatencyHistogram();
+            currentStart = now;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.model;
+
+/**
+ * This class represents a single event (meaning a single line) from the kernel
+ * monitor output of a task. The commonly used fields are provided as typed
+ * values, whereas the complete event remains available as the raw JSON line.
+ * Events of the process, file, registry, and network categories are instances
+ * of <code>KernelProcessEvent</code>, <code>KernelFileEvent</code>,
+ * <code>KernelRegistryEvent</code>, and <code>KernelNetworkEvent</code>
+ * respectively, which provide the fields that are specific to their kind.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class KernelEvent {
+
+    private String kind;
+    private KernelEventType type;
+    private long time;
+    private int pid;
+    private String raw;
+    private boolean isEmpty;
+
+    public KernelEvent() {
+        this.kind = "";
+        this.type = KernelEventType.OTHER;
+        this.time = -1;
+        this.pid = -1;
+        this.raw = "";
+        this.isEmpty = true;
+    }
+
+    public KernelEvent(String kind, KernelEventType type, long time, int pid, String raw) {
+        this.kind = kind;
+        this.type = type;
+        this.time = time;
+        this.pid = pid;
+        this.raw = raw;
+        this.isEmpty = false;
+    }
+
+    /**
+     * Gets the kind of the event, such as <em>onemon.Process</em>
+     *
+     * @return the kind of the event
+     */
+    public String getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the category of the event, which is derived from its kind
+     *
+     * @return the category of the event
+     */
+    public KernelEventType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the moment of the event, as given by the kernel monitor
+     *
+     * @return the moment of the event, or -1 if it is not present
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the process ID the event belongs to
+     *
+     * @return the process ID, or -1 if it is not present
+     */
+    public int getPid() {
+        return pid;
+    }
+
+    /**
+     * Gets the complete event as the raw JSON line
+     *
+     * @return the raw JSON line
+     */
+    public String getRaw() {
+        return raw;
+    }
+
+    public boolean isEmpty() {
+        return isEmpty;
+    }
+}
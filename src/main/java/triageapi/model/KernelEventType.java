@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The category of an event in the kernel monitor output of a task, which is
+ * derived from the event's kind. Events of the process, file, registry, and
+ * network categories are parsed into a <code>KernelProcessEvent</code>,
+ * <code>KernelFileEvent</code>, <code>KernelRegistryEvent</code>, and
+ * <code>KernelNetworkEvent</code> respectively.<br>
+ * <br>
+ *
+ * @see #PROCESS process, thread, and image related events<br>
+ * @see #FILE file system related events<br>
+ * @see #REGISTRY registry related events<br>
+ * @see #NETWORK network related events<br>
+ * @see #OTHER any other event<br>
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public enum KernelEventType {
+    PROCESS("onemon.Process", "onemon.Thread", "onemon.Image", "stahp.Process", "stahp.Exec"),
+    FILE("onemon.File", "onemon.FileWrite", "onemon.FileDelete", "onemon.FileRename", "onemon.Directory", "stahp.File"),
+    REGISTRY("onemon.RegKey", "onemon.RegValue"),
+    NETWORK("onemon.NetworkFlow", "onemon.NetworkRequest", "onemon.Dns", "stahp.NetworkFlow", "stahp.Dns"),
+    OTHER;
+
+    /**
+     * The category of each known kind, keyed by the kind
+     */
+    private static final Map<String, KernelEventType> KINDS = new HashMap<>();
+
+    static {
+        for (KernelEventType type : values()) {
+            for (String kind : type.kinds) {
+                KINDS.put(kind, type);
+            }
+        }
+    }
+
+    /**
+     * The kinds of the events in this category
+     */
+    private final String[] kinds;
+
+    /**
+     * Creates a category that contains the events of the given kinds
+     *
+     * @param kinds the kinds of the events in the category
+     */
+    private KernelEventType(String... kinds) {
+        this.kinds = kinds;
+    }
+
+    /**
+     * Determines the category of an event based on its kind, as present in
+     * the <code>kind</code> field of each line in the kernel monitor output
+     * (such as <em>onemon.Process</em> or <em>onemon.RegKey</em>). The kind
+     * has to match one of the known kinds exactly, as a partial match would
+     * place unrelated kinds that happen to share a word in the wrong category.
+     *
+     * @param kind the kind of the event
+     * @return the matching category, or <code>OTHER</code> if the kind is not
+     * known
+     */
+    public static KernelEventType fromKind(String kind) {
+        if (kind == null) {
+            return OTHER;
+        }
+        return KINDS.getOrDefault(kind, OTHER);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.model;
+
+/**
+ * This class represents a file system related event from the kernel monitor
+ * output of a task, such as the creation, modification, deletion, or renaming
+ * of a file or directory.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class KernelFileEvent extends KernelEvent {
+
+    private String path;
+    private String newPath;
+    private String operation;
+
+    public KernelFileEvent() {
+        super();
+        this.path = "";
+        this.newPath = "";
+        this.operation = "";
+    }
+
+    public KernelFileEvent(String kind, long time, int pid, String raw, String path, String newPath, String operation) {
+        super(kind, KernelEventType.FILE, time, pid, raw);
+        this.path = path;
+        this.newPath = newPath;
+        this.operation = operation;
+    }
+
+    /**
+     * Gets the path of the file or directory
+     *
+     * @return the path, or an empty string if it is not present
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the new path of the file or directory, if it was renamed
+     *
+     * @return the new path, or an empty string if it is not present
+     */
+    public String getNewPath() {
+        return newPath;
+    }
+
+    /**
+     * Gets the operation that was performed, as given by the kernel monitor
+     *
+     * @return the operation, or an empty string if it is not present
+     */
+    public String getOperation() {
+        return operation;
+    }
+}
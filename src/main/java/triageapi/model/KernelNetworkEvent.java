@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.model;
+
+/**
+ * This class represents a network related event from the kernel monitor
+ * output of a task, such as a network flow or a DNS request.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class KernelNetworkEvent extends KernelEvent {
+
+    private String protocol;
+    private String source;
+    private String destination;
+    private String domain;
+
+    public KernelNetworkEvent() {
+        super();
+        this.protocol = "";
+        this.source = "";
+        this.destination = "";
+        this.domain = "";
+    }
+
+    public KernelNetworkEvent(String kind, long time, int pid, String raw, String protocol, String source, String destination, String domain) {
+        super(kind, KernelEventType.NETWORK, time, pid, raw);
+        this.protocol = protocol;
+        this.source = source;
+        this.destination = destination;
+        this.domain = domain;
+    }
+
+    /**
+     * Gets the protocol of the connection, such as <em>tcp</em> or
+     * <em>udp</em>
+     *
+     * @return the protocol, or an empty string if it is not present
+     */
+    public String getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Gets the source address of the connection, including the port
+     *
+     * @return the source address, or an empty string if it is not present
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the destination address of the connection, including the port
+     *
+     * @return the destination address, or an empty string if it is not
+     * present
+     */
+    public String getDestination() {
+        return destination;
+    }
+
+    /**
+     * Gets the domain that was requested or connected to
+     *
+     * @return the domain, or an empty string if it is not present
+     */
+    public String getDomain() {
+        return domain;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.model;
+
+/**
+ * This class represents a process related event from the kernel monitor
+ * output of a task, such as the creation of a process, a thread, or the
+ * loading of an image.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class KernelProcessEvent extends KernelEvent {
+
+    private int procId;
+    private int parentPid;
+    private int parentProcId;
+    private String image;
+    private String commandLine;
+
+    public KernelProcessEvent() {
+        super();
+        this.procId = -1;
+        this.parentPid = -1;
+        this.parentProcId = -1;
+        this.image = "";
+        this.commandLine = "";
+    }
+
+    public KernelProcessEvent(String kind, long time, int pid, String raw, int procId, int parentPid, int parentProcId, String image, String commandLine) {
+        super(kind, KernelEventType.PROCESS, time, pid, raw);
+        this.procId = procId;
+        this.parentPid = parentPid;
+        this.parentProcId = parentProcId;
+        this.image = image;
+        this.commandLine = commandLine;
+    }
+
+    /**
+     * Gets the ID that the kernel monitor assigned to the process, which,
+     * unlike the process ID, is never reused during the analysis
+     *
+     * @return the ID of the process, or -1 if it is not present
+     */
+    public int getProcId() {
+        return procId;
+    }
+
+    /**
+     * Gets the process ID of the parent process
+     *
+     * @return the process ID of the parent, or -1 if it is not present
+     */
+    public int getParentPid() {
+        return parentPid;
+    }
+
+    /**
+     * Gets the ID that the kernel monitor assigned to the parent process
+     *
+     * @return the ID of the parent process, or -1 if it is not present
+     */
+    public int getParentProcId() {
+        return parentProcId;
+    }
+
+    /**
+     * Gets the path of the image of the process, or of the loaded image
+     *
+     * @return the path of the image, or an empty string if it is not present
+     */
+    public String getImage() {
+        return image;
+    }
+
+    /**
+     * Gets the command line of the process
+     *
+     * @return the command line, or an empty string if it is not present
+     */
+    public String getCommandLine() {
+        return commandLine;
+    }
+}
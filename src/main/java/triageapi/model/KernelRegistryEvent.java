@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.model;
+
+/**
+ * This class represents a registry related event from the kernel monitor
+ * output of a task, such as the creation or deletion of a key, or the change
+ * of a value.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class KernelRegistryEvent extends KernelEvent {
+
+    private String key;
+    private String valueName;
+    private String data;
+    private String operation;
+
+    public KernelRegistryEvent() {
+        super();
+        this.key = "";
+        this.valueName = "";
+        this.data = "";
+        this.operation = "";
+    }
+
+    public KernelRegistryEvent(String kind, long time, int pid, String raw, String key, String valueName, String data, String operation) {
+        super(kind, KernelEventType.REGISTRY, time, pid, raw);
+        this.key = key;
+        this.valueName = valueName;
+        this.data = data;
+        this.operation = operation;
+    }
+
+    /**
+     * Gets the path of the registry key
+     *
+     * @return the path of the key, or an empty string if it is not present
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Gets the name of the registry value
+     *
+     * @return the name of the value, or an empty string if the event concerns
+     * a key
+     */
+    public String getValueName() {
+        return valueName;
+    }
+
+    /**
+     * Gets the data of the registry value, as given by the kernel monitor
+     *
+     * @return the data, or an empty string if it is not present
+     */
+    public String getData() {
+        return data;
+    }
+
+    /**
+     * Gets the operation that was performed, as given by the kernel monitor
+     *
+     * @return the operation, or an empty string if it is not present
+     */
+    public String getOperation() {
+        return operation;
+    }
+}
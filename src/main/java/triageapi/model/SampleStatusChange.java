@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.model;
+
+/**
+ * This class represents a single status transition of a sample, as observed by
+ * the <code>SampleStatusTracker</code>. The first observation of a tracked
+ * sample is also reported as a change, where the previous status is an empty
+ * string.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class SampleStatusChange {
+
+    /**
+     * The ID of the sample whose status changed
+     */
+    private String sampleId;
+
+    /**
+     * The status prior to the change, or an empty string if the sample had not
+     * been observed before
+     */
+    private String previousStatus;
+
+    /**
+     * The status after the change
+     */
+    private String currentStatus;
+
+    /**
+     * The moment the change was observed, in milliseconds since the epoch
+     */
+    private long observedAt;
+
+    /**
+     * This boolean defines if this object is empty
+     */
+    private boolean isEmpty;
+
+    /**
+     * Creates an empty status change object
+     */
+    public SampleStatusChange() {
+        this.sampleId = "";
+        this.previousStatus = "";
+        this.currentStatus = "";
+        this.observedAt = -1;
+        this.isEmpty = true;
+    }
+
+    /**
+     * Creates a status change object for the given sample
+     *
+     * @param sampleId the ID of the sample
+     * @param previousStatus the status prior to the change, or an empty string
+     * if the sample had not been observed before
+     * @param currentStatus the newly observed status
+     * @param observedAt the moment the change was observed, in milliseconds
+     * since the epoch
+     */
+    public SampleStatusChange(String sampleId, String previousStatus, String currentStatus, long observedAt) {
+        this.sampleId = sampleId;
+        this.previousStatus = previousStatus;
+        this.currentStatus = currentStatus;
+        this.observedAt = observedAt;
+        this.isEmpty = false;
+    }
+
+    /**
+     * Gets the ID of the sample whose status changed
+     *
+     * @return the sample ID
+     */
+    public String getSampleId() {
+        return sampleId;
+    }
+
+    /**
+     * Gets the status prior to the change
+     *
+     * @return the previous status, or an empty string if the sample had not
+     * been observed before
+     */
+    public String getPreviousStatus() {
+        return previousStatus;
+    }
+
+    /**
+     * Gets the status after the change
+     *
+     * @return the current status
+     */
+    public String getCurrentStatus() {
+        return currentStatus;
+    }
+
+    /**
+     * Gets the moment the change was observed
+     *
+     * @return the moment of observation, in milliseconds since the epoch
+     */
+    public long getObservedAt() {
+        return observedAt;
+    }
+
+    /**
+     * If the object is empty, this value is true. If not, it is false.
+     *
+     * @return true if the object is empty, false if not
+     */
+    public boolean isEmpty() {
+        return isEmpty;
+    }
+}
@@ -30,9 +30,15 @@ public class SearchResultEntry {
     private boolean isPrivate;
     private String submitted;
     private String completed;
+    private long submittedEpochMillis;
+    private long completedEpochMillis;
     private boolean isEmpty;
 
     public SearchResultEntry(String id, List<String> tasks, String kind, String filename, boolean isPrivate, String submitted, String completed) {
+        this(id, tasks, kind, filename, isPrivate, submitted, completed, Long.MIN_VALUE, Long.MIN_VALUE);
+    }
+
+    public SearchResultEntry(String id, List<String> tasks, String kind, String filename, boolean isPrivate, String submitted, String completed, long submittedEpochMillis, long completedEpochMillis) {
         this.id = id;
         this.tasks = tasks;
         this.kind = kind;
@@ -40,6 +46,8 @@ public class SearchResultEntry {
         this.isPrivate = isPrivate;
         this.submitted = submitted;
         this.completed = completed;
+        this.submittedEpochMillis = submittedEpochMillis;
+        this.completedEpochMillis = completedEpochMillis;
         isEmpty = false;
     }
 
@@ -69,6 +77,28 @@ public class SearchResultEntry {
     public String getCompleted() {
         return completed;
     }
+
+    /**
+     * Gets the moment the sample was submitted, as decoded when the search
+     * result was parsed
+     *
+     * @return the milliseconds since the epoch, or
+     * <code>Long.MIN_VALUE</code> if the moment is unknown
+     */
+    public long getSubmittedEpochMillis() {
+        return submittedEpochMillis;
+    }
+
+    /**
+     * Gets the moment the analysis of the sample was completed, as decoded
+     * when the search result was parsed
+     *
+     * @return the milliseconds since the epoch, or
+     * <code>Long.MIN_VALUE</code> if the moment is unknown
+     */
+    public long getCompletedEpochMillis() {
+        return completedEpochMillis;
+    }
     
     public boolean isEmpty() {
         return isEmpty;
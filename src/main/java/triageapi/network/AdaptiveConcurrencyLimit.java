@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.hc.core5.concurrent.Cancellable;
+
+/**
+ * This class limits the amount of in-flight requests, and adapts the limit to
+ * the observed round-trip times and errors by means of additive increase,
+ * multiplicative decrease (AIMD). While requests succeed without slowing down,
+ * and the limit is in use, the limit grows by one per round-trip. Once a
+ * request is throttled (such as with a 429 or 503 status code), times out, or
+ * takes longer than the tolerated multiple of the baseline round-trip time,
+ * the limit is multiplied by the backoff ratio. Failures of requests that were
+ * sent before the last decrease are ignored, as they stem from the same
+ * congestion.<br>
+ * <br>
+ * The baseline is the shortest round-trip time within the last window of
+ * samples, which lets it follow the load of the server during the day. The
+ * round-trip time of a request is the time until its response headers
+ * arrive, which does not depend on the size of the response body.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class AdaptiveConcurrencyLimit {
+
+    /**
+     * The amount of samples after which the baseline round-trip time is
+     * renewed
+     */
+    private static final int WINDOW_SIZE = 100;
+
+    /**
+     * The lock that guards the state of this limit
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * The condition on which requests wait for the amount of in-flight
+     * requests to drop below the limit
+     */
+    private final Condition available;
+
+    /**
+     * The lowest value of the limit
+     */
+    private final int minimumLimit;
+
+    /**
+     * The highest value of the limit
+     */
+    private final int maximumLimit;
+
+    /**
+     * The factor by which the limit is multiplied when a request is throttled
+     */
+    private volatile double backoffRatio;
+
+    /**
+     * The multiple of the baseline round-trip time above which a request
+     * counts as throttled
+     */
+    private volatile double latencyTolerance;
+
+    /**
+     * The current limit, which is fractional to allow gradual increases
+     */
+    private double limit;
+
+    /**
+     * The amount of in-flight requests
+     */
+    private int inFlight;
+
+    /**
+     * The baseline round-trip time in nanoseconds, or 0 if it is unknown
+     */
+    private long baseline;
+
+    /**
+     * The shortest round-trip time in the current window, in nanoseconds
+     */
+    private long windowMinimum;
+
+    /**
+     * The amount of samples in the current window
+     */
+    private int windowSamples;
+
+    /**
+     * The moment of the last decrease, as measured with
+     * <code>System.nanoTime()</code>
+     */
+    private long lastDecrease;
+
+    /**
+     * Creates a limit that starts at 4 in-flight requests, and adapts between
+     * 1 and 20, which equals the amount of pooled connections per host of a
+     * <code>TriageConnector</code>
+     */
+    public AdaptiveConcurrencyLimit() {
+        this(4, 1, 20);
+    }
+
+    /**
+     * Creates a limit with a backoff ratio of 0.9, which tolerates
+     * round-trip times of up to twice the baseline
+     *
+     * @param initialLimit the initial limit
+     * @param minimumLimit the lowest value of the limit, at least one
+     * @param maximumLimit the highest value of the limit
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minimumLimit, int maximumLimit) {
+        if (minimumLimit < 1 || maximumLimit < minimumLimit) {
+            throw new IllegalArgumentException("The minimum limit has to be at least one, and cannot exceed the maximum limit!");
+        }
+        this.lock = new ReentrantLock();
+        this.available = lock.newCondition();
+        this.minimumLimit = minimumLimit;
+        this.maximumLimit = maximumLimit;
+        this.limit = Math.max(minimumLimit, Math.min(maximumLimit, initialLimit));
+        this.backoffRatio = 0.9;
+        this.latencyTolerance = 2;
+        this.windowMinimum = Long.MAX_VALUE;
+        this.lastDecrease = System.nanoTime();
+    }
+
+    /**
+     * Sets the factor by which the limit is multiplied when a request is
+     * throttled
+     *
+     * @param backoffRatio the factor, between 0.5 and 1 (exclusive)
+     */
+    public void setBackoffRatio(double backoffRatio) {
+        if (backoffRatio < 0.5 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("The backoff ratio has to be within [0.5, 1)!");
+        }
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * Sets the multiple of the baseline round-trip time above which a request
+     * counts as throttled
+     *
+     * @param latencyTolerance the multiple, larger than one
+     */
+    public void setLatencyTolerance(double latencyTolerance) {
+        if (latencyTolerance <= 1) {
+            throw new IllegalArgumentException("The latency tolerance has to be larger than one!");
+        }
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * Gets the current limit
+     *
+     * @return the maximum amount of in-flight requests
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the amount of in-flight requests
+     *
+     * @return the amount of in-flight requests
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the baseline round-trip time
+     *
+     * @return the baseline in milliseconds, or 0 if it is unknown
+     */
+    public double getBaseline() {
+        lock.lock();
+        try {
+            return baseline / 1_000_000.0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the amount of in-flight requests is below the limit, and
+     * counts the calling request as in-flight. Each successful call has to be
+     * followed by a call to {@link #release(long, long, boolean)}. The wait
+     * ends early if the calling thread is interrupted, or if the thread's
+     * <code>CancellationToken</code> is cancelled.
+     *
+     * @return the moment the request was admitted, as measured with
+     * <code>System.nanoTime()</code>, which is to be passed to
+     * <code>release</code>
+     * @throws InterruptedIOException if the wait was interrupted or cancelled
+     */
+    public long acquire() throws InterruptedIOException {
+        CancellationToken token = CancellationToken.current();
+        //Wake up the waiting request if its token is cancelled
+        Cancellable wakeUp = () -> {
+            lock.lock();
+            try {
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            return true;
+        };
+        if (token != null) {
+            token.register(wakeUp);
+        }
+
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (token != null && token.isCancelled()) {
+                    throw new InterruptedIOException("The request was cancelled while it was waiting to be sent");
+                }
+                try {
+                    available.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to send a request");
+                }
+            }
+            inFlight++;
+            return System.nanoTime();
+        } finally {
+            lock.unlock();
+            if (token != null) {
+                token.unregister(wakeUp);
+            }
+        }
+    }
+
+    /**
+     * Counts a request as completed, and adapts the limit based on its
+     * outcome
+     *
+     * @param admitted the moment the request was admitted, as returned by
+     * {@link #acquire()}
+     * @param roundTrip the round-trip time of the request in nanoseconds, or
+     * -1 if it is unknown, such as when the request was cancelled
+     * @param throttled true if the request was throttled, or timed out
+     */
+    public void release(long admitted, long roundTrip, boolean throttled) {
+        lock.lock();
+        try {
+            //The utilisation is determined before the request leaves
+            boolean utilised = inFlight * 2 >= limit;
+            inFlight--;
+
+            if (roundTrip >= 0 && throttled == false) {
+                windowMinimum = Math.min(windowMinimum, roundTrip);
+                windowSamples++;
+                if (baseline == 0 || windowSamples >= WINDOW_SIZE) {
+                    baseline = windowMinimum;
+                    windowMinimum = Long.MAX_VALUE;
+                    windowSamples = 0;
+                }
+            }
+
+            boolean slow = roundTrip >= 0 && baseline > 0 && roundTrip > baseline * latencyTolerance;
+            if (throttled || slow) {
+                /*
+                 * Requests that were admitted before the last decrease stem
+                 * from the same congestion, and the limit decreases at most
+                 * once per baseline round-trip if the baseline is known
+                 */
+                long now = System.nanoTime();
+                boolean decrease = admitted - lastDecrease > 0 && (baseline == 0 || now - lastDecrease >= baseline);
+                if (decrease) {
+                    limit = Math.max(minimumLimit, limit * backoffRatio);
+                    lastDecrease = now;
+                }
+            } else if (roundTrip >= 0 && utilised) {
+                //Grow by one per round-trip of a full window of requests
+                limit = Math.min(maximumLimit, limit + 1 / limit);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
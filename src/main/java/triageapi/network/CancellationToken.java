@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.hc.core5.concurrent.Cancellable;
+
+/**
+ * This class allows requests to be cancelled from another thread. A token is
+ * bound to the calling thread with {@link #enter()}, after which every request
+ * that the thread makes via a <code>TriageConnector</code> observes it. When
+ * the token is cancelled, requests that are in-flight are aborted, and later
+ * requests fail before they are sent. Both fail with an
+ * <code>InterruptedIOException</code>. As such, any call of the
+ * <code>TriageApi</code> can be cancelled without changing its signature:
+ * <br>
+ * <br>
+ * <code>try (CancellationToken.Scope scope = token.enter()) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;api.getTriageReport(sampleId, taskId);<br>
+ * }</code><br>
+ * <br>
+ * A single token can be entered by several threads at once, for example to
+ * cancel all requests of a batch.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class CancellationToken {
+
+    /**
+     * The token that is bound to each thread, if any
+     */
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The requests that observe this token and are in-flight
+     */
+    private final Set<Cancellable> requests;
+
+    /**
+     * True once this token is cancelled
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a token that is not cancelled
+     */
+    public CancellationToken() {
+        this.requests = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Cancels this token, which aborts all in-flight requests that observe it.
+     * Cancelling a token more than once has no effect.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Cancellable request : requests) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * Checks if this token is cancelled
+     *
+     * @return true if this token is cancelled, false if not
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Binds this token to the calling thread, until the returned scope is
+     * closed. Scopes can be nested, in which case the innermost token is
+     * observed.
+     *
+     * @return the scope that unbinds this token once it is closed
+     */
+    public Scope enter() {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(this);
+        return new Scope(previous);
+    }
+
+    /**
+     * Gets the token that is bound to the calling thread
+     *
+     * @return the token of the calling thread, or null if there is none
+     */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Registers an in-flight request, or any other operation that observes
+     * this token, such as a caller that waits for a shared request. It is
+     * cancelled if this token is cancelled. If this token is already
+     * cancelled, it is cancelled immediately.
+     *
+     * @param request the request to register
+     */
+    public void register(Cancellable request) {
+        requests.add(request);
+        //The token may have been cancelled before the request was added
+        if (cancelled) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * Removes a request or operation that is no longer in-flight
+     *
+     * @param request the request to remove
+     */
+    public void unregister(Cancellable request) {
+        requests.remove(request);
+    }
+
+    /**
+     * The period during which a token is bound to a thread
+     */
+    public static class Scope implements AutoCloseable {
+
+        /**
+         * The token that was bound to the thread before this scope, or null
+         */
+        private final CancellationToken previous;
+
+        /**
+         * Creates a scope that restores the given token once it is closed
+         *
+         * @param previous the token that was bound before this scope
+         */
+        private Scope(CancellationToken previous) {
+            this.previous = previous;
+        }
+
+        /**
+         * Unbinds the token from the calling thread, and restores the token
+         * that was bound before
+         */
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+/**
+ * This class contains the state of the circuit breaker of a single
+ * environment and endpoint group, which changes as is described in
+ * {@link CircuitBreakerPolicy}. Each request that is admitted via
+ * {@link #acquire(java.lang.String)} has to be followed by exactly one call
+ * to {@link #onSuccess(boolean)}, {@link #onFailure(boolean)}, or
+ * {@link #onIgnored(boolean)}.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class CircuitBreaker {
+
+    /**
+     * The states of a circuit breaker
+     */
+    public enum State {
+        /**
+         * Requests are sent
+         */
+        CLOSED,
+        /**
+         * Requests fail immediately
+         */
+        OPEN,
+        /**
+         * A single probe request is sent, whilst other requests fail
+         * immediately
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * The base URL of the environment
+     */
+    private final String environment;
+
+    /**
+     * The endpoint group
+     */
+    private final EndpointGroup group;
+
+    /**
+     * The policy that determines when the circuit breaker opens and closes
+     */
+    private final CircuitBreakerPolicy policy;
+
+    /**
+     * The current state
+     */
+    private State state;
+
+    /**
+     * The amount of consecutive failures while the circuit breaker is closed
+     */
+    private int failures;
+
+    /**
+     * The moment the circuit breaker opened, as measured with
+     * <code>System.nanoTime()</code>
+     */
+    private long openedAt;
+
+    /**
+     * True while a probe request is in progress
+     */
+    private boolean probing;
+
+    /**
+     * The amount of times the circuit breaker opened
+     */
+    private long openCount;
+
+    /**
+     * The amount of requests that failed immediately
+     */
+    private long rejectedCount;
+
+    /**
+     * Creates a closed circuit breaker for the given environment and endpoint
+     * group
+     *
+     * @param environment the base URL of the environment
+     * @param group the endpoint group
+     * @param policy the policy that determines when the circuit breaker opens
+     * and closes
+     */
+    CircuitBreaker(String environment, EndpointGroup group, CircuitBreakerPolicy policy) {
+        this.environment = environment;
+        this.group = group;
+        this.policy = policy;
+        this.state = State.CLOSED;
+    }
+
+    /**
+     * Gets the base URL of the environment of this circuit breaker
+     *
+     * @return the base URL
+     */
+    public String getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Gets the endpoint group of this circuit breaker
+     *
+     * @return the endpoint group
+     */
+    public EndpointGroup getGroup() {
+        return group;
+    }
+
+    /**
+     * Gets the current state. An open circuit breaker whose open duration
+     * passed is half-open, as its next request is sent as a probe.
+     *
+     * @return the current state
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && getRemainingOpenTime() == 0) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * Gets the amount of times this circuit breaker opened
+     *
+     * @return the amount of times
+     */
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+
+    /**
+     * Gets the amount of requests that failed immediately, as this circuit
+     * breaker was open
+     *
+     * @return the amount of requests
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Admits a request if the circuit breaker is closed, or sends it as the
+     * probe if the open duration passed and no probe is in progress
+     *
+     * @param url the URL of the request
+     * @return true if the request is the probe, false if the circuit breaker
+     * is closed
+     * @throws CircuitOpenException if the request is not admitted
+     */
+    synchronized boolean acquire(String url) throws CircuitOpenException {
+        if (state == State.CLOSED) {
+            return false;
+        }
+        long remaining = getRemainingOpenTime();
+        if (remaining == 0 && probing == false) {
+            state = State.HALF_OPEN;
+            probing = true;
+            return true;
+        }
+        rejectedCount++;
+        throw new CircuitOpenException(url, group, remaining);
+    }
+
+    /**
+     * Counts an admitted request as successful, which closes the circuit
+     * breaker if the request was the probe
+     *
+     * @param probe true if the request was the probe
+     */
+    synchronized void onSuccess(boolean probe) {
+        //Requests that were in-flight when the circuit breaker opened do not close it, only the probe does
+        if (probe == false && state != State.CLOSED) {
+            return;
+        }
+        failures = 0;
+        probing = false;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Counts an admitted request as failed due to an outage, which opens the
+     * circuit breaker once the threshold is reached, or if the request was the
+     * probe
+     *
+     * @param probe true if the request was the probe
+     */
+    synchronized void onFailure(boolean probe) {
+        if (probe == false) {
+            //Requests that were in-flight when the circuit breaker opened do not extend the open duration
+            if (state != State.CLOSED) {
+                return;
+            }
+            failures++;
+            if (failures < policy.getFailureThreshold()) {
+                return;
+            }
+        }
+        failures = 0;
+        probing = false;
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        openCount++;
+    }
+
+    /**
+     * Counts an admitted request that says nothing about the availability of
+     * the endpoint group, such as a cancelled request. If it was the probe,
+     * the next request is sent as the probe instead.
+     *
+     * @param probe true if the request was the probe
+     */
+    synchronized void onIgnored(boolean probe) {
+        if (probe) {
+            probing = false;
+        }
+    }
+
+    /**
+     * Gets the time until the open duration passes
+     *
+     * @return the remaining time in milliseconds, or 0 if it passed
+     */
+    private long getRemainingOpenTime() {
+        long elapsed = (System.nanoTime() - openedAt) / 1_000_000;
+        return Math.max(0, policy.getOpenDuration() - elapsed);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class describes when the circuit breakers of a
+ * <code>TriageConnector</code> open and close. Each combination of an
+ * environment (the base URL of a request) and an {@link EndpointGroup} has its
+ * own circuit breaker, which opens once the given amount of consecutive
+ * requests failed due to an outage: a connection failure, a timeout, a
+ * connection that broke while the response was read, or a server error.
+ * Client errors, such as a missing sample or a rate limit, do not count, as
+ * the server responded properly. Neither do local failures, such as a full
+ * disk while a download is written.<br>
+ * <br>
+ * While a circuit breaker is open, its requests fail immediately with a
+ * {@link CircuitOpenException}. Once the open duration passed, a single probe
+ * request is sent. If the probe succeeds, the circuit breaker closes again,
+ * and if it fails, the circuit breaker stays open for another open duration.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class CircuitBreakerPolicy {
+
+    /**
+     * The amount of consecutive failures after which a circuit breaker opens
+     */
+    private final int failureThreshold;
+
+    /**
+     * The time a circuit breaker stays open before a probe is sent, in
+     * milliseconds
+     */
+    private final long openDuration;
+
+    /**
+     * Creates a policy that opens a circuit breaker after 5 consecutive
+     * failures, and probes the endpoint group again after 30 seconds
+     */
+    public CircuitBreakerPolicy() {
+        this(5, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a policy with the given failure threshold and open duration
+     *
+     * @param failureThreshold the amount of consecutive failures after which
+     * a circuit breaker opens, at least one
+     * @param openDuration the time a circuit breaker stays open before a
+     * probe is sent
+     * @param unit the unit of the open duration
+     */
+    public CircuitBreakerPolicy(int failureThreshold, long openDuration, TimeUnit unit) {
+        if (failureThreshold < 1 || openDuration < 0) {
+            throw new IllegalArgumentException("The failure threshold has to be at least one, and the open duration cannot be negative!");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openDuration = unit.toMillis(openDuration);
+    }
+
+    /**
+     * Gets the amount of consecutive failures after which a circuit breaker
+     * opens
+     *
+     * @return the failure threshold
+     */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Gets the time a circuit breaker stays open before a probe is sent
+     *
+     * @return the open duration in milliseconds
+     */
+    public long getOpenDuration() {
+        return openDuration;
+    }
+}
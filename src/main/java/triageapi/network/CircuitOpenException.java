@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.io.IOException;
+
+/**
+ * This exception is thrown if a request is not sent, as the circuit breaker
+ * of its environment and endpoint group is open. The request fails without
+ * waiting for a connection or timeout, which allows callers to skip work that
+ * depends on the unavailable part of Triage, and to try again once the circuit
+ * breaker probes the endpoint group again.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class CircuitOpenException extends IOException {
+
+    /**
+     * The version of the serialised form of this class
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The URL of the request that was not sent
+     */
+    private final String url;
+
+    /**
+     * The endpoint group of the request
+     */
+    private final EndpointGroup group;
+
+    /**
+     * The amount of milliseconds until the circuit breaker allows a probe
+     */
+    private final long retryAfter;
+
+    /**
+     * Creates an exception for the given URL, whose circuit breaker is open
+     *
+     * @param url the URL which was not requested
+     * @param group the endpoint group of the URL
+     * @param retryAfter the amount of milliseconds until the circuit breaker
+     * allows a probe, or 0 if a probe is already in progress
+     */
+    public CircuitOpenException(String url, EndpointGroup group, long retryAfter) {
+        super("The circuit breaker of the " + group + " endpoints is open: the request to \"" + url + "\" was not sent");
+        this.url = url;
+        this.group = group;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Gets the URL of the request that was not sent
+     *
+     * @return the URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets the endpoint group of the request that was not sent
+     *
+     * @return the endpoint group
+     */
+    public EndpointGroup getGroup() {
+        return group;
+    }
+
+    /**
+     * Gets the amount of milliseconds until the circuit breaker allows a probe
+     * request to be sent
+     *
+     * @return the amount of milliseconds, or 0 if a probe is already in
+     * progress
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
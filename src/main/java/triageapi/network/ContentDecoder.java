@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * This class decompresses response bodies while they are being read, based on
+ * the <em>Content-Encoding</em> header of the response. The supported
+ * encodings are <em>gzip</em> and <em>deflate</em>, where the latter is
+ * accepted both with and without the zlib wrapper, as servers differ in their
+ * interpretation of the encoding.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+final class ContentDecoder {
+
+    /**
+     * The value of the <em>Accept-Encoding</em> header, which lists the
+     * supported encodings
+     */
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    /**
+     * The size of the buffer of the decompressing streams
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * This class only contains static functions
+     */
+    private ContentDecoder() {
+    }
+
+    /**
+     * Wraps the given stream in decompressing streams, based on the given
+     * content encoding. If multiple encodings are listed, they are undone in
+     * the reverse order in which they were applied.
+     *
+     * @param input the stream with the response body as it was received
+     * @param contentEncoding the value of the <em>Content-Encoding</em> header,
+     * or null if the header is absent
+     * @return the stream with the decompressed response body
+     * @throws IOException if the encoding is not supported, or if the
+     * compressed stream is malformed
+     */
+    static InputStream decode(InputStream input, String contentEncoding) throws IOException {
+        if (contentEncoding == null || contentEncoding.trim().isEmpty()) {
+            return input;
+        }
+        String[] encodings = contentEncoding.split(",");
+        InputStream output = input;
+        for (int i = encodings.length - 1; i >= 0; i--) {
+            String encoding = encodings[i].trim().toLowerCase(Locale.ROOT);
+            switch (encoding) {
+                case "":
+                case "identity":
+                    break;
+                case "gzip":
+                case "x-gzip":
+                    output = gunzip(output);
+                    break;
+                case "deflate":
+                    output = inflate(output);
+                    break;
+                default:
+                    throw new IOException("The response uses the unsupported content encoding \"" + encoding + "\"!");
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Wraps the given stream in a gzip decompressing stream. An empty stream is
+     * returned as-is, as an empty body contains no gzip header.
+     *
+     * @param input the gzip compressed stream
+     * @return the decompressed stream
+     * @throws IOException if the gzip header is malformed
+     */
+    private static InputStream gunzip(InputStream input) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(input, 1);
+        int first = pushback.read();
+        if (first == -1) {
+            return pushback;
+        }
+        pushback.unread(first);
+        return new GZIPInputStream(pushback, BUFFER_SIZE);
+    }
+
+    /**
+     * Wraps the given stream in a deflate decompressing stream. The first two
+     * bytes are inspected to determine if the stream contains a zlib wrapper.
+     *
+     * @param input the deflate compressed stream
+     * @return the decompressed stream
+     * @throws IOException if the stream cannot be read
+     */
+    private static InputStream inflate(InputStream input) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(input, 2);
+        byte[] header = new byte[2];
+        int read = 0;
+        while (read < header.length) {
+            int count = pushback.read(header, read, header.length - read);
+            if (count == -1) {
+                break;
+            }
+            read += count;
+        }
+        if (read == 0) {
+            return pushback;
+        }
+        pushback.unread(header, 0, read);
+
+        //A zlib header uses the deflate method (8), and is a multiple of 31
+        int cmf = header[0] & 0xff;
+        int flg = read > 1 ? header[1] & 0xff : 0;
+        boolean zlib = read > 1 && (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+        Inflater inflater = new Inflater(zlib == false);
+        return new InflaterInputStream(pushback, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    //The inflater is not released by the stream, as it was provided
+                    inflater.end();
+                }
+            }
+        };
+    }
+}
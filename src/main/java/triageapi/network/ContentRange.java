@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+/**
+ * This class describes the part of a resource that was received by a ranged
+ * HTTP GET request, as well as the total size of the resource, if the web
+ * server provided it.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class ContentRange {
+
+    /**
+     * The offset of the first byte that was received
+     */
+    private final long start;
+
+    /**
+     * The amount of bytes that were received
+     */
+    private final long length;
+
+    /**
+     * The total size of the resource, or -1 if it is unknown
+     */
+    private final long totalLength;
+
+    /**
+     * True if the web server honoured the range, false if it sent the complete
+     * resource, of which only the requested part was kept
+     */
+    private final boolean partial;
+
+    /**
+     * Creates a description of a received range
+     *
+     * @param start the offset of the first byte that was received
+     * @param length the amount of bytes that were received
+     * @param totalLength the total size of the resource, or -1 if it is
+     * unknown
+     * @param partial true if the web server honoured the range, false if it
+     * sent the complete resource
+     */
+    public ContentRange(long start, long length, long totalLength, boolean partial) {
+        this.start = start;
+        this.length = length;
+        this.totalLength = totalLength;
+        this.partial = partial;
+    }
+
+    /**
+     * Gets the offset of the first byte that was received
+     *
+     * @return the offset within the resource
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the amount of bytes that were received
+     *
+     * @return the amount of bytes
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the total size of the resource
+     *
+     * @return the size of the resource in bytes, or -1 if it is unknown
+     */
+    public long getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * Checks if the web server honoured the range. If not, the complete
+     * resource was sent, of which only the requested part was kept.
+     *
+     * @return true if only the requested range was sent, false if not
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * Gets the total size of the resource from the value of a
+     * <em>Content-Range</em> header, such as <em>bytes 0-499/1234</em>
+     *
+     * @param header the value of the header, may be null
+     * @return the total size, or -1 if the header is absent, malformed, or
+     * does not contain the size
+     */
+    static long parseTotalLength(String header) {
+        if (header == null) {
+            return -1;
+        }
+        int slash = header.lastIndexOf('/');
+        if (slash == -1 || header.trim().startsWith("bytes") == false) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.substring(slash + 1).trim());
+        } catch (NumberFormatException ex) {
+            //The size is unknown, which is denoted by an asterisk
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the offset of the first byte from the value of a
+     * <em>Content-Range</em> header, such as <em>bytes 0-499/1234</em>
+     *
+     * @param header the value of the header, may be null
+     * @return the offset, or -1 if the header is absent or malformed
+     */
+    static long parseStart(String header) {
+        if (header == null) {
+            return -1;
+        }
+        String value = header.trim();
+        if (value.startsWith("bytes") == false) {
+            return -1;
+        }
+        int dash = value.indexOf('-');
+        if (dash == -1) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.substring("bytes".length(), dash).trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
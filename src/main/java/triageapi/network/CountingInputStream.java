@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that counts the amount of bytes that are read from the
+ * wrapped stream, and keeps track of whether reading from the wrapped stream
+ * failed
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    /**
+     * The amount of bytes that have been read so far
+     */
+    private volatile long count;
+
+    /**
+     * True if the wrapped stream threw an exception when it was read
+     */
+    private volatile boolean failed;
+
+    /**
+     * Wraps the given stream
+     *
+     * @param input the stream to wrap
+     */
+    public CountingInputStream(InputStream input) {
+        super(input);
+    }
+
+    /**
+     * Gets the amount of bytes that have been read so far
+     *
+     * @return the amount of bytes
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Checks if reading from the wrapped stream failed, as opposed to a
+     * failure of the code that consumes this stream
+     *
+     * @return true if the wrapped stream threw an exception, false if not
+     */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public int read() throws IOException {
+        try {
+            int value = super.read();
+            if (value != -1) {
+                count++;
+            }
+            return value;
+        } catch (IOException ex) {
+            failed = true;
+            throw ex;
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        try {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        } catch (IOException ex) {
+            failed = true;
+            throw ex;
+        }
+    }
+
+    @Override
+    public long skip(long amount) throws IOException {
+        try {
+            long skipped = super.skip(amount);
+            count += skipped;
+            return skipped;
+        } catch (IOException ex) {
+            failed = true;
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+/**
+ * This enum contains the groups of endpoints that a circuit breaker of a
+ * <code>TriageConnector</code> distinguishes. A partial outage of Triage
+ * tends to affect one part of the service, such as the search index or the
+ * storage of samples, whilst the other parts keep working. As such, each
+ * group of an environment fails and recovers on its own.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public enum EndpointGroup {
+    /**
+     * The search endpoint
+     */
+    SEARCH,
+    /**
+     * The reports, overviews, logs, and other metadata of analysed samples
+     */
+    REPORTS,
+    /**
+     * The downloads of binary resources, such as samples, network captures,
+     * and dumped sections
+     */
+    DOWNLOADS,
+    /**
+     * The submission of samples, as well as the status and events of
+     * submitted samples
+     */
+    SUBMISSIONS;
+
+    /**
+     * Gets the group of the given endpoint template, as created by
+     * {@link EndpointTemplate#of(java.lang.String)}
+     *
+     * @param endpoint the endpoint template of a request
+     * @return the group of the endpoint
+     */
+    public static EndpointGroup of(String endpoint) {
+        if (endpoint.equals("search")) {
+            return SEARCH;
+        } else if (endpoint.equals("samples")
+                || endpoint.equals("samples/{id}")
+                || endpoint.equals("samples/{id}/events")) {
+            return SUBMISSIONS;
+        } else if (TriageOperation.of(endpoint) == TriageOperation.DOWNLOAD) {
+            return DOWNLOADS;
+        }
+        return REPORTS;
+    }
+}
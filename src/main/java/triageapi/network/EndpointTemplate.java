@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class converts request URLs into endpoint templates, such as
+ * <em>samples/{id}/{task}/report_triage.json</em>. The variable parts of the
+ * URL (the sample ID, task ID, and dumped file name) are replaced with
+ * placeholders, and the scheme, host, API version prefix, and query are
+ * removed. As such, all requests to the same endpoint share the same template,
+ * regardless of the environment or sample that is used.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public final class EndpointTemplate {
+
+    /**
+     * The fixed path segments that directly follow a sample ID
+     */
+    private static final Set<String> SAMPLE_ENDPOINTS = new HashSet<>(Arrays.asList("sample", "events", "overview.json", "reports"));
+
+    /**
+     * The fixed path segments that directly follow a task ID
+     */
+    private static final Set<String> TASK_ENDPOINTS = new HashSet<>(Arrays.asList("report_triage.json", "logs", "dump.pcap", "dump.pcapng"));
+
+    /**
+     * The API version marker, after which the endpoint starts
+     */
+    private static final String VERSION_MARKER = "/v0/";
+
+    /**
+     * This class only contains static functions
+     */
+    private EndpointTemplate() {
+    }
+
+    /**
+     * Gets the environment of the given URL, which is the part of the URL up
+     * to the API version, such as <em>https://tria.ge/api</em>, or the scheme
+     * and host if the URL has no API version
+     *
+     * @param url the URL to get the environment of
+     * @return the environment of the given URL
+     */
+    public static String environmentOf(String url) {
+        if (url == null) {
+            return "";
+        }
+        int version = url.indexOf(VERSION_MARKER);
+        if (version != -1) {
+            return url.substring(0, version);
+        }
+        int scheme = url.indexOf("://");
+        int start = scheme == -1 ? 0 : scheme + 3;
+        int end = url.length();
+        for (char delimiter : new char[]{'/', '?', '#'}) {
+            int index = url.indexOf(delimiter, start);
+            if (index != -1 && index < end) {
+                end = index;
+            }
+        }
+        return url.substring(0, end);
+    }
+
+    /**
+     * Converts the given URL into its endpoint template
+     *
+     * @param url the URL to convert
+     * @return the endpoint template of the given URL
+     */
+    public static String of(String url) {
+        if (url == null) {
+            return "";
+        }
+        String path = url;
+
+        //Remove the query and fragment
+        int end = path.length();
+        int query = path.indexOf('?');
+        if (query != -1) {
+            end = query;
+        }
+        int fragment = path.indexOf('#');
+        if (fragment != -1 && fragment < end) {
+            end = fragment;
+        }
+        path = path.substring(0, end);
+
+        //Remove everything up to and including the API version, or the host if there is none
+        int version = path.indexOf(VERSION_MARKER);
+        if (version != -1) {
+            path = path.substring(version + VERSION_MARKER.length());
+        } else {
+            int scheme = path.indexOf("://");
+            if (scheme != -1) {
+                int slash = path.indexOf('/', scheme + 3);
+                path = slash == -1 ? "" : path.substring(slash + 1);
+            }
+        }
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+
+        String[] segments = path.split("/", -1);
+        if (segments.length < 2 || segments[0].equals("samples") == false) {
+            return path;
+        }
+
+        //samples/{id}
+        StringBuilder template = new StringBuilder("samples/{id}");
+        if (segments.length == 2) {
+            return template.toString();
+        }
+
+        //samples/{id}/sample, samples/{id}/reports/static, and alike
+        if (SAMPLE_ENDPOINTS.contains(segments[2])) {
+            for (int i = 2; i < segments.length; i++) {
+                template.append('/').append(segments[i]);
+            }
+            return template.toString();
+        }
+
+        //samples/{id}/{task}
+        template.append("/{task}");
+        if (segments.length == 3) {
+            return template.toString();
+        }
+
+        //samples/{id}/{task}/report_triage.json, samples/{id}/{task}/logs/onemon.json, and alike
+        if (TASK_ENDPOINTS.contains(segments[3])) {
+            for (int i = 3; i < segments.length; i++) {
+                template.append('/').append(segments[i]);
+            }
+            return template.toString();
+        }
+
+        //Anything else is a dumped file, whose name may contain slashes
+        return template.append("/{dump}").toString();
+    }
+}
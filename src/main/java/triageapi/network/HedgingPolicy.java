@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import triageapi.metrics.WindowedLatencyHistogram;
+
+/**
+ * This class describes when a <code>TriageConnector</code> hedges a metadata
+ * request. If the response headers of a request have not been received once
+ * the given percentile of the endpoint's time-to-headers has passed, a second,
+ * identical request is sent. Whichever request receives its response headers
+ * first is used, and the other request is aborted. As only idempotent GET
+ * requests are hedged, sending the same request twice is harmless.<br>
+ * <br>
+ * The delay is based on the time until the response headers of the
+ * successful requests to the endpoint arrived, over the last one to two
+ * minutes. Failed requests and the time to receive the response body are not
+ * included, as neither says when a hedged request would help. An endpoint is
+ * only hedged once enough requests to it have recently succeeded. The amount of hedged requests is capped at a
+ * fraction of all eligible requests, which bounds the additional load on the
+ * server, also when all requests are slow.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class HedgingPolicy {
+
+    /**
+     * The percentile of the endpoint's time-to-headers after which a request
+     * is hedged
+     */
+    private final double percentile;
+
+    /**
+     * The maximum amount of hedged requests, as a fraction of the eligible
+     * requests
+     */
+    private final double budget;
+
+    /**
+     * The minimum amount of recently succeeded requests of an endpoint,
+     * before its requests are hedged
+     */
+    private final long minimumSamples;
+
+    /**
+     * The minimum delay before a request is hedged, in milliseconds
+     */
+    private final long minimumDelay;
+
+    /**
+     * The amount of requests that were eligible for hedging
+     */
+    private final AtomicLong requestCount;
+
+    /**
+     * The amount of hedged requests that were sent
+     */
+    private final AtomicLong hedgeCount;
+
+    /**
+     * The amount of hedged requests that responded before the original request
+     */
+    private final AtomicLong hedgeWinCount;
+
+    /**
+     * Creates a policy that hedges requests after the given percentile of the
+     * endpoint's time-to-headers, once at least 20 requests to the endpoint
+     * recently succeeded, and no sooner than 10 milliseconds after the
+     * original request was sent
+     *
+     * @param percentile the percentile after which a request is hedged, such
+     * as 95
+     * @param budget the maximum fraction of requests that is hedged, such as
+     * 0.05
+     */
+    public HedgingPolicy(double percentile, double budget) {
+        this(percentile, budget, 20, 10);
+    }
+
+    /**
+     * Creates a policy that hedges requests after the given percentile of the
+     * endpoint's time-to-headers
+     *
+     * @param percentile the percentile after which a request is hedged,
+     * between 0 and 100
+     * @param budget the maximum fraction of requests that is hedged, between
+     * 0 and 1
+     * @param minimumSamples the minimum amount of recently succeeded requests
+     * of an endpoint before its requests are hedged
+     * @param minimumDelay the minimum delay before a request is hedged, in
+     * milliseconds
+     */
+    public HedgingPolicy(double percentile, double budget, long minimumSamples, long minimumDelay) {
+        if (percentile <= 0 || percentile > 100 || budget < 0 || budget > 1) {
+            throw new IllegalArgumentException("The percentile has to be within (0, 100], and the budget within [0, 1]!");
+        }
+        this.percentile = percentile;
+        this.budget = budget;
+        this.minimumSamples = Math.max(1, minimumSamples);
+        this.minimumDelay = Math.max(0, minimumDelay);
+        this.requestCount = new AtomicLong();
+        this.hedgeCount = new AtomicLong();
+        this.hedgeWinCount = new AtomicLong();
+    }
+
+    /**
+     * Gets the delay after which a request to the endpoint with the given
+     * time-to-headers is hedged, and counts the request as eligible for
+     * hedging
+     *
+     * @param latency the recent time-to-headers of the endpoint
+     * @return the delay in milliseconds, or -1 if the request is not hedged
+     * as too few requests to the endpoint recently succeeded
+     */
+    long getDelay(WindowedLatencyHistogram latency) {
+        requestCount.incrementAndGet();
+        if (latency.getCount() < minimumSamples) {
+            return -1;
+        }
+        return Math.max(minimumDelay, (long) Math.ceil(latency.getPercentile(percentile)));
+    }
+
+    /**
+     * Reserves a hedged request, if the budget allows it
+     *
+     * @return true if a hedged request may be sent, false if the budget is
+     * exhausted
+     */
+    boolean tryHedge() {
+        while (true) {
+            long hedges = hedgeCount.get();
+            if (hedges + 1 > budget * requestCount.get()) {
+                return false;
+            }
+            if (hedgeCount.compareAndSet(hedges, hedges + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Records that a hedged request responded before the original request
+     */
+    void recordHedgeWin() {
+        hedgeWinCount.incrementAndGet();
+    }
+
+    /**
+     * Gets the amount of requests that were eligible for hedging
+     *
+     * @return the amount of eligible requests
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Gets the amount of hedged requests that were sent
+     *
+     * @return the amount of hedged requests
+     */
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /**
+     * Gets the amount of hedged requests that responded before the original
+     * request, and were used instead
+     *
+     * @return the amount of hedged requests that were used
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hc.client5.http.entity.mime.MultipartEntityBuilder;
+import org.apache.hc.core5.concurrent.Cancellable;
+import triageapi.metrics.TriageMetrics;
+
+/**
+ * This class is a transport that spreads its requests over several API keys,
+ * each of which has its own quota. Each key has its own
+ * <code>TriageConnector</code>, and therefore its own connection pool and
+ * metrics, and can have its own <code>RateLimiter</code>. Each request is sent
+ * with the key that has the most remaining quota, the lowest recent error
+ * rate, and the fewest in-flight requests. Keys that are throttled or
+ * rejected cool down for a while, during which the other keys send the
+ * requests. If no key can send a request, the request waits until one
+ * can.<br>
+ * <br>
+ * The metrics of this transport contain the requests of all keys, whereas the
+ * metrics of a single key are available via
+ * {@link PooledKey#getMetrics()}.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class KeyPoolTransport implements TriageTransport {
+
+    /**
+     * The keys in the pool
+     */
+    private final List<PooledKey> keys;
+
+    /**
+     * The metrics of the requests of all keys
+     */
+    private final TriageMetrics metrics;
+
+    /**
+     * The lock on which requests wait until a key can send them
+     */
+    private final Object lock;
+
+    /**
+     * Creates a pool of the given keys, which only use HTTP/1.1 and whose rate
+     * is not limited
+     *
+     * @param keys the API keys to spread the requests over
+     */
+    public KeyPoolTransport(List<String> keys) {
+        this(keys, false);
+    }
+
+    /**
+     * Creates a pool of the given keys, whose rate is not limited
+     *
+     * @param keys the API keys to spread the requests over
+     * @param multiplexed true to negotiate HTTP/2, false to only use HTTP/1.1,
+     * as is described in
+     * {@link TriageConnector#TriageConnector(java.lang.String, boolean)}
+     */
+    public KeyPoolTransport(List<String> keys, boolean multiplexed) {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("The pool requires at least one key!");
+        }
+        this.keys = new ArrayList<>();
+        this.metrics = new TriageMetrics();
+        this.lock = new Object();
+        //The requests of all keys are recorded in the metrics of the pool as well
+        TriageRequestListener recorder = new TriageRequestListener() {
+            @Override
+            public void afterBody(TriageRequest request) {
+                record(request, false);
+            }
+
+            @Override
+            public void onError(TriageRequest request, IOException exception) {
+                record(request, true);
+            }
+        };
+        for (String key : keys) {
+            TriageConnector connector = new TriageConnector(key, multiplexed);
+            connector.addRequestListener(recorder);
+            this.keys.add(new PooledKey(key, connector));
+        }
+    }
+
+    /**
+     * Gets the keys in this pool, which can be used to configure their rate
+     * limiters and connectors, and to read their metrics
+     *
+     * @return the keys in this pool
+     */
+    public List<PooledKey> getKeys() {
+        return Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * Limits the rate of each key in the pool to the given amount of requests
+     * per second
+     *
+     * @param permitsPerSecond the amount of requests per second per key, or 0
+     * to not limit the rate
+     */
+    public void setRateLimit(double permitsPerSecond) {
+        for (PooledKey key : keys) {
+            key.setRateLimiter(permitsPerSecond > 0 ? new RateLimiter(permitsPerSecond) : null);
+        }
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Records a completed request of any key in the metrics of the pool
+     *
+     * @param request the completed request
+     * @param failed true if the request failed, false if not
+     */
+    private void record(TriageRequest request, boolean failed) {
+        long end = request.getCompletedTime() == 0 ? System.nanoTime() : request.getCompletedTime();
+        metrics.getEndpoint(request.getEndpoint()).record(request.getStatusCode(), failed, request.getBytesSent(),
+                request.getBytesReceived(), request.getBytesDecoded(), end - request.getStartTime());
+    }
+
+    /**
+     * Waits until a key can send a request, and selects the key with the
+     * highest score. The wait ends early if the calling thread is interrupted,
+     * or if the thread's <code>CancellationToken</code> is cancelled.
+     *
+     * @return the key that sends the request, which has to be passed to
+     * {@link #release(triageapi.network.PooledKey, java.io.IOException)}
+     * @throws InterruptedIOException if the wait was interrupted or cancelled
+     */
+    private PooledKey acquire() throws InterruptedIOException {
+        CancellationToken token = CancellationToken.current();
+        //Wake up the waiting request if its token is cancelled
+        Cancellable wakeUp = () -> {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+            return true;
+        };
+        if (token != null) {
+            token.register(wakeUp);
+        }
+        try {
+            synchronized (lock) {
+                while (true) {
+                    if (token != null && token.isCancelled()) {
+                        throw new InterruptedIOException("The request was cancelled while it was waiting for an API key");
+                    }
+                    long now = System.nanoTime();
+                    PooledKey best = null;
+                    double bestScore = -1;
+                    long wait = Long.MAX_VALUE;
+                    for (PooledKey key : keys) {
+                        long delay = key.getDelay(now);
+                        if (delay > 0) {
+                            wait = Math.min(wait, delay);
+                            continue;
+                        }
+                        double score = key.getScore();
+                        if (score > bestScore) {
+                            best = key;
+                            bestScore = score;
+                        }
+                    }
+                    if (best != null && best.admit()) {
+                        return best;
+                    }
+                    try {
+                        //Wait until the first key is available, or until a request completes
+                        lock.wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait == Long.MAX_VALUE ? 0 : wait)));
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for an API key");
+                    }
+                }
+            }
+        } finally {
+            if (token != null) {
+                token.unregister(wakeUp);
+            }
+        }
+    }
+
+    /**
+     * Counts the request of the given key as completed, and wakes up the
+     * requests that wait for a key
+     *
+     * @param key the key that sent the request
+     * @param failure the failure of the request, or null if it succeeded
+     */
+    private void release(PooledKey key, IOException failure) {
+        key.complete(failure);
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * A request that is sent via the connector of a key
+     *
+     * @param <T> the type of the value the request returns
+     */
+    private interface Request<T> {
+
+        /**
+         * Sends the request
+         *
+         * @param connector the connector of the selected key
+         * @return the value that the request returned
+         * @throws IOException if the request fails
+         */
+        T send(TriageConnector connector) throws IOException;
+    }
+
+    /**
+     * Sends the given request with the best available key
+     *
+     * @param <T> the type of the value the request returns
+     * @param request the request to send
+     * @return the value that the request returned
+     * @throws IOException if the request fails, or if the wait for a key was
+     * interrupted or cancelled
+     */
+    private <T> T send(Request<T> request) throws IOException {
+        PooledKey key = acquire();
+        IOException failure = null;
+        try {
+            return request.send(key.getConnector());
+        } catch (IOException ex) {
+            failure = ex;
+            throw ex;
+        } finally {
+            release(key, failure);
+        }
+    }
+
+    @Override
+    public byte[] get(String url) throws IOException {
+        return send((connector) -> connector.get(url));
+    }
+
+    @Override
+    public <T> T get(String url, TriageStreamHandler<T> handler) throws IOException {
+        return send((connector) -> connector.get(url, handler));
+    }
+
+    @Override
+    public long get(String url, OutputStream output) throws IOException {
+        return send((connector) -> connector.get(url, output));
+    }
+
+    @Override
+    public ContentRange get(String url, long start, long end, OutputStream output) throws IOException {
+        return send((connector) -> connector.get(url, start, end, output));
+    }
+
+    @Override
+    public byte[] post(String url, String json) throws IOException {
+        return send((connector) -> connector.post(url, json));
+    }
+
+    @Override
+    public byte[] post(String url, MultipartEntityBuilder builder) throws IOException {
+        return send((connector) -> connector.post(url, builder));
+    }
+
+    @Override
+    public void setTimeouts(TriageOperation operation, TriageTimeouts timeouts) {
+        for (PooledKey key : keys) {
+            key.getConnector().setTimeouts(operation, timeouts);
+        }
+    }
+
+    @Override
+    public TriageMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void addRequestListener(TriageRequestListener listener) {
+        for (PooledKey key : keys) {
+            key.getConnector().addRequestListener(listener);
+        }
+    }
+
+    @Override
+    public void removeRequestListener(TriageRequestListener listener) {
+        for (PooledKey key : keys) {
+            key.getConnector().removeRequestListener(listener);
+        }
+    }
+
+    /**
+     * Closes the connectors of all keys. If closing a connector fails, the
+     * remaining connectors are still closed, after which the first failure is
+     * thrown.
+     *
+     * @throws IOException if a connector cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (PooledKey key : keys) {
+            try {
+                key.getConnector().close();
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import triageapi.metrics.TriageMetrics;
+
+/**
+ * This class contains a single API key of a <code>KeyPoolTransport</code>,
+ * along with the connector that sends its requests, its optional rate
+ * limiter, and the state that is used to decide which key sends the next
+ * request: the amount of in-flight requests, the recent error rate, and
+ * whether the key is cooling down after it was throttled or rejected.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class PooledKey {
+
+    /**
+     * The weight of the most recent request in the error rate
+     */
+    private static final double ERROR_RATE_WEIGHT = 0.1;
+
+    /**
+     * The initial time a key cools down after it was throttled, in
+     * milliseconds, which doubles with each consecutive throttled request
+     */
+    private static final long COOLDOWN = 1000;
+
+    /**
+     * The maximum time a key cools down, in milliseconds
+     */
+    private static final long MAXIMUM_COOLDOWN = 60_000;
+
+    /**
+     * The name of the key, which only contains its last characters
+     */
+    private final String name;
+
+    /**
+     * The connector that sends the requests of this key
+     */
+    private final TriageConnector connector;
+
+    /**
+     * The rate limiter of this key, or null if the rate is not limited
+     */
+    private volatile RateLimiter rateLimiter;
+
+    /**
+     * The amount of in-flight requests
+     */
+    private int inFlight;
+
+    /**
+     * The exponentially weighted moving average of failed requests
+     */
+    private double errorRate;
+
+    /**
+     * The amount of consecutive requests that were throttled or rejected
+     */
+    private int throttles;
+
+    /**
+     * The moment the cooldown ends, as measured with
+     * <code>System.nanoTime()</code>
+     */
+    private long cooldownEnd;
+
+    /**
+     * True while the key cools down
+     */
+    private boolean coolingDown;
+
+    /**
+     * Creates a pooled key that sends its requests via the given connector
+     *
+     * @param key the API key
+     * @param connector the connector that authenticates with the given key
+     */
+    PooledKey(String key, TriageConnector connector) {
+        this.name = "..." + key.substring(Math.max(0, key.length() - 4));
+        this.connector = connector;
+    }
+
+    /**
+     * Gets the name of the key, which only contains its last four characters,
+     * so that it can be logged safely
+     *
+     * @return the name of the key
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the connector that sends the requests of this key, which can be
+     * used to configure it
+     *
+     * @return the connector of this key
+     */
+    public TriageConnector getConnector() {
+        return connector;
+    }
+
+    /**
+     * Gets the metrics of the requests that were sent with this key
+     *
+     * @return the metrics of this key
+     */
+    public TriageMetrics getMetrics() {
+        return connector.getMetrics();
+    }
+
+    /**
+     * Sets the rate limiter of this key
+     *
+     * @param rateLimiter the rate limiter, or null to not limit the rate
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Gets the rate limiter of this key
+     *
+     * @return the rate limiter, or null if the rate is not limited
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Gets the amount of in-flight requests of this key
+     *
+     * @return the amount of in-flight requests
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Gets the recent error rate of this key, which is a moving average in
+     * which each request weighs a tenth
+     *
+     * @return the error rate, between 0 and 1
+     */
+    public synchronized double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Checks if this key is cooling down, as its recent requests were
+     * throttled or rejected
+     *
+     * @return true if the key is cooling down, false if not
+     */
+    public synchronized boolean isCoolingDown() {
+        return getCooldown(System.nanoTime()) > 0;
+    }
+
+    /**
+     * Gets the time until this key can send a request, which is the remainder
+     * of its cooldown, or the time until its rate limiter has a permit
+     *
+     * @param now the current moment, as measured with
+     * <code>System.nanoTime()</code>
+     * @return the time in nanoseconds, or 0 if a request can be sent
+     */
+    synchronized long getDelay(long now) {
+        long cooldown = getCooldown(now);
+        if (cooldown > 0) {
+            return cooldown;
+        }
+        RateLimiter limiter = rateLimiter;
+        return limiter == null ? 0 : limiter.getDelay();
+    }
+
+    /**
+     * Gets the score of this key, where the key with the highest score sends
+     * the next request. The score is the fraction of the remaining quota,
+     * lowered by the error rate, and divided over the in-flight requests.
+     *
+     * @return the score of this key
+     */
+    synchronized double getScore() {
+        RateLimiter limiter = rateLimiter;
+        double quota = limiter == null ? 1 : limiter.getAvailableFraction();
+        return quota * (1 - errorRate) / (1 + inFlight);
+    }
+
+    /**
+     * Takes a permit from the rate limiter, and counts a request as in-flight
+     *
+     * @return true if the request was admitted, false if the rate limiter had
+     * no permit
+     */
+    synchronized boolean admit() {
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null && limiter.tryAcquire() == false) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Counts an admitted request as completed, and updates the error rate.
+     * Throttled requests, and requests that were rejected as the key is not
+     * authorised, make the key cool down.
+     *
+     * @param failure the failure of the request, or null if it succeeded
+     */
+    synchronized void complete(IOException failure) {
+        inFlight--;
+        if (failure instanceof InterruptedIOException || failure instanceof CircuitOpenException) {
+            //Cancelled requests and open circuit breakers say nothing about the key
+            return;
+        }
+        boolean failed = failure != null;
+        boolean throttled = false;
+        if (failure instanceof TriageStatusException) {
+            int statusCode = ((TriageStatusException) failure).getStatusCode();
+            throttled = statusCode == 401 || statusCode == 403 || statusCode == 429;
+            //Other client errors, such as a missing sample, are not caused by the key
+            failed = throttled || statusCode >= 500;
+        }
+        errorRate += ((failed ? 1 : 0) - errorRate) * ERROR_RATE_WEIGHT;
+        if (throttled) {
+            long cooldown = Math.min(MAXIMUM_COOLDOWN, COOLDOWN << Math.min(throttles, 16));
+            throttles++;
+            cooldownEnd = System.nanoTime() + cooldown * 1_000_000;
+            coolingDown = true;
+        } else {
+            throttles = 0;
+        }
+    }
+
+    /**
+     * Gets the remainder of the cooldown
+     *
+     * @param now the current moment, as measured with
+     * <code>System.nanoTime()</code>
+     * @return the remainder in nanoseconds, or 0 if the key is not cooling
+     * down
+     */
+    private long getCooldown(long now) {
+        if (coolingDown && cooldownEnd - now > 0) {
+            return cooldownEnd - now;
+        }
+        coolingDown = false;
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import org.apache.hc.client5.http.entity.mime.MultipartEntityBuilder;
+import triageapi.metrics.TriageMetrics;
+
+/**
+ * This class is a transport that passes each request through a
+ * <code>RequestScheduler</code> before it is sent via the wrapped transport.
+ * As such, interactive requests and bulk requests that share a single
+ * <code>TriageApi</code> are sent in order of their priority, and within the
+ * concurrency limit of their priority class. The priority of a request is
+ * determined by {@link RequestPriority#of(java.lang.String)}. A request holds
+ * its slot until its response is consumed completely.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class PrioritizedTransport implements TriageTransport {
+
+    /**
+     * The transport that sends the requests
+     */
+    private final TriageTransport transport;
+
+    /**
+     * The scheduler that decides when each request is sent
+     */
+    private final RequestScheduler scheduler;
+
+    /**
+     * Creates a transport that schedules the requests of the given transport
+     * with a scheduler with the default limits
+     *
+     * @param transport the transport that sends the requests
+     */
+    public PrioritizedTransport(TriageTransport transport) {
+        this(transport, new RequestScheduler());
+    }
+
+    /**
+     * Creates a transport that schedules the requests of the given transport
+     * with the given scheduler
+     *
+     * @param transport the transport that sends the requests
+     * @param scheduler the scheduler that decides when each request is sent
+     */
+    public PrioritizedTransport(TriageTransport transport, RequestScheduler scheduler) {
+        this.transport = transport;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Gets the scheduler of this transport, which can be used to change its
+     * limits and weights
+     *
+     * @return the scheduler of this transport
+     */
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * A request that is sent via the wrapped transport
+     *
+     * @param <T> the type of the value the request returns
+     */
+    private interface Request<T> {
+
+        /**
+         * Sends the request
+         *
+         * @return the value that the request returned
+         * @throws IOException if the request fails
+         */
+        T send() throws IOException;
+    }
+
+    /**
+     * Waits until the scheduler allows the request to the given URL, and
+     * sends it
+     *
+     * @param <T> the type of the value the request returns
+     * @param url the URL of the request
+     * @param request the request to send
+     * @return the value that the request returned
+     * @throws IOException if the request fails, or if the wait was
+     * interrupted or cancelled
+     */
+    private <T> T schedule(String url, Request<T> request) throws IOException {
+        RequestPriority priority = RequestPriority.of(url);
+        scheduler.acquire(priority);
+        try {
+            return request.send();
+        } finally {
+            scheduler.release(priority);
+        }
+    }
+
+    @Override
+    public byte[] get(String url) throws IOException {
+        return schedule(url, () -> transport.get(url));
+    }
+
+    @Override
+    public <T> T get(String url, TriageStreamHandler<T> handler) throws IOException {
+        return schedule(url, () -> transport.get(url, handler));
+    }
+
+    @Override
+    public long get(String url, OutputStream output) throws IOException {
+        return schedule(url, () -> transport.get(url, output));
+    }
+
+    @Override
+    public ContentRange get(String url, long start, long end, OutputStream output) throws IOException {
+        return schedule(url, () -> transport.get(url, start, end, output));
+    }
+
+    @Override
+    public byte[] post(String url, String json) throws IOException {
+        return schedule(url, () -> transport.post(url, json));
+    }
+
+    @Override
+    public byte[] post(String url, MultipartEntityBuilder builder) throws IOException {
+        return schedule(url, () -> transport.post(url, builder));
+    }
+
+    @Override
+    public void setTimeouts(TriageOperation operation, TriageTimeouts timeouts) {
+        transport.setTimeouts(operation, timeouts);
+    }
+
+    @Override
+    public TriageMetrics getMetrics() {
+        return transport.getMetrics();
+    }
+
+    @Override
+    public void addRequestListener(TriageRequestListener listener) {
+        transport.addRequestListener(listener);
+    }
+
+    @Override
+    public void removeRequestListener(TriageRequestListener listener) {
+        transport.removeRequestListener(listener);
+    }
+
+    @Override
+    public void close() throws IOException {
+        transport.close();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+/**
+ * This class is a token bucket that limits the rate at which requests are
+ * sent with a single API key. The bucket holds up to the burst size of
+ * permits, and is refilled at the given rate. A request takes one permit, and
+ * has to wait if none are available. The fraction of permits that remain in
+ * the bucket indicates how much of the key's quota is left.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class RateLimiter {
+
+    /**
+     * The amount of permits that are added per second
+     */
+    private final double permitsPerSecond;
+
+    /**
+     * The maximum amount of permits in the bucket
+     */
+    private final double burst;
+
+    /**
+     * The amount of permits in the bucket at the moment of the last refill
+     */
+    private double permits;
+
+    /**
+     * The moment of the last refill, as measured with
+     * <code>System.nanoTime()</code>
+     */
+    private long refilled;
+
+    /**
+     * Creates a limiter that allows the given rate, with bursts of up to one
+     * second worth of permits. The bucket starts full.
+     *
+     * @param permitsPerSecond the amount of requests per second, larger than
+     * zero
+     */
+    public RateLimiter(double permitsPerSecond) {
+        this(permitsPerSecond, Math.max(1, permitsPerSecond));
+    }
+
+    /**
+     * Creates a limiter that allows the given rate and burst size. The bucket
+     * starts full.
+     *
+     * @param permitsPerSecond the amount of requests per second, larger than
+     * zero
+     * @param burst the maximum amount of requests that can be sent at once,
+     * at least one
+     */
+    public RateLimiter(double permitsPerSecond, double burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("The rate has to be larger than zero, and the burst size has to be at least one!");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.permits = burst;
+        this.refilled = System.nanoTime();
+    }
+
+    /**
+     * Gets the amount of permits that are added per second
+     *
+     * @return the rate of this limiter
+     */
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * Gets the fraction of the bucket that is filled
+     *
+     * @return the fraction of available permits, between 0 and 1
+     */
+    public synchronized double getAvailableFraction() {
+        refill(System.nanoTime());
+        return permits / burst;
+    }
+
+    /**
+     * Takes a permit if one is available
+     *
+     * @return true if a permit was taken, false if none is available
+     */
+    public synchronized boolean tryAcquire() {
+        refill(System.nanoTime());
+        if (permits < 1) {
+            return false;
+        }
+        permits--;
+        return true;
+    }
+
+    /**
+     * Gets the time until a permit is available
+     *
+     * @return the time in nanoseconds, or 0 if a permit is available
+     */
+    public synchronized long getDelay() {
+        refill(System.nanoTime());
+        if (permits >= 1) {
+            return 0;
+        }
+        return (long) Math.ceil((1 - permits) / permitsPerSecond * 1_000_000_000L);
+    }
+
+    /**
+     * Adds the permits that accrued since the last refill
+     *
+     * @param now the current moment, as measured with
+     * <code>System.nanoTime()</code>
+     */
+    private void refill(long now) {
+        permits = Math.min(burst, permits + (now - refilled) / 1_000_000_000.0 * permitsPerSecond);
+        refilled = now;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+/**
+ * This enum contains the priority classes of requests, which are used by a
+ * <code>RequestScheduler</code> to decide which waiting request is sent next.
+ * The priority of a request is taken from the scope that the calling thread
+ * entered, as is done with <code>CancellationToken</code>. Without a scope,
+ * metadata requests are interactive, whereas downloads and event streams are
+ * bulk requests:<br>
+ * <br>
+ * <code>try (RequestPriority.Scope scope = RequestPriority.BULK.enter()) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;api.search(query, 1000);<br>
+ * }</code>
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public enum RequestPriority {
+    /**
+     * Latency sensitive requests, such as the lookups of an analyst
+     */
+    INTERACTIVE,
+    /**
+     * Requests that are neither latency sensitive, nor part of a large batch
+     */
+    NORMAL,
+    /**
+     * Requests that are part of a large batch, such as nightly downloads and
+     * search backfills, of which the throughput matters more than the latency
+     * of a single request
+     */
+    BULK;
+
+    /**
+     * The priority that is bound to each thread, if any
+     */
+    private static final ThreadLocal<RequestPriority> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Binds this priority to the calling thread, until the returned scope is
+     * closed. Scopes can be nested, in which case the innermost priority is
+     * used.
+     *
+     * @return the scope that unbinds this priority once it is closed
+     */
+    public Scope enter() {
+        RequestPriority previous = CURRENT.get();
+        CURRENT.set(this);
+        return new Scope(previous);
+    }
+
+    /**
+     * Gets the priority that is bound to the calling thread
+     *
+     * @return the priority of the calling thread, or null if there is none
+     */
+    public static RequestPriority current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Gets the priority of a request to the given URL, which is the priority
+     * that is bound to the calling thread, or the default priority of the
+     * request's kind of operation if none is bound
+     *
+     * @param url the URL of the request
+     * @return the priority of the request
+     */
+    public static RequestPriority of(String url) {
+        RequestPriority priority = CURRENT.get();
+        if (priority != null) {
+            return priority;
+        }
+        return TriageOperation.of(EndpointTemplate.of(url)) == TriageOperation.METADATA ? INTERACTIVE : BULK;
+    }
+
+    /**
+     * The period during which a priority is bound to a thread
+     */
+    public static class Scope implements AutoCloseable {
+
+        /**
+         * The priority that was bound to the thread before this scope, or
+         * null
+         */
+        private final RequestPriority previous;
+
+        /**
+         * Creates a scope that restores the given priority once it is closed
+         *
+         * @param previous the priority that was bound before this scope
+         */
+        private Scope(RequestPriority previous) {
+            this.previous = previous;
+        }
+
+        /**
+         * Unbinds the priority from the calling thread, and restores the
+         * priority that was bound before
+         */
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
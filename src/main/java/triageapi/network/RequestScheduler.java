@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.hc.core5.concurrent.Cancellable;
+
+/**
+ * This class limits the amount of concurrent requests, and decides which
+ * waiting request is sent next, based on its priority class. Each class has
+ * its own concurrency limit, which acts as a bulkhead: bulk requests can never
+ * occupy all slots, meaning that an interactive request does not have to wait
+ * for a long download to finish. Within a class, requests are sent in the
+ * order in which they arrived.<br>
+ * <br>
+ * When a slot frees up and several classes are waiting, the next class is
+ * chosen by smooth weighted round-robin. With the default weights, eight
+ * interactive requests are sent for each bulk request, which lets interactive
+ * requests jump the queue, whilst bulk requests keep making progress.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class RequestScheduler {
+
+    /**
+     * The lock that guards the state of this scheduler
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * The maximum amount of concurrent requests in total
+     */
+    private final int maxConcurrency;
+
+    /**
+     * The waiting requests per priority class
+     */
+    private final Map<RequestPriority, Deque<Waiter>> queues;
+
+    /**
+     * The maximum amount of concurrent requests per priority class
+     */
+    private final Map<RequestPriority, Integer> limits;
+
+    /**
+     * The weight of each priority class
+     */
+    private final Map<RequestPriority, Integer> weights;
+
+    /**
+     * The current weight of each priority class in the round-robin
+     */
+    private final Map<RequestPriority, Integer> currentWeights;
+
+    /**
+     * The amount of running requests per priority class
+     */
+    private final Map<RequestPriority, Integer> running;
+
+    /**
+     * The amount of running requests in total
+     */
+    private int totalRunning;
+
+    /**
+     * Creates a scheduler that allows up to 20 concurrent requests, which
+     * equals the amount of pooled connections per host of a
+     * <code>TriageConnector</code>
+     */
+    public RequestScheduler() {
+        this(20);
+    }
+
+    /**
+     * Creates a scheduler that allows the given amount of concurrent requests.
+     * By default, interactive and normal requests may use all slots, whereas
+     * bulk requests may use three quarters of them. The weights of the
+     * interactive, normal, and bulk classes are 8, 4, and 1 respectively.
+     *
+     * @param maxConcurrency the maximum amount of concurrent requests, at
+     * least one
+     */
+    public RequestScheduler(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("At least one concurrent request has to be allowed!");
+        }
+        this.lock = new ReentrantLock();
+        this.maxConcurrency = maxConcurrency;
+        this.queues = new EnumMap<>(RequestPriority.class);
+        this.limits = new EnumMap<>(RequestPriority.class);
+        this.weights = new EnumMap<>(RequestPriority.class);
+        this.currentWeights = new EnumMap<>(RequestPriority.class);
+        this.running = new EnumMap<>(RequestPriority.class);
+        for (RequestPriority priority : RequestPriority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+            limits.put(priority, maxConcurrency);
+            currentWeights.put(priority, 0);
+            running.put(priority, 0);
+        }
+        limits.put(RequestPriority.BULK, Math.max(1, maxConcurrency - maxConcurrency / 4));
+        weights.put(RequestPriority.INTERACTIVE, 8);
+        weights.put(RequestPriority.NORMAL, 4);
+        weights.put(RequestPriority.BULK, 1);
+    }
+
+    /**
+     * Sets the maximum amount of concurrent requests of the given priority
+     * class, which cannot exceed the total maximum
+     *
+     * @param priority the priority class
+     * @param limit the maximum amount of concurrent requests, at least one
+     */
+    public void setLimit(RequestPriority priority, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("At least one concurrent request has to be allowed!");
+        }
+        lock.lock();
+        try {
+            limits.put(priority, Math.min(limit, maxConcurrency));
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the weight of the given priority class, which is the relative
+     * share of the freed slots that the class receives while several classes
+     * are waiting
+     *
+     * @param priority the priority class
+     * @param weight the weight of the class, at least one
+     */
+    public void setWeight(RequestPriority priority, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("The weight has to be at least one!");
+        }
+        lock.lock();
+        try {
+            weights.put(priority, weight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the amount of waiting requests of the given priority class
+     *
+     * @param priority the priority class
+     * @return the amount of waiting requests
+     */
+    public int getQueueLength(RequestPriority priority) {
+        lock.lock();
+        try {
+            return queues.get(priority).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the amount of running requests of the given priority class
+     *
+     * @param priority the priority class
+     * @return the amount of running requests
+     */
+    public int getRunning(RequestPriority priority) {
+        lock.lock();
+        try {
+            return running.get(priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a request of the given priority class may be sent. Each
+     * successful call has to be followed by a call to
+     * {@link #release(triageapi.network.RequestPriority)}. The wait ends early
+     * if the calling thread is interrupted, or if the thread's
+     * <code>CancellationToken</code> is cancelled.
+     *
+     * @param priority the priority class of the request
+     * @throws InterruptedIOException if the wait was interrupted or cancelled
+     */
+    public void acquire(RequestPriority priority) throws InterruptedIOException {
+        CancellationToken token = CancellationToken.current();
+        Waiter waiter;
+        lock.lock();
+        try {
+            waiter = new Waiter(lock.newCondition());
+            queues.get(priority).addLast(waiter);
+            dispatch();
+            if (waiter.granted) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        //Wake up the waiter if its token is cancelled
+        Cancellable wakeUp = () -> {
+            lock.lock();
+            try {
+                waiter.condition.signal();
+            } finally {
+                lock.unlock();
+            }
+            return true;
+        };
+        if (token != null) {
+            token.register(wakeUp);
+        }
+
+        lock.lock();
+        try {
+            while (waiter.granted == false) {
+                if (token != null && token.isCancelled()) {
+                    queues.get(priority).remove(waiter);
+                    throw new InterruptedIOException("The request was cancelled while it was waiting to be sent");
+                }
+                try {
+                    waiter.condition.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    if (waiter.granted) {
+                        //The slot was granted in the meantime, and is handed to the next request
+                        release(priority);
+                    } else {
+                        queues.get(priority).remove(waiter);
+                    }
+                    throw new InterruptedIOException("Interrupted while waiting to send a request");
+                }
+            }
+        } finally {
+            lock.unlock();
+            if (token != null) {
+                token.unregister(wakeUp);
+            }
+        }
+    }
+
+    /**
+     * Frees the slot of a request of the given priority class, which is
+     * handed to the next waiting request
+     *
+     * @param priority the priority class of the request
+     */
+    public void release(RequestPriority priority) {
+        lock.lock();
+        try {
+            running.put(priority, running.get(priority) - 1);
+            totalRunning--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Grants slots to waiting requests, as long as slots are free. The lock
+     * has to be held by the calling thread.
+     */
+    private void dispatch() {
+        while (totalRunning < maxConcurrency) {
+            RequestPriority next = selectNext();
+            if (next == null) {
+                return;
+            }
+            Waiter waiter = queues.get(next).pollFirst();
+            running.put(next, running.get(next) + 1);
+            totalRunning++;
+            waiter.granted = true;
+            waiter.condition.signal();
+        }
+    }
+
+    /**
+     * Selects the priority class that receives the next free slot, by means
+     * of smooth weighted round-robin over the classes that are waiting and
+     * are below their limit. The lock has to be held by the calling thread.
+     *
+     * @return the selected priority class, or null if no class is eligible
+     */
+    private RequestPriority selectNext() {
+        RequestPriority selected = null;
+        int totalWeight = 0;
+        for (RequestPriority priority : RequestPriority.values()) {
+            if (queues.get(priority).isEmpty() || running.get(priority) >= limits.get(priority)) {
+                continue;
+            }
+            int weight = weights.get(priority);
+            totalWeight += weight;
+            currentWeights.put(priority, currentWeights.get(priority) + weight);
+            if (selected == null || currentWeights.get(priority) > currentWeights.get(selected)) {
+                selected = priority;
+            }
+        }
+        if (selected != null) {
+            currentWeights.put(selected, currentWeights.get(selected) - totalWeight);
+        }
+        return selected;
+    }
+
+    /**
+     * A request that waits for a slot
+     */
+    private static class Waiter {
+
+        /**
+         * The condition on which the request waits
+         */
+        private final Condition condition;
+
+        /**
+         * True once the request was granted a slot
+         */
+        private boolean granted;
+
+        /**
+         * Creates a waiting request
+         *
+         * @param condition the condition on which the request waits
+         */
+        private Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
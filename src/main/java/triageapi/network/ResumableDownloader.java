@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class downloads large resources, such as samples, network captures, and
+ * memory dumps, directly into a file. The resource is written into a partial
+ * file next to the destination, which is only moved to the destination once
+ * the download is complete. If a request fails halfway, the download resumes
+ * from the last byte that was received, by means of a HTTP <em>Range</em>
+ * request, rather than starting over. A partial file that is left behind by an
+ * earlier process is resumed in the same way.<br>
+ * <br>
+ * Optionally, resources of which the size is known are downloaded as several
+ * ranges at once, which are each resumed individually, and joined once all of
+ * them are complete. The size of the result is checked against the expected
+ * size, or against the size that the web server reported, when either is
+ * known.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class ResumableDownloader {
+
+    /**
+     * The extension of the partial file in which a download is written
+     */
+    public static final String PARTIAL_EXTENSION = ".part";
+
+    /**
+     * The default size of a range when a resource is downloaded as several
+     * ranges at once, which equals 16 megabytes
+     */
+    private static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The longest delay between two attempts, in milliseconds
+     */
+    private static final long MAXIMUM_RETRY_DELAY = 30_000;
+
+    /**
+     * The transport via which the ranges are requested
+     */
+    private final TriageTransport transport;
+
+    /**
+     * The maximum amount of consecutive attempts that do not receive any bytes
+     */
+    private volatile int maxAttempts;
+
+    /**
+     * The delay before the first retry, in milliseconds, which doubles with
+     * each consecutive failure
+     */
+    private volatile long retryDelay;
+
+    /**
+     * The amount of ranges that are downloaded at once
+     */
+    private volatile int parallelism;
+
+    /**
+     * The size of each range when a resource is downloaded as several ranges
+     */
+    private volatile long segmentSize;
+
+    /**
+     * Creates a downloader that requests the resources via the given
+     * transport. By default, each download is retried up to five consecutive
+     * times without progress, and is downloaded as a single range.
+     *
+     * @param transport the transport to request the resources with
+     */
+    public ResumableDownloader(TriageTransport transport) {
+        this.transport = transport;
+        this.maxAttempts = 5;
+        this.retryDelay = 1000;
+        this.parallelism = 1;
+        this.segmentSize = DEFAULT_SEGMENT_SIZE;
+    }
+
+    /**
+     * Sets the maximum amount of consecutive attempts that do not receive any
+     * bytes, after which the download fails. Attempts that receive at least
+     * one byte reset the count.
+     *
+     * @param maxAttempts the maximum amount of attempts, at least one
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is required!");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Sets the delay before the first retry, which doubles with each
+     * consecutive failure, up to 30 seconds
+     *
+     * @param retryDelay the delay in milliseconds, zero or more
+     */
+    public void setRetryDelay(long retryDelay) {
+        if (retryDelay < 0) {
+            throw new IllegalArgumentException("The retry delay cannot be negative!");
+        }
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Sets the amount of ranges that are downloaded at once. Only resources of
+     * which the size is known in advance, and which span at least two ranges,
+     * are downloaded in parallel.
+     *
+     * @param parallelism the amount of concurrent ranges, at least one
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism has to be at least one!");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the size of each range when a resource is downloaded as several
+     * ranges at once
+     *
+     * @param segmentSize the size of a range in bytes, at least one
+     */
+    public void setSegmentSize(long segmentSize) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("The segment size has to be at least one byte!");
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Downloads the resource at the given URL into the given file, of which
+     * the size is unknown in advance
+     *
+     * @param url the URL of the resource
+     * @param destination the file to write the resource to, which is
+     * overwritten if it exists
+     * @return the size of the resource in bytes
+     * @throws IOException if the download fails after all attempts, if the
+     * size does not match the size the web server reported, or if the file
+     * cannot be written
+     */
+    public long download(String url, File destination) throws IOException {
+        return download(url, destination, -1);
+    }
+
+    /**
+     * Downloads the resource at the given URL into the given file
+     *
+     * @param url the URL of the resource
+     * @param destination the file to write the resource to, which is
+     * overwritten if it exists
+     * @param expectedSize the size of the resource in bytes, or -1 if it is
+     * unknown
+     * @return the size of the resource in bytes
+     * @throws IOException if the download fails after all attempts, if the
+     * size does not match the expected size, or if the file cannot be written
+     */
+    public long download(String url, File destination, long expectedSize) throws IOException {
+        File part = new File(destination.getPath() + PARTIAL_EXTENSION);
+        long size;
+        //A partial file of an earlier single range download is resumed as such
+        if (parallelism > 1 && expectedSize >= 2 * segmentSize && part.exists() == false) {
+            size = downloadSegments(url, part, expectedSize);
+        } else {
+            size = downloadRange(url, part, 0, -1, expectedSize);
+        }
+
+        if (expectedSize >= 0 && size != expectedSize) {
+            Files.deleteIfExists(part.toPath());
+            throw new IOException("The download of \"" + url + "\" contains " + size + " bytes, whereas " + expectedSize + " bytes were expected");
+        }
+        Files.move(part.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return size;
+    }
+
+    /**
+     * Downloads the resource as several ranges at once, each into their own
+     * partial file, after which the ranges are joined into the given file
+     *
+     * @param url the URL of the resource
+     * @param part the file to join the ranges into
+     * @param size the size of the resource in bytes
+     * @return the size of the joined file in bytes
+     * @throws IOException if any of the ranges fails, or if the files cannot
+     * be written
+     */
+    @SuppressWarnings("try")
+    private long downloadSegments(String url, File part, long size) throws IOException {
+        long length = segmentSize;
+        int count = (int) ((size + length - 1) / length);
+        List<File> segments = new ArrayList<>();
+        List<Future<Long>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, count), (runnable) -> {
+            Thread thread = new Thread(runnable, "triage-download");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        //The ranges observe the token of the calling thread
+        CancellationToken token = CancellationToken.current();
+        try {
+            for (int i = 0; i < count; i++) {
+                File segment = new File(part.getPath() + "." + i);
+                long start = i * length;
+                long end = Math.min(start + length, size) - 1;
+                segments.add(segment);
+                futures.add(executor.submit(() -> {
+                    try (CancellationToken.Scope scope = token == null ? null : token.enter()) {
+                        return downloadRange(url, segment, start, end, end - start + 1);
+                    }
+                }));
+            }
+
+            for (Future<Long> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IOException(cause);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while downloading \"" + url + "\"");
+                }
+            }
+        } finally {
+            //Stop the remaining ranges if one failed, the completed ranges are kept to resume later on
+            executor.shutdownNow();
+        }
+
+        //Join the ranges, after which they are no longer needed
+        try (FileChannel output = new FileOutputStream(part).getChannel()) {
+            for (File segment : segments) {
+                try (FileChannel input = new FileInputStream(segment).getChannel()) {
+                    long position = 0;
+                    long segmentLength = input.size();
+                    while (position < segmentLength) {
+                        position += input.transferTo(position, segmentLength - position, output);
+                    }
+                }
+            }
+        }
+        for (File segment : segments) {
+            Files.deleteIfExists(segment.toPath());
+        }
+        return part.length();
+    }
+
+    /**
+     * Downloads the given range of the resource into the given file, which
+     * contains the bytes of the range that were received by earlier attempts.
+     * Each attempt requests the remainder of the range, until the range is
+     * complete, or until the maximum amount of consecutive attempts without
+     * progress is reached.
+     *
+     * @param url the URL of the resource
+     * @param file the file that contains the received bytes of the range
+     * @param start the offset of the first byte of the range
+     * @param end the offset of the last byte of the range (inclusive), or -1
+     * for the remainder of the resource
+     * @param expectedLength the length of the range, or -1 if it is unknown
+     * @return the amount of bytes in the given file
+     * @throws IOException if the range cannot be downloaded, or if the file
+     * cannot be written
+     */
+    private long downloadRange(String url, File file, long start, long end, long expectedLength) throws IOException {
+        long length = expectedLength;
+        int failures = 0;
+        while (true) {
+            long offset = file.length();
+            if (length >= 0 && offset > length) {
+                //The file does not belong to this resource, or the resource changed
+                Files.delete(file.toPath());
+                offset = 0;
+            }
+            if (length >= 0 && offset == length && (offset > 0 || file.exists())) {
+                return offset;
+            }
+
+            IOException failure;
+            try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file, true))) {
+                ContentRange range = transport.get(url, start + offset, end, output);
+                if (length < 0 && range.getTotalLength() >= 0) {
+                    length = range.getTotalLength() - start;
+                }
+                if (length < 0 || offset + range.getLength() >= length) {
+                    //The size is unknown, or all bytes were received
+                    output.flush();
+                    return offset + range.getLength();
+                }
+                failure = new IOException("The response of \"" + url + "\" ended after " + (start + offset + range.getLength()) + " bytes");
+            } catch (TriageStatusException ex) {
+                if (ex.getStatusCode() == 416 && offset > 0 && expectedLength < 0) {
+                    //The stored bytes do not match the resource, so it is downloaded again
+                    Files.delete(file.toPath());
+                    length = -1;
+                } else if (ex.getStatusCode() == 416) {
+                    throw new IOException("The resource at \"" + url + "\" is smaller than " + (start + offset + 1) + " bytes", ex);
+                } else if (ex.isRetryable() == false) {
+                    throw ex;
+                }
+                failure = ex;
+            } catch (CircuitOpenException ex) {
+                //The downloads of the environment are unavailable, which is not waited for
+                throw ex;
+            } catch (IOException ex) {
+                //Timeouts and broken connections are resumed, but cancelled downloads are not
+                CancellationToken token = CancellationToken.current();
+                if (Thread.currentThread().isInterrupted() || (token != null && token.isCancelled())) {
+                    throw ex;
+                }
+                failure = ex;
+            }
+
+            //Attempts that received bytes reset the amount of consecutive failures
+            if (file.length() > offset) {
+                failures = 0;
+            } else {
+                failures++;
+            }
+            if (failures >= maxAttempts) {
+                throw failure;
+            }
+            sleep(Math.min(MAXIMUM_RETRY_DELAY, retryDelay << Math.min(failures, 16)));
+        }
+    }
+
+    /**
+     * Waits the given amount of milliseconds before the next attempt
+     *
+     * @param millis the delay in milliseconds
+     * @throws InterruptedIOException if the thread is interrupted while
+     * waiting
+     */
+    private void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to resume a download");
+        }
+    }
+}
@@ -16,35 +16,195 @@
  */
 package triageapi.network;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import org.apache.hc.client5.http.classic.HttpClient;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import org.apache.hc.client5.http.ClientProtocolException;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
 import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
 import org.apache.hc.client5.http.entity.mime.MultipartEntityBuilder;
+import org.apache.hc.client5.http.impl.ChainElement;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import org.apache.hc.core5.http.nio.support.classic.ClassicToAsyncRequestProducer;
+import org.apache.hc.core5.http.nio.support.classic.ClassicToAsyncResponseConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.util.Timeout;
+import triageapi.jfr.RequestRecording;
+import triageapi.jfr.TriageFlightRecorder;
+import triageapi.metrics.EndpointMetrics;
+import triageapi.metrics.TriageMetrics;
+import triageapi.metrics.WindowedLatencyHistogram;
 
 /**
  * This class is used to send HTTP requests to a given URL. At the creation of
  * the object, the Triage API key is required. This key is then used in all
- * following requests that are made with that specific instance.
+ * following requests that are made with that specific instance.<br>
+ * <br>
+ * All requests share a single pool of connections, which optionally
+ * multiplexes concurrent requests over HTTP/2, and are recorded in the
+ * connector's metrics, grouped per endpoint template. Additionally, each
+ * request is emitted as a <code>TriageRequestEvent</code> when a JDK Flight
+ * Recorder recording is active and the runtime provides JDK Flight Recorder,
+ * and is passed to the registered <code>TriageRequestListener</code>
+ * instances.<br>
+ * <br>
+ * Responses may be compressed with gzip or deflate, in which case they are
+ * decompressed while they are being read. The metrics record both the amount
+ * of bytes that were received over the wire, and the amount of bytes after
+ * decompression.
  *
  * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
  */
-public class TriageConnector {
+public class TriageConnector implements TriageTransport {
+
+    /**
+     * The maximum amount of pooled connections per host
+     */
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 20;
+
+    /**
+     * The maximum amount of pooled connections in total
+     */
+    private static final int MAX_CONNECTIONS = 100;
+
+    /**
+     * The maximum time to establish a connection, in seconds
+     */
+    private static final int CONNECT_TIMEOUT = 30;
+
+    /**
+     * The duration of a window of the time-to-headers histograms, in seconds
+     */
+    private static final int HEADER_LATENCY_WINDOW = 60;
+
+    /**
+     * The maximum time that the multiplexed client blocks on a single read or
+     * write, in minutes. The response timeouts and deadlines of the requests
+     * are shorter by default, meaning that they take effect first.
+     */
+    private static final int MULTIPLEXED_BLOCKING_TIMEOUT = 10;
+
+    /**
+     * The scheduler that aborts requests once their deadline passes, and that
+     * launches hedged requests, which is shared by all connectors
+     */
+    private static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+
+    /**
+     * The threads that send hedged requests, which are shared by all
+     * connectors
+     */
+    private static final ExecutorService HEDGES = Executors.newCachedThreadPool((runnable) -> {
+        Thread thread = new Thread(runnable, "triage-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * The API key of the used Triage account
      */
     private String key;
 
+    /**
+     * The HTTP client that is used for all requests, or null if the requests
+     * are multiplexed
+     */
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * The asynchronous HTTP client that multiplexes all requests, or null if
+     * the requests are not multiplexed
+     */
+    private final CloseableHttpAsyncClient asyncClient;
+
+    /**
+     * The metrics of all requests that are made with this connector
+     */
+    private final TriageMetrics metrics;
+
+    /**
+     * The listeners that observe every request that is made with this
+     * connector
+     */
+    private final List<TriageRequestListener> listeners;
+
+    /**
+     * The timeouts of each kind of operation
+     */
+    private final Map<TriageOperation, TriageTimeouts> timeouts;
+
+    /**
+     * The policy via which metadata requests are hedged, or null if requests
+     * are not hedged
+     */
+    private volatile HedgingPolicy hedgingPolicy;
+
+    /**
+     * The adaptive limit of in-flight bulk requests, or null if bulk requests
+     * are not limited
+     */
+    private volatile AdaptiveConcurrencyLimit bulkConcurrencyLimit;
+
+    /**
+     * The policy of the circuit breakers, or null if requests are not guarded
+     * by circuit breakers
+     */
+    private volatile CircuitBreakerPolicy circuitBreakerPolicy;
+
+    /**
+     * The circuit breakers, keyed by the environment and the endpoint group
+     */
+    private final Map<String, CircuitBreaker> circuitBreakers;
+
+    /**
+     * The time until the response headers of successful requests arrived,
+     * over the last few minutes, keyed by the endpoint template
+     */
+    private final Map<String, WindowedLatencyHistogram> headerLatencies;
+
     /**
      * Creates an instance of the connector, which is used to send the HTTP
      * requests to the given URLs
@@ -52,8 +212,226 @@ public class TriageConnector {
      * @param key the Triage key to authenticate the request with the Triage API
      */
     public TriageConnector(String key) {
+        this(key, false);
+    }
+
+    /**
+     * Creates an instance of the connector, which is used to send the HTTP
+     * requests to the given URLs. If multiplexing is enabled, the connector
+     * negotiates HTTP/2 via ALPN when connecting over TLS, and falls back to
+     * HTTP/1.1 if the server does not support HTTP/2. Over HTTP/2, concurrent
+     * requests to the same host share a few connections, rather than requiring
+     * a connection per request.
+     *
+     * @param key the Triage key to authenticate the request with the Triage API
+     * @param multiplexed true to negotiate HTTP/2, false to only use HTTP/1.1
+     */
+    public TriageConnector(String key, boolean multiplexed) {
         //Sets the API key
         this.key = key;
+        //The client (and its connection pool) is shared by all requests
+        this.httpClient = multiplexed ? null : createClient();
+        this.asyncClient = multiplexed ? createMultiplexedClient() : null;
+        this.metrics = new TriageMetrics();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.timeouts = new ConcurrentHashMap<>();
+        this.circuitBreakers = new ConcurrentHashMap<>();
+        this.headerLatencies = new ConcurrentHashMap<>();
+        for (TriageOperation operation : TriageOperation.values()) {
+            timeouts.put(operation, TriageTimeouts.getDefault(operation));
+        }
+    }
+
+    /**
+     * Creates the scheduler that aborts requests once their deadline passes,
+     * and that launches hedged requests. Its single thread is a daemon, and
+     * cancelled tasks are removed immediately, as most requests complete
+     * before their deadline.
+     *
+     * @return the newly created scheduler
+     */
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+            Thread thread = new Thread(runnable, "triage-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * Sets the timeouts of the given kind of operation, which apply to all
+     * requests that start afterwards
+     *
+     * @param operation the kind of operation
+     * @param operationTimeouts the timeouts of the operation
+     */
+    @Override
+    public void setTimeouts(TriageOperation operation, TriageTimeouts operationTimeouts) {
+        timeouts.put(operation, operationTimeouts);
+    }
+
+    /**
+     * Sets the policy via which metadata requests are hedged. Hedging is
+     * disabled by default. Only GET requests for metadata are hedged, as
+     * downloads and event streams are too large to send twice.
+     *
+     * @param hedgingPolicy the policy to use, or null to disable hedging
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Sets the adaptive limit of in-flight bulk requests, which are the
+     * requests with the {@link RequestPriority#BULK} priority. By default,
+     * these are downloads and event streams, as well as the requests that are
+     * made within a bulk priority scope. The limit grows while the requests
+     * succeed quickly, and shrinks once they are throttled, time out, or slow
+     * down. Bulk requests are not limited by default, other than by the
+     * connection pool.
+     *
+     * @param bulkConcurrencyLimit the limit to use, or null to disable it
+     */
+    public void setBulkConcurrencyLimit(AdaptiveConcurrencyLimit bulkConcurrencyLimit) {
+        this.bulkConcurrencyLimit = bulkConcurrencyLimit;
+    }
+
+    /**
+     * Sets the policy of the circuit breakers, which guard each combination
+     * of an environment and an endpoint group. Once the requests of a group
+     * keep failing due to an outage, further requests fail immediately with a
+     * {@link CircuitOpenException}, until a probe request succeeds. Requests
+     * are not guarded by circuit breakers by default. Setting a policy resets
+     * the state of all circuit breakers.
+     *
+     * @param circuitBreakerPolicy the policy to use, or null to disable the
+     * circuit breakers
+     */
+    public void setCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+        this.circuitBreakerPolicy = circuitBreakerPolicy;
+        circuitBreakers.clear();
+    }
+
+    /**
+     * Gets the policy of the circuit breakers
+     *
+     * @return the policy, or null if requests are not guarded by circuit
+     * breakers
+     */
+    public CircuitBreakerPolicy getCircuitBreakerPolicy() {
+        return circuitBreakerPolicy;
+    }
+
+    /**
+     * Gets the circuit breakers that guarded at least one request since the
+     * policy was set
+     *
+     * @return the circuit breakers
+     */
+    public Collection<CircuitBreaker> getCircuitBreakers() {
+        return new ArrayList<>(circuitBreakers.values());
+    }
+
+    /**
+     * Gets the circuit breaker that guards the given URL, and creates it if
+     * it does not exist yet
+     *
+     * @param policy the policy of the circuit breaker
+     * @param url the URL of a request
+     * @param endpoint the endpoint template of the URL
+     * @return the circuit breaker of the URL's environment and endpoint group
+     */
+    private CircuitBreaker getCircuitBreaker(CircuitBreakerPolicy policy, String url, String endpoint) {
+        String environment = EndpointTemplate.environmentOf(url);
+        EndpointGroup group = EndpointGroup.of(endpoint);
+        return circuitBreakers.computeIfAbsent(environment + " " + group, (name) -> new CircuitBreaker(environment, group, policy));
+    }
+
+    /**
+     * Gets the histogram of the time until the response headers of successful
+     * requests to the given endpoint arrived
+     *
+     * @param endpoint the endpoint template
+     * @return the histogram of the endpoint
+     */
+    private WindowedLatencyHistogram getHeaderLatency(String endpoint) {
+        return headerLatencies.computeIfAbsent(endpoint, (name) -> new WindowedLatencyHistogram(HEADER_LATENCY_WINDOW, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Gets the adaptive limit of in-flight bulk requests
+     *
+     * @return the limit, or null if bulk requests are not limited
+     */
+    public AdaptiveConcurrencyLimit getBulkConcurrencyLimit() {
+        return bulkConcurrencyLimit;
+    }
+
+    /**
+     * Gets the policy via which metadata requests are hedged
+     *
+     * @return the policy, or null if requests are not hedged
+     */
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Gets the timeouts of the given kind of operation
+     *
+     * @param operation the kind of operation
+     * @return the timeouts of the operation
+     */
+    public TriageTimeouts getTimeouts(TriageOperation operation) {
+        return timeouts.get(operation);
+    }
+
+    /**
+     * Adds a listener that observes every request that is made with this
+     * connector
+     *
+     * @param listener the listener to add
+     */
+    @Override
+    public void addRequestListener(TriageRequestListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes the given listener, if it was added
+     *
+     * @param listener the listener to remove
+     */
+    @Override
+    public void removeRequestListener(TriageRequestListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Closes the HTTP client of this connector, which closes its pooled
+     * connections. Requests that are made afterwards fail.
+     *
+     * @throws IOException if the client cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (asyncClient != null) {
+            asyncClient.close();
+        } else {
+            httpClient.close();
+        }
+    }
+
+    /**
+     * Gets the metrics of all requests that were made with this connector
+     *
+     * @return the metrics of this connector
+     */
+    @Override
+    public TriageMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -63,13 +441,727 @@ public class TriageConnector {
      *
      * @param url the URL which was requested
      * @param statusCode the server's status code in the given response
-     * @throws IOException if the status code is lower than 100, or above (or
-     * equal to) 400
+     * @throws TriageStatusException if the status code is lower than 100, or
+     * above (or equal to) 400
      */
-    private void checkStatusCode(String url, int statusCode) throws IOException {
+    private void checkStatusCode(String url, int statusCode) throws TriageStatusException {
         if (statusCode < 100 || statusCode >= 400) {
-            throw new IOException("Status code error: the response of \"" + url + "\" returned " + statusCode);
+            throw new TriageStatusException(url, statusCode);
+        }
+    }
+
+    /**
+     * Creates a HTTP client with the connect timeout of this connector. The
+     * other timeouts are set per request, based on the kind of operation.
+     *
+     * @return the newly created HTTP client
+     */
+    private CloseableHttpClient createClient() {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS)
+                .build();
+
+        PoolingHttpClientConnectionManager poolingHttpClientConnectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setDefaultConnectionConfig(connectionConfig)
+                .setMaxConnPerRoute(MAX_CONNECTIONS_PER_ROUTE)
+                .setMaxConnTotal(MAX_CONNECTIONS)
+                .build();
+
+        return HttpClientBuilder.create()
+                .setConnectionManager(poolingHttpClientConnectionManager)
+                //Responses are decompressed by the connector, so both the wire and decoded sizes are known
+                .disableContentCompression()
+                //Marks the moment a connection is obtained, if the request is timed
+                .addExecInterceptorBefore(ChainElement.MAIN_TRANSPORT.name(), "triage-timing", (request, scope, chain) -> {
+                    markConnected(scope.clientContext);
+                    return chain.proceed(request, scope);
+                })
+                .build();
+    }
+
+    /**
+     * Creates an asynchronous HTTP client with the connect timeout of this
+     * connector, which negotiates HTTP/2 and multiplexes concurrent requests
+     * over the same connections. The client is started before it is returned.
+     *
+     * @return the newly created and started HTTP client
+     */
+    private CloseableHttpAsyncClient createMultiplexedClient() {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS)
+                .build();
+
+        PoolingAsyncClientConnectionManager poolingAsyncClientConnectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setDefaultConnectionConfig(connectionConfig)
+                //Use HTTP/2 if the server agrees via ALPN, and HTTP/1.1 otherwise
+                .setDefaultTlsConfig(TlsConfig.custom()
+                        .setVersionPolicy(HttpVersionPolicy.NEGOTIATE)
+                        .build())
+                .setMaxConnPerRoute(MAX_CONNECTIONS_PER_ROUTE)
+                .setMaxConnTotal(MAX_CONNECTIONS)
+                //Requests share a HTTP/2 connection, rather than each leasing their own
+                .setMessageMultiplexing(true)
+                .build();
+
+        CloseableHttpAsyncClient asyncClient = HttpAsyncClientBuilder.create()
+                .setConnectionManager(poolingAsyncClientConnectionManager)
+                //Responses are decompressed by the connector, so both the wire and decoded sizes are known
+                .disableContentCompression()
+                //Marks the moment a connection is obtained, if the request is timed
+                .addExecInterceptorBefore(ChainElement.MAIN_TRANSPORT.name(), "triage-timing", (request, entityProducer, scope, chain, callback) -> {
+                    markConnected(scope.clientContext);
+                    chain.proceed(request, entityProducer, scope, callback);
+                })
+                .build();
+        asyncClient.start();
+        return asyncClient;
+    }
+
+    /**
+     * Sends the given request with the HTTP client of this connector, and
+     * passes the response to the given handler. If the requests are
+     * multiplexed, the request and response are streamed between the calling
+     * thread and the asynchronous client, with flow control towards the
+     * server if the response is consumed slowly. Cancelling the request aborts
+     * the exchange in both cases.
+     *
+     * @param <T> the type of the value the handler returns
+     * @param request the request to send
+     * @param context the context of the request
+     * @param handler the handler that consumes the response
+     * @return the value that the handler returned
+     * @throws IOException if the request fails, or if the handler fails
+     */
+    private <T> T send(HttpUriRequestBase request, HttpClientContext context, HttpClientResponseHandler<T> handler) throws IOException {
+        if (asyncClient == null) {
+            return httpClient.execute(request, context, handler);
+        }
+
+        Timeout blockingTimeout = Timeout.ofMinutes(MULTIPLEXED_BLOCKING_TIMEOUT);
+        ClassicToAsyncRequestProducer producer = new ClassicToAsyncRequestProducer(request, blockingTimeout);
+        ClassicToAsyncResponseConsumer consumer = new ClassicToAsyncResponseConsumer(blockingTimeout);
+        //Not every failure of the exchange wakes the calling thread, so the blocked producer and consumer are failed explicitly
+        Future<Void> exchange = asyncClient.execute(producer, consumer, context, new FutureCallback<Void>() {
+            @Override
+            public void completed(Void result) {
+                //The response is consumed by the calling thread
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                producer.failed(ex);
+                consumer.failed(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                failed(new InterruptedIOException("The request to \"" + request.getRequestUri() + "\" was aborted"));
+            }
+        });
+        request.setDependency(() -> exchange.cancel(true));
+        try {
+            //Write the request body, if any, after which the response headers are awaited
+            producer.blockWaiting().execute();
+            try (ClassicHttpResponse response = consumer.blockWaiting()) {
+                return handler.handleResponse(response);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response of \"" + request.getRequestUri() + "\"");
+        } catch (HttpException ex) {
+            throw new ClientProtocolException(ex.getMessage(), ex);
+        } finally {
+            //Releases the stream if the response was not consumed completely, and has no effect otherwise
+            exchange.cancel(true);
+        }
+    }
+
+    /**
+     * Marks the moment a connection was obtained for the request in the given
+     * context, if the request is observed
+     *
+     * @param context the context of the request
+     */
+    private static void markConnected(HttpContext context) {
+        Object triageRequest = context.getAttribute(TriageRequest.CONTEXT_ATTRIBUTE);
+        if (triageRequest instanceof TriageRequest) {
+            ((TriageRequest) triageRequest).markConnected();
+        }
+    }
+
+    /**
+     * A handler that consumes the response body, and which has access to the
+     * response's headers
+     *
+     * @param <T> the type of the value the handler returns
+     */
+    private interface ResponseHandler<T> {
+
+        /**
+         * Handles the response
+         *
+         * @param response the response, of which the headers can be read
+         * @param input the decompressed response body
+         * @return the value that is returned to the caller
+         * @throws IOException if the response cannot be handled
+         */
+        T handle(ClassicHttpResponse response, InputStream input) throws IOException;
+    }
+
+    /**
+     * Executes the given request, and passes the response body to the given
+     * handler while it is being received. This is the single path via which
+     * all requests are sent, meaning that each request is authenticated,
+     * bounded by the timeouts of its kind of operation, cancellable via the
+     * calling thread's <code>CancellationToken</code>, and recorded in the
+     * metrics of this connector in the same way.
+     *
+     * @param <T> the type of the value the handler returns
+     * @param url the URL to which the request is sent
+     * @param request the request to execute
+     * @param handler the handler that consumes the web server's response
+     * @return the value that the handler returned
+     * @throws IOException if anything goes wrong with the HTTP connection, if
+     * the status code indicates an error, or if the handler fails
+     * @throws InterruptedIOException if the request is cancelled, or if it
+     * exceeds its deadline
+     */
+    private <T> T execute(String url, HttpUriRequestBase request, ResponseHandler<T> handler) throws IOException {
+        return execute(url, request, handler, () -> false);
+    }
+
+    /**
+     * Executes the given request, as is described in
+     * {@link #execute(java.lang.String, org.apache.hc.client5.http.classic.methods.HttpUriRequestBase, triageapi.network.TriageConnector.ResponseHandler)}.
+     * A request that is superseded, as another attempt of the same hedged
+     * request was used instead, is not recorded in the metrics, as its
+     * latency and failure are not those of the endpoint.
+     *
+     * @param <T> the type of the value the handler returns
+     * @param url the URL to which the request is sent
+     * @param request the request to execute
+     * @param handler the handler that consumes the web server's response
+     * @param superseded returns true once the request is superseded
+     * @return the value that the handler returned
+     * @throws IOException if anything goes wrong with the HTTP connection, if
+     * the status code indicates an error, or if the handler fails
+     * @throws InterruptedIOException if the request is cancelled, or if it
+     * exceeds its deadline
+     */
+    private <T> T execute(String url, HttpUriRequestBase request, ResponseHandler<T> handler, BooleanSupplier superseded) throws IOException {
+        //Set the authorisation bearer header
+        request.setHeader("Authorization", "Bearer " + key);
+        //Request a compressed response, which is decompressed while it is read, unless the caller requires a specific encoding
+        if (request.containsHeader("Accept-Encoding") == false) {
+            request.setHeader("Accept-Encoding", ContentDecoder.ACCEPT_ENCODING);
+        }
+
+        String endpoint = EndpointTemplate.of(url);
+        //Requests of a cancelled token are not sent at all
+        CancellationToken token = CancellationToken.current();
+        if (token != null && token.isCancelled()) {
+            throw new InterruptedIOException("The request to \"" + url + "\" was cancelled");
+        }
+        //The timeouts depend on the kind of operation, where waiting for a pooled connection counts as a lack of progress
+        TriageTimeouts requestTimeouts = timeouts.get(TriageOperation.of(endpoint));
+        request.setConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(requestTimeouts.getResponseTimeout(), TimeUnit.MILLISECONDS)
+                .setResponseTimeout(requestTimeouts.getResponseTimeout(), TimeUnit.MILLISECONDS)
+                .build());
+
+        EndpointMetrics endpointMetrics = metrics.getEndpoint(endpoint);
+        HttpEntity requestEntity = request.getEntity();
+        long sent = requestEntity == null ? 0 : requestEntity.getContentLength();
+        int[] statusCode = {EndpointMetrics.NO_RESPONSE};
+        CountingInputStream[] received = {null};
+        CountingInputStream[] decoded = {null};
+
+        //The phases of the request are only tracked if they are observed
+        RequestRecording event = TriageFlightRecorder.newRequest();
+        boolean recorded = event.isEnabled();
+        boolean observed = recorded || !listeners.isEmpty();
+        TriageRequest triageRequest = null;
+        HttpClientContext context = HttpClientContext.create();
+        if (observed) {
+            if (recorded) {
+                event.begin();
+            }
+            triageRequest = new TriageRequest(request.getMethod(), url, endpoint, sent);
+            context.setAttribute(TriageRequest.CONTEXT_ATTRIBUTE, triageRequest);
+            notifyListeners(triageRequest, TriageRequestListener::beforeSend);
+        }
+        TriageRequest observedRequest = triageRequest;
+
+        //Requests fail immediately while the circuit breaker of their environment and endpoint group is open
+        CircuitBreakerPolicy breakerPolicy = circuitBreakerPolicy;
+        CircuitBreaker breaker = breakerPolicy == null ? null : getCircuitBreaker(breakerPolicy, url, endpoint);
+        boolean probe = false;
+        if (breaker != null) {
+            try {
+                probe = breaker.acquire(url);
+            } catch (CircuitOpenException ex) {
+                if (observedRequest != null) {
+                    notifyError(observedRequest, null, null, ex);
+                }
+                throw ex;
+            }
+        }
+
+        //Bulk requests wait until the adaptive limit admits them, if one is set
+        AdaptiveConcurrencyLimit limit = RequestPriority.of(url) == RequestPriority.BULK ? bulkConcurrencyLimit : null;
+        long admitted = 0;
+        if (limit != null) {
+            try {
+                admitted = limit.acquire();
+            } catch (InterruptedIOException ex) {
+                if (breaker != null) {
+                    breaker.onIgnored(probe);
+                }
+                if (observedRequest != null) {
+                    notifyError(observedRequest, null, null, ex);
+                }
+                throw ex;
+            }
+        }
+
+        long start = System.nanoTime();
+        long[] headersReceived = {0};
+        boolean failed = true;
+        boolean throttled = false;
+        boolean outage = false;
+        boolean rejected = false;
+
+        //Abort the request once its deadline passes, or once its token is cancelled
+        AtomicBoolean expired = new AtomicBoolean();
+        ScheduledFuture<?> deadline = null;
+        if (requestTimeouts.getDeadline() > 0) {
+            deadline = SCHEDULER.schedule(() -> {
+                expired.set(true);
+                request.cancel();
+            }, requestTimeouts.getDeadline(), TimeUnit.MILLISECONDS);
+        }
+        Cancellable abort = request::cancel;
+        if (token != null) {
+            token.register(abort);
+        }
+
+        try {
+            //Execute the request
+            T result = send(request, context, (response) -> {
+                headersReceived[0] = System.nanoTime();
+                statusCode[0] = response.getCode();
+                if (observedRequest != null) {
+                    observedRequest.markHeaders(response.getCode());
+                }
+                //Check if the status code indicates an error
+                checkStatusCode(url, response.getCode());
+                if (observedRequest != null) {
+                    notifyListeners(observedRequest, TriageRequestListener::afterHeaders);
+                }
+                //Get the response
+                HttpEntity responseEntity = response.getEntity();
+                InputStream content = responseEntity == null ? new ByteArrayInputStream(new byte[0]) : responseEntity.getContent();
+                String contentEncoding = responseEntity == null ? null : responseEntity.getContentEncoding();
+                //Pass the decompressed response to the handler, whilst counting the received and decoded bytes
+                try (CountingInputStream wire = new CountingInputStream(content)) {
+                    received[0] = wire;
+                    try (CountingInputStream input = new CountingInputStream(ContentDecoder.decode(wire, contentEncoding))) {
+                        decoded[0] = input;
+                        T value = handler.handle(response, input);
+                        if (observedRequest != null) {
+                            observedRequest.markCompleted(wire.getCount(), input.getCount());
+                        }
+                        return value;
+                    }
+                }
+            });
+            failed = false;
+            if (observedRequest != null) {
+                notifyListeners(observedRequest, TriageRequestListener::afterBody);
+            }
+            return result;
+        } catch (IOException ex) {
+            IOException failure = getAbortedFailure(url, ex, expired.get(), token, requestTimeouts);
+            throttled = isThrottled(ex, expired.get());
+            outage = isOutage(ex, expired.get(), headersReceived[0] != 0, received[0]);
+            rejected = ex instanceof TriageStatusException;
+            if (observedRequest != null) {
+                notifyError(observedRequest, received[0], decoded[0], failure);
+            }
+            throw failure;
+        } catch (RuntimeException ex) {
+            if (observedRequest != null) {
+                notifyError(observedRequest, received[0], decoded[0], new IOException(ex));
+            }
+            throw ex;
+        } finally {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            if (token != null) {
+                token.unregister(abort);
+            }
+            //Aborted requests say nothing about the availability or load of the server
+            boolean aborted = superseded.getAsBoolean() || (token != null && token.isCancelled());
+            if (breaker != null) {
+                //A request that failed without an outage or an erroneous status code, failed locally
+                if (aborted || (failed && outage == false && rejected == false)) {
+                    breaker.onIgnored(probe);
+                } else if (outage) {
+                    breaker.onFailure(probe);
+                } else {
+                    breaker.onSuccess(probe);
+                }
+            }
+            //Hedging waits for the response headers, so its delay is based on those of recent successful requests
+            if (failed == false && aborted == false) {
+                getHeaderLatency(endpoint).record(headersReceived[0] - start);
+            }
+            if (limit != null) {
+                long roundTrip = aborted ? -1 : (headersReceived[0] == 0 ? System.nanoTime() : headersReceived[0]) - start;
+                limit.release(admitted, roundTrip, aborted == false && throttled);
+            }
+            long bytesReceived = received[0] == null ? 0 : received[0].getCount();
+            long bytesDecoded = decoded[0] == null ? bytesReceived : decoded[0].getCount();
+            if (superseded.getAsBoolean() == false) {
+                endpointMetrics.record(statusCode[0], failed, sent, bytesReceived, bytesDecoded, System.nanoTime() - start);
+            }
+            if (recorded) {
+                event.complete(request.getMethod(), endpoint, statusCode[0], sent, bytesReceived, bytesDecoded, observedRequest.getConnectTime(), observedRequest.getWaitTime(), observedRequest.getTransferTime(), failed);
+            }
+        }
+    }
+
+    /**
+     * Checks if the given failure indicates that the server is overloaded,
+     * which is the case if the status code indicates a server error or rate
+     * limit, or if the request timed out
+     *
+     * @param exception the failure of the request
+     * @param expired true if the deadline of the request passed
+     * @return true if the request was throttled, false if not
+     */
+    private static boolean isThrottled(IOException exception, boolean expired) {
+        if (expired) {
+            return true;
+        } else if (exception instanceof TriageStatusException) {
+            return ((TriageStatusException) exception).isRetryable();
+        }
+        //The multiplexed client wraps the timeouts of its connections
+        Throwable cause = exception;
+        while (cause != null) {
+            if (cause instanceof SocketTimeoutException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the given failure indicates that the server is unavailable,
+     * which is the case if the request timed out, if the connection failed
+     * before the response headers were received, if the connection broke
+     * while the response body was read, or if the status code indicates a
+     * server error. Client errors, such as a missing resource or a rate limit,
+     * show that the server is available. Failures of the response handler,
+     * such as a full disk or a malformed body, occur locally.
+     *
+     * @param exception the failure of the request
+     * @param expired true if the deadline of the request passed
+     * @param headersReceived true if the response headers were received
+     * @param wire the stream of the response body as it was received, or null
+     * if the body was not opened
+     * @return true if the failure is due to an outage, false if not
+     */
+    private static boolean isOutage(IOException exception, boolean expired, boolean headersReceived, CountingInputStream wire) {
+        if (expired) {
+            return true;
+        } else if (exception instanceof TriageStatusException) {
+            return ((TriageStatusException) exception).getStatusCode() >= 500;
+        } else if (headersReceived == false) {
+            //Connection failures and timeouts before the response arrived
+            return true;
         }
+        //Only a broken connection fails the response body on the server's side
+        return wire != null && wire.hasFailed();
+    }
+
+    /**
+     * Gets the exception that describes why the request failed. If the request
+     * was aborted because it exceeded its deadline, or because its token was
+     * cancelled, the failure of the aborted connection is replaced by an
+     * exception that states so.
+     *
+     * @param url the URL of the request
+     * @param exception the exception that the request failed with
+     * @param expired true if the deadline of the request passed
+     * @param token the token of the request, or null if there is none
+     * @param requestTimeouts the timeouts of the request
+     * @return the exception to throw
+     */
+    private IOException getAbortedFailure(String url, IOException exception, boolean expired, CancellationToken token, TriageTimeouts requestTimeouts) {
+        InterruptedIOException aborted;
+        if (expired) {
+            aborted = new InterruptedIOException("The request to \"" + url + "\" exceeded its deadline of " + requestTimeouts.getDeadline() + " milliseconds");
+        } else if (token != null && token.isCancelled()) {
+            aborted = new InterruptedIOException("The request to \"" + url + "\" was cancelled");
+        } else {
+            return exception;
+        }
+        aborted.initCause(exception);
+        return aborted;
+    }
+
+    /**
+     * A single attempt of a hedged request
+     *
+     * @param <T> the type of the value the attempt returns
+     */
+    private interface Attempt<T> {
+
+        /**
+         * Performs the attempt
+         *
+         * @return the value that the handler returned
+         * @throws IOException if the attempt fails
+         */
+        T execute() throws IOException;
+    }
+
+    /**
+     * The state of a hedged request, which is shared by its attempts. The
+     * first attempt that receives successful response headers claims the
+     * request, after which the other attempts are aborted. The request fails
+     * if the claiming attempt fails, or if all attempts fail without any of
+     * them claiming the request.
+     *
+     * @param <T> the type of the value the request returns
+     */
+    private static class HedgedCall<T> {
+
+        /**
+         * The policy of the request, which counts the used hedged attempts
+         */
+        private final HedgingPolicy policy;
+
+        /**
+         * The result of the request
+         */
+        private final CompletableFuture<T> result;
+
+        /**
+         * The attempts that were started, of which the first is the original
+         * request
+         */
+        private final List<HttpGet> attempts;
+
+        /**
+         * The amount of attempts that did not finish yet
+         */
+        private int running;
+
+        /**
+         * The attempt that claimed the request, or null if none did yet
+         */
+        private HttpGet winner;
+
+        /**
+         * Creates the state of a hedged request without attempts
+         *
+         * @param policy the policy of the request
+         */
+        private HedgedCall(HedgingPolicy policy) {
+            this.policy = policy;
+            this.result = new CompletableFuture<>();
+            this.attempts = new ArrayList<>();
+        }
+
+        /**
+         * Registers the given attempt, unless the request is already claimed
+         * or completed
+         *
+         * @param attempt the attempt to register
+         * @return true if the attempt may be sent, false if not
+         */
+        private synchronized boolean start(HttpGet attempt) {
+            if (winner != null || result.isDone()) {
+                return false;
+            }
+            attempts.add(attempt);
+            running++;
+            return true;
+        }
+
+        /**
+         * Checks if an attempt claimed the request
+         *
+         * @return true if the request is claimed, false if not
+         */
+        private synchronized boolean isClaimed() {
+            return winner != null;
+        }
+
+        /**
+         * Checks if another attempt claimed the request
+         *
+         * @param attempt the attempt to check
+         * @return true if another attempt claimed the request, false if not
+         */
+        private synchronized boolean isSuperseded(HttpGet attempt) {
+            return winner != null && winner != attempt;
+        }
+
+        /**
+         * Claims the request for the given attempt, if no other attempt did,
+         * and aborts the other attempts
+         *
+         * @param attempt the attempt that received successful response
+         * headers
+         * @return true if the attempt claimed the request, false if another
+         * attempt did
+         */
+        private synchronized boolean claim(HttpGet attempt) {
+            if (winner == null) {
+                winner = attempt;
+                if (attempt != attempts.get(0)) {
+                    policy.recordHedgeWin();
+                }
+                for (HttpGet other : attempts) {
+                    if (other != attempt) {
+                        other.cancel();
+                    }
+                }
+            }
+            return winner == attempt;
+        }
+
+        /**
+         * Wraps the given handler, such that only the attempt that claims the
+         * request passes its response to the handler
+         *
+         * @param attempt the attempt whose response is handled
+         * @param handler the handler of the request
+         * @return the wrapped handler
+         */
+        private ResponseHandler<T> wrap(HttpGet attempt, ResponseHandler<T> handler) {
+            return (response, input) -> {
+                if (claim(attempt) == false) {
+                    throw new InterruptedIOException("The request was superseded by a hedged request");
+                }
+                return handler.handle(response, input);
+            };
+        }
+
+        /**
+         * Runs the given attempt, and stores its outcome
+         *
+         * @param request the request of the attempt
+         * @param attempt the attempt to run
+         */
+        private void run(HttpGet request, Attempt<T> attempt) {
+            try {
+                result.complete(attempt.execute());
+            } catch (IOException | RuntimeException ex) {
+                fail(request, ex);
+            }
+        }
+
+        /**
+         * Stores the failure of the given attempt. The request fails if the
+         * attempt claimed it, or if it was the last attempt and no attempt
+         * claimed the request.
+         *
+         * @param attempt the attempt that failed
+         * @param exception the failure of the attempt
+         */
+        private synchronized void fail(HttpGet attempt, Exception exception) {
+            running--;
+            if (winner == attempt || (winner == null && running == 0)) {
+                result.completeExceptionally(exception);
+            }
+        }
+
+        /**
+         * Waits for the result of the request
+         *
+         * @return the value that the handler returned
+         * @throws IOException if the request failed, or if the thread is
+         * interrupted while waiting
+         */
+        private T await() throws IOException {
+            try {
+                return result.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a hedged request");
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Passes the given request to each registered listener. Runtime exceptions
+     * that are thrown by a listener are ignored, as they should not affect the
+     * request.
+     *
+     * @param request the request to pass
+     * @param callback the listener function to call
+     */
+    private void notifyListeners(TriageRequest request, BiConsumer<TriageRequestListener, TriageRequest> callback) {
+        for (TriageRequestListener listener : listeners) {
+            try {
+                callback.accept(listener, request);
+            } catch (RuntimeException ex) {
+                //Ignore the listener's failure
+            }
+        }
+    }
+
+    /**
+     * Passes the failed request to each registered listener
+     *
+     * @param request the request that failed
+     * @param wire the stream of the response body as it was received, or null
+     * if no body was received
+     * @param input the stream of the decompressed response body, or null if
+     * it was not opened
+     * @param exception the cause of the failure
+     */
+    private void notifyError(TriageRequest request, CountingInputStream wire, CountingInputStream input, IOException exception) {
+        //Store the amount of bytes that was received before the failure
+        if (wire != null) {
+            request.setBytesReceived(wire.getCount(), input == null ? wire.getCount() : input.getCount());
+        }
+        notifyListeners(request, (listener, failedRequest) -> listener.onError(failedRequest, exception));
+    }
+
+    /**
+     * Reads the given stream into a byte array. Although the size is unknown,
+     * it is read in chunks of 8192 bytes.
+     *
+     * @param input the stream to read
+     * @return the content of the stream
+     * @throws IOException if the stream cannot be read
+     */
+    private byte[] readFully(InputStream input) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int offset;
+        byte[] data = new byte[8192];
+        while ((offset = input.read(data, 0, data.length)) != -1) {
+            buffer.write(data, 0, offset);
+        }
+        //Flush the buffer
+        buffer.flush();
+        //Return the byte array
+        return buffer.toByteArray();
     }
 
     /**
@@ -81,50 +1173,196 @@ public class TriageConnector {
      * @return the web server's response in the form of a byte array
      * @throws IOException if anything goes wrong with the HTTP GET connection
      */
+    @Override
     public byte[] get(String url) throws IOException {
+        return get(url, this::readFully);
+    }
+
+    /**
+     * Performs a generic HTTP GET request to the given URL, and passes the
+     * response to the given handler while it is being received. As such, the
+     * response is never kept in memory as a whole, unless the handler does so.
+     *
+     * @param <T> the type of the value the handler returns
+     * @param url the URL to request
+     * @param handler the handler that consumes the web server's response
+     * @return the value that the handler returned
+     * @throws IOException if anything goes wrong with the HTTP GET connection,
+     * or if the handler fails
+     */
+    @Override
+    public <T> T get(String url, TriageStreamHandler<T> handler) throws IOException {
+        //Metadata requests are hedged if a policy is set
+        HedgingPolicy policy = hedgingPolicy;
+        if (policy != null && TriageOperation.of(EndpointTemplate.of(url)) == TriageOperation.METADATA) {
+            return hedge(url, policy, (response, input) -> handler.handle(input));
+        }
         //Create the request based on the URL
         HttpGet request = new HttpGet(url);
-        //Set the authorisation bearer header
-        request.setHeader("Authorization", "Bearer " + key);
-        //Create a HTTP client
-        RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectionRequestTimeout(5, TimeUnit.MINUTES)
-                .setResponseTimeout(5, TimeUnit.MINUTES)
-                .build();
+        //Execute the request
+        return execute(url, request, (response, input) -> handler.handle(input));
+    }
 
-        ConnectionConfig connectionConfig = ConnectionConfig.custom()
-                .setConnectTimeout(5, TimeUnit.MINUTES)
-                .build();
+    /**
+     * Performs a HTTP GET request to the given URL on the calling thread, and
+     * sends an identical request on another thread if no response headers
+     * were received once the delay of the given policy passed. The first
+     * request to receive successful response headers passes its body to the
+     * handler, after which the other request is aborted. The handler is
+     * therefore called once at most.
+     *
+     * @param <T> the type of the value the handler returns
+     * @param url the URL to request
+     * @param policy the policy that determines the delay and budget
+     * @param handler the handler that consumes the web server's response
+     * @return the value that the handler returned
+     * @throws IOException if all requests fail, if the used request fails, or
+     * if the handler fails
+     */
+    @SuppressWarnings("try")
+    private <T> T hedge(String url, HedgingPolicy policy, ResponseHandler<T> handler) throws IOException {
+        long delay = policy.getDelay(getHeaderLatency(EndpointTemplate.of(url)));
+        if (delay < 0) {
+            return execute(url, new HttpGet(url), handler);
+        }
 
-        PoolingHttpClientConnectionManager poolingHttpClientConnectionManager = PoolingHttpClientConnectionManagerBuilder.create()
-                .setDefaultConnectionConfig(connectionConfig)
-                .build();
+        HedgedCall<T> call = new HedgedCall<>(policy);
+        HttpGet primary = new HttpGet(url);
+        call.start(primary);
+        //The hedged request observes the token and priority of the calling thread
+        CancellationToken token = CancellationToken.current();
+        RequestPriority priority = RequestPriority.current();
+        ScheduledFuture<?> launch = SCHEDULER.schedule(() -> {
+            HttpGet hedged = new HttpGet(url);
+            if (call.isClaimed() || policy.tryHedge() == false || call.start(hedged) == false) {
+                return;
+            }
+            HEDGES.execute(() -> {
+                try (CancellationToken.Scope tokenScope = token == null ? null : token.enter();
+                        RequestPriority.Scope priorityScope = priority == null ? null : priority.enter()) {
+                    call.run(hedged, () -> execute(url, hedged, call.wrap(hedged, handler), () -> call.isSuperseded(hedged)));
+                }
+            });
+        }, delay, TimeUnit.MILLISECONDS);
 
-        HttpClient httpClient = HttpClientBuilder.create()
-                .setConnectionManager(poolingHttpClientConnectionManager)
-                .setDefaultRequestConfig(requestConfig)
-                .build();
-        //Execute the request
-        return httpClient.execute(request, (response) -> {
-            //Get the response
-            HttpEntity responseEntity = response.getEntity();
-            //Check if the status code indicates an error
-            checkStatusCode(url, response.getCode());
-
-            //Read the response, although the size is unknown, its read in chunks of 1024 bytes
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        call.run(primary, () -> execute(url, primary, call.wrap(primary, handler), () -> call.isSuperseded(primary)));
+        launch.cancel(false);
+        return call.await();
+    }
+
+    /**
+     * Performs a generic HTTP GET request to the given URL, and writes the
+     * response to the given output stream while it is being received. As such,
+     * the response is never kept in memory as a whole, which makes this
+     * function suitable for large downloads. The given stream is not closed.
+     *
+     * @param url the URL to request
+     * @param output the stream to write the web server's response to
+     * @return the amount of bytes that were written to the given stream
+     * @throws IOException if anything goes wrong with the HTTP GET connection,
+     * or if the response cannot be written to the given stream
+     */
+    @Override
+    public long get(String url, OutputStream output) throws IOException {
+        return get(url, (input) -> {
+            //Copy the response to the given stream in chunks of 8192 bytes
+            long total = 0;
             int offset;
-            byte[] data = new byte[1024];
-            while ((offset = responseEntity.getContent().read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, offset);
-            }
-            //Flush the buffer
-            buffer.flush();
-            //Return the byte array
-            return buffer.toByteArray();
+            byte[] data = new byte[8192];
+            while ((offset = input.read(data, 0, data.length)) != -1) {
+                output.write(data, 0, offset);
+                total += offset;
+            }
+            //Flush the output
+            output.flush();
+            //Return the amount of written bytes
+            return total;
         });
     }
 
+    /**
+     * Performs a HTTP GET request for the given range of bytes of the resource
+     * at the given URL, and writes the received bytes to the given stream.
+     * The response is not compressed, as the range refers to the stored
+     * resource. If the web server does not honour the range, and sends the
+     * complete resource instead, only the requested range is written. The
+     * given stream is not closed.
+     *
+     * @param url the URL to request
+     * @param start the offset of the first byte to request
+     * @param end the offset of the last byte to request (inclusive), or -1 to
+     * request the remainder of the resource
+     * @param output the stream to write the requested bytes to
+     * @return the range that was written, including the total size of the
+     * resource if the web server provided it
+     * @throws IOException if anything goes wrong with the HTTP GET connection,
+     * if the web server sent a different range, or if the response cannot be
+     * written to the given stream
+     */
+    @Override
+    public ContentRange get(String url, long start, long end, OutputStream output) throws IOException {
+        if (start < 0 || (end != -1 && end < start)) {
+            throw new IllegalArgumentException("The range " + start + "-" + end + " is invalid!");
+        }
+        HttpGet request = new HttpGet(url);
+        //The range refers to the stored resource, so the response must not be compressed
+        request.setHeader("Accept-Encoding", "identity");
+        if (start > 0 || end != -1) {
+            request.setHeader("Range", "bytes=" + start + "-" + (end == -1 ? "" : end));
+        }
+        return execute(url, request, (response, input) -> {
+            boolean partial = response.getCode() == HttpStatus.SC_PARTIAL_CONTENT;
+            long totalLength;
+            if (partial) {
+                Header header = response.getFirstHeader("Content-Range");
+                String contentRange = header == null ? null : header.getValue();
+                long received = ContentRange.parseStart(contentRange);
+                if (received != start) {
+                    throw new IOException("The response of \"" + url + "\" started at byte " + received + ", whereas byte " + start + " was requested");
+                }
+                totalLength = ContentRange.parseTotalLength(contentRange);
+            } else {
+                //The complete resource is sent, of which the bytes before the range are skipped
+                HttpEntity entity = response.getEntity();
+                totalLength = entity == null ? 0 : entity.getContentLength();
+                skipFully(input, start);
+            }
+
+            //Copy the range to the given stream in chunks of 8192 bytes
+            long remaining = end == -1 ? Long.MAX_VALUE : end - start + 1;
+            long total = 0;
+            int offset;
+            byte[] data = new byte[8192];
+            while (remaining > 0 && (offset = input.read(data, 0, (int) Math.min(data.length, remaining))) != -1) {
+                output.write(data, 0, offset);
+                total += offset;
+                remaining -= offset;
+            }
+            //Flush the output
+            output.flush();
+            return new ContentRange(start, total, totalLength, partial);
+        });
+    }
+
+    /**
+     * Skips the given amount of bytes of the given stream
+     *
+     * @param input the stream to skip bytes of
+     * @param amount the amount of bytes to skip
+     * @throws IOException if the stream ends before the bytes are skipped
+     */
+    private void skipFully(InputStream input, long amount) throws IOException {
+        long remaining = amount;
+        byte[] data = new byte[8192];
+        while (remaining > 0) {
+            int read = input.read(data, 0, (int) Math.min(data.length, remaining));
+            if (read == -1) {
+                throw new IOException("The response ended before byte " + amount + " was reached");
+            }
+            remaining -= read;
+        }
+    }
+
     /**
      * Performs a generic HTTP POST request based on the given request. The
      * response is returned as a byte array, which can be converted into several
@@ -135,55 +1373,17 @@ public class TriageConnector {
      * @return the web server's response in the form of a byte array
      * @throws IOException if anything goes wrong with the HTTP POST connection
      */
+    @Override
     public byte[] post(String url, String json) throws IOException {
         StringEntity entity = new StringEntity(json);
-        //Create a HTTP client
-        RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectionRequestTimeout(5, TimeUnit.MINUTES)
-                .setResponseTimeout(5, TimeUnit.MINUTES)
-                .build();
-
-        ConnectionConfig connectionConfig = ConnectionConfig.custom()
-                .setConnectTimeout(5, TimeUnit.MINUTES)
-                .build();
-
-        PoolingHttpClientConnectionManager poolingHttpClientConnectionManager = PoolingHttpClientConnectionManagerBuilder.create()
-                .setDefaultConnectionConfig(connectionConfig)
-                .build();
-
-        HttpClient httpClient = HttpClientBuilder.create()
-                .setConnectionManager(poolingHttpClientConnectionManager)
-                .setDefaultRequestConfig(requestConfig)
-                .build();
         //Create a HTTP post object for the given URL
         HttpPost httpPost = new HttpPost(url);
-        //Add the API key to the request
-        httpPost.setHeader("Authorization", "Bearer " + key);
         //Set the type to JSON
         httpPost.setHeader("Accept", "application/json");
         httpPost.setHeader("Content-type", "application/json");
         httpPost.setEntity(entity);
         //Execute the HTTP POST request
-        return httpClient.execute(httpPost, (response) -> {
-            //Get the response
-            HttpEntity responseEntity = response.getEntity();
-
-            //Check if the status code indicates an error
-            checkStatusCode(url, response.getCode());
-
-            //Read the response in chunks of 1024 bytes
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            int offset;
-            byte[] data = new byte[1024];
-            while ((offset = responseEntity.getContent().read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, offset);
-            }
-            //Flush the buffer
-            buffer.flush();
-            //Return the byte array
-            return buffer.toByteArray();
-        });
-
+        return execute(url, httpPost, (response, input) -> readFully(input));
     }
 
     /**
@@ -197,51 +1397,15 @@ public class TriageConnector {
      * @return the web server's response in the form of a byte array
      * @throws IOException if anything goes wrong with the HTTP POST connection
      */
+    @Override
     public byte[] post(String url, MultipartEntityBuilder builder) throws IOException {
-        //Create a HTTP client
-        RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectionRequestTimeout(5, TimeUnit.MINUTES)
-                .setResponseTimeout(5, TimeUnit.MINUTES)
-                .build();
-
-        ConnectionConfig connectionConfig = ConnectionConfig.custom()
-                .setConnectTimeout(5, TimeUnit.MINUTES)
-                .build();
-
-        PoolingHttpClientConnectionManager poolingHttpClientConnectionManager = PoolingHttpClientConnectionManagerBuilder.create()
-                .setDefaultConnectionConfig(connectionConfig)
-                .build();
-
-        HttpClient httpClient = HttpClientBuilder.create()
-                .setConnectionManager(poolingHttpClientConnectionManager)
-                .setDefaultRequestConfig(requestConfig)
-                .build();
         //Create a HTTP post object for the given URL
         HttpPost httpPost = new HttpPost(url);
-        httpPost.setHeader("Authorization", "Bearer " + key);
         //Get the multipart builder's build
         HttpEntity multipart = builder.build();
         //Set the newly built multipart object
         httpPost.setEntity(multipart);
         //Execute the HTTP POST request
-        return httpClient.execute(httpPost, (response) -> {
-            //Get the response
-            HttpEntity responseEntity = response.getEntity();
-
-            //Check if the status code indicates an error
-            checkStatusCode(url, response.getCode());
-
-            //Read the response in chunks of 1024 bytes
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            int offset;
-            byte[] data = new byte[1024];
-            while ((offset = responseEntity.getContent().read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, offset);
-            }
-            //Flush the buffer
-            buffer.flush();
-            //Return the byte array
-            return buffer.toByteArray();
-        });
+        return execute(url, httpPost, (response, input) -> readFully(input));
     }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+/**
+ * This enum describes the kinds of operations that are performed via a
+ * transport. Each kind has its own timeouts, as a metadata request is
+ * expected to complete within seconds, whereas a bulk download or an event
+ * stream may take much longer.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public enum TriageOperation {
+    /**
+     * Requests for JSON metadata, such as reports, overviews, searches, and
+     * submissions
+     */
+    METADATA,
+    /**
+     * Downloads of binary resources, such as samples, network captures, and
+     * dumped sections
+     */
+    DOWNLOAD,
+    /**
+     * Requests for event streams, such as the sample events and the kernel
+     * logs
+     */
+    STREAM;
+
+    /**
+     * Gets the kind of operation of the given endpoint template, as created
+     * by {@link EndpointTemplate#of(java.lang.String)}
+     *
+     * @param endpoint the endpoint template of a request
+     * @return the kind of operation of the endpoint
+     */
+    public static TriageOperation of(String endpoint) {
+        if (endpoint.equals("samples/{id}/sample")
+                || endpoint.equals("samples/{id}/{task}/dump.pcap")
+                || endpoint.equals("samples/{id}/{task}/dump.pcapng")
+                || endpoint.equals("samples/{id}/{task}/{dump}")) {
+            return DOWNLOAD;
+        } else if (endpoint.equals("samples/{id}/events")
+                || endpoint.startsWith("samples/{id}/{task}/logs/")) {
+            return STREAM;
+        }
+        return METADATA;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class describes a single request that is sent by the
+ * <code>TriageConnector</code>, and is passed to each registered
+ * <code>TriageRequestListener</code>. Next to the request's properties, it
+ * holds the moments at which the phases of the request were completed, as
+ * measured with <code>System.nanoTime()</code>. Moments that were not (yet)
+ * reached are zero.<br>
+ * <br>
+ * The time between the start and the moment a connection was obtained is
+ * the time the request spent waiting for a pooled connection (including the
+ * connection's establishment, if no idle connection was available). The time
+ * between that moment and the arrival of the response headers is the time
+ * the server took to respond.<br>
+ * <br>
+ * Listeners can store their own state, such as a tracing span, in the
+ * request's attributes.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class TriageRequest {
+
+    /**
+     * The name of the attribute in the HTTP context that holds the request
+     */
+    static final String CONTEXT_ATTRIBUTE = "triageapi.request";
+
+    /**
+     * The HTTP method of the request
+     */
+    private final String method;
+
+    /**
+     * The requested URL
+     */
+    private final String url;
+
+    /**
+     * The endpoint template of the requested URL
+     */
+    private final String endpoint;
+
+    /**
+     * The amount of bytes in the request body, or -1 if unknown
+     */
+    private final long bytesSent;
+
+    /**
+     * The moment at which the request was started
+     */
+    private final long startTime;
+
+    /**
+     * The moment at which a connection was obtained for the request
+     */
+    private volatile long connectedTime;
+
+    /**
+     * The moment at which the response headers were received
+     */
+    private volatile long headersTime;
+
+    /**
+     * The moment at which the response body was consumed
+     */
+    private volatile long completedTime;
+
+    /**
+     * The status code of the response, or 0 if no response was received
+     */
+    private volatile int statusCode;
+
+    /**
+     * The amount of bytes in the response body that were received over the
+     * wire
+     */
+    private volatile long bytesReceived;
+
+    /**
+     * The amount of bytes in the response body that were consumed, after
+     * decompression
+     */
+    private volatile long bytesDecoded;
+
+    /**
+     * The attributes that listeners stored in this request
+     */
+    private final Map<String, Object> attributes;
+
+    /**
+     * Creates a new request, which starts at the current moment
+     *
+     * @param method the HTTP method of the request
+     * @param url the requested URL
+     * @param endpoint the endpoint template of the requested URL
+     * @param bytesSent the amount of bytes in the request body, or -1 if
+     * unknown
+     */
+    TriageRequest(String method, String url, String endpoint, long bytesSent) {
+        this.method = method;
+        this.url = url;
+        this.endpoint = endpoint;
+        this.bytesSent = bytesSent;
+        this.startTime = System.nanoTime();
+        this.attributes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the HTTP method of the request, such as <em>GET</em>
+     *
+     * @return the HTTP method
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the requested URL
+     *
+     * @return the requested URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets the endpoint template of the requested URL, such as
+     * <em>samples/{id}/overview.json</em>
+     *
+     * @return the endpoint template
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Gets the amount of bytes in the request body
+     *
+     * @return the amount of sent bytes, or -1 if unknown
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Gets the amount of bytes in the response body that were received over
+     * the wire, which is smaller than the decoded amount if the response was
+     * compressed
+     *
+     * @return the amount of received bytes
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Gets the amount of bytes in the response body that were consumed, after
+     * decompression
+     *
+     * @return the amount of decoded bytes
+     */
+    public long getBytesDecoded() {
+        return bytesDecoded;
+    }
+
+    /**
+     * Gets the status code of the response
+     *
+     * @return the status code, or 0 if no response was received
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Gets the moment at which the request was started
+     *
+     * @return the start time, in the form of <code>System.nanoTime()</code>
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Gets the moment at which a connection was obtained for the request
+     *
+     * @return the connected time, in the form of <code>System.nanoTime()</code>,
+     * or 0 if no connection was obtained
+     */
+    public long getConnectedTime() {
+        return connectedTime;
+    }
+
+    /**
+     * Gets the moment at which the response headers were received
+     *
+     * @return the headers time, in the form of <code>System.nanoTime()</code>,
+     * or 0 if no response was received
+     */
+    public long getHeadersTime() {
+        return headersTime;
+    }
+
+    /**
+     * Gets the moment at which the response body was consumed
+     *
+     * @return the completed time, in the form of <code>System.nanoTime()</code>,
+     * or 0 if the body was not consumed
+     */
+    public long getCompletedTime() {
+        return completedTime;
+    }
+
+    /**
+     * Gets the time that was spent on obtaining a connection
+     *
+     * @return the connect time in nanoseconds
+     */
+    public long getConnectTime() {
+        return connectedTime == 0 ? 0 : connectedTime - startTime;
+    }
+
+    /**
+     * Gets the time that was spent on sending the request and waiting for the
+     * response headers
+     *
+     * @return the wait time in nanoseconds
+     */
+    public long getWaitTime() {
+        if (headersTime == 0) {
+            return 0;
+        }
+        return headersTime - (connectedTime == 0 ? startTime : connectedTime);
+    }
+
+    /**
+     * Gets the time that was spent on receiving and consuming the response
+     * body
+     *
+     * @return the transfer time in nanoseconds
+     */
+    public long getTransferTime() {
+        return headersTime == 0 || completedTime == 0 ? 0 : completedTime - headersTime;
+    }
+
+    /**
+     * Gets the attribute with the given name
+     *
+     * @param name the name of the attribute
+     * @return the value of the attribute, or null if it is not present
+     */
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    /**
+     * Stores the given value under the given name in this request. If the
+     * value is null, the attribute is removed.
+     *
+     * @param name the name of the attribute
+     * @param value the value of the attribute
+     */
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    /**
+     * Marks the moment at which a connection was obtained
+     */
+    void markConnected() {
+        connectedTime = System.nanoTime();
+    }
+
+    /**
+     * Marks the moment at which the response headers were received
+     *
+     * @param statusCode the status code of the response
+     */
+    void markHeaders(int statusCode) {
+        this.statusCode = statusCode;
+        headersTime = System.nanoTime();
+    }
+
+    /**
+     * Marks the moment at which the response body was consumed
+     *
+     * @param bytesReceived the amount of bytes in the response body that were
+     * received over the wire
+     * @param bytesDecoded the amount of bytes in the response body that were
+     * consumed, after decompression
+     */
+    void markCompleted(long bytesReceived, long bytesDecoded) {
+        setBytesReceived(bytesReceived, bytesDecoded);
+        completedTime = System.nanoTime();
+    }
+
+    /**
+     * Sets the amount of bytes in the response body that were received, which
+     * is used if the body was not consumed completely
+     *
+     * @param bytesReceived the amount of bytes that were received over the
+     * wire
+     * @param bytesDecoded the amount of bytes that were consumed, after
+     * decompression
+     */
+    void setBytesReceived(long bytesReceived, long bytesDecoded) {
+        this.bytesReceived = bytesReceived;
+        this.bytesDecoded = bytesDecoded;
+    }
+}
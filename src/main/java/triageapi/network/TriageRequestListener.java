@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.io.IOException;
+
+/**
+ * This interface can be implemented to observe every request that is sent by
+ * a <code>TriageConnector</code>, such as to attach tracing spans or to
+ * account the requests per tenant. All functions have an empty default
+ * implementation, meaning that only the relevant ones need to be
+ * overridden.<br>
+ * <br>
+ * For a successful request, the functions are called in the order
+ * <code>beforeSend</code>, <code>afterHeaders</code> and
+ * <code>afterBody</code>. If the request fails at any point,
+ * <code>onError</code> is called instead of the remaining functions. The
+ * functions are called on the thread that sends the request, and should
+ * therefore return quickly. Runtime exceptions that are thrown by a listener
+ * are ignored, and do not affect the request.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public interface TriageRequestListener {
+
+    /**
+     * Called before the request is sent, and before a connection is obtained
+     *
+     * @param request the request that is about to be sent
+     */
+    default void beforeSend(TriageRequest request) {
+    }
+
+    /**
+     * Called once the response headers have been received, and before the
+     * response body is consumed
+     *
+     * @param request the request, which contains the status code
+     */
+    default void afterHeaders(TriageRequest request) {
+    }
+
+    /**
+     * Called once the response body has been consumed successfully
+     *
+     * @param request the request, which contains the amount of received bytes
+     */
+    default void afterBody(TriageRequest request) {
+    }
+
+    /**
+     * Called if the request failed, either due to a connection error, an
+     * erroneous status code, or a failure while consuming the response body
+     *
+     * @param request the request that failed
+     * @param exception the cause of the failure
+     */
+    default void onError(TriageRequest request, IOException exception) {
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.io.IOException;
+
+/**
+ * This exception is thrown if the web server responds with a status code that
+ * indicates an error. The status code is kept, which allows callers to
+ * distinguish failures that are worth retrying, such as server errors, from
+ * failures that are not, such as a missing resource.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class TriageStatusException extends IOException {
+
+    /**
+     * The version of the serialised form of this class
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The URL of the request that failed
+     */
+    private final String url;
+
+    /**
+     * The status code of the response
+     */
+    private final int statusCode;
+
+    /**
+     * Creates an exception for the erroneous response of the given URL
+     *
+     * @param url the URL which was requested
+     * @param statusCode the server's status code in the response
+     */
+    public TriageStatusException(String url, int statusCode) {
+        super("Status code error: the response of \"" + url + "\" returned " + statusCode);
+        this.url = url;
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Gets the URL of the request that failed
+     *
+     * @return the requested URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets the status code of the response
+     *
+     * @return the status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Checks if the status code indicates a server error, or a client error
+     * that may not occur when the request is repeated, such as a timeout or
+     * rate limit
+     *
+     * @return true if repeating the request may succeed, false if not
+     */
+    public boolean isRetryable() {
+        return statusCode >= 500 || statusCode == 408 || statusCode == 429;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A handler that consumes the body of a HTTP response while it is being
+ * received. The given stream is only valid during the call, and is closed by
+ * the connector afterwards.
+ *
+ * @param <T> the type of the value the handler returns
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+@FunctionalInterface
+public interface TriageStreamHandler<T> {
+
+    /**
+     * Consumes the body of a HTTP response
+     *
+     * @param input the stream that contains the body of the response
+     * @return the value that is returned to the caller of the connector
+     * @throws IOException if the response cannot be consumed
+     */
+    T handle(InputStream input) throws IOException;
+}
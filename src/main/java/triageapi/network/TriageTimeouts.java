@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class contains the timeouts of a single kind of operation. The
+ * response timeout bounds the time during which no data is received, whereas
+ * the deadline bounds the duration of the complete request, including the
+ * time spent waiting for a connection and the transfer of the response body.
+ * Once the deadline passes, the request is aborted.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class TriageTimeouts {
+
+    /**
+     * The default timeouts of metadata requests: 30 seconds without data, and
+     * 2 minutes in total
+     */
+    public static final TriageTimeouts METADATA = new TriageTimeouts(30, 120, TimeUnit.SECONDS);
+
+    /**
+     * The default timeouts of downloads: 1 minute without data, and 1 hour
+     * in total
+     */
+    public static final TriageTimeouts DOWNLOAD = new TriageTimeouts(60, 3600, TimeUnit.SECONDS);
+
+    /**
+     * The default timeouts of event streams: 5 minutes without data, and 30
+     * minutes in total
+     */
+    public static final TriageTimeouts STREAM = new TriageTimeouts(300, 1800, TimeUnit.SECONDS);
+
+    /**
+     * The maximum time without receiving data, in milliseconds
+     */
+    private final long responseTimeout;
+
+    /**
+     * The maximum duration of the complete request, in milliseconds, or 0 if
+     * the duration is unbounded
+     */
+    private final long deadline;
+
+    /**
+     * Creates timeouts for a kind of operation
+     *
+     * @param responseTimeout the maximum time without receiving data, larger
+     * than zero
+     * @param deadline the maximum duration of the complete request, or 0 if
+     * the duration is unbounded
+     * @param unit the unit of both durations
+     */
+    public TriageTimeouts(long responseTimeout, long deadline, TimeUnit unit) {
+        if (responseTimeout <= 0 || deadline < 0) {
+            throw new IllegalArgumentException("The response timeout has to be positive, and the deadline cannot be negative!");
+        }
+        this.responseTimeout = unit.toMillis(responseTimeout);
+        this.deadline = unit.toMillis(deadline);
+    }
+
+    /**
+     * Gets the default timeouts of the given kind of operation
+     *
+     * @param operation the kind of operation
+     * @return the default timeouts of the operation
+     */
+    public static TriageTimeouts getDefault(TriageOperation operation) {
+        switch (operation) {
+            case DOWNLOAD:
+                return DOWNLOAD;
+            case STREAM:
+                return STREAM;
+            default:
+                return METADATA;
+        }
+    }
+
+    /**
+     * Gets the maximum time without receiving data
+     *
+     * @return the response timeout in milliseconds
+     */
+    public long getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    /**
+     * Gets the maximum duration of the complete request
+     *
+     * @return the deadline in milliseconds, or 0 if the duration is unbounded
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.apache.hc.client5.http.entity.mime.MultipartEntityBuilder;
+import triageapi.metrics.TriageMetrics;
+
+/**
+ * This interface describes the transport via which the <code>TriageApi</code>
+ * sends its requests. The default implementation is the
+ * <code>TriageConnector</code>, which sends the requests over HTTP.
+ * Alternative implementations can be used to wrap the connector, such as to
+ * record its responses, or to replace it altogether.<br>
+ * <br>
+ * Each function receives the full URL of the request, and throws an
+ * <code>IOException</code> if the request fails or if the response contains an
+ * erroneous status code. Closing the transport releases its connections, after
+ * which no further requests can be made.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public interface TriageTransport extends Closeable {
+
+    /**
+     * Performs a HTTP GET request to the given URL, and returns the complete
+     * response body
+     *
+     * @param url the URL to request
+     * @return the web server's response in the form of a byte array
+     * @throws IOException if anything goes wrong with the request
+     */
+    byte[] get(String url) throws IOException;
+
+    /**
+     * Performs a HTTP GET request to the given URL, and passes the response
+     * body to the given handler while it is being received
+     *
+     * @param <T> the type of the value the handler returns
+     * @param url the URL to request
+     * @param handler the handler that consumes the web server's response
+     * @return the value that the handler returned
+     * @throws IOException if anything goes wrong with the request, or if the
+     * handler fails
+     */
+    <T> T get(String url, TriageStreamHandler<T> handler) throws IOException;
+
+    /**
+     * Performs a HTTP GET request to the given URL, and writes the response
+     * body to the given stream while it is being received. The given stream is
+     * not closed.
+     *
+     * @param url the URL to request
+     * @param output the stream to write the web server's response to
+     * @return the amount of bytes that were written to the given stream
+     * @throws IOException if anything goes wrong with the request, or if the
+     * response cannot be written to the given stream
+     */
+    long get(String url, OutputStream output) throws IOException;
+
+    /**
+     * Performs a HTTP GET request for the given range of bytes of the resource
+     * at the given URL, and writes the received bytes to the given stream.
+     * Only the requested range is written, even if the web server sends the
+     * complete resource. The given stream is not closed.
+     *
+     * @param url the URL to request
+     * @param start the offset of the first byte to request
+     * @param end the offset of the last byte to request (inclusive), or -1 to
+     * request the remainder of the resource
+     * @param output the stream to write the requested bytes to
+     * @return the range that was written
+     * @throws IOException if anything goes wrong with the request, or if the
+     * response cannot be written to the given stream
+     */
+    ContentRange get(String url, long start, long end, OutputStream output) throws IOException;
+
+    /**
+     * Performs a HTTP POST request with the given JSON body to the given URL
+     *
+     * @param url the URL to send the POST request to
+     * @param json the JSON body of the request
+     * @return the web server's response in the form of a byte array
+     * @throws IOException if anything goes wrong with the request
+     */
+    byte[] post(String url, String json) throws IOException;
+
+    /**
+     * Performs a HTTP POST request with the given multipart body to the given
+     * URL
+     *
+     * @param url the URL to send the POST request to
+     * @param builder the builder that contains the body of the request
+     * @return the web server's response in the form of a byte array
+     * @throws IOException if anything goes wrong with the request
+     */
+    byte[] post(String url, MultipartEntityBuilder builder) throws IOException;
+
+    /**
+     * Sets the timeouts of the given kind of operation, which apply to all
+     * requests that start afterwards
+     *
+     * @param operation the kind of operation
+     * @param timeouts the timeouts of the operation
+     */
+    void setTimeouts(TriageOperation operation, TriageTimeouts timeouts);
+
+    /**
+     * Gets the metrics of all requests that were made with this transport
+     *
+     * @return the metrics of this transport
+     */
+    TriageMetrics getMetrics();
+
+    /**
+     * Adds a listener that observes every request that is made with this
+     * transport
+     *
+     * @param listener the listener to add
+     */
+    void addRequestListener(TriageRequestListener listener);
+
+    /**
+     * Removes the given listener, if it was added
+     *
+     * @param listener the listener to remove
+     */
+    void removeRequestListener(TriageRequestListener listener);
+}
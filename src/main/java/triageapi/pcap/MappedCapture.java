@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.pcap;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only view on a capture file, which maps windows of the file into
+ * memory on demand. As such, captures of any size can be read without being
+ * loaded into memory as a whole. Only a single window is mapped at any given
+ * time.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+class MappedCapture implements Closeable {
+
+    /**
+     * The default size of a mapped window
+     */
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The channel of the capture file
+     */
+    private final FileChannel channel;
+
+    /**
+     * The size of the capture file in bytes
+     */
+    private final long size;
+
+    /**
+     * The currently mapped window
+     */
+    private MappedByteBuffer window;
+
+    /**
+     * The offset in the file at which the current window starts
+     */
+    private long windowStart;
+
+    /**
+     * The offset in the file at which the current window ends (exclusive)
+     */
+    private long windowEnd;
+
+    /**
+     * Opens the given capture file
+     *
+     * @param file the capture file to open
+     * @throws IOException if the file cannot be opened
+     */
+    MappedCapture(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    /**
+     * Gets the size of the capture file
+     *
+     * @return the size in bytes
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Ensures that the given range of the file is mapped
+     *
+     * @param position the offset in the file
+     * @param length the length of the range
+     * @throws IOException if the range is outside of the file, or if it cannot
+     * be mapped
+     */
+    private void ensure(long position, int length) throws IOException {
+        if (position < 0 || length < 0 || position + length > size) {
+            throw new EOFException("The capture is truncated at offset " + position + "!");
+        }
+        if (window != null && position >= windowStart && position + length <= windowEnd) {
+            return;
+        }
+        long mapLength = Math.min(size - position, Math.max(WINDOW_SIZE, length));
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, mapLength);
+        windowStart = position;
+        windowEnd = position + mapLength;
+    }
+
+    /**
+     * Reads an unsigned byte
+     *
+     * @param position the offset in the file
+     * @return the value of the byte
+     * @throws IOException if the offset is outside of the file
+     */
+    int u8(long position) throws IOException {
+        ensure(position, 1);
+        return window.get((int) (position - windowStart)) & 0xFF;
+    }
+
+    /**
+     * Reads an unsigned 16-bit value
+     *
+     * @param position the offset in the file
+     * @param littleEndian true if the value is stored in little endian order,
+     * false if it is stored in network (big endian) order
+     * @return the value
+     * @throws IOException if the range is outside of the file
+     */
+    int u16(long position, boolean littleEndian) throws IOException {
+        ensure(position, 2);
+        int index = (int) (position - windowStart);
+        int first = window.get(index) & 0xFF;
+        int second = window.get(index + 1) & 0xFF;
+        return littleEndian ? (second << 8) | first : (first << 8) | second;
+    }
+
+    /**
+     * Reads an unsigned 32-bit value
+     *
+     * @param position the offset in the file
+     * @param littleEndian true if the value is stored in little endian order,
+     * false if it is stored in network (big endian) order
+     * @return the value
+     * @throws IOException if the range is outside of the file
+     */
+    long u32(long position, boolean littleEndian) throws IOException {
+        ensure(position, 4);
+        int index = (int) (position - windowStart);
+        long value = 0;
+        for (int i = 0; i < 4; i++) {
+            long current = window.get(index + (littleEndian ? 3 - i : i)) & 0xFF;
+            value = (value << 8) | current;
+        }
+        return value;
+    }
+
+    /**
+     * Copies the given range of the file into the given array
+     *
+     * @param position the offset in the file
+     * @param destination the array to copy the bytes into
+     * @param offset the offset in the array
+     * @param length the amount of bytes to copy
+     * @throws IOException if the range is outside of the file
+     */
+    void read(long position, byte[] destination, int offset, int length) throws IOException {
+        ensure(position, length);
+        ByteBuffer view = window.duplicate();
+        //The cast keeps the Java 8 signature, as the covariant override of Java 9 and later does not exist on Java 8
+        ((Buffer) view).position((int) (position - windowStart));
+        view.get(destination, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
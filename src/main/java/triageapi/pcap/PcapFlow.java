@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.pcap;
+
+import java.util.Arrays;
+
+/**
+ * A single flow in a capture, as found by the <code>PcapFlowIndexer</code>.
+ * Rather than the packets themselves, the flow contains the location of each
+ * packet's transport payload within the capture file, allowing the payload to
+ * be read later on via <code>PcapFlowIndex.readPayload</code>.<br>
+ * <br>
+ * The endpoint that sent the first packet of the flow is considered to be the
+ * initiator. Packets that are sent by the initiator are considered to be
+ * transmitted, whereas packets that are sent by the other endpoint are
+ * considered to be received, matching the perspective of the
+ * <code>NetworkFlow</code> objects in a Triage report.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class PcapFlow {
+
+    /**
+     * The key of this flow
+     */
+    private final PcapFlowKey key;
+
+    /**
+     * True if the initiator is the lowest endpoint of the key
+     */
+    private final boolean initiatorIsLow;
+
+    /**
+     * The amount of packets in this flow
+     */
+    private int packetCount;
+
+    /**
+     * The offsets of the transport payload of each packet in the capture file
+     */
+    private long[] payloadOffsets;
+
+    /**
+     * The captured length of the transport payload of each packet
+     */
+    private int[] payloadLengths;
+
+    /**
+     * The timestamp of each packet, in microseconds since the epoch
+     */
+    private long[] timestamps;
+
+    /**
+     * True for each packet that was sent by the initiator
+     */
+    private boolean[] transmitted;
+
+    private long txPackets;
+    private long txBytes;
+    private long txPayloadBytes;
+    private long rxPackets;
+    private long rxBytes;
+    private long rxPayloadBytes;
+
+    /**
+     * Creates a new flow, based on its first packet
+     *
+     * @param key the key of the flow
+     * @param initiatorIsLow true if the sender of the first packet is the
+     * lowest endpoint of the key
+     */
+    PcapFlow(PcapFlowKey key, boolean initiatorIsLow) {
+        this.key = key;
+        this.initiatorIsLow = initiatorIsLow;
+        this.packetCount = 0;
+        this.payloadOffsets = new long[8];
+        this.payloadLengths = new int[8];
+        this.timestamps = new long[8];
+        this.transmitted = new boolean[8];
+    }
+
+    /**
+     * Adds a packet to this flow
+     *
+     * @param senderIsLow true if the packet was sent by the lowest endpoint of
+     * the key
+     * @param originalLength the original length of the packet on the wire
+     * @param payloadOffset the offset of the transport payload in the capture
+     * file
+     * @param payloadLength the captured length of the transport payload
+     * @param timestamp the timestamp of the packet, in microseconds since the
+     * epoch
+     */
+    void addPacket(boolean senderIsLow, long originalLength, long payloadOffset, int payloadLength, long timestamp) {
+        if (packetCount == payloadOffsets.length) {
+            int capacity = packetCount * 2;
+            payloadOffsets = Arrays.copyOf(payloadOffsets, capacity);
+            payloadLengths = Arrays.copyOf(payloadLengths, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            transmitted = Arrays.copyOf(transmitted, capacity);
+        }
+        boolean isTransmitted = senderIsLow == initiatorIsLow;
+        payloadOffsets[packetCount] = payloadOffset;
+        payloadLengths[packetCount] = payloadLength;
+        timestamps[packetCount] = timestamp;
+        transmitted[packetCount] = isTransmitted;
+        packetCount++;
+
+        if (isTransmitted) {
+            txPackets++;
+            txBytes += originalLength;
+            txPayloadBytes += payloadLength;
+        } else {
+            rxPackets++;
+            rxBytes += originalLength;
+            rxPayloadBytes += payloadLength;
+        }
+    }
+
+    /**
+     * Gets the key of this flow
+     *
+     * @return the key of this flow
+     */
+    public PcapFlowKey getKey() {
+        return key;
+    }
+
+    /**
+     * Checks if the given endpoint is the initiator of this flow
+     *
+     * @param address the raw address of the endpoint
+     * @param port the port of the endpoint
+     * @return true if the given endpoint is the initiator, false if not
+     */
+    public boolean isInitiator(byte[] address, int port) {
+        return key.isLowEndpoint(address, port) == initiatorIsLow;
+    }
+
+    /**
+     * Gets the amount of packets in this flow
+     *
+     * @return the amount of packets
+     */
+    public int getPacketCount() {
+        return packetCount;
+    }
+
+    /**
+     * Gets the offset of the transport payload of the given packet in the
+     * capture file
+     *
+     * @param index the index of the packet within this flow
+     * @return the offset in the capture file
+     */
+    public long getPayloadOffset(int index) {
+        checkIndex(index);
+        return payloadOffsets[index];
+    }
+
+    /**
+     * Gets the captured length of the transport payload of the given packet
+     *
+     * @param index the index of the packet within this flow
+     * @return the length in bytes
+     */
+    public int getPayloadLength(int index) {
+        checkIndex(index);
+        return payloadLengths[index];
+    }
+
+    /**
+     * Gets the timestamp of the given packet
+     *
+     * @param index the index of the packet within this flow
+     * @return the timestamp, in microseconds since the epoch
+     */
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return timestamps[index];
+    }
+
+    /**
+     * Checks if the given packet was sent by the initiator of this flow
+     *
+     * @param index the index of the packet within this flow
+     * @return true if the packet was sent by the initiator, false if it was
+     * sent by the other endpoint
+     */
+    public boolean isTransmitted(int index) {
+        checkIndex(index);
+        return transmitted[index];
+    }
+
+    /**
+     * Checks if the given packet index is valid
+     *
+     * @param index the index to check
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= packetCount) {
+            throw new IndexOutOfBoundsException("Packet index " + index + " is out of bounds for a flow with " + packetCount + " packets");
+        }
+    }
+
+    public long getTxPackets() {
+        return txPackets;
+    }
+
+    public long getTxBytes() {
+        return txBytes;
+    }
+
+    public long getTxPayloadBytes() {
+        return txPayloadBytes;
+    }
+
+    public long getRxPackets() {
+        return rxPackets;
+    }
+
+    public long getRxBytes() {
+        return rxBytes;
+    }
+
+    public long getRxPayloadBytes() {
+        return rxPayloadBytes;
+    }
+}
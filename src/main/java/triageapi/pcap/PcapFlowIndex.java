@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.pcap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import triageapi.model.NetworkFlow;
+import triageapi.model.NetworkReport;
+
+/**
+ * The flow index of a capture file, as created by the
+ * <code>PcapFlowIndexer</code>. The index maps each 5-tuple to the location of
+ * its packets within the capture file, meaning the payload of a single flow
+ * can be read without reading the whole capture. The flows can be linked to
+ * the <code>NetworkFlow</code> objects of a Triage report based on their
+ * addresses and ports.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class PcapFlowIndex {
+
+    /**
+     * The capture file this index belongs to
+     */
+    private final File capture;
+
+    /**
+     * All flows in the capture, in the order of their first packet
+     */
+    private final Map<PcapFlowKey, PcapFlow> flows;
+
+    /**
+     * The total amount of packets in the capture, including those that are not
+     * part of a TCP or UDP flow
+     */
+    private final long packetCount;
+
+    /**
+     * Creates a flow index
+     *
+     * @param capture the capture file the index belongs to
+     * @param flows all flows in the capture
+     * @param packetCount the total amount of packets in the capture
+     */
+    PcapFlowIndex(File capture, Map<PcapFlowKey, PcapFlow> flows, long packetCount) {
+        this.capture = capture;
+        this.flows = flows;
+        this.packetCount = packetCount;
+    }
+
+    /**
+     * Gets the capture file this index belongs to
+     *
+     * @return the capture file
+     */
+    public File getCapture() {
+        return capture;
+    }
+
+    /**
+     * Gets the total amount of packets in the capture, including those that
+     * are not part of a TCP or UDP flow
+     *
+     * @return the amount of packets
+     */
+    public long getPacketCount() {
+        return packetCount;
+    }
+
+    /**
+     * Gets all flows in the capture, in the order of their first packet
+     *
+     * @return an unmodifiable list of all flows
+     */
+    public List<PcapFlow> getFlows() {
+        return Collections.unmodifiableList(new ArrayList<>(flows.values()));
+    }
+
+    /**
+     * Gets the flow with the given key
+     *
+     * @param key the key of the flow
+     * @return the flow, or null if the capture does not contain the flow
+     */
+    public PcapFlow getFlow(PcapFlowKey key) {
+        return flows.get(key);
+    }
+
+    /**
+     * Gets the flow that matches the given flow from a Triage report, based on
+     * its protocol, addresses, and ports
+     *
+     * @param networkFlow the flow from a Triage report
+     * @return the matching flow, or null if the capture does not contain the
+     * flow, or if the flow's endpoints cannot be parsed
+     */
+    public PcapFlow getFlow(NetworkFlow networkFlow) {
+        PcapFlowKey key = toKey(networkFlow);
+        if (key == null) {
+            return null;
+        }
+        return flows.get(key);
+    }
+
+    /**
+     * Links all flows of the given network report to the flows in this index
+     *
+     * @param networkReport the network report of a Triage report
+     * @return a mapping where the keys are the report's flows, and the value of
+     * each key is the matching flow in the capture. Flows that are not present
+     * in the capture are omitted
+     */
+    public Map<NetworkFlow, PcapFlow> link(NetworkReport networkReport) {
+        Map<NetworkFlow, PcapFlow> mapping = new LinkedHashMap<>();
+        for (NetworkFlow networkFlow : networkReport.getFlows()) {
+            PcapFlow flow = getFlow(networkFlow);
+            if (flow != null) {
+                mapping.put(networkFlow, flow);
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * Writes the transport payload of all packets in the given flow to the
+     * given stream, in the order in which the packets were captured. Note that
+     * the payloads are written as they were captured, meaning TCP segments are
+     * not reassembled, and retransmissions are included. The given stream is
+     * not closed.
+     *
+     * @param flow the flow to read the payload of
+     * @param output the stream to write the payload to
+     * @return the amount of bytes that were written
+     * @throws IOException if the capture cannot be read, or if the payload
+     * cannot be written
+     */
+    public long readPayload(PcapFlow flow, OutputStream output) throws IOException {
+        return readPayload(flow, true, true, output);
+    }
+
+    /**
+     * Writes the transport payload of the packets in the given flow that match
+     * the given direction to the given stream, in the order in which the
+     * packets were captured. Note that the payloads are written as they were
+     * captured, meaning TCP segments are not reassembled, and retransmissions
+     * are included. The given stream is not closed.
+     *
+     * @param flow the flow to read the payload of
+     * @param transmitted true to include the packets that were sent by the
+     * initiator of the flow
+     * @param received true to include the packets that were sent by the other
+     * endpoint of the flow
+     * @param output the stream to write the payload to
+     * @return the amount of bytes that were written
+     * @throws IOException if the capture cannot be read, or if the payload
+     * cannot be written
+     */
+    public long readPayload(PcapFlow flow, boolean transmitted, boolean received, OutputStream output) throws IOException {
+        long total = 0;
+        try (FileChannel channel = FileChannel.open(capture.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(65536);
+            for (int i = 0; i < flow.getPacketCount(); i++) {
+                boolean isTransmitted = flow.isTransmitted(i);
+                if ((isTransmitted && transmitted == false) || (isTransmitted == false && received == false)) {
+                    continue;
+                }
+                long position = flow.getPayloadOffset(i);
+                int remaining = flow.getPayloadLength(i);
+                while (remaining > 0) {
+                    //The casts keep the Java 8 signatures, as the covariant overrides of Java 9 and later do not exist on Java 8
+                    ((Buffer) buffer).clear();
+                    ((Buffer) buffer).limit(Math.min(remaining, buffer.capacity()));
+                    int read = channel.read(buffer, position);
+                    if (read == -1) {
+                        throw new IOException("The capture is truncated at offset " + position + "!");
+                    }
+                    output.write(buffer.array(), 0, read);
+                    position += read;
+                    remaining -= read;
+                    total += read;
+                }
+            }
+        }
+        output.flush();
+        return total;
+    }
+
+    /**
+     * Converts the given flow from a Triage report into a flow key
+     *
+     * @param networkFlow the flow to convert
+     * @return the flow key, or null if the protocol is not supported or if the
+     * endpoints cannot be parsed
+     */
+    private PcapFlowKey toKey(NetworkFlow networkFlow) {
+        String protocol = networkFlow.getProto().toLowerCase();
+        if (protocol.equals("tcp") == false && protocol.equals("udp") == false) {
+            return null;
+        }
+        Endpoint source = parseEndpoint(networkFlow.getSource());
+        Endpoint destination = parseEndpoint(networkFlow.getDest());
+        if (source == null || destination == null) {
+            return null;
+        }
+        return new PcapFlowKey(protocol, source.address, source.port, destination.address, destination.port);
+    }
+
+    /**
+     * Parses an endpoint in the form of <em>address:port</em>, where IPv6
+     * addresses may be enclosed in square brackets
+     *
+     * @param endpoint the endpoint to parse
+     * @return the parsed endpoint, or null if it cannot be parsed
+     */
+    private Endpoint parseEndpoint(String endpoint) {
+        int separator = endpoint.lastIndexOf(':');
+        if (separator <= 0 || separator == endpoint.length() - 1) {
+            return null;
+        }
+        String address = endpoint.substring(0, separator);
+        if (address.startsWith("[") && address.endsWith("]")) {
+            address = address.substring(1, address.length() - 1);
+        }
+        //Only literal addresses are accepted, which avoids DNS lookups
+        if (address.isEmpty() || (address.indexOf(':') == -1 && address.matches("[0-9.]+") == false)) {
+            return null;
+        }
+        try {
+            int port = Integer.parseInt(endpoint.substring(separator + 1));
+            return new Endpoint(InetAddress.getByName(address).getAddress(), port);
+        } catch (NumberFormatException | UnknownHostException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * An address and port pair
+     */
+    private static class Endpoint {
+
+        /**
+         * The raw address
+         */
+        private final byte[] address;
+
+        /**
+         * The port
+         */
+        private final int port;
+
+        /**
+         * Creates an endpoint
+         *
+         * @param address the raw address
+         * @param port the port
+         */
+        private Endpoint(byte[] address, int port) {
+            this.address = address;
+            this.port = port;
+        }
+    }
+}
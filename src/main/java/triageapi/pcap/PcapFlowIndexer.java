@@ -0,0 +1,456 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.pcap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class reads a PCAP or PCAPNG capture file, such as those provided by
+ * <code>TriageApi.getPcap</code> and <code>TriageApi.getPcapNg</code>, and
+ * builds an index of all TCP and UDP flows within it. The capture is read via
+ * memory mapped windows, meaning the memory usage depends on the amount of
+ * packets rather than on the size of the capture. No packet data is copied
+ * into the index, only the location of each packet's payload.<br>
+ * <br>
+ * The supported link types are Ethernet (including VLAN tags), raw IP, Linux
+ * cooked captures (v1 and v2), and BSD loopback. Packets of other link types,
+ * non-IP packets, non-initial IP fragments, and protocols other than TCP and
+ * UDP are counted, but are not part of any flow.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class PcapFlowIndexer {
+
+    private static final long PCAP_MAGIC_MICROSECONDS = 0xA1B2C3D4L;
+    private static final long PCAP_MAGIC_NANOSECONDS = 0xA1B23C4DL;
+    private static final long PCAPNG_SECTION_HEADER = 0x0A0D0D0AL;
+    private static final long PCAPNG_BYTE_ORDER_MAGIC = 0x1A2B3C4DL;
+    private static final long PCAPNG_INTERFACE_DESCRIPTION = 0x00000001L;
+    private static final long PCAPNG_SIMPLE_PACKET = 0x00000003L;
+    private static final long PCAPNG_ENHANCED_PACKET = 0x00000006L;
+
+    private static final int LINKTYPE_NULL = 0;
+    private static final int LINKTYPE_ETHERNET = 1;
+    private static final int LINKTYPE_RAW = 101;
+    private static final int LINKTYPE_RAW_ALTERNATIVE = 12;
+    private static final int LINKTYPE_LOOP = 108;
+    private static final int LINKTYPE_LINUX_SLL = 113;
+    private static final int LINKTYPE_IPV4 = 228;
+    private static final int LINKTYPE_IPV6 = 229;
+    private static final int LINKTYPE_LINUX_SLL2 = 276;
+
+    private static final int ETHERTYPE_IPV4 = 0x0800;
+    private static final int ETHERTYPE_IPV6 = 0x86DD;
+    private static final int ETHERTYPE_VLAN = 0x8100;
+    private static final int ETHERTYPE_QINQ = 0x88A8;
+
+    private static final int PROTOCOL_TCP = 6;
+    private static final int PROTOCOL_UDP = 17;
+
+    /**
+     * Creates the flow index of the given capture file. The format (PCAP or
+     * PCAPNG) is determined based on the file's header.
+     *
+     * @param capture the capture file to index
+     * @return the flow index of the capture
+     * @throws IOException if the file cannot be read, if its format is not
+     * supported, or if it is truncated
+     */
+    public PcapFlowIndex index(File capture) throws IOException {
+        try (MappedCapture mappedCapture = new MappedCapture(capture)) {
+            IndexState state = new IndexState();
+            if (mappedCapture.size() < 4) {
+                throw new IOException("The given file is too small to be a capture!");
+            }
+            long magic = mappedCapture.u32(0, false);
+            if (magic == PCAPNG_SECTION_HEADER) {
+                indexPcapNg(mappedCapture, state);
+            } else {
+                indexPcap(mappedCapture, state);
+            }
+            return new PcapFlowIndex(capture, state.flows, state.packetCount);
+        }
+    }
+
+    /**
+     * Indexes a PCAP capture
+     *
+     * @param capture the capture to index
+     * @param state the state of the index
+     * @throws IOException if the format is not supported, or if the capture is
+     * truncated
+     */
+    private void indexPcap(MappedCapture capture, IndexState state) throws IOException {
+        long magic = capture.u32(0, false);
+        boolean littleEndian;
+        boolean nanoseconds;
+        if (magic == PCAP_MAGIC_MICROSECONDS || magic == PCAP_MAGIC_NANOSECONDS) {
+            littleEndian = false;
+        } else {
+            magic = capture.u32(0, true);
+            if (magic != PCAP_MAGIC_MICROSECONDS && magic != PCAP_MAGIC_NANOSECONDS) {
+                throw new IOException("The given file is neither a PCAP nor a PCAPNG capture!");
+            }
+            littleEndian = true;
+        }
+        nanoseconds = magic == PCAP_MAGIC_NANOSECONDS;
+        int linkType = (int) (capture.u32(20, littleEndian) & 0x0FFFFFFF);
+
+        long position = 24;
+        while (position + 16 <= capture.size()) {
+            long seconds = capture.u32(position, littleEndian);
+            long fraction = capture.u32(position + 4, littleEndian);
+            int capturedLength = (int) capture.u32(position + 8, littleEndian);
+            long originalLength = capture.u32(position + 12, littleEndian);
+            long data = position + 16;
+            if (capturedLength < 0 || data + capturedLength > capture.size()) {
+                //The last packet was only partially written
+                break;
+            }
+            long timestamp = seconds * 1_000_000L + (nanoseconds ? fraction / 1000 : fraction);
+            indexPacket(capture, state, linkType, data, capturedLength, originalLength, timestamp);
+            position = data + capturedLength;
+        }
+    }
+
+    /**
+     * Indexes a PCAPNG capture, which may consist of multiple sections
+     *
+     * @param capture the capture to index
+     * @param state the state of the index
+     * @throws IOException if the capture is truncated or malformed
+     */
+    private void indexPcapNg(MappedCapture capture, IndexState state) throws IOException {
+        boolean littleEndian = true;
+        List<PcapNgInterface> interfaces = new ArrayList<>();
+
+        long position = 0;
+        while (position + 12 <= capture.size()) {
+            long type = capture.u32(position, littleEndian);
+            if (type == PCAPNG_SECTION_HEADER) {
+                //Each section defines its own byte order and interfaces
+                littleEndian = capture.u32(position + 8, true) == PCAPNG_BYTE_ORDER_MAGIC;
+                interfaces.clear();
+            }
+            long blockLength = capture.u32(position + 4, littleEndian);
+            if (blockLength < 12 || blockLength % 4 != 0) {
+                throw new IOException("Malformed PCAPNG block at offset " + position + "!");
+            }
+            if (position + blockLength > capture.size()) {
+                //The last block was only partially written
+                break;
+            }
+
+            if (type == PCAPNG_INTERFACE_DESCRIPTION) {
+                int linkType = capture.u16(position + 8, littleEndian);
+                long resolution = readTimestampResolution(capture, position + 16, position + blockLength - 4, littleEndian);
+                interfaces.add(new PcapNgInterface(linkType, resolution));
+            } else if (type == PCAPNG_ENHANCED_PACKET) {
+                int interfaceId = (int) capture.u32(position + 8, littleEndian);
+                long timestampHigh = capture.u32(position + 12, littleEndian);
+                long timestampLow = capture.u32(position + 16, littleEndian);
+                int capturedLength = (int) capture.u32(position + 20, littleEndian);
+                long originalLength = capture.u32(position + 24, littleEndian);
+                if (interfaceId < interfaces.size() && capturedLength >= 0 && 28 + capturedLength <= blockLength) {
+                    PcapNgInterface networkInterface = interfaces.get(interfaceId);
+                    long timestamp = networkInterface.toMicroseconds((timestampHigh << 32) | timestampLow);
+                    indexPacket(capture, state, networkInterface.linkType, position + 28, capturedLength, originalLength, timestamp);
+                } else {
+                    state.packetCount++;
+                }
+            } else if (type == PCAPNG_SIMPLE_PACKET) {
+                long originalLength = capture.u32(position + 8, littleEndian);
+                int capturedLength = (int) Math.min(originalLength, blockLength - 16);
+                if (interfaces.isEmpty() == false) {
+                    indexPacket(capture, state, interfaces.get(0).linkType, position + 12, capturedLength, originalLength, -1);
+                } else {
+                    state.packetCount++;
+                }
+            }
+            position += blockLength;
+        }
+    }
+
+    /**
+     * Reads the timestamp resolution option from the options of an interface
+     * description block
+     *
+     * @param capture the capture to read from
+     * @param position the offset of the first option
+     * @param end the offset at which the options end
+     * @param littleEndian the byte order of the section
+     * @return the amount of timestamp units per second, which is one million
+     * by default
+     * @throws IOException if the block is truncated
+     */
+    private long readTimestampResolution(MappedCapture capture, long position, long end, boolean littleEndian) throws IOException {
+        while (position + 4 <= end) {
+            int code = capture.u16(position, littleEndian);
+            int length = capture.u16(position + 2, littleEndian);
+            if (code == 0) {
+                break;
+            }
+            //The if_tsresol option
+            if (code == 9 && length == 1) {
+                int value = capture.u8(position + 4);
+                int exponent = value & 0x7F;
+                if ((value & 0x80) == 0) {
+                    return exponent > 18 ? 1_000_000L : (long) Math.pow(10, exponent);
+                }
+                return exponent > 62 ? 1_000_000L : 1L << exponent;
+            }
+            position += 4 + ((length + 3) & ~3);
+        }
+        return 1_000_000L;
+    }
+
+    /**
+     * Indexes a single packet. Packets that are not part of a TCP or UDP flow
+     * are only counted.
+     *
+     * @param capture the capture to read from
+     * @param state the state of the index
+     * @param linkType the link type of the packet
+     * @param data the offset of the packet data in the capture
+     * @param capturedLength the captured length of the packet
+     * @param originalLength the original length of the packet on the wire
+     * @param timestamp the timestamp of the packet, in microseconds since the
+     * epoch
+     * @throws IOException if the capture cannot be read
+     */
+    private void indexPacket(MappedCapture capture, IndexState state, int linkType, long data, int capturedLength, long originalLength, long timestamp) throws IOException {
+        state.packetCount++;
+        long end = data + capturedLength;
+
+        //Determine the network layer protocol and offset
+        int etherType;
+        long network;
+        switch (linkType) {
+            case LINKTYPE_ETHERNET:
+                if (capturedLength < 14) {
+                    return;
+                }
+                etherType = capture.u16(data + 12, false);
+                network = data + 14;
+                while ((etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ) && network + 4 <= end) {
+                    etherType = capture.u16(network + 2, false);
+                    network += 4;
+                }
+                break;
+            case LINKTYPE_LINUX_SLL:
+                if (capturedLength < 16) {
+                    return;
+                }
+                etherType = capture.u16(data + 14, false);
+                network = data + 16;
+                break;
+            case LINKTYPE_LINUX_SLL2:
+                if (capturedLength < 20) {
+                    return;
+                }
+                etherType = capture.u16(data, false);
+                network = data + 20;
+                break;
+            case LINKTYPE_NULL:
+            case LINKTYPE_LOOP:
+                if (capturedLength < 5) {
+                    return;
+                }
+                network = data + 4;
+                etherType = getEtherTypeFromVersion(capture.u8(network));
+                break;
+            case LINKTYPE_RAW:
+            case LINKTYPE_RAW_ALTERNATIVE:
+            case LINKTYPE_IPV4:
+            case LINKTYPE_IPV6:
+                if (capturedLength < 1) {
+                    return;
+                }
+                network = data;
+                etherType = getEtherTypeFromVersion(capture.u8(network));
+                break;
+            default:
+                return;
+        }
+
+        //Determine the transport layer protocol, addresses, and offset
+        int protocol;
+        byte[] source;
+        byte[] destination;
+        long transport;
+        long networkEnd;
+        if (etherType == ETHERTYPE_IPV4) {
+            if (network + 20 > end) {
+                return;
+            }
+            int headerLength = (capture.u8(network) & 0x0F) * 4;
+            int totalLength = capture.u16(network + 2, false);
+            int fragmentOffset = capture.u16(network + 6, false) & 0x1FFF;
+            if (headerLength < 20 || fragmentOffset != 0) {
+                return;
+            }
+            protocol = capture.u8(network + 9);
+            source = new byte[4];
+            destination = new byte[4];
+            capture.read(network + 12, source, 0, 4);
+            capture.read(network + 16, destination, 0, 4);
+            transport = network + headerLength;
+            networkEnd = Math.min(end, network + Math.max(totalLength, headerLength));
+        } else if (etherType == ETHERTYPE_IPV6) {
+            if (network + 40 > end) {
+                return;
+            }
+            int payloadLength = capture.u16(network + 4, false);
+            protocol = capture.u8(network + 6);
+            source = new byte[16];
+            destination = new byte[16];
+            capture.read(network + 8, source, 0, 16);
+            capture.read(network + 24, destination, 0, 16);
+            transport = network + 40;
+            networkEnd = Math.min(end, transport + payloadLength);
+            //Skip the extension headers
+            while (transport + 8 <= networkEnd && (protocol == 0 || protocol == 43 || protocol == 44 || protocol == 60)) {
+                int nextHeader = capture.u8(transport);
+                if (protocol == 44) {
+                    if ((capture.u16(transport + 2, false) >> 3) != 0) {
+                        return;
+                    }
+                    transport += 8;
+                } else {
+                    transport += (capture.u8(transport + 1) + 1) * 8;
+                }
+                protocol = nextHeader;
+            }
+        } else {
+            return;
+        }
+
+        //Determine the ports and the payload offset
+        String protocolName;
+        long payload;
+        if (protocol == PROTOCOL_TCP) {
+            if (transport + 20 > networkEnd) {
+                return;
+            }
+            protocolName = "tcp";
+            payload = transport + (capture.u8(transport + 12) >> 4) * 4;
+        } else if (protocol == PROTOCOL_UDP) {
+            if (transport + 8 > networkEnd) {
+                return;
+            }
+            protocolName = "udp";
+            payload = transport + 8;
+        } else {
+            return;
+        }
+        int sourcePort = capture.u16(transport, false);
+        int destinationPort = capture.u16(transport + 2, false);
+        int payloadLength = (int) Math.max(0, networkEnd - payload);
+
+        PcapFlowKey key = new PcapFlowKey(protocolName, source, sourcePort, destination, destinationPort);
+        boolean senderIsLow = key.isLowEndpoint(source, sourcePort);
+        PcapFlow flow = state.flows.get(key);
+        if (flow == null) {
+            flow = new PcapFlow(key, senderIsLow);
+            state.flows.put(key, flow);
+        }
+        flow.addPacket(senderIsLow, originalLength, Math.min(payload, networkEnd), payloadLength, timestamp);
+    }
+
+    /**
+     * Gets the ether type based on the version field of an IP header
+     *
+     * @param firstByte the first byte of the IP header
+     * @return the matching ether type, or -1 if the version is unknown
+     */
+    private int getEtherTypeFromVersion(int firstByte) {
+        switch (firstByte >> 4) {
+            case 4:
+                return ETHERTYPE_IPV4;
+            case 6:
+                return ETHERTYPE_IPV6;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * The state of an index that is being created
+     */
+    private static class IndexState {
+
+        /**
+         * All flows that have been found so far
+         */
+        private final Map<PcapFlowKey, PcapFlow> flows = new LinkedHashMap<>();
+
+        /**
+         * The amount of packets that have been read so far
+         */
+        private long packetCount = 0;
+    }
+
+    /**
+     * An interface that is described in a PCAPNG section
+     */
+    private static class PcapNgInterface {
+
+        /**
+         * The link type of the interface
+         */
+        private final int linkType;
+
+        /**
+         * The amount of timestamp units per second
+         */
+        private final long unitsPerSecond;
+
+        /**
+         * Creates an interface
+         *
+         * @param linkType the link type of the interface
+         * @param unitsPerSecond the amount of timestamp units per second
+         */
+        private PcapNgInterface(int linkType, long unitsPerSecond) {
+            this.linkType = linkType;
+            this.unitsPerSecond = unitsPerSecond;
+        }
+
+        /**
+         * Converts a timestamp of this interface into microseconds
+         *
+         * @param timestamp the timestamp to convert
+         * @return the timestamp in microseconds since the epoch
+         */
+        private long toMicroseconds(long timestamp) {
+            if (unitsPerSecond == 1_000_000L) {
+                return timestamp;
+            }
+            long seconds = timestamp / unitsPerSecond;
+            long remainder = timestamp % unitsPerSecond;
+            if (unitsPerSecond > 1_000_000L) {
+                return seconds * 1_000_000L + remainder / (unitsPerSecond / 1_000_000L);
+            }
+            return seconds * 1_000_000L + (remainder * 1_000_000L) / unitsPerSecond;
+        }
+    }
+}
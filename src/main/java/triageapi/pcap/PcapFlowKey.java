@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.pcap;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+/**
+ * The 5-tuple that identifies a flow in a capture: the transport protocol, and
+ * the address and port of both endpoints. The key is direction independent,
+ * meaning that the packets in both directions of a connection share the same
+ * key.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class PcapFlowKey {
+
+    /**
+     * The transport protocol, either <em>tcp</em> or <em>udp</em>
+     */
+    private final String protocol;
+
+    /**
+     * The raw address of the lowest endpoint
+     */
+    private final byte[] lowAddress;
+
+    /**
+     * The port of the lowest endpoint
+     */
+    private final int lowPort;
+
+    /**
+     * The raw address of the highest endpoint
+     */
+    private final byte[] highAddress;
+
+    /**
+     * The port of the highest endpoint
+     */
+    private final int highPort;
+
+    /**
+     * Creates a key for the given endpoints. The order of the endpoints does
+     * not matter.
+     *
+     * @param protocol the transport protocol, either <em>tcp</em> or
+     * <em>udp</em>
+     * @param firstAddress the raw address of the first endpoint
+     * @param firstPort the port of the first endpoint
+     * @param secondAddress the raw address of the second endpoint
+     * @param secondPort the port of the second endpoint
+     */
+    public PcapFlowKey(String protocol, byte[] firstAddress, int firstPort, byte[] secondAddress, int secondPort) {
+        this.protocol = protocol.toLowerCase();
+        if (compare(firstAddress, firstPort, secondAddress, secondPort) <= 0) {
+            this.lowAddress = firstAddress;
+            this.lowPort = firstPort;
+            this.highAddress = secondAddress;
+            this.highPort = secondPort;
+        } else {
+            this.lowAddress = secondAddress;
+            this.lowPort = secondPort;
+            this.highAddress = firstAddress;
+            this.highPort = firstPort;
+        }
+    }
+
+    /**
+     * Creates a key for the given endpoints. The order of the endpoints does
+     * not matter.
+     *
+     * @param protocol the transport protocol, either <em>tcp</em> or
+     * <em>udp</em>
+     * @param firstAddress the address of the first endpoint
+     * @param firstPort the port of the first endpoint
+     * @param secondAddress the address of the second endpoint
+     * @param secondPort the port of the second endpoint
+     */
+    public PcapFlowKey(String protocol, InetAddress firstAddress, int firstPort, InetAddress secondAddress, int secondPort) {
+        this(protocol, firstAddress.getAddress(), firstPort, secondAddress.getAddress(), secondPort);
+    }
+
+    /**
+     * Compares two endpoints, first by address and then by port
+     *
+     * @param firstAddress the raw address of the first endpoint
+     * @param firstPort the port of the first endpoint
+     * @param secondAddress the raw address of the second endpoint
+     * @param secondPort the port of the second endpoint
+     * @return a negative value if the first endpoint is the lowest, a positive
+     * value if the second endpoint is the lowest, or 0 if both are equal
+     */
+    private static int compare(byte[] firstAddress, int firstPort, byte[] secondAddress, int secondPort) {
+        if (firstAddress.length != secondAddress.length) {
+            return firstAddress.length - secondAddress.length;
+        }
+        for (int i = 0; i < firstAddress.length; i++) {
+            int difference = (firstAddress[i] & 0xFF) - (secondAddress[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return firstPort - secondPort;
+    }
+
+    /**
+     * Checks if the given endpoint is the lowest endpoint of this key
+     *
+     * @param address the raw address of the endpoint
+     * @param port the port of the endpoint
+     * @return true if the given endpoint is the lowest endpoint, false if not
+     */
+    boolean isLowEndpoint(byte[] address, int port) {
+        return port == lowPort && Arrays.equals(address, lowAddress);
+    }
+
+    /**
+     * Gets the transport protocol
+     *
+     * @return the transport protocol, either <em>tcp</em> or <em>udp</em>
+     */
+    public String getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Gets the raw address of the lowest endpoint
+     *
+     * @return a copy of the raw address
+     */
+    public byte[] getLowAddress() {
+        return lowAddress.clone();
+    }
+
+    /**
+     * Gets the port of the lowest endpoint
+     *
+     * @return the port
+     */
+    public int getLowPort() {
+        return lowPort;
+    }
+
+    /**
+     * Gets the raw address of the highest endpoint
+     *
+     * @return a copy of the raw address
+     */
+    public byte[] getHighAddress() {
+        return highAddress.clone();
+    }
+
+    /**
+     * Gets the port of the highest endpoint
+     *
+     * @return the port
+     */
+    public int getHighPort() {
+        return highPort;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (object instanceof PcapFlowKey == false) {
+            return false;
+        }
+        PcapFlowKey other = (PcapFlowKey) object;
+        return lowPort == other.lowPort
+                && highPort == other.highPort
+                && protocol.equals(other.protocol)
+                && Arrays.equals(lowAddress, other.lowAddress)
+                && Arrays.equals(highAddress, other.highAddress);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = protocol.hashCode();
+        hash = 31 * hash + Arrays.hashCode(lowAddress);
+        hash = 31 * hash + lowPort;
+        hash = 31 * hash + Arrays.hashCode(highAddress);
+        hash = 31 * hash + highPort;
+        return hash;
+    }
+}
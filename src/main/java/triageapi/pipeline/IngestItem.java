@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.pipeline;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import triageapi.model.SearchResultEntry;
+import triageapi.model.TaskSummary;
+import triageapi.model.TriageOverview;
+import triageapi.model.TriageReport;
+
+/**
+ * This class contains a single sample that passes through an
+ * <code>IngestPipeline</code>, along with the data that each stage added to
+ * it. The data of a stage that is disabled, or that the sample has not
+ * passed through, is null or empty.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class IngestItem {
+
+    /**
+     * The prefix of the names of behavioural tasks, which have a triage
+     * report
+     */
+    private static final String BEHAVIOURAL_PREFIX = "behavioral";
+
+    /**
+     * The search result of the sample
+     */
+    private final SearchResultEntry entry;
+
+    /**
+     * The overview of the sample, or null if it was not requested
+     */
+    private volatile TriageOverview overview;
+
+    /**
+     * The triage report of each behavioural task, keyed by the task ID
+     */
+    private final Map<String, TriageReport> reports;
+
+    /**
+     * The file the sample was downloaded into, or null if it was not
+     * downloaded
+     */
+    private volatile File sampleFile;
+
+    /**
+     * Creates an item for the given search result
+     *
+     * @param entry the search result of the sample
+     */
+    IngestItem(SearchResultEntry entry) {
+        this.entry = entry;
+        this.reports = Collections.synchronizedMap(new LinkedHashMap<>());
+    }
+
+    /**
+     * Gets the ID of the sample
+     *
+     * @return the sample ID
+     */
+    public String getSampleId() {
+        return entry.getId();
+    }
+
+    /**
+     * Gets the search result of the sample
+     *
+     * @return the search result
+     */
+    public SearchResultEntry getEntry() {
+        return entry;
+    }
+
+    /**
+     * Gets the overview of the sample
+     *
+     * @return the overview, or null if it was not requested
+     */
+    public TriageOverview getOverview() {
+        return overview;
+    }
+
+    /**
+     * Sets the overview of the sample
+     *
+     * @param overview the overview
+     */
+    void setOverview(TriageOverview overview) {
+        this.overview = overview;
+    }
+
+    /**
+     * Gets the triage report of each behavioural task
+     *
+     * @return the reports, keyed by the task ID
+     */
+    public Map<String, TriageReport> getReports() {
+        return Collections.unmodifiableMap(reports);
+    }
+
+    /**
+     * Adds the triage report of the given task
+     *
+     * @param taskId the ID of the task
+     * @param report the triage report of the task
+     */
+    void addReport(String taskId, TriageReport report) {
+        reports.put(taskId, report);
+    }
+
+    /**
+     * Gets the file the sample was downloaded into
+     *
+     * @return the file, or null if the sample was not downloaded
+     */
+    public File getSampleFile() {
+        return sampleFile;
+    }
+
+    /**
+     * Sets the file the sample was downloaded into
+     *
+     * @param sampleFile the file
+     */
+    void setSampleFile(File sampleFile) {
+        this.sampleFile = sampleFile;
+    }
+
+    /**
+     * Gets the IDs of the behavioural tasks of the sample, which are taken
+     * from the overview if it was requested, and from the search result
+     * otherwise
+     *
+     * @return the IDs of the behavioural tasks
+     */
+    List<String> getBehaviouralTasks() {
+        List<String> tasks = new ArrayList<>();
+        if (overview != null && overview.getTasks() != null) {
+            for (TaskSummary task : overview.getTasks()) {
+                if (task != null && task.getName() != null && task.getName().startsWith(BEHAVIOURAL_PREFIX)) {
+                    tasks.add(task.getName());
+                }
+            }
+        } else if (entry.getTasks() != null) {
+            for (String task : entry.getTasks()) {
+                if (task != null && task.startsWith(BEHAVIOURAL_PREFIX)) {
+                    tasks.add(task);
+                }
+            }
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.pipeline;
+
+import java.io.IOException;
+
+/**
+ * This interface is implemented to receive the samples that passed through an
+ * <code>IngestPipeline</code>. The functions are called on the worker threads
+ * of the pipeline, possibly concurrently, and a slow listener slows down the
+ * pipeline, rather than the samples piling up in memory.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public interface IngestListener {
+
+    /**
+     * Called once a sample passed through all enabled stages
+     *
+     * @param item the sample, along with the data of each stage
+     */
+    void onCompleted(IngestItem item);
+
+    /**
+     * Called if a stage failed for a sample, after which the sample does not
+     * pass through the remaining stages
+     *
+     * @param item the sample, along with the data of the preceding stages
+     * @param stage the stage that failed
+     * @param exception the cause of the failure
+     */
+    default void onFailed(IngestItem item, PipelineStage stage, IOException exception) {
+    }
+}
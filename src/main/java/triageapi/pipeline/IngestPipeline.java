@@ -0,0 +1,574 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.pipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import triageapi.TriageApi;
+import triageapi.network.CancellationToken;
+import triageapi.network.RequestPriority;
+
+/**
+ * This class runs a staged ingest job: the samples that match a search query
+ * within a period of time are passed through the enabled stages, which get
+ * their overview, get the triage report of each behavioural task, and
+ * download the sample into a directory. Each stage has its own amount of
+ * worker threads, and a bounded queue in front of it. Once a queue is full,
+ * the preceding stage waits, down to the search itself, which only requests
+ * the next page once its results are queued. As such, the amount of samples
+ * in memory is bounded by the queue capacities and the amount of workers,
+ * regardless of the amount of search results, whilst each stage keeps its
+ * workers, and thus its connections, busy.<br>
+ * <br>
+ * A sample for which a stage fails is passed to
+ * {@link IngestListener#onFailed(triageapi.pipeline.IngestItem, triageapi.pipeline.PipelineStage, java.io.IOException)},
+ * and skips the remaining stages, whereas the other samples continue. The
+ * requests of the pipeline are bulk requests, unless the calling thread
+ * entered a priority scope, and the cancellation token of the calling thread
+ * applies to all requests of the pipeline.<br>
+ * <br>
+ * All stages are enabled by default, except for the download stage, which is
+ * enabled once a download directory is set.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class IngestPipeline {
+
+    /**
+     * The interval in which blocked workers check if the pipeline was
+     * aborted, in milliseconds
+     */
+    private static final long ABORT_INTERVAL = 100;
+
+    /**
+     * The item that marks the end of a queue
+     */
+    private static final IngestItem END = new IngestItem(null);
+
+    /**
+     * The instance via which the requests are sent
+     */
+    private final TriageApi api;
+
+    /**
+     * The amount of workers of each stage
+     */
+    private final Map<PipelineStage, Integer> workers;
+
+    /**
+     * The capacity of the queue in front of each stage
+     */
+    private final Map<PipelineStage, Integer> queueCapacities;
+
+    /**
+     * The enabled stages
+     */
+    private final Set<PipelineStage> enabled;
+
+    /**
+     * The directory the samples are downloaded into, or null if it is not set
+     */
+    private volatile File downloadDirectory;
+
+    /**
+     * The metrics of each stage of the current or last run
+     */
+    private volatile Map<PipelineStage, StageMetrics> metrics;
+
+    /**
+     * Creates a pipeline that sends its requests via the given instance. The
+     * overview and reports stages have 8 workers each, and the download stage
+     * has 4 workers, as downloads are few but large. Together, they stay
+     * within the 20 pooled connections per host of a
+     * <code>TriageConnector</code>. Each queue holds up to 64 samples.
+     *
+     * @param api the instance via which the requests are sent
+     */
+    public IngestPipeline(TriageApi api) {
+        this.api = api;
+        this.workers = new EnumMap<>(PipelineStage.class);
+        this.queueCapacities = new EnumMap<>(PipelineStage.class);
+        this.enabled = EnumSet.of(PipelineStage.SEARCH, PipelineStage.OVERVIEW, PipelineStage.REPORTS);
+        for (PipelineStage stage : PipelineStage.values()) {
+            workers.put(stage, stage == PipelineStage.DOWNLOAD ? 4 : stage == PipelineStage.SEARCH ? 1 : 8);
+            queueCapacities.put(stage, 64);
+        }
+        this.metrics = createMetrics();
+    }
+
+    /**
+     * Sets the amount of workers of the given stage. The search stage has a
+     * single worker, which is the calling thread, as the pages of a search
+     * are requested one after the other.
+     *
+     * @param stage the stage to set the amount of workers of
+     * @param amount the amount of workers, at least one
+     */
+    public synchronized void setWorkers(PipelineStage stage, int amount) {
+        if (stage == PipelineStage.SEARCH || amount < 1) {
+            throw new IllegalArgumentException("The search stage has a single worker, and other stages require at least one worker!");
+        }
+        workers.put(stage, amount);
+    }
+
+    /**
+     * Sets the capacity of the queue in front of the given stage
+     *
+     * @param stage the stage to set the queue capacity of
+     * @param capacity the maximum amount of samples in the queue, at least
+     * one
+     */
+    public synchronized void setQueueCapacity(PipelineStage stage, int capacity) {
+        if (stage == PipelineStage.SEARCH || capacity < 1) {
+            throw new IllegalArgumentException("The search stage has no queue, and other queues require a capacity of at least one!");
+        }
+        queueCapacities.put(stage, capacity);
+    }
+
+    /**
+     * Enables or disables the given stage. The search stage cannot be
+     * disabled, and the download stage can only be enabled once a download
+     * directory is set.
+     *
+     * @param stage the stage to enable or disable
+     * @param enable true to enable the stage, false to skip it
+     */
+    public synchronized void setEnabled(PipelineStage stage, boolean enable) {
+        if (stage == PipelineStage.SEARCH && enable == false) {
+            throw new IllegalArgumentException("The search stage cannot be disabled!");
+        } else if (stage == PipelineStage.DOWNLOAD && enable && downloadDirectory == null) {
+            throw new IllegalStateException("The download stage requires a download directory!");
+        }
+        if (enable) {
+            enabled.add(stage);
+        } else {
+            enabled.remove(stage);
+        }
+    }
+
+    /**
+     * Sets the directory the samples are downloaded into, named after their
+     * sample ID, and enables the download stage
+     *
+     * @param downloadDirectory the directory to download the samples into
+     */
+    public synchronized void setDownloadDirectory(File downloadDirectory) {
+        this.downloadDirectory = downloadDirectory;
+        enabled.add(PipelineStage.DOWNLOAD);
+    }
+
+    /**
+     * Checks if the given stage is enabled
+     *
+     * @param stage the stage to check
+     * @return true if the stage is enabled, false if it is skipped
+     */
+    public synchronized boolean isEnabled(PipelineStage stage) {
+        return enabled.contains(stage);
+    }
+
+    /**
+     * Gets the metrics of the given stage, of the current run, or of the last
+     * run if the pipeline is not running
+     *
+     * @param stage the stage to get the metrics of
+     * @return the metrics of the stage
+     */
+    public StageMetrics getMetrics(PipelineStage stage) {
+        return metrics.get(stage);
+    }
+
+    /**
+     * Passes all samples that match the given query, and that were completed
+     * between the earliest given moment and now, through the enabled stages
+     *
+     * @param query the query to search for
+     * @param earliest the earliest moment in time from when samples should be
+     * included
+     * @param listener the listener that receives the samples
+     * @return the amount of samples that passed through all enabled stages
+     * @throws IOException if the search fails, or if the download directory
+     * cannot be created
+     * @throws InterruptedIOException if the calling thread is interrupted, or
+     * if its cancellation token is cancelled
+     */
+    public long run(String query, LocalDateTime earliest, IngestListener listener) throws IOException {
+        return run(query, earliest, LocalDateTime.now(ZoneId.systemDefault()), listener);
+    }
+
+    /**
+     * Passes all samples that match the given query, and that were completed
+     * between the two given moments, through the enabled stages. The call
+     * returns once all samples passed through the pipeline. A pipeline runs
+     * one query at a time.
+     *
+     * @param query the query to search for
+     * @param earliest the earliest moment in time from when samples should be
+     * included
+     * @param latest the latest moment in time from when samples should be
+     * included
+     * @param listener the listener that receives the samples
+     * @return the amount of samples that passed through all enabled stages
+     * @throws IOException if the search fails, or if the download directory
+     * cannot be created
+     * @throws InterruptedIOException if the calling thread is interrupted, or
+     * if its cancellation token is cancelled
+     */
+    public synchronized long run(String query, LocalDateTime earliest, LocalDateTime latest, IngestListener listener) throws IOException {
+        if (enabled.contains(PipelineStage.DOWNLOAD) && downloadDirectory.isDirectory() == false && downloadDirectory.mkdirs() == false) {
+            throw new IOException("The download directory \"" + downloadDirectory.getAbsolutePath() + "\" cannot be created");
+        }
+        Run run = new Run(listener);
+        metrics = run.metrics;
+        return run.execute(query, earliest, latest);
+    }
+
+    /**
+     * Creates empty metrics for each stage
+     *
+     * @return the metrics of each stage
+     */
+    private static Map<PipelineStage, StageMetrics> createMetrics() {
+        Map<PipelineStage, StageMetrics> stageMetrics = new EnumMap<>(PipelineStage.class);
+        for (PipelineStage stage : PipelineStage.values()) {
+            stageMetrics.put(stage, new StageMetrics(stage));
+        }
+        return stageMetrics;
+    }
+
+    /**
+     * A single run of the pipeline, which owns the queues and the workers of
+     * the run
+     */
+    private class Run {
+
+        /**
+         * The listener that receives the samples
+         */
+        private final IngestListener listener;
+
+        /**
+         * The metrics of each stage
+         */
+        private final Map<PipelineStage, StageMetrics> metrics;
+
+        /**
+         * The enabled stages after the search stage, in order
+         */
+        private final List<PipelineStage> stages;
+
+        /**
+         * The queue in front of each enabled stage after the search stage
+         */
+        private final Map<PipelineStage, BlockingQueue<IngestItem>> queues;
+
+        /**
+         * The amount of workers of each stage that are still running
+         */
+        private final Map<PipelineStage, AtomicInteger> running;
+
+        /**
+         * The amount of samples that passed through all enabled stages
+         */
+        private final AtomicLong completed;
+
+        /**
+         * The first unexpected failure, which aborts the run
+         */
+        private final AtomicReference<RuntimeException> aborted;
+
+        /**
+         * The priority of the requests of the run
+         */
+        private final RequestPriority priority;
+
+        /**
+         * The cancellation token of the caller, or null if there is none
+         */
+        private final CancellationToken token;
+
+        /**
+         * Creates a run with the current configuration of the pipeline
+         *
+         * @param listener the listener that receives the samples
+         */
+        private Run(IngestListener listener) {
+            this.listener = listener;
+            this.metrics = createMetrics();
+            this.stages = new ArrayList<>();
+            this.queues = new EnumMap<>(PipelineStage.class);
+            this.running = new EnumMap<>(PipelineStage.class);
+            for (PipelineStage stage : PipelineStage.values()) {
+                if (stage != PipelineStage.SEARCH && enabled.contains(stage)) {
+                    stages.add(stage);
+                    queues.put(stage, new ArrayBlockingQueue<>(queueCapacities.get(stage)));
+                    running.put(stage, new AtomicInteger(workers.get(stage)));
+                }
+            }
+            this.completed = new AtomicLong();
+            this.aborted = new AtomicReference<>();
+            this.priority = RequestPriority.current() == null ? RequestPriority.BULK : RequestPriority.current();
+            this.token = CancellationToken.current();
+        }
+
+        /**
+         * Starts the workers, searches for the samples in the calling thread,
+         * and waits until all samples passed through the pipeline
+         *
+         * @param query the query to search for
+         * @param earliest the earliest moment in time
+         * @param latest the latest moment in time
+         * @return the amount of samples that passed through all enabled
+         * stages
+         * @throws IOException if the search fails
+         */
+        @SuppressWarnings("try")
+        private long execute(String query, LocalDateTime earliest, LocalDateTime latest) throws IOException {
+            List<Thread> threads = new ArrayList<>();
+            for (PipelineStage stage : stages) {
+                for (int i = 0; i < workers.get(stage); i++) {
+                    Thread thread = new Thread(() -> work(stage), "triage-pipeline-" + stage.name().toLowerCase() + "-" + (i + 1));
+                    thread.setDaemon(true);
+                    threads.add(thread);
+                    thread.start();
+                }
+            }
+
+            IOException failure = null;
+            StageMetrics searchMetrics = metrics.get(PipelineStage.SEARCH);
+            long[] handedOff = {System.nanoTime()};
+            try (RequestPriority.Scope scope = priority.enter()) {
+                api.search(query, earliest, latest, (entry) -> {
+                    //The time since the last result was handed off was spent on the search
+                    searchMetrics.record(false, System.nanoTime() - handedOff[0]);
+                    forward(PipelineStage.SEARCH, new IngestItem(entry));
+                    handedOff[0] = System.nanoTime();
+                });
+            } catch (IOException ex) {
+                failure = ex;
+            } catch (RuntimeException ex) {
+                aborted.compareAndSet(null, ex);
+            }
+
+            //The end of the search is passed on to the workers, which finish the queued samples first
+            try {
+                end(PipelineStage.SEARCH);
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException ex) {
+                aborted.compareAndSet(null, new IllegalStateException("Interrupted while waiting for the pipeline"));
+                for (Thread thread : threads) {
+                    thread.interrupt();
+                }
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the pipeline to complete");
+            } catch (InterruptedIOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+
+            if (aborted.get() != null) {
+                throw aborted.get();
+            } else if (failure != null) {
+                throw failure;
+            }
+            return completed.get();
+        }
+
+        /**
+         * Takes samples from the queue of the given stage, and processes them
+         * until the end of the queue
+         *
+         * @param stage the stage of the worker
+         */
+        @SuppressWarnings("try")
+        private void work(PipelineStage stage) {
+            BlockingQueue<IngestItem> queue = queues.get(stage);
+            StageMetrics stageMetrics = metrics.get(stage);
+            try (CancellationToken.Scope tokenScope = token == null ? null : token.enter();
+                    RequestPriority.Scope priorityScope = priority.enter()) {
+                while (true) {
+                    IngestItem item = queue.take();
+                    stageMetrics.setQueueLength(queue.size());
+                    if (item == END || isAborted()) {
+                        break;
+                    }
+                    long start = System.nanoTime();
+                    IOException failure = null;
+                    try {
+                        process(stage, item);
+                    } catch (IOException ex) {
+                        failure = ex;
+                    }
+                    stageMetrics.record(failure != null, System.nanoTime() - start);
+                    if (failure != null) {
+                        listener.onFailed(item, stage, failure);
+                    } else {
+                        forward(stage, item);
+                    }
+                }
+            } catch (InterruptedException | InterruptedIOException ex) {
+                //The run was aborted or cancelled
+            } catch (RuntimeException ex) {
+                aborted.compareAndSet(null, ex);
+            } finally {
+                //The last worker of a stage passes the end on to the next stage
+                if (running.get(stage).decrementAndGet() == 0) {
+                    try {
+                        end(stage);
+                    } catch (InterruptedIOException ex) {
+                        //The next stage ends as the run was aborted or cancelled
+                    }
+                }
+            }
+        }
+
+        /**
+         * Passes the given sample to the stage after the given stage, and
+         * waits for room in its queue, or to the listener if the given stage
+         * is the last enabled stage
+         *
+         * @param stage the stage that processed the sample
+         * @param item the sample
+         * @throws InterruptedIOException if the run was aborted or cancelled
+         * while waiting
+         */
+        private void forward(PipelineStage stage, IngestItem item) throws InterruptedIOException {
+            PipelineStage next = getNext(stage);
+            if (next == null) {
+                completed.incrementAndGet();
+                listener.onCompleted(item);
+                return;
+            }
+            long start = System.nanoTime();
+            put(next, item);
+            metrics.get(stage).recordBlocked(System.nanoTime() - start);
+        }
+
+        /**
+         * Passes the end of the queue to each worker of the stage after the
+         * given stage
+         *
+         * @param stage the stage that ended
+         * @throws InterruptedIOException if the run was aborted or cancelled
+         * while waiting
+         */
+        private void end(PipelineStage stage) throws InterruptedIOException {
+            PipelineStage next = getNext(stage);
+            if (next != null) {
+                for (int i = 0; i < workers.get(next); i++) {
+                    put(next, END);
+                }
+            }
+        }
+
+        /**
+         * Adds the given sample to the queue of the given stage, and waits
+         * until there is room in the queue. Waiting ends early once the run is
+         * aborted or cancelled, in which case the end of the queue is still
+         * added, as the workers of the stage drop the queued samples.
+         *
+         * @param stage the stage to add the sample to
+         * @param item the sample to add
+         * @throws InterruptedIOException if the run was aborted or cancelled
+         */
+        private void put(PipelineStage stage, IngestItem item) throws InterruptedIOException {
+            BlockingQueue<IngestItem> queue = queues.get(stage);
+            try {
+                while (queue.offer(item, ABORT_INTERVAL, TimeUnit.MILLISECONDS) == false) {
+                    if (isAborted()) {
+                        if (item == END) {
+                            //Make room for the end, as the queued samples are dropped anyway
+                            queue.poll();
+                            continue;
+                        }
+                        throw new InterruptedIOException("The pipeline was aborted");
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the " + stage + " stage");
+            }
+            metrics.get(stage).setQueueLength(queue.size());
+        }
+
+        /**
+         * Gets the enabled stage after the given stage
+         *
+         * @param stage the stage to get the next stage of
+         * @return the next stage, or null if the given stage is the last one
+         */
+        private PipelineStage getNext(PipelineStage stage) {
+            int index = stages.indexOf(stage) + 1;
+            return index < stages.size() ? stages.get(index) : null;
+        }
+
+        /**
+         * Checks if the run was aborted due to an unexpected failure, or
+         * cancelled via the token of the caller
+         *
+         * @return true if the run was aborted or cancelled, false if not
+         */
+        private boolean isAborted() {
+            return aborted.get() != null || (token != null && token.isCancelled());
+        }
+
+        /**
+         * Processes the given sample in the given stage
+         *
+         * @param stage the stage to process the sample in
+         * @param item the sample
+         * @throws IOException if the requests of the stage fail
+         */
+        private void process(PipelineStage stage, IngestItem item) throws IOException {
+            switch (stage) {
+                case OVERVIEW:
+                    item.setOverview(api.getTriageOverview(item.getSampleId()));
+                    break;
+                case REPORTS:
+                    for (String taskId : item.getBehaviouralTasks()) {
+                        item.addReport(taskId, api.getTriageReport(item.getSampleId(), taskId));
+                    }
+                    break;
+                case DOWNLOAD:
+                    File destination = new File(downloadDirectory, item.getSampleId());
+                    api.downloadSample(item.getSampleId(), destination);
+                    item.setSampleFile(destination);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.pipeline;
+
+/**
+ * This enum contains the stages of an <code>IngestPipeline</code>, in the
+ * order in which a sample passes through them.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public enum PipelineStage {
+    /**
+     * Searches for the samples that match the query, page by page
+     */
+    SEARCH,
+    /**
+     * Gets the overview of each sample
+     */
+    OVERVIEW,
+    /**
+     * Gets the triage report of each behavioural task of each sample
+     */
+    REPORTS,
+    /**
+     * Downloads each sample into the download directory
+     */
+    DOWNLOAD
+}
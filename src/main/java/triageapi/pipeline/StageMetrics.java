@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class contains the metrics of a single stage of an
+ * <code>IngestPipeline</code>. Besides the amount of processed and failed
+ * samples, the time the workers spent on requests and the time they were
+ * blocked on the next stage are kept. A stage that is mostly blocked is
+ * faster than the next stage, whereas a stage whose queue is full is the
+ * bottleneck of the pipeline.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class StageMetrics {
+
+    /**
+     * The stage of these metrics
+     */
+    private final PipelineStage stage;
+
+    /**
+     * The amount of samples that passed through the stage
+     */
+    private final AtomicLong processedCount;
+
+    /**
+     * The amount of samples for which the stage failed
+     */
+    private final AtomicLong failedCount;
+
+    /**
+     * The time the workers spent on processing samples, in nanoseconds
+     */
+    private final AtomicLong busyTime;
+
+    /**
+     * The time the workers waited for room in the queue of the next stage, in
+     * nanoseconds
+     */
+    private final AtomicLong blockedTime;
+
+    /**
+     * The amount of samples that wait in the queue of the stage
+     */
+    private volatile int queueLength;
+
+    /**
+     * Creates empty metrics for the given stage
+     *
+     * @param stage the stage of the metrics
+     */
+    StageMetrics(PipelineStage stage) {
+        this.stage = stage;
+        this.processedCount = new AtomicLong();
+        this.failedCount = new AtomicLong();
+        this.busyTime = new AtomicLong();
+        this.blockedTime = new AtomicLong();
+    }
+
+    /**
+     * Counts a sample that was processed by the stage
+     *
+     * @param failed true if the stage failed for the sample
+     * @param nanoseconds the time the stage spent on the sample
+     */
+    void record(boolean failed, long nanoseconds) {
+        if (failed) {
+            failedCount.incrementAndGet();
+        } else {
+            processedCount.incrementAndGet();
+        }
+        busyTime.addAndGet(nanoseconds);
+    }
+
+    /**
+     * Adds time that a worker waited for room in the queue of the next stage
+     *
+     * @param nanoseconds the time the worker waited
+     */
+    void recordBlocked(long nanoseconds) {
+        blockedTime.addAndGet(nanoseconds);
+    }
+
+    /**
+     * Sets the amount of samples that wait in the queue of the stage
+     *
+     * @param queueLength the length of the queue
+     */
+    void setQueueLength(int queueLength) {
+        this.queueLength = queueLength;
+    }
+
+    /**
+     * Gets the stage of these metrics
+     *
+     * @return the stage
+     */
+    public PipelineStage getStage() {
+        return stage;
+    }
+
+    /**
+     * Gets the amount of samples that passed through the stage
+     *
+     * @return the amount of samples
+     */
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    /**
+     * Gets the amount of samples for which the stage failed
+     *
+     * @return the amount of samples
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Gets the time the workers spent on processing samples
+     *
+     * @return the time in milliseconds
+     */
+    public long getBusyTime() {
+        return busyTime.get() / 1_000_000;
+    }
+
+    /**
+     * Gets the time the workers waited for room in the queue of the next
+     * stage
+     *
+     * @return the time in milliseconds
+     */
+    public long getBlockedTime() {
+        return blockedTime.get() / 1_000_000;
+    }
+
+    /**
+     * Gets the amount of samples that wait in the queue of the stage, as of
+     * the last time a sample was added or taken
+     *
+     * @return the length of the queue
+     */
+    public int getQueueLength() {
+        return queueLength;
+    }
+
+    @Override
+    public String toString() {
+        return stage + ": processed=" + getProcessedCount() + ", failed=" + getFailedCount()
+                + ", busy=" + getBusyTime() + "ms, blocked=" + getBlockedTime() + "ms, queued=" + getQueueLength();
+    }
+}
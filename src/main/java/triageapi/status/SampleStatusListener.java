@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.status;
+
+import java.io.IOException;
+import triageapi.model.SampleStatusChange;
+
+/**
+ * A listener that is notified by the <code>SampleStatusTracker</code> whenever
+ * the status of a tracked sample changes. Listeners are called from the
+ * tracker's worker threads, meaning implementations should be thread safe and
+ * should return quickly.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public interface SampleStatusListener {
+
+    /**
+     * Called once for each observed status transition of a tracked sample
+     *
+     * @param change the observed status transition
+     */
+    void onStatusChange(SampleStatusChange change);
+
+    /**
+     * Called when the status of a tracked sample could not be obtained. The
+     * sample remains tracked, and is polled again later. By default, failures
+     * are ignored.
+     *
+     * @param sampleId the ID of the sample that could not be polled
+     * @param exception the exception that occurred during the poll, which
+     * wraps the cause if the response could not be handled
+     */
+    default void onPollFailure(String sampleId, IOException exception) {
+    }
+}
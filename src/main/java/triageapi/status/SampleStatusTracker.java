@@ -0,0 +1,451 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.status;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import triageapi.TriageApi;
+import triageapi.model.SampleStatusChange;
+import triageapi.network.RequestPriority;
+
+/**
+ * This class tracks the status of a (large) set of samples over time. Instead
+ * of polling each sample one after the other, as
+ * <code>TriageApi.getSampleStatuses</code> does, the tracker polls multiple
+ * samples at the same time, whilst staying within the given request budget.
+ * Samples that are close to finishing (those that are running or being
+ * processed) are polled more often than samples that are still waiting in the
+ * queue.<br>
+ * <br>
+ * Only status transitions are passed to the registered listeners. Once a
+ * sample reaches a final status (<em>reported</em> or <em>failed</em>), the
+ * transition is emitted and the sample is no longer tracked.<br>
+ * <br>
+ * The tracker does not poll anything until <code>start</code> is called, and
+ * its threads are released once <code>stop</code> is called.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class SampleStatusTracker {
+
+    /**
+     * The statuses after which a sample will no longer change
+     */
+    private static final Set<String> FINAL_STATUSES = new HashSet<>(Arrays.asList("reported", "failed"));
+
+    /**
+     * The statuses that indicate that a sample is close to finishing
+     */
+    private static final Set<String> ACTIVE_STATUSES = new HashSet<>(Arrays.asList("running", "processing"));
+
+    /**
+     * The interval in milliseconds at which the dispatcher checks which
+     * samples are due
+     */
+    private static final long DISPATCH_INTERVAL = 100;
+
+    /**
+     * The API instance that is used to poll the samples
+     */
+    private final TriageApi api;
+
+    /**
+     * The maximum amount of polls that are in flight at the same time
+     */
+    private final int concurrency;
+
+    /**
+     * The maximum amount of polls per second
+     */
+    private final double requestsPerSecond;
+
+    /**
+     * All tracked samples, where the key is the sample ID
+     */
+    private final Map<String, TrackedSample> samples;
+
+    /**
+     * The listeners that are notified of status changes
+     */
+    private final List<SampleStatusListener> listeners;
+
+    /**
+     * The amount of polls that are currently in flight
+     */
+    private final AtomicInteger inFlight;
+
+    /**
+     * The poll interval in milliseconds for samples that are close to
+     * finishing
+     */
+    private volatile long activeInterval;
+
+    /**
+     * The poll interval in milliseconds for all other samples
+     */
+    private volatile long idleInterval;
+
+    /**
+     * The maximum amount of tokens that can be saved up, which is at least 1
+     * so that a budget of less than one request per second still allows polls
+     */
+    private final double capacity;
+
+    /**
+     * The amount of polls that may currently be started, based on the request
+     * budget. This field is only accessed by the dispatcher thread.
+     */
+    private double tokens;
+
+    /**
+     * The moment (in nanoseconds) the tokens were last refilled
+     */
+    private long lastRefill;
+
+    /**
+     * The thread that schedules the polls
+     */
+    private ScheduledExecutorService dispatcher;
+
+    /**
+     * The threads that perform the polls, or null if the tracker is stopped
+     */
+    private volatile ExecutorService workers;
+
+    /**
+     * Creates a status tracker that uses the given API instance to poll the
+     * tracked samples. By default, running and processing samples are polled
+     * every 5 seconds, whereas other samples are polled every 30 seconds.
+     *
+     * @param api the API instance to poll the samples with
+     * @param concurrency the maximum amount of polls that are in flight at the
+     * same time, with a minimum of 1
+     * @param requestsPerSecond the maximum amount of polls per second, which
+     * has to be larger than 0
+     */
+    public SampleStatusTracker(TriageApi api, int concurrency, double requestsPerSecond) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("The amount of requests per second has to be larger than 0!");
+        }
+        this.api = api;
+        this.concurrency = Math.max(1, concurrency);
+        this.requestsPerSecond = requestsPerSecond;
+        this.capacity = Math.max(1, requestsPerSecond);
+        this.samples = new ConcurrentHashMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.inFlight = new AtomicInteger();
+        this.activeInterval = 5000;
+        this.idleInterval = 30000;
+    }
+
+    /**
+     * Sets the poll intervals that are used for tracked samples
+     *
+     * @param activeInterval the interval in milliseconds for samples that are
+     * running or being processed
+     * @param idleInterval the interval in milliseconds for all other samples
+     */
+    public void setPollIntervals(long activeInterval, long idleInterval) {
+        this.activeInterval = Math.max(0, activeInterval);
+        this.idleInterval = Math.max(0, idleInterval);
+    }
+
+    /**
+     * Adds a listener, which is notified of every status transition from then
+     * onwards
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(SampleStatusListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes the given listener
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(SampleStatusListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts tracking the given sample. The sample is polled as soon as
+     * possible. Tracking a sample that is already tracked has no effect.
+     *
+     * @param sampleId the ID of the sample to track
+     */
+    public void track(String sampleId) {
+        samples.putIfAbsent(sampleId, new TrackedSample(sampleId));
+    }
+
+    /**
+     * Starts tracking all given samples
+     *
+     * @param sampleIds the IDs of the samples to track
+     */
+    public void track(Collection<String> sampleIds) {
+        for (String sampleId : sampleIds) {
+            track(sampleId);
+        }
+    }
+
+    /**
+     * Stops tracking the given sample
+     *
+     * @param sampleId the ID of the sample to stop tracking
+     */
+    public void untrack(String sampleId) {
+        samples.remove(sampleId);
+    }
+
+    /**
+     * Gets the IDs of all samples that are currently tracked
+     *
+     * @return a set with the IDs of all tracked samples
+     */
+    public Set<String> getTrackedSampleIds() {
+        return new HashSet<>(samples.keySet());
+    }
+
+    /**
+     * Gets the last observed status of the given sample
+     *
+     * @param sampleId the ID of the sample
+     * @return the last observed status, or an empty string if the sample is not
+     * tracked or has not been polled yet
+     */
+    public String getStatus(String sampleId) {
+        TrackedSample sample = samples.get(sampleId);
+        if (sample == null) {
+            return "";
+        }
+        return sample.status;
+    }
+
+    /**
+     * Starts polling the tracked samples. Calling this function when the
+     * tracker has already been started has no effect.
+     */
+    public synchronized void start() {
+        if (dispatcher != null) {
+            return;
+        }
+        tokens = Math.min(capacity, concurrency);
+        lastRefill = System.nanoTime();
+        workers = Executors.newFixedThreadPool(concurrency, (runnable) -> {
+            Thread thread = new Thread(runnable, "triage-status-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "triage-status-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleWithFixedDelay(this::dispatch, 0, DISPATCH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops polling the tracked samples. Polls that are in flight are
+     * interrupted. The tracked samples are kept, meaning the tracker can be
+     * started again later on.
+     */
+    public synchronized void stop() {
+        if (dispatcher == null) {
+            return;
+        }
+        dispatcher.shutdownNow();
+        workers.shutdownNow();
+        dispatcher = null;
+        workers = null;
+    }
+
+    /**
+     * Starts the polls of all samples that are due, for as far as the request
+     * budget and the concurrency limit allow it. The samples that have been
+     * due for the longest time are polled first.
+     */
+    private void dispatch() {
+        //An exception would silently cancel the scheduled dispatches
+        try {
+            dispatchDue();
+        } catch (RuntimeException ex) {
+            //Ignore the failure, the next dispatch tries again
+        }
+    }
+
+    /**
+     * Starts the polls of the samples that are due, as is described in
+     * <code>dispatch</code>
+     */
+    private void dispatchDue() {
+        ExecutorService executor = workers;
+        if (executor == null) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + ((now - lastRefill) / 1_000_000_000.0) * requestsPerSecond);
+        lastRefill = now;
+
+        if (tokens < 1 || inFlight.get() >= concurrency) {
+            return;
+        }
+
+        long currentTime = System.currentTimeMillis();
+        List<TrackedSample> due = new ArrayList<>();
+        for (TrackedSample sample : samples.values()) {
+            if (sample.polling == false && sample.nextPoll <= currentTime) {
+                due.add(sample);
+            }
+        }
+        due.sort((first, second) -> Long.compare(first.nextPoll, second.nextPoll));
+
+        for (TrackedSample sample : due) {
+            if (tokens < 1 || inFlight.get() >= concurrency) {
+                break;
+            }
+            inFlight.incrementAndGet();
+            sample.polling = true;
+            try {
+                executor.execute(() -> poll(sample));
+            } catch (RejectedExecutionException ex) {
+                //The tracker was stopped, so the sample is left to be polled once it is started again
+                sample.polling = false;
+                inFlight.decrementAndGet();
+                return;
+            }
+            tokens--;
+        }
+    }
+
+    /**
+     * Polls the given sample, and notifies the listeners if its status has
+     * changed
+     *
+     * @param sample the sample to poll
+     */
+    @SuppressWarnings("try")
+    private void poll(TrackedSample sample) {
+        //Background polls yield to interactive requests if the requests are scheduled
+        try (RequestPriority.Scope scope = RequestPriority.BULK.enter()) {
+            String status = api.getSampleStatus(sample.sampleId);
+            long now = System.currentTimeMillis();
+
+            if (status.equals(sample.status) == false) {
+                SampleStatusChange change = new SampleStatusChange(sample.sampleId, sample.status, status, now);
+                sample.status = status;
+                for (SampleStatusListener listener : listeners) {
+                    try {
+                        listener.onStatusChange(change);
+                    } catch (RuntimeException ex) {
+                        //Ignore the listener's failure, as it should not affect the other listeners
+                    }
+                }
+            }
+
+            if (FINAL_STATUSES.contains(status)) {
+                samples.remove(sample.sampleId, sample);
+            } else if (ACTIVE_STATUSES.contains(status)) {
+                sample.nextPoll = now + activeInterval;
+            } else {
+                sample.nextPoll = now + idleInterval;
+            }
+        } catch (IOException ex) {
+            fail(sample, ex);
+        } catch (RuntimeException ex) {
+            //A response that cannot be handled, such as a malformed body, backs off like any other failure
+            fail(sample, new IOException("The status of sample " + sample.sampleId + " could not be obtained", ex));
+        } finally {
+            sample.polling = false;
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Postpones the next poll of the given sample by the idle interval, and
+     * notifies the listeners of the failed poll
+     *
+     * @param sample the sample that could not be polled
+     * @param exception the exception that occurred during the poll
+     */
+    private void fail(TrackedSample sample, IOException exception) {
+        sample.nextPoll = System.currentTimeMillis() + idleInterval;
+        for (SampleStatusListener listener : listeners) {
+            try {
+                listener.onPollFailure(sample.sampleId, exception);
+            } catch (RuntimeException listenerException) {
+                //Ignore the listener's failure, as it should not affect the other listeners
+            }
+        }
+    }
+
+    /**
+     * The internal state of a single tracked sample
+     */
+    private static class TrackedSample {
+
+        /**
+         * The ID of the tracked sample
+         */
+        private final String sampleId;
+
+        /**
+         * The last observed status, or an empty string if the sample has not
+         * been polled yet
+         */
+        private volatile String status;
+
+        /**
+         * The moment (in milliseconds since the epoch) the sample should be
+         * polled again
+         */
+        private volatile long nextPoll;
+
+        /**
+         * True if a poll for this sample is in flight
+         */
+        private volatile boolean polling;
+
+        /**
+         * Creates a new tracked sample, which is due immediately
+         *
+         * @param sampleId the ID of the sample to track
+         */
+        private TrackedSample(String sampleId) {
+            this.sampleId = sampleId;
+            this.status = "";
+            this.nextPoll = 0;
+            this.polling = false;
+        }
+    }
+}
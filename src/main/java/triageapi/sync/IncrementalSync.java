@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.sync;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.json.JSONObject;
+import triageapi.SearchResultHandler;
+import triageapi.TriageApi;
+import triageapi.model.SearchResultEntry;
+
+/**
+ * This class synchronises the results of search queries incrementally. For
+ * each query, a watermark is kept in a local state file, which marks the
+ * results that have been delivered. Each call to
+ * {@link #sync(java.lang.String, triageapi.SearchResultHandler)} searches for
+ * the samples that completed since the watermark, and delivers those that
+ * were not delivered before, from the oldest to the newest. As the state file
+ * is read when an instance is created, a restarted process resumes where the
+ * previous one stopped.<br>
+ * <br>
+ * The watermark is written to the state file after each sample that the
+ * handler accepted, by replacing the file atomically. A sample for which the
+ * handler fails is delivered again by the next call, as are the samples after
+ * it. Only if the process stops after the handler accepted a sample, but
+ * before the watermark was written, that single sample is delivered again,
+ * which a downstream queue can detect by its sample ID.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class IncrementalSync {
+
+    /**
+     * The instance via which the searches are made
+     */
+    private final TriageApi api;
+
+    /**
+     * The file in which the watermarks are stored
+     */
+    private final File stateFile;
+
+    /**
+     * The watermark of each query
+     */
+    private final Map<String, SyncWatermark> watermarks;
+
+    /**
+     * The period before the first synchronisation of a query from which
+     * samples are delivered, in milliseconds
+     */
+    private volatile long initialLookback;
+
+    /**
+     * Creates an instance that stores its watermarks in the given file, and
+     * reads the watermarks of a previous run from it, if it exists. The first
+     * synchronisation of a query delivers the samples of the past 24 hours.
+     *
+     * @param api the instance via which the searches are made
+     * @param stateFile the file in which the watermarks are stored
+     * @throws IOException if the state file exists, but cannot be read or
+     * parsed
+     */
+    public IncrementalSync(TriageApi api, File stateFile) throws IOException {
+        this.api = api;
+        this.stateFile = stateFile;
+        this.watermarks = new TreeMap<>();
+        this.initialLookback = TimeUnit.HOURS.toMillis(24);
+        load();
+    }
+
+    /**
+     * Sets the period before the first synchronisation of a query from which
+     * samples are delivered
+     *
+     * @param initialLookback the period
+     * @param unit the unit of the period
+     */
+    public void setInitialLookback(long initialLookback, TimeUnit unit) {
+        this.initialLookback = unit.toMillis(initialLookback);
+    }
+
+    /**
+     * Gets the watermark of the given query
+     *
+     * @param query the query to get the watermark of
+     * @return the watermark, or null if the query has not been synchronised
+     */
+    public synchronized SyncWatermark getWatermark(String query) {
+        return watermarks.get(query);
+    }
+
+    /**
+     * Gets the queries that have a watermark
+     *
+     * @return the queries
+     */
+    public synchronized Set<String> getQueries() {
+        return new TreeSet<>(watermarks.keySet());
+    }
+
+    /**
+     * Removes the watermark of the given query, after which its next
+     * synchronisation starts from the initial lookback again
+     *
+     * @param query the query to reset
+     * @throws IOException if the state file cannot be written
+     */
+    public synchronized void reset(String query) throws IOException {
+        if (watermarks.remove(query) != null) {
+            save();
+        }
+    }
+
+    /**
+     * Searches for the samples that match the given query, and that completed
+     * since its watermark, and passes those that were not delivered before to
+     * the given handler, from the oldest to the newest. The watermark is
+     * advanced and stored after each sample that the handler accepted.
+     *
+     * @param query the query to search for
+     * @param handler the handler that receives the new samples
+     * @return the amount of delivered samples
+     * @throws IOException if the search fails, if the handler fails, or if the
+     * state file cannot be written. The samples that were delivered before
+     * the failure are not delivered again.
+     */
+    public synchronized long sync(String query, SearchResultHandler handler) throws IOException {
+        long now = System.currentTimeMillis();
+        SyncWatermark start = watermarks.get(query);
+        SyncWatermark watermark = start == null ? new SyncWatermark(now - initialLookback, Collections.<String>emptySet()) : start;
+
+        //The search excludes its earliest moment, whereas samples that completed at the watermark may still be new
+        Map<String, SearchResultEntry> entries = new LinkedHashMap<>();
+        SyncWatermark from = watermark;
+        api.search(query, toLocalDateTime(watermark.getCompleted() - 1), toLocalDateTime(now), (entry) -> {
+            if (from.isNew(entry.getId(), entry.getCompletedEpochMillis())) {
+                entries.putIfAbsent(entry.getId(), entry);
+            }
+        });
+
+        //The search returns the newest samples first, whereas the watermark only moves forward
+        List<SearchResultEntry> ordered = new ArrayList<>(entries.values());
+        ordered.sort(Comparator.comparingLong(SearchResultEntry::getCompletedEpochMillis).thenComparing(SearchResultEntry::getId));
+        long delivered = 0;
+        for (SearchResultEntry entry : ordered) {
+            handler.handle(entry);
+            watermark = watermark.advance(entry.getId(), entry.getCompletedEpochMillis());
+            watermarks.put(query, watermark);
+            save();
+            delivered++;
+        }
+        return delivered;
+    }
+
+    /**
+     * Converts the given moment into the local date and time of this system,
+     * as is expected by the search
+     *
+     * @param epochMillis the moment, in milliseconds since the epoch
+     * @return the local date and time
+     */
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    /**
+     * Reads the watermarks from the state file, if it exists
+     *
+     * @throws IOException if the state file cannot be read or parsed
+     */
+    private void load() throws IOException {
+        if (stateFile.isFile() == false) {
+            return;
+        }
+        try {
+            JSONObject state = new JSONObject(new String(Files.readAllBytes(stateFile.toPath()), StandardCharsets.UTF_8));
+            JSONObject queries = state.getJSONObject("queries");
+            for (String query : queries.keySet()) {
+                watermarks.put(query, SyncWatermark.fromJson(queries.getJSONObject(query)));
+            }
+        } catch (JSONException ex) {
+            throw new IOException("The state file \"" + stateFile.getAbsolutePath() + "\" cannot be parsed", ex);
+        }
+    }
+
+    /**
+     * Writes the watermarks to the state file. The state is written to a
+     * temporary file first, which then replaces the state file, meaning that
+     * the state file is never left incomplete.
+     *
+     * @throws IOException if the state file cannot be written
+     */
+    private void save() throws IOException {
+        JSONObject queries = new JSONObject();
+        for (Map.Entry<String, SyncWatermark> entry : watermarks.entrySet()) {
+            queries.put(entry.getKey(), entry.getValue().toJson());
+        }
+        JSONObject state = new JSONObject().put("queries", queries);
+
+        Path target = stateFile.getAbsoluteFile().toPath();
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(temporary, state.toString(4).getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.sync;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import triageapi.TriageApi;
+import triageapi.model.SearchResult;
+import triageapi.model.SearchResultEntry;
+import triageapi.network.RequestPriority;
+
+/**
+ * This class follows the results of a search query, in the way that
+ * <code>tail -f</code> follows a file. The newest page of results is polled
+ * repeatedly, and the results before the first one that was already seen are
+ * passed to the listeners, from the oldest to the newest. Only if a whole page
+ * is new, the following pages are requested as well, until a result that was
+ * already seen is found.<br>
+ * <br>
+ * The poll interval adapts to the observed rate at which new results arrive,
+ * such that a poll is expected to find about half a page of new results. As
+ * such, a busy query is polled often enough to never miss results, whereas a
+ * quiet query is polled rarely. After a failed poll, the interval is doubled.
+ * All intervals stay within the configured bounds.<br>
+ * <br>
+ * The first poll only marks the current results as seen, unless the initial
+ * page is to be emitted. The tail does not poll anything until
+ * <code>start</code> is called, and its thread is released once
+ * <code>stop</code> is called.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class SearchTail {
+
+    /**
+     * The weight of the most recent poll in the observed arrival rate
+     */
+    private static final double RATE_WEIGHT = 0.3;
+
+    /**
+     * The amount of pages worth of results that are remembered as seen
+     */
+    private static final int REMEMBERED_PAGES = 4;
+
+    /**
+     * The instance via which the searches are made
+     */
+    private final TriageApi api;
+
+    /**
+     * The query to follow
+     */
+    private final String query;
+
+    /**
+     * The amount of results per page
+     */
+    private final int pageSize;
+
+    /**
+     * The listeners that receive the new results
+     */
+    private final List<SearchTailListener> listeners;
+
+    /**
+     * The IDs of the most recently seen results, in the order in which they
+     * were seen
+     */
+    private final Set<String> seen;
+
+    /**
+     * The shortest poll interval, in milliseconds
+     */
+    private volatile long minimumInterval;
+
+    /**
+     * The longest poll interval, in milliseconds
+     */
+    private volatile long maximumInterval;
+
+    /**
+     * The maximum amount of pages that is requested per poll
+     */
+    private volatile int maximumPages;
+
+    /**
+     * True if the results of the first poll are passed to the listeners
+     */
+    private volatile boolean emitInitialPage;
+
+    /**
+     * The current poll interval, in milliseconds
+     */
+    private volatile long interval;
+
+    /**
+     * The lock that is held during a poll, which ensures that a poll that is
+     * still in flight after a restart never runs alongside the polls of the
+     * new thread
+     */
+    private final Object pollLock;
+
+    /**
+     * The observed arrival rate, in results per millisecond, or -1 if it is
+     * unknown
+     */
+    private double rate;
+
+    /**
+     * The moment of the last successful poll, as measured with
+     * <code>System.nanoTime()</code>, or 0 if there was none
+     */
+    private long lastPoll;
+
+    /**
+     * The amount of polls
+     */
+    private volatile long pollCount;
+
+    /**
+     * The amount of results that were passed to the listeners
+     */
+    private volatile long emittedCount;
+
+    /**
+     * The thread that polls the query, or null if the tail is stopped
+     */
+    private ScheduledExecutorService poller;
+
+    /**
+     * Creates a tail of the given query, which requests 50 results per page,
+     * and polls between every 5 seconds and every 5 minutes
+     *
+     * @param api the instance via which the searches are made
+     * @param query the query to follow
+     */
+    public SearchTail(TriageApi api, String query) {
+        this(api, query, 50);
+    }
+
+    /**
+     * Creates a tail of the given query, which polls between every 5 seconds
+     * and every 5 minutes
+     *
+     * @param api the instance via which the searches are made
+     * @param query the query to follow
+     * @param pageSize the amount of results per page, between 1 and 200
+     */
+    public SearchTail(TriageApi api, String query, int pageSize) {
+        if (pageSize < 1 || pageSize > 200) {
+            throw new IllegalArgumentException("The page size has to be between 1 and 200!");
+        }
+        this.api = api;
+        this.query = query;
+        this.pageSize = pageSize;
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.seen = new LinkedHashSet<>();
+        this.pollLock = new Object();
+        this.minimumInterval = TimeUnit.SECONDS.toMillis(5);
+        this.maximumInterval = TimeUnit.MINUTES.toMillis(5);
+        this.maximumPages = 10;
+        this.interval = minimumInterval;
+        this.rate = -1;
+    }
+
+    /**
+     * Sets the bounds of the poll interval, and resets the current interval to
+     * the shortest one, after which it adapts again
+     *
+     * @param minimumInterval the shortest poll interval
+     * @param maximumInterval the longest poll interval
+     * @param unit the unit of the intervals
+     */
+    public void setPollIntervals(long minimumInterval, long maximumInterval, TimeUnit unit) {
+        if (minimumInterval < 0 || maximumInterval < minimumInterval) {
+            throw new IllegalArgumentException("The minimum interval cannot be negative, and cannot exceed the maximum interval!");
+        }
+        this.minimumInterval = unit.toMillis(minimumInterval);
+        this.maximumInterval = unit.toMillis(maximumInterval);
+        this.interval = this.minimumInterval;
+    }
+
+    /**
+     * Sets the maximum amount of pages that is requested per poll, which
+     * bounds the amount of requests if many results arrived since the last
+     * poll
+     *
+     * @param maximumPages the maximum amount of pages, at least one
+     */
+    public void setMaximumPages(int maximumPages) {
+        this.maximumPages = Math.max(1, maximumPages);
+    }
+
+    /**
+     * Sets whether the results of the first poll are passed to the
+     * listeners, or are only marked as seen
+     *
+     * @param emitInitialPage true to pass the newest page to the listeners
+     * once started, false to only pass results that arrive afterwards
+     */
+    public void setEmitInitialPage(boolean emitInitialPage) {
+        this.emitInitialPage = emitInitialPage;
+    }
+
+    /**
+     * Adds a listener, which is notified of every new result from then
+     * onwards
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(SearchTailListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes the given listener
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(SearchTailListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Gets the query that is followed
+     *
+     * @return the query
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Gets the current poll interval, which adapts to the arrival rate of new
+     * results
+     *
+     * @return the poll interval in milliseconds
+     */
+    public long getPollInterval() {
+        return interval;
+    }
+
+    /**
+     * Gets the amount of polls, including failed ones
+     *
+     * @return the amount of polls
+     */
+    public long getPollCount() {
+        return pollCount;
+    }
+
+    /**
+     * Gets the amount of results that were passed to the listeners
+     *
+     * @return the amount of results
+     */
+    public long getEmittedCount() {
+        return emittedCount;
+    }
+
+    /**
+     * Starts polling the query. Calling this function when the tail has
+     * already been started has no effect. The results that were seen before
+     * the tail was stopped are remembered. If a poll from before the tail was
+     * stopped is still in flight, the first poll waits until it has finished.
+     */
+    public synchronized void start() {
+        if (poller != null) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "triage-search-tail");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService owner = poller;
+        poller.schedule(() -> poll(owner), 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops polling the query. A poll that is in flight is interrupted, and
+     * its results and failure are discarded, meaning the listeners are not
+     * notified once this function returns.
+     */
+    public synchronized void stop() {
+        if (poller == null) {
+            return;
+        }
+        poller.shutdownNow();
+        poller = null;
+    }
+
+    /**
+     * Checks if the tail is polling the query
+     *
+     * @return true if the tail was started and not stopped, false if not
+     */
+    public synchronized boolean isRunning() {
+        return poller != null;
+    }
+
+    /**
+     * Polls the newest results, passes the new ones to the listeners, adapts
+     * the poll interval, and schedules the next poll. A poll that was
+     * scheduled on a thread that has since been stopped has no effect.
+     *
+     * @param owner the thread that the poll was scheduled on
+     */
+    @SuppressWarnings("try")
+    private void poll(ScheduledExecutorService owner) {
+        //Only one poll at a time may use the seen results, the rate, and the moment of the last poll
+        synchronized (pollLock) {
+            if (isCurrent(owner) == false) {
+                return;
+            }
+            pollCount++;
+            //Background polls yield to interactive requests if the requests are scheduled
+            try (RequestPriority.Scope scope = RequestPriority.BULK.enter()) {
+                boolean primed = lastPoll != 0;
+                List<SearchResultEntry> fresh = new ArrayList<>();
+                boolean overlap = fetch(fresh, primed);
+                long now = System.nanoTime();
+                if (isCurrent(owner) == false) {
+                    //The tail was stopped during the poll, so its results are left for the next one
+                    return;
+                }
+
+                //The results are newest first, whereas the listeners receive them in the order in which they arrived
+                Collections.reverse(fresh);
+                for (SearchResultEntry entry : fresh) {
+                    remember(entry.getId());
+                    if (primed || emitInitialPage) {
+                        emittedCount++;
+                        for (SearchTailListener listener : listeners) {
+                            try {
+                                listener.onEntry(entry);
+                            } catch (RuntimeException ex) {
+                                report(ex);
+                            }
+                        }
+                    }
+                }
+
+                if (primed) {
+                    adapt(fresh.size(), (now - lastPoll) / 1_000_000.0, overlap);
+                }
+                lastPoll = now;
+            } catch (IOException ex) {
+                if (isCurrent(owner) == false) {
+                    //The failure is caused by the interruption of the stopped tail
+                    return;
+                }
+                interval = clamp(interval * 2);
+                for (SearchTailListener listener : listeners) {
+                    try {
+                        listener.onPollFailure(ex);
+                    } catch (RuntimeException listenerException) {
+                        report(listenerException);
+                    }
+                }
+            } finally {
+                schedule(owner);
+            }
+        }
+    }
+
+    /**
+     * Checks if the given thread is the one that currently polls the query
+     *
+     * @param owner the thread that a poll was scheduled on
+     * @return true if the tail was not stopped since the poll was scheduled,
+     * false if it was
+     */
+    private synchronized boolean isCurrent(ScheduledExecutorService owner) {
+        return poller == owner;
+    }
+
+    /**
+     * Reports the failure of a listener to the uncaught exception handler of
+     * the polling thread, without affecting the other listeners or the next
+     * poll
+     *
+     * @param exception the exception that the listener threw
+     */
+    private static void report(RuntimeException exception) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, exception);
+    }
+
+    /**
+     * Requests the newest pages of results, until a result that was already
+     * seen is found
+     *
+     * @param fresh the list to add the new results to, newest first
+     * @param primed true if results were seen before, false if this is the
+     * first poll, in which case only the newest page is requested
+     * @return true if a result that was already seen was found, false if all
+     * requested results are new
+     * @throws IOException if a search fails
+     */
+    private boolean fetch(List<SearchResultEntry> fresh, boolean primed) throws IOException {
+        Set<String> found = new HashSet<>();
+        String offset = null;
+        for (int page = 0; page < maximumPages; page++) {
+            SearchResult result = offset == null ? api.search(query, pageSize) : api.search(query, offset, pageSize);
+            if (result.isEmpty() || result.getSearchResults().isEmpty()) {
+                return false;
+            }
+            for (SearchResultEntry entry : result.getSearchResults()) {
+                if (entry == null || entry.isEmpty()) {
+                    continue;
+                }
+                if (seen.contains(entry.getId())) {
+                    return true;
+                } else if (found.add(entry.getId())) {
+                    fresh.add(entry);
+                }
+            }
+            offset = result.getNextOffset();
+            if (primed == false || offset == null || offset.isEmpty()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adapts the poll interval to the amount of new results of the last poll
+     *
+     * @param arrived the amount of new results
+     * @param elapsed the time since the previous poll, in milliseconds
+     * @param overlap true if the poll found a result that was already seen
+     */
+    private void adapt(int arrived, double elapsed, boolean overlap) {
+        if (overlap == false && arrived > 0) {
+            //More results arrived than the requested pages contained, so the next poll comes as soon as possible
+            rate = -1;
+            interval = minimumInterval;
+            return;
+        }
+        double observed = arrived / Math.max(1, elapsed);
+        rate = rate < 0 ? observed : rate + (observed - rate) * RATE_WEIGHT;
+        if (rate > 0) {
+            //Poll once about half a page of new results is expected
+            interval = clamp((long) (pageSize / 2.0 / rate));
+        } else {
+            interval = clamp(interval * 2);
+        }
+    }
+
+    /**
+     * Marks the given ID as seen, and forgets the oldest seen IDs beyond a few
+     * pages worth of results
+     *
+     * @param id the ID to mark as seen
+     */
+    private void remember(String id) {
+        seen.add(id);
+        Iterator<String> iterator = seen.iterator();
+        while (seen.size() > pageSize * REMEMBERED_PAGES && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Schedules the next poll after the current interval, unless the tail was
+     * stopped since the current poll was scheduled
+     *
+     * @param owner the thread that the current poll was scheduled on
+     */
+    private synchronized void schedule(ScheduledExecutorService owner) {
+        if (poller == owner && owner.isShutdown() == false) {
+            owner.schedule(() -> poll(owner), interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Limits the given interval to the configured bounds
+     *
+     * @param value the interval in milliseconds
+     * @return the interval within the bounds
+     */
+    private long clamp(long value) {
+        return Math.max(minimumInterval, Math.min(maximumInterval, value));
+    }
+}
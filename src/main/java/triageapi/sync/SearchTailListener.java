@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.sync;
+
+import java.io.IOException;
+import triageapi.model.SearchResultEntry;
+
+/**
+ * A listener that is notified by a <code>SearchTail</code> of each new search
+ * result. Listeners are called from the tail's polling thread, one result at
+ * a time, meaning a slow listener delays the next poll. An exception that a
+ * listener throws does not affect the other listeners or the next poll, and
+ * is passed to the uncaught exception handler of the polling thread.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public interface SearchTailListener {
+
+    /**
+     * Called once for each new search result, from the oldest to the newest
+     *
+     * @param entry the new search result
+     */
+    void onEntry(SearchResultEntry entry);
+
+    /**
+     * Called when the newest results could not be obtained. The tail keeps
+     * polling, with a longer interval. By default, failures are ignored.
+     *
+     * @param exception the exception that occurred during the poll
+     */
+    default void onPollFailure(IOException exception) {
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.sync;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * This class contains the position up to which the results of a query have
+ * been delivered: the completion time of the last delivered sample, and the
+ * IDs of all delivered samples that completed at that exact moment. Samples
+ * that completed earlier have all been delivered, whereas samples that
+ * completed at the same moment are only new if their ID is not in the set.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class SyncWatermark {
+
+    /**
+     * The completion time of the last delivered sample, in milliseconds since
+     * the epoch
+     */
+    private final long completed;
+
+    /**
+     * The IDs of the delivered samples that completed at the watermark's
+     * completion time
+     */
+    private final Set<String> ids;
+
+    /**
+     * Creates a watermark at the given completion time
+     *
+     * @param completed the completion time of the last delivered sample, in
+     * milliseconds since the epoch
+     * @param ids the IDs of the delivered samples that completed at that
+     * moment
+     */
+    public SyncWatermark(long completed, Set<String> ids) {
+        this.completed = completed;
+        this.ids = Collections.unmodifiableSet(new LinkedHashSet<>(ids));
+    }
+
+    /**
+     * Gets the completion time of the last delivered sample
+     *
+     * @return the completion time, in milliseconds since the epoch
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Gets the IDs of the delivered samples that completed at the completion
+     * time of this watermark
+     *
+     * @return the IDs of the samples
+     */
+    public Set<String> getIds() {
+        return ids;
+    }
+
+    /**
+     * Checks if the sample with the given ID and completion time comes after
+     * this watermark, meaning it has not been delivered yet
+     *
+     * @param id the ID of the sample
+     * @param sampleCompleted the completion time of the sample, in
+     * milliseconds since the epoch
+     * @return true if the sample is new, false if it was delivered already
+     */
+    public boolean isNew(String id, long sampleCompleted) {
+        return sampleCompleted > completed || (sampleCompleted == completed && ids.contains(id) == false);
+    }
+
+    /**
+     * Creates the watermark that follows the delivery of the given sample,
+     * which has to be new
+     *
+     * @param id the ID of the delivered sample
+     * @param sampleCompleted the completion time of the delivered sample, in
+     * milliseconds since the epoch
+     * @return the next watermark
+     */
+    SyncWatermark advance(String id, long sampleCompleted) {
+        Set<String> nextIds = new LinkedHashSet<>();
+        if (sampleCompleted == completed) {
+            nextIds.addAll(ids);
+        }
+        nextIds.add(id);
+        return new SyncWatermark(sampleCompleted, nextIds);
+    }
+
+    /**
+     * Converts this watermark into its JSON representation
+     *
+     * @return the JSON representation
+     */
+    JSONObject toJson() {
+        return new JSONObject().put("completed", completed).put("ids", new JSONArray(ids));
+    }
+
+    /**
+     * Creates a watermark from its JSON representation
+     *
+     * @param json the JSON representation
+     * @return the watermark
+     */
+    static SyncWatermark fromJson(JSONObject json) {
+        Set<String> ids = new LinkedHashSet<>();
+        JSONArray array = json.optJSONArray("ids");
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                ids.add(array.getString(i));
+            }
+        }
+        return new SyncWatermark(json.getLong("completed"), ids);
+    }
+}
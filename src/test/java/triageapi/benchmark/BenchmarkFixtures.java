@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.benchmark;
+
+import java.util.Random;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import triageapi.fake.FakeTriageServer;
+
+/**
+ * This class generates canned responses for the endpoints that are used in
+ * the benchmark, and installs them as endpoint template fixtures in a
+ * <code>FakeTriageServer</code>. As such, every sample ID and task ID receives
+ * the same responses. The size of the responses can be configured, to resemble
+ * the analysis of a small or a large sample.<br>
+ * <br>
+ * The responses are generated with a fixed seed, meaning that each run of the
+ * benchmark uses the same responses.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class BenchmarkFixtures {
+
+    /**
+     * The task ID that is used in the generated responses
+     */
+    public static final String TASK_ID = "behavioral1";
+
+    /**
+     * The amount of processes, signatures and network flows in each report
+     */
+    private int entryCount;
+
+    /**
+     * The size of each sample in bytes
+     */
+    private int sampleSize;
+
+    /**
+     * The amount of entries in each search result
+     */
+    private int searchResultCount;
+
+    /**
+     * Creates fixtures with 100 entries per report, samples of 256 KB, and 50
+     * search results
+     */
+    public BenchmarkFixtures() {
+        this.entryCount = 100;
+        this.sampleSize = 256 * 1024;
+        this.searchResultCount = 50;
+    }
+
+    /**
+     * Sets the amount of processes, signatures and network flows in each
+     * report, and of signatures and targets in each overview
+     *
+     * @param entryCount the amount of entries
+     */
+    public void setEntryCount(int entryCount) {
+        this.entryCount = Math.max(0, entryCount);
+    }
+
+    /**
+     * Sets the size of each sample
+     *
+     * @param sampleSize the size in bytes
+     */
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = Math.max(0, sampleSize);
+    }
+
+    /**
+     * Sets the amount of entries in each search result
+     *
+     * @param searchResultCount the amount of entries
+     */
+    public void setSearchResultCount(int searchResultCount) {
+        this.searchResultCount = Math.max(0, searchResultCount);
+    }
+
+    /**
+     * Installs the generated responses in the given server
+     *
+     * @param server the server to install the responses in
+     */
+    public void install(FakeTriageServer server) {
+        Random random = new Random(0x7269616765L);
+        server.setFixture("samples/{id}/{task}/report_triage.json", createTriageReport(random).toString());
+        server.setFixture("samples/{id}/overview.json", createOverview(random).toString());
+        server.setFixture("samples/{id}/reports/static", createStaticReport(random).toString());
+        server.setFixture("search", createSearchResult(random).toString());
+
+        byte[] sample = new byte[sampleSize];
+        random.nextBytes(sample);
+        server.setFixture("samples/{id}/sample", sample);
+    }
+
+    /**
+     * Creates a dynamic analysis report
+     *
+     * @param random the source of the generated values
+     * @return the report
+     */
+    private JSONObject createTriageReport(Random random) {
+        JSONObject json = new JSONObject();
+        json.put("version", "0.2.3");
+        json.put("sample", createTarget(random));
+        json.put("task", createTarget(random));
+
+        JSONObject analysis = new JSONObject();
+        analysis.put("score", 10);
+        analysis.put("family", new JSONArray().put("benchmark"));
+        analysis.put("tags", new JSONArray().put("family:benchmark").put("trojan"));
+        analysis.put("submitted", "2021-01-01T00:00:00Z");
+        analysis.put("reported", "2021-01-01T00:05:00Z");
+        analysis.put("platform", "windows10-2004_x64");
+        analysis.put("resource", "win10v2004-20210101-en");
+        json.put("analysis", analysis);
+
+        JSONArray processes = new JSONArray();
+        JSONArray signatures = new JSONArray();
+        JSONArray flows = new JSONArray();
+        for (int i = 0; i < entryCount; i++) {
+            JSONObject process = new JSONObject();
+            process.put("procid", i + 1);
+            process.put("procid_parent", i);
+            process.put("pid", 1000 + i * 4);
+            process.put("ppid", 1000 + Math.max(0, i - 1) * 4);
+            process.put("cmd", "C:\\Windows\\System32\\cmd.exe /c benchmark-" + Long.toHexString(random.nextLong()));
+            process.put("image", "C:\\Windows\\System32\\cmd.exe");
+            process.put("orig", i == 0);
+            process.put("started", random.nextInt(60000));
+            process.put("terminated", random.nextInt(60000));
+            processes.put(process);
+
+            signatures.put(createSignature(random, i));
+
+            JSONObject flow = new JSONObject();
+            flow.put("id", i + 1);
+            flow.put("src", "10.127.0." + (i % 255) + ":" + (49152 + i));
+            flow.put("dst", "198.51.100." + random.nextInt(255) + ":443");
+            flow.put("proto", "tcp");
+            flow.put("pid", 1000 + i * 4);
+            flow.put("procid", i + 1);
+            flow.put("first_seen", random.nextInt(60000));
+            flow.put("last_seen", random.nextInt(60000));
+            flow.put("rx_bytes", random.nextInt(1 << 20));
+            flow.put("tx_bytes", random.nextInt(1 << 16));
+            flow.put("domain", "benchmark-" + i + ".example.com");
+            flows.put(flow);
+        }
+        json.put("processes", processes);
+        json.put("signatures", signatures);
+        json.put("network", new JSONObject().put("flows", flows).put("requests", new JSONArray()));
+        return json;
+    }
+
+    /**
+     * Creates the overview of a sample
+     *
+     * @param random the source of the generated values
+     * @return the overview
+     */
+    private JSONObject createOverview(Random random) {
+        JSONObject json = new JSONObject();
+        json.put("version", "0.2.3");
+        JSONObject sample = createTarget(random);
+        sample.put("created", "2021-01-01T00:00:00Z");
+        sample.put("completed", "2021-01-01T00:05:00Z");
+        json.put("sample", sample);
+
+        JSONObject task = new JSONObject();
+        task.put("kind", "behavioral");
+        task.put("name", TASK_ID);
+        task.put("status", "reported");
+        task.put("score", 10);
+        task.put("platform", "windows10-2004_x64");
+        task.put("tags", new JSONArray().put("family:benchmark"));
+        json.put("tasks", new JSONObject().put(TASK_ID, task));
+
+        JSONObject analysis = new JSONObject();
+        analysis.put("score", 10);
+        analysis.put("family", new JSONArray().put("benchmark"));
+        analysis.put("tags", new JSONArray().put("family:benchmark"));
+        json.put("analysis", analysis);
+
+        JSONArray signatures = new JSONArray();
+        JSONArray targets = new JSONArray();
+        for (int i = 0; i < entryCount; i++) {
+            signatures.put(createSignature(random, i));
+            JSONObject target = createTarget(random);
+            target.put("tasks", new JSONArray().put(TASK_ID));
+            targets.put(target);
+        }
+        json.put("signatures", signatures);
+        json.put("targets", targets);
+        return json;
+    }
+
+    /**
+     * Creates a static analysis report
+     *
+     * @param random the source of the generated values
+     * @return the report
+     */
+    private JSONObject createStaticReport(Random random) {
+        JSONObject json = new JSONObject();
+        json.put("version", "0.2.3");
+        json.put("sample", new JSONObject().put("sample", "210101-benchmark").put("kind", "file").put("size", sampleSize).put("target", "benchmark.exe"));
+        JSONArray files = new JSONArray();
+        JSONArray signatures = new JSONArray();
+        for (int i = 0; i < entryCount; i++) {
+            JSONObject file = new JSONObject();
+            file.put("filename", "benchmark-" + i + ".dll");
+            file.put("filesize", random.nextInt(1 << 20));
+            file.put("md5", Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()));
+            files.put(file);
+            signatures.put(createSignature(random, i));
+        }
+        json.put("files", files);
+        json.put("signatures", signatures);
+        json.put("analysis", new JSONObject().put("reported", "2021-01-01T00:01:00Z").put("score", 10).put("tags", new JSONArray().put("trojan")));
+        return json;
+    }
+
+    /**
+     * Creates a search result, without an offset for the next page
+     *
+     * @param random the source of the generated values
+     * @return the search result
+     */
+    private JSONObject createSearchResult(Random random) {
+        JSONArray data = new JSONArray();
+        for (int i = 0; i < searchResultCount; i++) {
+            JSONObject entry = new JSONObject();
+            entry.put("id", "210101-" + Long.toString(Math.abs(random.nextLong()), 36));
+            entry.put("kind", "file");
+            entry.put("filename", "benchmark-" + i + ".exe");
+            entry.put("private", false);
+            entry.put("submitted", "2021-01-01T00:00:00Z");
+            entry.put("completed", "2021-01-01T00:05:00Z");
+            entry.put("tasks", new JSONArray().put(new JSONObject().put("id", TASK_ID)));
+            data.put(entry);
+        }
+        return new JSONObject().put("data", data);
+    }
+
+    /**
+     * Creates the description of a target
+     *
+     * @param random the source of the generated values
+     * @return the target description
+     */
+    private JSONObject createTarget(Random random) {
+        JSONObject json = new JSONObject();
+        json.put("id", "210101-" + Long.toString(Math.abs(random.nextLong()), 36));
+        json.put("score", 10);
+        json.put("target", "benchmark.exe");
+        json.put("size", sampleSize);
+        json.put("md5", Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()));
+        json.put("sha256", Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()));
+        json.put("platform", "windows10-2004_x64");
+        return json;
+    }
+
+    /**
+     * Creates a signature
+     *
+     * @param random the source of the generated values
+     * @param index the index of the signature
+     * @return the signature
+     */
+    private JSONObject createSignature(Random random, int index) {
+        JSONObject json = new JSONObject();
+        json.put("name", "Benchmark signature " + index);
+        json.put("label", "benchmark_" + index);
+        json.put("score", random.nextInt(10) + 1);
+        json.put("ttp", new JSONArray().put("T1059"));
+        json.put("tags", new JSONArray().put("benchmark"));
+        json.put("desc", "A generated signature that is used to benchmark the parsers");
+        JSONArray indicators = new JSONArray();
+        for (int i = 0; i < 3; i++) {
+            indicators.put(new JSONObject().put("ioc", "benchmark-" + index + "-" + i).put("pid", 1000 + index * 4).put("procid", index + 1));
+        }
+        json.put("indicators", indicators);
+        return json;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import triageapi.TriageApi;
+
+/**
+ * The operations that can be driven by the <code>ThroughputBenchmark</code>.
+ * Each operation includes both the request and the conversion of the
+ * response into objects.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public enum BenchmarkOperation {
+
+    /**
+     * Fetches and parses a dynamic analysis report
+     */
+    REPORT {
+        @Override
+        void execute(TriageApi api, int iteration, int batchSize) throws IOException {
+            api.getTriageReport(getSampleId(iteration), BenchmarkFixtures.TASK_ID);
+        }
+    },
+    /**
+     * Fetches and parses the overview of a sample
+     */
+    OVERVIEW {
+        @Override
+        void execute(TriageApi api, int iteration, int batchSize) throws IOException {
+            api.getTriageOverview(getSampleId(iteration));
+        }
+    },
+    /**
+     * Fetches and parses a static analysis report
+     */
+    STATIC {
+        @Override
+        void execute(TriageApi api, int iteration, int batchSize) throws IOException {
+            api.getStaticReport(getSampleId(iteration));
+        }
+    },
+    /**
+     * Downloads a batch of samples
+     */
+    DOWNLOAD {
+        @Override
+        void execute(TriageApi api, int iteration, int batchSize) throws IOException {
+            List<String> sampleIds = new ArrayList<>();
+            for (int i = 0; i < batchSize; i++) {
+                sampleIds.add(getSampleId(iteration * batchSize + i));
+            }
+            api.downloadSamples(sampleIds, false);
+        }
+    },
+    /**
+     * Searches for samples, and parses the first page of results
+     */
+    SEARCH {
+        @Override
+        void execute(TriageApi api, int iteration, int batchSize) throws IOException {
+            api.search("family:benchmark" + (iteration % 16));
+        }
+    };
+
+    /**
+     * Executes the operation once
+     *
+     * @param api the API to execute the operation with
+     * @param iteration the number of the iteration, which is used to vary the
+     * requested sample IDs
+     * @param batchSize the amount of samples per batched operation
+     * @throws IOException if the operation fails
+     */
+    abstract void execute(TriageApi api, int iteration, int batchSize) throws IOException;
+
+    /**
+     * Gets the sample ID for the given iteration
+     *
+     * @param iteration the number of the iteration
+     * @return the sample ID
+     */
+    private static String getSampleId(int iteration) {
+        return "210101-bench" + (iteration & 0xffff);
+    }
+}
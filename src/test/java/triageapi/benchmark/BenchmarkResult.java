@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+import triageapi.metrics.LatencyHistogram;
+
+/**
+ * This class contains the measurements of a single operation during a
+ * benchmark run. It is safe to record measurements from multiple threads.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class BenchmarkResult {
+
+    /**
+     * The operation that was measured
+     */
+    private final BenchmarkOperation operation;
+
+    /**
+     * The latencies of the successful executions
+     */
+    private final LatencyHistogram latencies;
+
+    /**
+     * The amount of failed executions
+     */
+    private final AtomicLong errors;
+
+    /**
+     * The amount of bytes that was allocated by the successful executions, or
+     * -1 if the allocations cannot be measured
+     */
+    private final AtomicLong allocatedBytes;
+
+    /**
+     * The duration of the measurement in nanoseconds
+     */
+    private volatile long duration;
+
+    /**
+     * Creates an empty result for the given operation
+     *
+     * @param operation the operation that is measured
+     * @param allocationSupported true if the allocations can be measured
+     */
+    public BenchmarkResult(BenchmarkOperation operation, boolean allocationSupported) {
+        this.operation = operation;
+        this.latencies = new LatencyHistogram();
+        this.errors = new AtomicLong();
+        this.allocatedBytes = new AtomicLong(allocationSupported ? 0 : -1);
+    }
+
+    /**
+     * Records a successful execution
+     *
+     * @param nanoseconds the latency of the execution
+     * @param allocated the amount of bytes that the execution allocated, or -1
+     * if unknown
+     */
+    void recordSuccess(long nanoseconds, long allocated) {
+        latencies.record(nanoseconds);
+        if (allocated >= 0 && allocatedBytes.get() >= 0) {
+            allocatedBytes.addAndGet(allocated);
+        }
+    }
+
+    /**
+     * Records a failed execution
+     */
+    void recordError() {
+        errors.incrementAndGet();
+    }
+
+    /**
+     * Sets the duration of the measurement
+     *
+     * @param nanoseconds the duration in nanoseconds
+     */
+    void setDuration(long nanoseconds) {
+        this.duration = nanoseconds;
+    }
+
+    /**
+     * Gets the operation that was measured
+     *
+     * @return the measured operation
+     */
+    public BenchmarkOperation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Gets the latencies of the successful executions
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Gets the amount of successful executions
+     *
+     * @return the amount of successful executions
+     */
+    public long getCount() {
+        return latencies.getCount();
+    }
+
+    /**
+     * Gets the amount of failed executions
+     *
+     * @return the amount of failed executions
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Gets the amount of successful executions per second
+     *
+     * @return the throughput, or 0 if the duration is unknown
+     */
+    public double getThroughput() {
+        return duration <= 0 ? 0 : getCount() * 1_000_000_000.0 / duration;
+    }
+
+    /**
+     * Gets the average amount of bytes that a successful execution allocated
+     * on the calling thread
+     *
+     * @return the allocated bytes per execution, or -1 if the allocations
+     * cannot be measured
+     */
+    public long getAllocatedBytesPerOperation() {
+        long allocated = allocatedBytes.get();
+        if (allocated < 0) {
+            return -1;
+        }
+        long count = getCount();
+        return count == 0 ? 0 : allocated / count;
+    }
+}
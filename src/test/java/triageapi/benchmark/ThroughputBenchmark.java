@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import triageapi.TriageApi;
+import triageapi.fake.FakeTriageServer;
+import triageapi.network.TriageConnector;
+
+/**
+ * This class measures how many operations per second a single
+ * <code>TriageApi</code> instance can complete end-to-end, meaning that both
+ * the HTTP requests and the parsing of the responses are included. The
+ * requests are sent to a local <code>FakeTriageServer</code>, which serves the
+ * canned responses of the <code>BenchmarkFixtures</code>.<br>
+ * <br>
+ * Each operation is measured separately. First, the operation is executed for
+ * the warm-up duration, after which it is measured for the configured
+ * duration. During both phases, the configured amount of threads execute the
+ * operation in a loop. For each operation, the throughput, latency
+ * percentiles, and the average amount of memory that was allocated on the
+ * calling thread are reported. The latter is only available on JVMs that
+ * support the measurement of the allocations per thread.<br>
+ * <br>
+ * The benchmark is part of the test sources, and can be started from the
+ * command line, where each setting is passed as <code>--name=value</code>:<br>
+ * <br>
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=triageapi.benchmark.ThroughputBenchmark
+ * -Dexec.args="--concurrency=16 --duration=30 --operations=report,overview"</code><br>
+ * <br>
+ * The available settings are <em>concurrency</em>, <em>warmup</em> and
+ * <em>duration</em> (in seconds), <em>operations</em>, <em>batch</em> (the
+ * amount of samples per download), <em>entries</em> (the size of the
+ * reports), <em>sample-size</em> (in bytes), <em>latency</em> (as
+ * <em>minimum:maximum</em> in milliseconds), and <em>throughput</em> (in bytes
+ * per second). Note that the connector uses at most 20 connections per host,
+ * meaning that a concurrency above 20 also measures the time that is spent
+ * waiting for a connection.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class ThroughputBenchmark {
+
+    /**
+     * The amount of threads that execute the operations
+     */
+    private int concurrency;
+
+    /**
+     * The duration of the warm-up of each operation in seconds
+     */
+    private int warmupSeconds;
+
+    /**
+     * The duration of the measurement of each operation in seconds
+     */
+    private int durationSeconds;
+
+    /**
+     * The amount of samples per batched operation
+     */
+    private int batchSize;
+
+    /**
+     * The operations to measure
+     */
+    private final Set<BenchmarkOperation> operations;
+
+    /**
+     * The generator of the responses of the fake server
+     */
+    private final BenchmarkFixtures fixtures;
+
+    /**
+     * The minimum latency of the fake server in milliseconds
+     */
+    private long minimumLatency;
+
+    /**
+     * The maximum latency of the fake server in milliseconds
+     */
+    private long maximumLatency;
+
+    /**
+     * The throughput of the fake server in bytes per second, or 0 if
+     * unlimited
+     */
+    private long throughput;
+
+    /**
+     * Creates a benchmark with 8 threads, a warm-up of 5 seconds, a
+     * measurement of 20 seconds per operation, and batches of 4 samples. All
+     * operations are measured, and the fake server has no latency or
+     * throughput limit.
+     */
+    public ThroughputBenchmark() {
+        this.concurrency = 8;
+        this.warmupSeconds = 5;
+        this.durationSeconds = 20;
+        this.batchSize = 4;
+        this.operations = EnumSet.allOf(BenchmarkOperation.class);
+        this.fixtures = new BenchmarkFixtures();
+    }
+
+    /**
+     * Sets the amount of threads that execute the operations
+     *
+     * @param concurrency the amount of threads
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Sets the duration of the warm-up of each operation
+     *
+     * @param warmupSeconds the duration in seconds
+     */
+    public void setWarmup(int warmupSeconds) {
+        this.warmupSeconds = Math.max(0, warmupSeconds);
+    }
+
+    /**
+     * Sets the duration of the measurement of each operation
+     *
+     * @param durationSeconds the duration in seconds
+     */
+    public void setDuration(int durationSeconds) {
+        this.durationSeconds = Math.max(1, durationSeconds);
+    }
+
+    /**
+     * Sets the amount of samples that are downloaded per operation
+     *
+     * @param batchSize the amount of samples per batch
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Sets the operations to measure
+     *
+     * @param operations the operations to measure
+     */
+    public void setOperations(Set<BenchmarkOperation> operations) {
+        this.operations.clear();
+        this.operations.addAll(operations);
+    }
+
+    /**
+     * Sets the latency of the fake server
+     *
+     * @param minimumMillis the minimum latency in milliseconds
+     * @param maximumMillis the maximum latency in milliseconds
+     */
+    public void setLatency(long minimumMillis, long maximumMillis) {
+        this.minimumLatency = minimumMillis;
+        this.maximumLatency = maximumMillis;
+    }
+
+    /**
+     * Sets the throughput of the fake server
+     *
+     * @param bytesPerSecond the throughput in bytes per second, or 0 for an
+     * unlimited throughput
+     */
+    public void setThroughput(long bytesPerSecond) {
+        this.throughput = bytesPerSecond;
+    }
+
+    /**
+     * Gets the generator of the responses, which can be used to configure the
+     * size of the responses
+     *
+     * @return the fixtures of this benchmark
+     */
+    public BenchmarkFixtures getFixtures() {
+        return fixtures;
+    }
+
+    /**
+     * Runs the benchmark for each configured operation
+     *
+     * @return the results, in the order of the operations
+     * @throws IOException if the fake server cannot be started
+     */
+    public List<BenchmarkResult> run() throws IOException {
+        FakeTriageServer server = new FakeTriageServer();
+        fixtures.install(server);
+        server.setLatency(minimumLatency, maximumLatency);
+        server.setThroughput(throughput);
+        server.start();
+
+        List<BenchmarkResult> results = new ArrayList<>();
+        try (TriageApi api = new TriageApi(new TriageConnector("benchmark"), server.getApiBase(), server.getFamiliesUrl())) {
+            for (BenchmarkOperation operation : operations) {
+                //The warm-up results are discarded
+                measure(api, operation, warmupSeconds);
+                results.add(measure(api, operation, durationSeconds));
+            }
+        } finally {
+            server.stop();
+        }
+        return results;
+    }
+
+    /**
+     * Executes the given operation in a loop on all threads, for the given
+     * duration
+     *
+     * @param api the API to execute the operation with
+     * @param operation the operation to execute
+     * @param seconds the duration in seconds
+     * @return the measurements of the operation
+     */
+    private BenchmarkResult measure(TriageApi api, BenchmarkOperation operation, int seconds) {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocationBean = null;
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+            if (allocationBean.isThreadAllocatedMemorySupported() == false) {
+                allocationBean = null;
+            } else if (allocationBean.isThreadAllocatedMemoryEnabled() == false) {
+                allocationBean.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        com.sun.management.ThreadMXBean allocations = allocationBean;
+
+        BenchmarkResult result = new BenchmarkResult(operation, allocations != null);
+        AtomicInteger iterations = new AtomicInteger();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            Thread worker = new Thread(() -> {
+                long threadId = Thread.currentThread().getId();
+                while (System.nanoTime() < deadline) {
+                    int iteration = iterations.getAndIncrement();
+                    long allocatedBefore = allocations == null ? 0 : allocations.getThreadAllocatedBytes(threadId);
+                    long begin = System.nanoTime();
+                    try {
+                        operation.execute(api, iteration, batchSize);
+                        long elapsed = System.nanoTime() - begin;
+                        long allocated = allocations == null ? -1 : allocations.getThreadAllocatedBytes(threadId) - allocatedBefore;
+                        result.recordSuccess(elapsed, allocated);
+                    } catch (IOException | RuntimeException ex) {
+                        result.recordError();
+                    }
+                }
+            }, "triage-benchmark-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        result.setDuration(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Formats the given results as a table
+     *
+     * @param results the results to format
+     * @return the formatted results
+     */
+    public static String format(List<BenchmarkResult> results) {
+        StringBuilder output = new StringBuilder();
+        output.append(String.format(Locale.ROOT, "%-10s %10s %8s %12s %10s %10s %10s %10s %14s%n",
+                "operation", "count", "errors", "ops/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "alloc/op"));
+        for (BenchmarkResult result : results) {
+            long allocated = result.getAllocatedBytesPerOperation();
+            output.append(String.format(Locale.ROOT, "%-10s %10d %8d %12.1f %10.2f %10.2f %10.2f %10.2f %14s%n",
+                    result.getOperation().name().toLowerCase(Locale.ROOT),
+                    result.getCount(),
+                    result.getErrors(),
+                    result.getThroughput(),
+                    result.getLatencies().getPercentile(50),
+                    result.getLatencies().getPercentile(90),
+                    result.getLatencies().getPercentile(99),
+                    result.getLatencies().getMax(),
+                    allocated < 0 ? "n/a" : allocated + " B"));
+        }
+        return output.toString();
+    }
+
+    /**
+     * Runs the benchmark with the settings that are given as arguments, and
+     * prints the results
+     *
+     * @param args the settings, each in the form of <code>--name=value</code>
+     * @throws IOException if the fake server cannot be started
+     */
+    public static void main(String[] args) throws IOException {
+        //Disable Nagle's algorithm in the fake server, which otherwise delays small responses
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        ThroughputBenchmark benchmark = new ThroughputBenchmark();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (arg.startsWith("--") == false || separator == -1) {
+                throw new IllegalArgumentException("Arguments have to be given as --name=value, which \"" + arg + "\" is not!");
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "concurrency":
+                    benchmark.setConcurrency(Integer.parseInt(value));
+                    break;
+                case "warmup":
+                    benchmark.setWarmup(Integer.parseInt(value));
+                    break;
+                case "duration":
+                    benchmark.setDuration(Integer.parseInt(value));
+                    break;
+                case "batch":
+                    benchmark.setBatchSize(Integer.parseInt(value));
+                    break;
+                case "operations":
+                    Set<BenchmarkOperation> operations = EnumSet.noneOf(BenchmarkOperation.class);
+                    for (String operation : value.split(",")) {
+                        operations.add(BenchmarkOperation.valueOf(operation.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    benchmark.setOperations(operations);
+                    break;
+                case "entries":
+                    benchmark.getFixtures().setEntryCount(Integer.parseInt(value));
+                    break;
+                case "sample-size":
+                    benchmark.getFixtures().setSampleSize(Integer.parseInt(value));
+                    break;
+                case "latency":
+                    String[] bounds = value.split(":");
+                    long minimum = Long.parseLong(bounds[0]);
+                    benchmark.setLatency(minimum, bounds.length > 1 ? Long.parseLong(bounds[1]) : minimum);
+                    break;
+                case "throughput":
+                    benchmark.setThroughput(Long.parseLong(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown setting \"" + name + "\", expected any of " + Arrays.asList("concurrency", "warmup", "duration", "batch", "operations", "entries", "sample-size", "latency", "throughput"));
+            }
+        }
+
+        System.out.print(format(benchmark.run()));
+    }
+}
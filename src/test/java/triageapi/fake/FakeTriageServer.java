@@ -0,0 +1,675 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.fake;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONObject;
+
+/**
+ * This class is a local HTTP server that mimics the Triage API, which can be
+ * used to test and benchmark code that uses the <code>TriageApi</code>
+ * without connecting to Triage. The server listens on the loopback address,
+ * and serves the API under <em>/api/v0/</em>. To use it, create a
+ * <code>TriageApi</code> with the server's API base and families URL.<br>
+ * <br>
+ * The server responds with fixtures, which are the recorded responses of the
+ * real API. A fixture is looked up by the path and query of the request
+ * (such as <em>samples/210101-abc/overview.json</em>), and then by the
+ * endpoint template of the request (such as
+ * <em>samples/{id}/overview.json</em>). Fixtures can be set in-memory, or can
+ * be read from a fixture directory, which can be filled with a
+ * <code>RecordingTransport</code>. In the directory, each fixture is stored
+ * at its key, followed by the <em>.fixture</em> extension (such as
+ * <em>samples/{id}/overview.json.fixture</em>). If no fixture is found, submissions
+ * receive a generated upload result, searches receive an empty result, and
+ * all other requests receive a 404 status code.<br>
+ * <br>
+ * The latency, error rate, truncation rate, capacity and throughput of the
+ * server can be configured, also while it is running. Fixtures are served with support
+ * for single <em>Range</em> requests, which allows resumed downloads to be
+ * tested. Requests to the API without an authorisation
+ * header are refused with a 401 status code.<br>
+ * <br>
+ * This class is published in the test artifact of this library, which is
+ * included with a dependency on this library of the type <em>test-jar</em>.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class FakeTriageServer {
+
+    /**
+     * The path under which the API is served
+     */
+    public static final String API_PATH = "/api/v0/";
+
+    /**
+     * The size of the chunks in which response bodies are written
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * The format of the submission time in generated upload results
+     */
+    private static final DateTimeFormatter SUBMITTED_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
+
+    /**
+     * The format of the date prefix of generated sample IDs
+     */
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyMMdd");
+
+    /**
+     * The directory from which fixtures are read, or null if only in-memory
+     * fixtures are used
+     */
+    private final File fixtureDirectory;
+
+    /**
+     * The in-memory fixtures, which take precedence over the fixture directory
+     */
+    private final Map<String, byte[]> fixtures;
+
+    /**
+     * The amount of requests that this server received
+     */
+    private final AtomicLong requestCount;
+
+    /**
+     * The minimum latency in milliseconds before a response is sent
+     */
+    private volatile long minimumLatency;
+
+    /**
+     * The maximum latency in milliseconds before a response is sent
+     */
+    private volatile long maximumLatency;
+
+    /**
+     * The fraction of requests, between 0 and 1, that fail
+     */
+    private volatile double errorRate;
+
+    /**
+     * The status code of failed requests
+     */
+    private volatile int errorStatusCode;
+
+    /**
+     * The maximum amount of concurrent requests, above which requests are
+     * refused with a 429 status code, or 0 if the amount is unlimited
+     */
+    private volatile int capacity;
+
+    /**
+     * The amount of requests that are being handled
+     */
+    private final AtomicInteger activeRequests;
+
+    /**
+     * The fraction of successful responses, between 0 and 1, of which the
+     * connection is closed halfway through the body
+     */
+    private volatile double truncationRate;
+
+    /**
+     * The amount of bytes per second that the server sends in total, or 0 if
+     * the throughput is unlimited
+     */
+    private volatile long throughput;
+
+    /**
+     * The moment at which the next chunk may be sent, as measured with
+     * <code>System.nanoTime()</code>, when the throughput is limited
+     */
+    private long nextTransfer;
+
+    /**
+     * The lock that guards the moment at which the next chunk may be sent
+     */
+    private final Object throughputLock;
+
+    /**
+     * The HTTP server, or null if the server is not running
+     */
+    private HttpServer server;
+
+    /**
+     * The threads that handle the requests, or null if the server is not
+     * running
+     */
+    private ExecutorService executor;
+
+    /**
+     * Creates a server that only serves in-memory fixtures
+     */
+    public FakeTriageServer() {
+        this(null);
+    }
+
+    /**
+     * Creates a server that serves the fixtures in the given directory, next
+     * to the in-memory fixtures
+     *
+     * @param fixtureDirectory the directory from which fixtures are read, or
+     * null to only use in-memory fixtures
+     */
+    public FakeTriageServer(File fixtureDirectory) {
+        this.fixtureDirectory = fixtureDirectory;
+        this.fixtures = new ConcurrentHashMap<>();
+        this.requestCount = new AtomicLong();
+        this.activeRequests = new AtomicInteger();
+        this.errorStatusCode = 500;
+        this.throughputLock = new Object();
+    }
+
+    /**
+     * Sets the response to the GET requests with the given key. The key is
+     * either the path of a request relative to the API (such as
+     * <em>samples/210101-abc/overview.json</em>, optionally with a query), an
+     * endpoint template (such as <em>samples/{id}/overview.json</em>), or the
+     * path of a request outside of the API (such as <em>family.json</em>).
+     * Responses to POST requests are set by prefixing the key with
+     * <em>post/</em>.
+     *
+     * @param key the key of the fixture
+     * @param body the response body, or null to remove the fixture
+     */
+    public void setFixture(String key, byte[] body) {
+        if (body == null) {
+            fixtures.remove(key);
+        } else {
+            fixtures.put(key, body);
+        }
+    }
+
+    /**
+     * Sets the response to the GET requests with the given key, as is
+     * explained in {@link #setFixture(java.lang.String, byte[])}
+     *
+     * @param key the key of the fixture
+     * @param body the response body, which is encoded in UTF-8
+     */
+    public void setFixture(String key, String body) {
+        setFixture(key, body == null ? null : body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sets the latency of each response. The latency of a request is chosen at
+     * random between the given minimum and maximum, and is spent before the
+     * response headers are sent.
+     *
+     * @param minimumMillis the minimum latency in milliseconds
+     * @param maximumMillis the maximum latency in milliseconds
+     */
+    public void setLatency(long minimumMillis, long maximumMillis) {
+        this.minimumLatency = Math.max(0, minimumMillis);
+        this.maximumLatency = Math.max(this.minimumLatency, maximumMillis);
+    }
+
+    /**
+     * Sets the fraction of requests that fail with the error status code
+     *
+     * @param errorRate the fraction of failing requests, between 0 and 1
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = Math.min(1, Math.max(0, errorRate));
+    }
+
+    /**
+     * Sets the status code of requests that fail due to the error rate, which
+     * is 500 by default
+     *
+     * @param errorStatusCode the status code of failing requests
+     */
+    public void setErrorStatusCode(int errorStatusCode) {
+        this.errorStatusCode = errorStatusCode;
+    }
+
+    /**
+     * Sets the maximum amount of requests that the server handles at once.
+     * Requests above the capacity are refused with a 429 status code, as the
+     * Triage API does when its rate limit is exceeded.
+     *
+     * @param capacity the maximum amount of concurrent requests, or 0 (or
+     * less) for an unlimited amount
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(0, capacity);
+    }
+
+    /**
+     * Sets the fraction of successful responses of which the connection is
+     * closed after half of the body was sent, which mimics a connection that
+     * breaks during a large download
+     *
+     * @param truncationRate the fraction of truncated responses, between 0
+     * and 1
+     */
+    public void setTruncationRate(double truncationRate) {
+        this.truncationRate = Math.min(1, Math.max(0, truncationRate));
+    }
+
+    /**
+     * Sets the total amount of bytes per second that the server sends, which
+     * is shared by all concurrent responses
+     *
+     * @param bytesPerSecond the throughput of the server, or 0 (or less) for an
+     * unlimited throughput
+     */
+    public void setThroughput(long bytesPerSecond) {
+        this.throughput = Math.max(0, bytesPerSecond);
+    }
+
+    /**
+     * Gets the amount of requests that this server received
+     *
+     * @return the amount of received requests
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Starts the server on a free port of the loopback address
+     *
+     * @throws IOException if the server cannot be started
+     */
+    public void start() throws IOException {
+        start(0);
+    }
+
+    /**
+     * Starts the server on the given port of the loopback address
+     *
+     * @param port the port to listen on, or 0 to use a free port
+     * @throws IOException if the server is already running, or if it cannot
+     * be started
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            throw new IOException("The fake Triage server is already running!");
+        }
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        ExecutorService threads = Executors.newCachedThreadPool((runnable) -> {
+            Thread thread = new Thread(runnable, "fake-triage-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.createContext("/", this::handle);
+        httpServer.setExecutor(threads);
+        httpServer.start();
+        this.server = httpServer;
+        this.executor = threads;
+    }
+
+    /**
+     * Stops the server, if it is running. Requests that are being handled are
+     * aborted.
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    /**
+     * Gets the port on which the server listens
+     *
+     * @return the port of the server
+     * @throws IllegalStateException if the server is not running
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("The fake Triage server is not running!");
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the base URL of the API, which is to be passed to the
+     * <code>TriageApi</code>
+     *
+     * @return the API base URL of this server
+     * @throws IllegalStateException if the server is not running
+     */
+    public String getApiBase() {
+        return "http://127.0.0.1:" + getPort() + API_PATH;
+    }
+
+    /**
+     * Gets the URL of the list of supported families, which is to be passed to
+     * the <code>TriageApi</code>. It is served from the <em>family.json</em>
+     * fixture.
+     *
+     * @return the families URL of this server
+     * @throws IllegalStateException if the server is not running
+     */
+    public String getFamiliesUrl() {
+        return "http://127.0.0.1:" + getPort() + "/family.json";
+    }
+
+    /**
+     * Handles a single request
+     *
+     * @param exchange the request and its response
+     * @throws IOException if the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        int active = activeRequests.incrementAndGet();
+        try {
+            //The request body is not used, but has to be consumed
+            drain(exchange.getRequestBody());
+
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getRawPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            boolean api = path.startsWith(API_PATH);
+            String key = Fixtures.toKey(query == null ? path : path + "?" + query);
+            if (method.equalsIgnoreCase("POST")) {
+                key = Fixtures.POST_PREFIX + key;
+            }
+
+            sleep(getLatency());
+
+            if (api && exchange.getRequestHeaders().getFirst("Authorization") == null) {
+                send(exchange, 401, error("UNAUTHORIZED", "No API key was provided"));
+            } else if (capacity > 0 && active > capacity) {
+                send(exchange, 429, error("RATE_LIMITED", "The fake Triage server is at its capacity of " + capacity + " requests"));
+            } else if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                send(exchange, errorStatusCode, error("INJECTED", "This failure was injected by the fake Triage server"));
+            } else {
+                byte[] body = resolve(key, exchange);
+                if (body == null) {
+                    send(exchange, 404, error("NOT_FOUND", "No fixture exists for " + key));
+                } else {
+                    sendResource(exchange, body);
+                }
+            }
+        } catch (InterruptedIOException ex) {
+            //The server is stopping
+        } finally {
+            activeRequests.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Gets the response body for the request with the given key. In-memory
+     * fixtures take precedence over the fixture directory, and exact keys take
+     * precedence over endpoint templates.
+     *
+     * @param key the fixture key of the request
+     * @param exchange the request, which is used to generate upload results
+     * @return the response body, or null if no fixture exists
+     * @throws IOException if the fixture cannot be read
+     */
+    private byte[] resolve(String key, HttpExchange exchange) throws IOException {
+        String template = Fixtures.toTemplate(key);
+        String path = key;
+        int query = key.indexOf('?');
+        if (query != -1) {
+            path = key.substring(0, query);
+        }
+
+        for (String candidate : new String[]{key, path, template}) {
+            byte[] body = fixtures.get(candidate);
+            if (body != null) {
+                return body;
+            }
+            if (fixtureDirectory != null) {
+                File file = Fixtures.toFile(fixtureDirectory, candidate);
+                if (file != null && file.isFile()) {
+                    return Files.readAllBytes(file.toPath());
+                }
+            }
+        }
+
+        //Generate a response for the endpoints that do not depend on existing samples
+        if (path.equals(Fixtures.POST_PREFIX + "samples")) {
+            return createUploadResult(exchange);
+        } else if (path.equals("search")) {
+            return "{\"data\":[]}".getBytes(StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    /**
+     * Creates the upload result of a submission, in the same form as the
+     * Triage API does
+     *
+     * @param exchange the submission request
+     * @return the upload result
+     */
+    private byte[] createUploadResult(HttpExchange exchange) {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-type");
+        boolean url = contentType != null && contentType.startsWith("application/json");
+
+        JSONObject json = new JSONObject();
+        json.put("id", ID_FORMAT.format(now) + "-" + Long.toString(ThreadLocalRandom.current().nextLong(0x10000000000L, 0x100000000000L), 36));
+        json.put("status", "pending");
+        json.put("kind", url ? "url" : "file");
+        json.put("private", false);
+        json.put("submitted", SUBMITTED_FORMAT.format(now));
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates an error response, in the same form as the Triage API does
+     *
+     * @param error the error code
+     * @param message the error message
+     * @return the error response
+     */
+    private byte[] error(String error, String message) {
+        JSONObject json = new JSONObject();
+        json.put("error", error);
+        json.put("message", message);
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sends the given resource, or the part of it that the request's
+     * <em>Range</em> header refers to. Only a single range is supported, in
+     * the form of <em>bytes=start-end</em>, <em>bytes=start-</em>, or
+     * <em>bytes=-suffix</em>. Other forms of the header are ignored, in which
+     * case the complete resource is sent.
+     *
+     * @param exchange the request to respond to
+     * @param body the complete resource
+     * @throws IOException if the response cannot be sent
+     */
+    private void sendResource(HttpExchange exchange, byte[] body) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        boolean truncated = truncationRate > 0 && ThreadLocalRandom.current().nextDouble() < truncationRate;
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        if (range == null || exchange.getRequestMethod().equalsIgnoreCase("GET") == false) {
+            send(exchange, 200, body, 0, body.length, truncated);
+            return;
+        }
+
+        String value = range.trim();
+        int dash = value.indexOf('-');
+        if (value.startsWith("bytes=") == false || dash == -1 || value.indexOf(',') != -1) {
+            send(exchange, 200, body, 0, body.length, truncated);
+            return;
+        }
+
+        long start;
+        long end;
+        try {
+            String first = value.substring("bytes=".length(), dash).trim();
+            String last = value.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                //A suffix range refers to the last bytes of the resource
+                start = Math.max(0, body.length - Long.parseLong(last));
+                end = body.length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? body.length - 1 : Math.min(Long.parseLong(last), body.length - 1);
+            }
+        } catch (NumberFormatException ex) {
+            send(exchange, 200, body, 0, body.length, truncated);
+            return;
+        }
+
+        if (start >= body.length || end < start) {
+            exchange.getResponseHeaders().set("Content-Range", "bytes */" + body.length);
+            send(exchange, 416, new byte[0]);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + body.length);
+        send(exchange, 206, body, (int) start, (int) (end - start + 1), truncated);
+    }
+
+    /**
+     * Sends the given response, whilst limiting the throughput if configured
+     *
+     * @param exchange the request to respond to
+     * @param statusCode the status code of the response
+     * @param body the response body
+     * @throws IOException if the response cannot be sent
+     */
+    private void send(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        send(exchange, statusCode, body, 0, body.length, false);
+    }
+
+    /**
+     * Sends the given part of the given response, whilst limiting the
+     * throughput if configured
+     *
+     * @param exchange the request to respond to
+     * @param statusCode the status code of the response
+     * @param body the buffer that contains the response body
+     * @param start the offset of the response body within the buffer
+     * @param length the length of the response body
+     * @param truncated true to close the connection after half of the body
+     * was sent, false to send the complete body
+     * @throws IOException if the response cannot be sent, or if it was
+     * truncated
+     */
+    private void send(HttpExchange exchange, int statusCode, byte[] body, int start, int length, boolean truncated) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", length > 0 && body[start] == '{' ? "application/json" : "application/octet-stream");
+        exchange.sendResponseHeaders(statusCode, length == 0 ? -1 : length);
+        OutputStream output = exchange.getResponseBody();
+        int limit = truncated ? length / 2 : length;
+        for (int offset = 0; offset < limit; offset += CHUNK_SIZE) {
+            int chunk = Math.min(CHUNK_SIZE, limit - offset);
+            pace(chunk);
+            output.write(body, start + offset, chunk);
+        }
+        output.flush();
+        if (truncated && length > 0) {
+            //Closing the exchange before the complete body is written breaks the connection
+            throw new IOException("The response was truncated by the fake Triage server");
+        }
+    }
+
+    /**
+     * Waits until the given amount of bytes may be sent, based on the
+     * configured throughput. The throughput is shared by all responses, as
+     * each chunk reserves its share of the next second.
+     *
+     * @param bytes the amount of bytes that are about to be sent
+     * @throws IOException if the thread is interrupted
+     */
+    private void pace(int bytes) throws IOException {
+        long bytesPerSecond = throughput;
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+        long cost = bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+        long wait;
+        synchronized (throughputLock) {
+            long now = System.nanoTime();
+            long begin = Math.max(now, nextTransfer);
+            nextTransfer = begin + cost;
+            wait = begin - now;
+        }
+        sleep(TimeUnit.NANOSECONDS.toMillis(wait));
+    }
+
+    /**
+     * Gets a random latency between the configured minimum and maximum
+     *
+     * @return the latency in milliseconds
+     */
+    private long getLatency() {
+        long minimum = minimumLatency;
+        long maximum = maximumLatency;
+        if (maximum <= minimum) {
+            return minimum;
+        }
+        return ThreadLocalRandom.current().nextLong(minimum, maximum + 1);
+    }
+
+    /**
+     * Sleeps for the given amount of milliseconds
+     *
+     * @param millis the amount of milliseconds to sleep
+     * @throws InterruptedIOException if the thread is interrupted
+     */
+    private void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The fake Triage server was stopped");
+        }
+    }
+
+    /**
+     * Reads and discards the remainder of the given stream
+     *
+     * @param input the stream to drain
+     * @throws IOException if the stream cannot be read
+     */
+    private void drain(InputStream input) throws IOException {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        while (input.read(buffer) != -1) {
+            //Discard the data
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.fake;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import triageapi.network.EndpointTemplate;
+
+/**
+ * This class converts request URLs into fixture keys, and fixture keys into
+ * the files in which they are stored. A fixture key is the path of the
+ * request, relative to the API version (or to the host, if there is no API
+ * version in the URL), including its query. As such, the same key is used
+ * for a request to the real Triage API and for a request to the
+ * <code>FakeTriageServer</code>.<br>
+ * <br>
+ * Responses to POST requests are stored under the key of the request,
+ * prefixed with <em>post/</em>.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+final class Fixtures {
+
+    /**
+     * The prefix of the keys of responses to POST requests
+     */
+    static final String POST_PREFIX = "post/";
+
+    /**
+     * The extension of fixture files, which ensures that the fixture of a path
+     * (such as <em>samples/{id}</em>) does not collide with the directory of
+     * the paths below it (such as <em>samples/{id}/overview.json</em>)
+     */
+    static final String EXTENSION = ".fixture";
+
+    /**
+     * The API version marker, after which the key starts
+     */
+    private static final String VERSION_MARKER = "/v0/";
+
+    /**
+     * This class only contains static functions
+     */
+    private Fixtures() {
+    }
+
+    /**
+     * Converts the given URL, or the path and query of a URL, into its
+     * fixture key
+     *
+     * @param url the URL to convert
+     * @return the fixture key of the given URL
+     */
+    static String toKey(String url) {
+        String key = url;
+
+        //Remove the fragment
+        int fragment = key.indexOf('#');
+        if (fragment != -1) {
+            key = key.substring(0, fragment);
+        }
+
+        //Remove everything up to and including the API version, or the host if there is none
+        int version = key.indexOf(VERSION_MARKER);
+        if (version != -1) {
+            key = key.substring(version + VERSION_MARKER.length());
+        } else {
+            int scheme = key.indexOf("://");
+            if (scheme != -1) {
+                int slash = key.indexOf('/', scheme + 3);
+                key = slash == -1 ? "" : key.substring(slash + 1);
+            }
+        }
+        while (key.startsWith("/")) {
+            key = key.substring(1);
+        }
+        return key;
+    }
+
+    /**
+     * Converts the given fixture key into its endpoint template, such as
+     * <em>samples/{id}/overview.json</em>, which is used as a fallback if no
+     * fixture exists for the exact key
+     *
+     * @param key the fixture key to convert
+     * @return the endpoint template of the given key
+     */
+    static String toTemplate(String key) {
+        if (key.startsWith(POST_PREFIX)) {
+            return POST_PREFIX + EndpointTemplate.of(key.substring(POST_PREFIX.length()));
+        }
+        return EndpointTemplate.of(key);
+    }
+
+    /**
+     * Gets the file in which the fixture with the given key is stored. The
+     * query of the key is URL encoded, and appended to the name of the file,
+     * after which the fixture extension is appended.
+     *
+     * @param directory the directory in which the fixtures are stored
+     * @param key the fixture key
+     * @return the file of the fixture, or null if the key is not a valid
+     * relative path (such as when it contains a parent directory reference)
+     */
+    static File toFile(File directory, String key) {
+        String path = key;
+        String query = "";
+        int index = key.indexOf('?');
+        if (index != -1) {
+            path = key.substring(0, index);
+            query = key.substring(index);
+        }
+
+        //Reject empty and relative path segments, as these could escape the directory
+        String[] segments = path.split("/", -1);
+        for (String segment : segments) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..") || segment.contains("\\")) {
+                return null;
+            }
+        }
+
+        if (query.isEmpty() == false) {
+            try {
+                path += URLEncoder.encode(query, "UTF-8");
+            } catch (UnsupportedEncodingException ex) {
+                return null;
+            }
+        }
+        return new File(directory, path + EXTENSION);
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2020 Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package triageapi.fake;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.apache.hc.client5.http.entity.mime.MultipartEntityBuilder;
+import triageapi.metrics.TriageMetrics;
+import triageapi.network.ContentRange;
+import triageapi.network.TriageOperation;
+import triageapi.network.TriageRequestListener;
+import triageapi.network.TriageStreamHandler;
+import triageapi.network.TriageTimeouts;
+import triageapi.network.TriageTransport;
+
+/**
+ * This transport wraps another transport, and stores each successful
+ * response as a fixture in the given directory. The directory can then be
+ * served by a <code>FakeTriageServer</code>, which replays the responses
+ * without connecting to Triage. Existing fixtures are overwritten.<br>
+ * <br>
+ * Streamed responses are stored while they are being consumed. If the
+ * consumer does not read the complete response, the remainder is read once
+ * the consumer is done, to store the complete fixture.
+ *
+ * @author Max 'Libra' Kersten [@Libranalysis, https://maxkersten.nl]
+ */
+public class RecordingTransport implements TriageTransport {
+
+    /**
+     * The transport that sends the requests
+     */
+    private final TriageTransport transport;
+
+    /**
+     * The directory in which the fixtures are stored
+     */
+    private final File fixtureDirectory;
+
+    /**
+     * Creates a transport that records the responses of the given transport
+     *
+     * @param transport the transport that sends the requests
+     * @param fixtureDirectory the directory in which the fixtures are stored
+     */
+    public RecordingTransport(TriageTransport transport, File fixtureDirectory) {
+        this.transport = transport;
+        this.fixtureDirectory = fixtureDirectory;
+    }
+
+    @Override
+    public byte[] get(String url) throws IOException {
+        byte[] body = transport.get(url);
+        record(Fixtures.toKey(url), body);
+        return body;
+    }
+
+    @Override
+    public <T> T get(String url, TriageStreamHandler<T> handler) throws IOException {
+        File file = getFile(Fixtures.toKey(url));
+        File part = new File(file.getPath() + ".part");
+        T result = transport.get(url, (input) -> {
+            try (OutputStream output = new FileOutputStream(part)) {
+                RecordingInputStream recording = new RecordingInputStream(input, output);
+                T value = handler.handle(recording);
+                //Store the part of the response that the handler did not read
+                byte[] buffer = new byte[8192];
+                while (recording.read(buffer) != -1) {
+                    //The data is stored by the stream
+                }
+                return value;
+            }
+        });
+        Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return result;
+    }
+
+    @Override
+    public long get(String url, OutputStream output) throws IOException {
+        return get(url, (input) -> {
+            long total = 0;
+            int offset;
+            byte[] data = new byte[8192];
+            while ((offset = input.read(data, 0, data.length)) != -1) {
+                output.write(data, 0, offset);
+                total += offset;
+            }
+            output.flush();
+            return total;
+        });
+    }
+
+    @Override
+    public ContentRange get(String url, long start, long end, OutputStream output) throws IOException {
+        //Only complete responses can be stored as a fixture
+        if (start == 0 && end == -1) {
+            long length = get(url, output);
+            return new ContentRange(0, length, length, false);
+        }
+        return transport.get(url, start, end, output);
+    }
+
+    @Override
+    public byte[] post(String url, String json) throws IOException {
+        byte[] body = transport.post(url, json);
+        record(Fixtures.POST_PREFIX + Fixtures.toKey(url), body);
+        return body;
+    }
+
+    @Override
+    public byte[] post(String url, MultipartEntityBuilder builder) throws IOException {
+        byte[] body = transport.post(url, builder);
+        record(Fixtures.POST_PREFIX + Fixtures.toKey(url), body);
+        return body;
+    }
+
+    @Override
+    public void setTimeouts(TriageOperation operation, TriageTimeouts timeouts) {
+        transport.setTimeouts(operation, timeouts);
+    }
+
+    @Override
+    public TriageMetrics getMetrics() {
+        return transport.getMetrics();
+    }
+
+    @Override
+    public void addRequestListener(TriageRequestListener listener) {
+        transport.addRequestListener(listener);
+    }
+
+    @Override
+    public void removeRequestListener(TriageRequestListener listener) {
+        transport.removeRequestListener(listener);
+    }
+
+    @Override
+    public void close() throws IOException {
+        transport.close();
+    }
+
+    /**
+     * Stores the given response as the fixture with the given key
+     *
+     * @param key the fixture key
+     * @param body the response body
+     * @throws IOException if the fixture cannot be written
+     */
+    private void record(String key, byte[] body) throws IOException {
+        File file = getFile(key);
+        File part = new File(file.getPath() + ".part");
+        Files.write(part.toPath(), body);
+        Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Gets the file of the fixture with the given key, and creates its parent
+     * directories
+     *
+     * @param key the fixture key
+     * @return the file of the fixture
+     * @throws IOException if the key is not a valid relative path, or if the
+     * parent directories cannot be created
+     */
+    private File getFile(String key) throws IOException {
+        File file = Fixtures.toFile(fixtureDirectory, key);
+        if (file == null) {
+            throw new IOException("The request \"" + key + "\" cannot be stored as a fixture!");
+        }
+        File parent = file.getParentFile();
+        if (parent.isDirectory() == false && parent.mkdirs() == false) {
+            throw new IOException("Unable to create the fixture directory \"" + parent.getAbsolutePath() + "\"!");
+        }
+        return file;
+    }
+
+    /**
+     * This stream writes all data that is read from the wrapped stream to the
+     * given output stream
+     */
+    private static class RecordingInputStream extends java.io.FilterInputStream {
+
+        /**
+         * The stream to which the read data is written
+         */
+        private final OutputStream output;
+
+        /**
+         * Creates a stream that records the given stream
+         *
+         * @param input the stream to read from
+         * @param output the stream to write the read data to
+         */
+        RecordingInputStream(InputStream input, OutputStream output) {
+            super(input);
+            this.output = output;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                output.write(value);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                output.write(buffer, offset, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            //Skipped data has to be recorded as well
+            byte[] buffer = new byte[(int) Math.min(8192, Math.max(0, n))];
+            int count = buffer.length == 0 ? 0 : read(buffer, 0, buffer.length);
+            return Math.max(0, count);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            //The wrapped stream is closed by the transport
+        }
+    }
+}